@@ -1,16 +1,20 @@
 package com.example.chatbotrag.config;
 
 import dev.langchain4j.store.embedding.chroma.ChromaEmbeddingStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
 public class ChromaConfig {
 
+    @Value("${chroma.baseurl:http://localhost:8000}")
+    private String chromaBaseUrl;
+
     @Bean
     public ChromaEmbeddingStore chromaEmbeddingStore() {
         return ChromaEmbeddingStore.builder()
-                .baseUrl("http://localhost:8000")
+                .baseUrl(chromaBaseUrl)
                 .collectionName(Constants.CHROMA_COLLECTION_NAME)
                 .build();
     }
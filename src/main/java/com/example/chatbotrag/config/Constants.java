@@ -9,6 +9,11 @@ public final class Constants {
      * The only ChromaDB collection name used throughout the application
      */
     public static final String CHROMA_COLLECTION_NAME = "emsi-ai-collection";
+
+    /**
+     * Prefix of the per-chapter ChromaDB collections ("emsi-ai-collection-ch01") when sharding is enabled
+     */
+    public static final String CHROMA_SHARD_PREFIX = CHROMA_COLLECTION_NAME + "-ch";
     
     // Private constructor to prevent instantiation
     private Constants() {
@@ -0,0 +1,130 @@
+package com.example.chatbotrag.config;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.service.OllamaClientService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Garde Mistral et bge-m3 chargés dans Ollama : préchargement au démarrage, puis vérification
+ * périodique (GET /api/ps) et rechargement d'un modèle déchargé. L'état est exposé en santé
+ * (composant "ollamaModelWarmup", inclus dans le groupe readiness) : le nœud n'est prêt à
+ * recevoir du trafic que lorsque les deux modèles sont en mémoire.
+ */
+@Component
+public class OllamaModelWarmup implements ApplicationRunner, HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(OllamaModelWarmup.class);
+
+    private final OllamaClientService ollamaClient;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+    private final List<String> models;
+
+    // État du dernier contrôle, lu par les requêtes de santé sans appeler Ollama
+    private volatile Map<String, Boolean> modelsLoaded;
+    private volatile Instant lastCheck;
+    private volatile String lastError;
+
+    public OllamaModelWarmup(OllamaClientService ollamaClient, RagMetrics metrics,
+                             @Value("${ollama.warmup.enabled:true}") boolean enabled) {
+        this.ollamaClient = ollamaClient;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.models = List.of(ollamaClient.getChatModel(), ollamaClient.getEmbeddingModel());
+        Map<String, Boolean> initial = new LinkedHashMap<>();
+        models.forEach(model -> initial.put(model, false));
+        this.modelsLoaded = initial;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (enabled) {
+            logger.info("🔥 [STARTUP] Préchargement des modèles Ollama {}", models);
+            warmUp();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${ollama.warmup.interval:PT1M}", fixedDelayString = "${ollama.warmup.interval:PT1M}")
+    public void scheduledWarmUp() {
+        if (enabled) {
+            warmUp();
+        }
+    }
+
+    /**
+     * Recharge chaque modèle absent de /api/ps ; ne lève jamais d'exception
+     */
+    public synchronized void warmUp() {
+        Set<String> loaded;
+        try {
+            loaded = ollamaClient.loadedModels();
+        } catch (Exception e) {
+            logger.warn("⚠️ [OLLAMA] Liste des modèles chargés indisponible : {}", e.getMessage());
+            record(Map.of(), e.getMessage());
+            return;
+        }
+
+        Map<String, Boolean> state = new LinkedHashMap<>();
+        String error = null;
+        for (String model : models) {
+            if (loaded.contains(model)) {
+                state.put(model, true);
+                continue;
+            }
+            long start = System.nanoTime();
+            try {
+                metrics.time(RagMetrics.STAGE_MODEL_WARMUP, () -> ollamaClient.preload(model));
+                metrics.increment("rag.ollama.warmup", "model", model);
+                state.put(model, true);
+                logger.info("✅ [OLLAMA] Modèle {} chargé en {} ms", model, (System.nanoTime() - start) / 1_000_000);
+            } catch (Exception e) {
+                state.put(model, false);
+                error = model + " : " + e.getMessage();
+                logger.warn("⚠️ [OLLAMA] Préchargement de {} impossible : {}", model, e.getMessage());
+            }
+        }
+        record(state, error);
+    }
+
+    public boolean isReady() {
+        return !enabled || modelsLoaded.values().stream().allMatch(Boolean::booleanValue);
+    }
+
+    @Override
+    public Health health() {
+        if (!enabled) {
+            return Health.up().withDetail("warmup", "désactivé").build();
+        }
+        Health.Builder builder = isReady() ? Health.up() : Health.outOfService();
+        builder.withDetail("models", modelsLoaded);
+        if (lastCheck != null) {
+            builder.withDetail("lastCheck", lastCheck.toString());
+        }
+        if (lastError != null) {
+            builder.withDetail("error", lastError);
+        }
+        return builder.build();
+    }
+
+    private void record(Map<String, Boolean> state, String error) {
+        Map<String, Boolean> snapshot = new LinkedHashMap<>();
+        models.forEach(model -> snapshot.put(model, state.getOrDefault(model, false)));
+        this.modelsLoaded = snapshot;
+        this.lastError = error;
+        this.lastCheck = Instant.now();
+    }
+}
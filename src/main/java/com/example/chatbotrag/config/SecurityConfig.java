@@ -38,7 +38,12 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers("/login", "/logout", "/chat/**").permitAll()
                         .requestMatchers(org.springframework.http.HttpMethod.GET, "/chunks/**").permitAll()
+                        // Lecture du dernier rapport libre ; refresh lance un parcours complet des deux bases
+                        .requestMatchers(request -> "/sync/consistency".equals(request.getServletPath())
+                                && request.getParameter("refresh") != null
+                                && !"false".equalsIgnoreCase(request.getParameter("refresh"))).hasRole("ADMIN")
                         .requestMatchers("/ping", "/sync/**").permitAll()
+                        .requestMatchers("/actuator/health/**", "/actuator/info", "/actuator/prometheus").permitAll()
                         .requestMatchers("/admin/**", "/upload/**", "/delete/**").hasRole("ADMIN")
                         .anyRequest().authenticated()
                 )
@@ -69,24 +69,36 @@ public class ChatController {
     @PostMapping(value = "/stream", produces = org.springframework.http.MediaType.TEXT_EVENT_STREAM_VALUE)
     public org.springframework.web.servlet.mvc.method.annotation.SseEmitter askStream(@RequestBody ChatRequest chatRequest) {
         org.springframework.web.servlet.mvc.method.annotation.SseEmitter emitter = new org.springframework.web.servlet.mvc.method.annotation.SseEmitter();
+        // Le thread de streaming hérite du requestId et de la décision d'échantillonnage
+        Map<String, String> mdcContext = org.slf4j.MDC.getCopyOfContextMap();
         new Thread(() -> {
+            if (mdcContext != null) {
+                org.slf4j.MDC.setContextMap(mdcContext);
+            }
             try {
                 String sessionId = chatRequest.getSessionId();
                 if (sessionId == null || sessionId.isBlank()) {
                     sessionId = java.util.UUID.randomUUID().toString();
-                    System.out.println("DEBUG ChatController: No sessionId provided, generated new one: " + sessionId + ". Client will not know this ID for future requests unless handled.");
+                    logger.debug("ChatController: No sessionId provided, generated new one: {}. Client will not know this ID for future requests unless handled.", sessionId);
                 }
-                java.util.List<String> responses = chatService.ask(
+                // Fragments HTML envoyés au fil de la génération Mistral, déjà formatés
+                chatService.askStreaming(
                     sessionId,
                     chatRequest.getQuestion(),
-                    chatRequest.getLang()
+                    chatRequest.getLang(),
+                    fragment -> {
+                        try {
+                            emitter.send(fragment);
+                        } catch (java.io.IOException e) {
+                            throw new java.io.UncheckedIOException(e); // client déconnecté : arrêt de la lecture du flux Ollama
+                        }
+                    }
                 );
-                for (String chunk : responses) {
-                    emitter.send(chunk + "\n"); // Ajoute un saut de ligne pour chaque chunk
-                }
                 emitter.complete();
             } catch (Exception e) {
                 emitter.completeWithError(e);
+            } finally {
+                org.slf4j.MDC.clear();
             }
         }).start();
         return emitter;
@@ -1,51 +1,62 @@
 package com.example.chatbotrag.controller;
 
 import com.example.chatbotrag.model.Chunk;
-import com.example.chatbotrag.model.Document;
 import com.example.chatbotrag.repository.ChunkRepository;
 import com.example.chatbotrag.repository.DocumentRepository;
+import com.example.chatbotrag.service.ShCodeCatalogueService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.CacheControl;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/chunks")
 public class ChunkController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int PREVIEW_LENGTH = 200;
+    private static final int STREAM_BATCH_SIZE = 200;
+
     private final ChunkRepository chunkRepository;
     private final DocumentRepository documentRepository;
+    private final ObjectMapper objectMapper;
+    private final ShCodeCatalogueService shCodeCatalogue;
 
-    public ChunkController(ChunkRepository chunkRepository, DocumentRepository documentRepository) {
+    public ChunkController(ChunkRepository chunkRepository, DocumentRepository documentRepository, ObjectMapper objectMapper,
+                           ShCodeCatalogueService shCodeCatalogue) {
         this.chunkRepository = chunkRepository;
         this.documentRepository = documentRepository;
+        this.objectMapper = objectMapper;
+        this.shCodeCatalogue = shCodeCatalogue;
         System.out.println("[API] ChunkController instancié");
     }
 
-    // ✅ Tous les chunks (option : pagination + filtre par documentId)
+    // ✅ Chunks par pages (pagination par clé sur l'ID, filtre optionnel par documentId) : aperçu du texte seulement
     @GetMapping
-    public Map<String, String> getChunks(
-            @RequestParam(defaultValue = "0") int page,
+    public ChunkPageDto getChunks(
+            @RequestParam(required = false) String after,
             @RequestParam(defaultValue = "10") int size,
             @RequestParam(required = false) Long documentId
     ) {
-        List<Chunk> chunks;
-
-        if (documentId != null) {
-            Optional<Document> docOpt = documentRepository.findById(documentId);
-            chunks = docOpt.map(Document::getChunks).orElse(List.of());
-        } else {
-            chunks = chunkRepository.findAll();
-        }
-
-        int start = Math.min(page * size, chunks.size());
-        int end = Math.min(start + size, chunks.size());
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        String cursor = after == null ? "" : after;
+        List<ChunkRepository.ChunkSummary> summaries = documentId != null
+                ? chunkRepository.findSummariesByDocumentAfter(documentId, cursor, PREVIEW_LENGTH, limit)
+                : chunkRepository.findSummariesAfter(cursor, PREVIEW_LENGTH, limit);
 
-        return chunks.subList(start, end).stream()
-                .collect(Collectors.toMap(Chunk::getId, Chunk::getText));
+        List<ChunkSummaryDto> items = summaries.stream()
+                .map(s -> new ChunkSummaryDto(s.getId(), s.getPreview(), s.getTextLength(), s.getDocumentId()))
+                .toList();
+        String nextCursor = items.size() == limit ? items.get(items.size() - 1).id() : null;
+        return new ChunkPageDto(items, nextCursor);
     }
 
-    // 🔍 Chunk par ID
+    // 🔍 Chunk par ID (texte complet)
     @GetMapping("/{chunkId}")
     public String getChunkById(@PathVariable String chunkId) {
         return chunkRepository.findById(chunkId)
@@ -53,16 +64,29 @@ public class ChunkController {
                 .orElse("❌ Chunk introuvable");
     }
 
-    // 🔍 Tous les chunks d’un document (sans pagination)
-    @GetMapping("/by-document/{documentId}")
-    public Map<String, String> getChunksByDocumentId(@PathVariable Long documentId) {
-        return documentRepository.findById(documentId)
-                .map(doc -> doc.getChunks().stream()
-                        .collect(Collectors.toMap(Chunk::getId, Chunk::getText)))
-                .orElse(Map.of());
+    // 🔍 Tous les chunks d’un document, écrits en flux par lots ({"chunkId": "texte", ...})
+    @GetMapping(value = "/by-document/{documentId}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public StreamingResponseBody getChunksByDocumentId(@PathVariable Long documentId) {
+        return out -> {
+            try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+                json.writeStartObject();
+                String cursor = "";
+                List<ChunkRepository.ChunkText> batch;
+                do {
+                    batch = chunkRepository.findTextsByDocumentAfter(documentId, cursor, STREAM_BATCH_SIZE);
+                    for (ChunkRepository.ChunkText chunk : batch) {
+                        json.writeStringField(chunk.getId(), chunk.getText());
+                    }
+                    json.flush();
+                    if (!batch.isEmpty()) {
+                        cursor = batch.get(batch.size() - 1).getId();
+                    }
+                } while (batch.size() == STREAM_BATCH_SIZE);
+                json.writeEndObject();
+            }
+        };
     }
 
-
     // ✏️ Modifier le nom d’un document
     @PutMapping("/documents/{documentId}")
     public String updateDocumentName(
@@ -85,23 +109,28 @@ public class ChunkController {
         return "API chunks OK";
     }
 
-    // 🟢 Liste tous les codes SH présents dans les chunks (tolérance maximale)
+    // 🟢 Liste des codes SH (catalogue précalculé ; ETag : 304 si inchangé)
     @GetMapping("/sh-codes")
-    public org.springframework.http.ResponseEntity<List<String>> getAllShCodes() {
-        List<Chunk> chunks = chunkRepository.findAll();
-        Set<String> allShCodes = new java.util.HashSet<>();
-        java.util.regex.Pattern shPattern = java.util.regex.Pattern.compile("SH[^0-9]*([0-9\\s\\-\\n]{6,20})", java.util.regex.Pattern.CASE_INSENSITIVE);
-        for (Chunk chunk : chunks) {
-            java.util.regex.Matcher matcher = shPattern.matcher(chunk.getText());
-            while (matcher.find()) {
-                String codeBrut = matcher.group(1);
-                String codeNum = codeBrut.replaceAll("[^0-9]", "");
-                if (!codeNum.isEmpty()) {
-                    allShCodes.add(codeNum);
-                }
-            }
-        }
-        System.out.println("[API] /chunks/sh-codes appelé, codes trouvés: " + allShCodes.size());
-        return org.springframework.http.ResponseEntity.ok(new java.util.ArrayList<>(allShCodes));
+    public ResponseEntity<List<String>> getAllShCodes() {
+        ShCodeCatalogueService.Snapshot catalogue = shCodeCatalogue.getSnapshot();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(catalogue.etag())
+                .body(catalogue.codes());
+    }
+
+    // 🗂️ Catalogue SH hiérarchique : chapitre → position → code, avec nombre de chunks
+    @GetMapping("/sh-codes/catalogue")
+    public ResponseEntity<ShCodeCatalogueService.Snapshot> getShCodeCatalogue() {
+        ShCodeCatalogueService.Snapshot catalogue = shCodeCatalogue.getSnapshot();
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                .eTag(catalogue.etag())
+                .body(catalogue);
     }
+
+    public record ChunkSummaryDto(String id, String preview, Long length, Long documentId) {}
+
+    // nextCursor : valeur de "after" pour la page suivante, null sur la dernière page
+    public record ChunkPageDto(List<ChunkSummaryDto> items, String nextCursor) {}
 }
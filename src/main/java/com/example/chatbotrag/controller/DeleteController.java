@@ -20,10 +20,13 @@ public class DeleteController {
         return "✅ Chunk supprimé : " + chunkId;
     }
 
-    // 🔸 Supprimer tous les chunks d’un document
+    // 🔸 Supprimer tous les chunks d’un document (gros documents : suppression par lots en arrière-plan)
     @DeleteMapping("/document/{documentId}")
     public String deleteDocument(@PathVariable String documentId) {
-        deleteService.deleteDocumentById(documentId);
-        return "🧼 Document supprimé : " + documentId;
+        return switch (deleteService.deleteDocumentById(documentId)) {
+            case DELETED -> "🧼 Document supprimé : " + documentId;
+            case IN_PROGRESS -> "⏳ Suppression du document " + documentId + " en cours (par lots, en arrière-plan)";
+            case NOT_FOUND -> "⚠️ Document introuvable : " + documentId;
+        };
     }
 }
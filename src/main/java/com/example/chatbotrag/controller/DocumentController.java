@@ -1,34 +1,65 @@
 package com.example.chatbotrag.controller;
 
-import com.example.chatbotrag.model.Document;
 import com.example.chatbotrag.repository.DocumentRepository;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Set;
 
 @RestController
 @RequestMapping("/documents")
 public class DocumentController {
 
+    private static final int MAX_PAGE_SIZE = 1000;
+    private static final Set<String> SORTABLE = Set.of("id", "name", "language", "chunkCount");
+
     private final DocumentRepository documentRepository;
 
     public DocumentController(DocumentRepository documentRepository) {
         this.documentRepository = documentRepository;
     }
 
-    // 🟢 Liste tous les documents enregistrés (id, nom, langue, nb chunks)
+    // 🟢 Liste des documents enregistrés (id, nom, langue, nb chunks, statistiques d'ingestion), triée
+    // Sans paramètre size, tous les documents sont renvoyés (comportement historique) ; avec size, paginée
+    // Le nombre total de documents est renvoyé dans l'en-tête X-Total-Count
     @GetMapping
-    public List<DocumentDto> getAllDocuments() {
-        return documentRepository.findAll().stream()
+    public ResponseEntity<List<DocumentDto>> getAllDocuments(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(defaultValue = "id") String sort,
+            @RequestParam(defaultValue = "asc") String direction
+    ) {
+        if (!SORTABLE.contains(sort)) {
+            return ResponseEntity.badRequest().build();
+        }
+        Sort order = Sort.by(Sort.Direction.fromOptionalString(direction).orElse(Sort.Direction.ASC), sort);
+        Pageable pageable = size == null
+                ? Pageable.unpaged(order)
+                : PageRequest.of(Math.max(page, 0), Math.max(1, Math.min(size, MAX_PAGE_SIZE)), order);
+        Page<DocumentRepository.DocumentSummary> documents = documentRepository.findSummaries(pageable);
+
+        List<DocumentDto> body = documents.stream()
                 .map(doc -> new DocumentDto(
                         doc.getId(),
                         doc.getName(),
                         doc.getLanguage(),
-                        doc.getChunks() != null ? doc.getChunks().size() : 0
+                        doc.getChunkCount(),
+                        doc.getTotalCharacters(),
+                        doc.getShCodeCount(),
+                        doc.getIngestionDurationMs()
                 ))
                 .toList();
+        return ResponseEntity.ok()
+                .header("X-Total-Count", String.valueOf(documents.getTotalElements()))
+                .body(body);
     }
 
-    // ✅ DTO (Data Transfer Object)
-    public record DocumentDto(Long id, String name, String language, int chunkCount) {}
+    // ✅ DTO (Data Transfer Object) ; statistiques null pour les documents ingérés avant leur ajout
+    public record DocumentDto(Long id, String name, String language, long chunkCount,
+                              Long totalCharacters, Integer shCodeCount, Long ingestionDurationMs) {}
 }
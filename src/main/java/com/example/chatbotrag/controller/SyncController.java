@@ -2,6 +2,7 @@ package com.example.chatbotrag.controller;
 
 import com.example.chatbotrag.config.Constants;
 import com.example.chatbotrag.service.ChromaHttpClientService;
+import com.example.chatbotrag.service.ConsistencyCheckService;
 import com.example.chatbotrag.service.DataSyncService;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -14,10 +15,13 @@ public class SyncController {
 
     private final DataSyncService dataSyncService;
     private final ChromaHttpClientService chromaHttpClientService;
+    private final ConsistencyCheckService consistencyCheckService;
 
-    public SyncController(DataSyncService dataSyncService, ChromaHttpClientService chromaHttpClientService) {
+    public SyncController(DataSyncService dataSyncService, ChromaHttpClientService chromaHttpClientService,
+                          ConsistencyCheckService consistencyCheckService) {
         this.dataSyncService = dataSyncService;
         this.chromaHttpClientService = chromaHttpClientService;
+        this.consistencyCheckService = consistencyCheckService;
     }
 
     /**
@@ -34,6 +38,31 @@ public class SyncController {
         }
     }
 
+    /**
+     * Progress of the running (or last) ChromaDB to MySQL synchronization
+     */
+    @GetMapping("/chroma-to-mysql/progress")
+    public ResponseEntity<DataSyncService.SyncProgress> getSyncProgress() {
+        DataSyncService.SyncProgress progress = dataSyncService.getSyncProgress();
+        return progress == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(progress);
+    }
+
+    /**
+     * Last bucketed consistency report (refresh=true runs a new check now, ADMIN only)
+     */
+    @GetMapping("/consistency")
+    public ResponseEntity<ConsistencyCheckService.ConsistencyReport> getConsistency(
+            @RequestParam(defaultValue = "false") boolean refresh) {
+        try {
+            ConsistencyCheckService.ConsistencyReport report = refresh
+                    ? consistencyCheckService.check()
+                    : consistencyCheckService.getLastReport();
+            return report == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(report);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Gets synchronization status
      */
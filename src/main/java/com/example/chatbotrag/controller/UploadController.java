@@ -1,48 +1,110 @@
 package com.example.chatbotrag.controller;
 
-import com.example.chatbotrag.service.DocumentIngestionService;
+import com.example.chatbotrag.service.IngestionJob;
+import com.example.chatbotrag.service.IngestionJobService;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
-// IOException n'est plus explicitement gérée ici si le service s'en charge
-// ou si vous décidez de ne plus créer de fichier temporaire dans le contrôleur.
-// import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/upload")
 public class UploadController {
 
-    private final DocumentIngestionService ingestionService;
+    private final IngestionJobService jobService;
 
-    public UploadController(DocumentIngestionService ingestionService) {
-        this.ingestionService = ingestionService;
+    public UploadController(IngestionJobService jobService) {
+        this.jobService = jobService;
     }
 
+    // 📥 Met chaque fichier en file d'ingestion et rend la main immédiatement (202 + IDs de jobs)
     @PostMapping
-    // Renommage de la méthode pour refléter une gestion plus générique des documents
-    public ResponseEntity<String> uploadDocuments(@RequestParam("files") MultipartFile[] files) {
-        List<String> responses = new ArrayList<>();
+    public ResponseEntity<List<SubmissionDto>> uploadDocuments(@RequestParam("files") MultipartFile[] files) {
+        List<SubmissionDto> responses = new ArrayList<>();
+        boolean accepted = false;
+        int queueFull = 0;
 
         for (MultipartFile file : files) {
             String originalFilename = file.getOriginalFilename();
             try {
-                // Nous allons appeler une nouvelle méthode (ou modifiée) dans le service
-                // qui prendra directement le MultipartFile.
-                // Le service se chargera de la logique de création de fichier temporaire si besoin
-                // et de la distinction entre PDF, DOCX, etc.
-                String docId = ingestionService.ingestDocument(file); // Appel à la nouvelle méthode du service
-
-                responses.add("✅ " + originalFilename + " → Demande d'ingestion reçue (ID: " + docId + ")");
+                IngestionJob job = jobService.submit(file);
+                responses.add(new SubmissionDto(originalFilename, job.getId(), job.getPhase().name(),
+                        "✅ Demande d'ingestion reçue"));
+                accepted = true;
+            } catch (RejectedExecutionException e) {
+                responses.add(new SubmissionDto(originalFilename, null, "REJECTED",
+                        "❌ File d'ingestion pleine, réessayez plus tard"));
+                queueFull++;
             } catch (Exception e) {
-                // Il est bon de prévoir une exception plus générique ici,
-                // car le service pourrait lever différentes exceptions selon le type de fichier ou le traitement.
-                responses.add("❌ " + originalFilename + " → Erreur lors de la soumission pour ingestion : " + e.getMessage());
+                responses.add(new SubmissionDto(originalFilename, null, "REJECTED",
+                        "❌ Erreur lors de la soumission pour ingestion : " + e.getMessage()));
             }
         }
 
-        return ResponseEntity.ok(String.join("\n", responses));
+        HttpStatus status = accepted ? HttpStatus.ACCEPTED
+                : queueFull > 0 && queueFull == files.length ? HttpStatus.SERVICE_UNAVAILABLE // file pleine : réessayable
+                : HttpStatus.BAD_REQUEST;
+        return ResponseEntity.status(status).body(responses);
+    }
+
+    // 🔀 Nouvelle version d'un document : diff par chunk, l'ancienne version reste servie jusqu'à la bascule
+    @PutMapping("/{documentId}")
+    public ResponseEntity<SubmissionDto> updateDocument(@PathVariable Long documentId, @RequestParam("file") MultipartFile file) {
+        String originalFilename = file.getOriginalFilename();
+        try {
+            IngestionJob job = jobService.submitUpdate(documentId, file);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new SubmissionDto(originalFilename, job.getId(),
+                    job.getPhase().name(), "✅ Mise à jour du document " + documentId + " reçue"));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new SubmissionDto(originalFilename, null,
+                    "REJECTED", "❌ File d'ingestion pleine, réessayez plus tard"));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(new SubmissionDto(originalFilename, null, "REJECTED",
+                    "❌ Erreur lors de la soumission de la mise à jour : " + e.getMessage()));
+        }
+    }
+
+    // 📋 Liste des jobs récents
+    @GetMapping("/jobs")
+    public List<JobDto> listJobs() {
+        return jobService.listJobs().stream().map(JobDto::of).toList();
+    }
+
+    // 🔎 Phase et progression d'un job
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<JobDto> getJob(@PathVariable String jobId) {
+        IngestionJob job = jobService.getJob(jobId);
+        return job == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(JobDto.of(job));
+    }
+
+    // 🛑 Annule un job en file ou en cours (409 si déjà terminé ou en cours de persistance)
+    @DeleteMapping("/jobs/{jobId}")
+    public ResponseEntity<JobDto> cancelJob(@PathVariable String jobId) {
+        IngestionJob job = jobService.cancel(jobId);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        HttpStatus status = job.isCancelled() ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT; // déjà terminé ou en persistance
+        return ResponseEntity.status(status).body(JobDto.of(job));
+    }
+
+    public record SubmissionDto(String fileName, String jobId, String status, String message) {}
+
+    public record JobDto(String id, String fileName, long sizeBytes, String phase,
+                         int chunksParsed, int chunksEmbedded, int chunksStored, double chunksPerSecond,
+                         String documentId, String error,
+                         Instant createdAt, Instant startedAt, Instant finishedAt) {
+
+        static JobDto of(IngestionJob job) {
+            return new JobDto(job.getId(), job.getFileName(), job.getSizeBytes(), job.getPhase().name(),
+                    job.getChunksParsed(), job.getChunksEmbedded(), job.getChunksStored(), job.getChunksPerSecond(),
+                    job.getDocumentId(), job.getError(),
+                    job.getCreatedAt(), job.getStartedAt(), job.getFinishedAt());
+        }
     }
-}
\ No newline at end of file
+}
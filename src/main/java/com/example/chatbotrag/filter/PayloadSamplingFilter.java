@@ -0,0 +1,43 @@
+package com.example.chatbotrag.filter;
+
+import com.example.chatbotrag.logging.PayloadLogSampler;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Place un identifiant de requête et la décision d'échantillonnage des payloads dans le MDC
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+public class PayloadSamplingFilter extends OncePerRequestFilter {
+
+    private final PayloadLogSampler sampler;
+
+    public PayloadSamplingFilter(PayloadLogSampler sampler) {
+        this.sampler = sampler;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        boolean debugRequested = "true".equalsIgnoreCase(request.getHeader(PayloadLogSampler.DEBUG_HEADER));
+        MDC.put(PayloadLogSampler.MDC_REQUEST_ID, UUID.randomUUID().toString().substring(0, 8));
+        MDC.put(PayloadLogSampler.MDC_PAYLOAD_SAMPLED, String.valueOf(sampler.decide(debugRequested)));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            MDC.remove(PayloadLogSampler.MDC_REQUEST_ID);
+            MDC.remove(PayloadLogSampler.MDC_PAYLOAD_SAMPLED);
+        }
+    }
+}
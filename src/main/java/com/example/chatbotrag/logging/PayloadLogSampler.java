@@ -0,0 +1,45 @@
+package com.example.chatbotrag.logging;
+
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Politique d'échantillonnage des payloads volumineux (prompt complet, réponse Mistral,
+ * corps de réponse Chroma). Le payload n'est journalisé que pour 1 requête sur N,
+ * ou quand le client envoie l'en-tête {@value #DEBUG_HEADER}.
+ * La décision est prise une fois par requête et portée par le MDC.
+ */
+@Component
+public class PayloadLogSampler {
+
+    public static final String DEBUG_HEADER = "X-Debug-Payload";
+    public static final String MDC_REQUEST_ID = "requestId";
+    public static final String MDC_PAYLOAD_SAMPLED = "payloadSampled";
+
+    private final int sampleRate;
+    private final AtomicLong counter = new AtomicLong();
+
+    public PayloadLogSampler(@Value("${logging.payload.sample-rate:100}") int sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    /**
+     * Décide si la requête courante journalise ses payloads (0 = jamais, sauf en-tête de debug)
+     */
+    public boolean decide(boolean debugRequested) {
+        if (debugRequested) {
+            return true;
+        }
+        return sampleRate > 0 && counter.getAndIncrement() % sampleRate == 0;
+    }
+
+    /**
+     * Vrai si la requête courante a été échantillonnée (lecture du MDC)
+     */
+    public static boolean isPayloadSampled() {
+        return "true".equals(MDC.get(MDC_PAYLOAD_SAMPLED));
+    }
+}
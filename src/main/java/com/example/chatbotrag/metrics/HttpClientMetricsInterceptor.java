@@ -0,0 +1,59 @@
+package com.example.chatbotrag.metrics;
+
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+/**
+ * Intercepteur RestTemplate qui mesure chaque appel vers Chroma / Ollama.
+ * L'endpoint est normalisé (identifiants de collection remplacés par {collection})
+ * pour garder une cardinalité de tags raisonnable.
+ */
+public class HttpClientMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String client;
+    private final RagMetrics metrics;
+
+    public HttpClientMetricsInterceptor(String client, RagMetrics metrics) {
+        this.client = client;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution) throws IOException {
+        long start = System.nanoTime();
+        String status = "IO_ERROR";
+        try {
+            ClientHttpResponse response = execution.execute(request, body);
+            status = String.valueOf(response.getStatusCode().value());
+            return response;
+        } finally {
+            metrics.recordHttpCall(client, request.getMethod().name(),
+                    normalizeEndpoint(request.getURI().getPath()), status, System.nanoTime() - start);
+        }
+    }
+
+    static String normalizeEndpoint(String path) {
+        if (path == null || path.isEmpty()) {
+            return "/";
+        }
+        String[] segments = path.split("/");
+        StringBuilder sb = new StringBuilder();
+        boolean afterCollections = false;
+        for (String segment : segments) {
+            if (segment.isEmpty()) continue;
+            sb.append('/');
+            if (afterCollections) {
+                sb.append("{collection}");
+                afterCollections = false;
+            } else {
+                sb.append(segment);
+                afterCollections = "collections".equals(segment);
+            }
+        }
+        return sb.length() == 0 ? "/" : sb.toString();
+    }
+}
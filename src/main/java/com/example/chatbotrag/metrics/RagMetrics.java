@@ -0,0 +1,153 @@
+package com.example.chatbotrag.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Point d'entrée unique pour les métriques du pipeline RAG.
+ * Chaque étape (embedding, requête Chroma, fusion, génération Mistral...) est un
+ * timer "rag.stage" tagué par nom d'étape, avec histogramme et percentiles p50/p95/p99
+ * publiés pour Prometheus / Grafana.
+ */
+@Component
+public class RagMetrics {
+
+    // Noms d'étapes du pipeline de chat
+    public static final String STAGE_QUERY_EMBEDDING = "query.embedding";
+    public static final String STAGE_CHROMA_QUERY = "chroma.query";
+    public static final String STAGE_LOCAL_VECTOR_QUERY = "local.vector.query";
+    public static final String STAGE_METADATA_SEARCH = "metadata.search";
+    public static final String STAGE_FUSION = "fusion";
+    public static final String STAGE_HYBRID_SEARCH = "hybrid.search";
+    public static final String STAGE_PROMPT_BUILD = "prompt.build";
+    public static final String STAGE_LLM_GENERATION = "llm.generation";
+    public static final String STAGE_TEMPLATE_ANSWER = "template.answer";
+    public static final String STAGE_FORMAT_WEB = "format.web";
+    public static final String STAGE_CHAT_TOTAL = "chat.total";
+
+    // Noms d'étapes du pipeline d'ingestion
+    public static final String STAGE_INGEST_EXTRACT = "ingestion.extract";
+    public static final String STAGE_INGEST_LANGUAGE = "ingestion.language";
+    public static final String STAGE_INGEST_PARSE = "ingestion.parse";
+    public static final String STAGE_INGEST_EMBED = "ingestion.embed";
+    public static final String STAGE_INGEST_STORE_CHROMA = "ingestion.store.chroma";
+    public static final String STAGE_INGEST_PERSIST = "ingestion.persist";
+    public static final String STAGE_INGEST_TOTAL = "ingestion.total";
+
+    // Préchargement des modèles Ollama (démarrage et après déchargement)
+    public static final String STAGE_MODEL_WARMUP = "ollama.warmup";
+
+    private static final double[] PERCENTILES = {0.5, 0.95, 0.99};
+
+    private final MeterRegistry registry;
+    private final Map<String, Timer> stageTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> intentTimers = new ConcurrentHashMap<>();
+
+    public RagMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public MeterRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Timer d'une étape du pipeline (créé à la demande puis mis en cache)
+     */
+    public Timer stageTimer(String stage) {
+        return stageTimers.computeIfAbsent(stage, s -> Timer.builder("rag.stage")
+                .description("Durée des étapes du pipeline RAG")
+                .tag("stage", s)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    /**
+     * Timer de bout en bout d'une question, par intention détectée (IntentRouter)
+     */
+    public Timer intentTimer(String intent) {
+        return intentTimers.computeIfAbsent(intent, i -> Timer.builder("rag.intent")
+                .description("Durée de traitement d'une question par intention")
+                .tag("intent", i)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry));
+    }
+
+    public <T> T time(String stage, Supplier<T> supplier) {
+        return stageTimer(stage).record(supplier);
+    }
+
+    public void time(String stage, Runnable runnable) {
+        stageTimer(stage).record(runnable);
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * Arrête un sample démarré avec {@link #start()} et retourne la durée en millisecondes
+     */
+    public long stop(Timer.Sample sample, String stage) {
+        return TimeUnit.NANOSECONDS.toMillis(sample.stop(stageTimer(stage)));
+    }
+
+    /**
+     * Appel HTTP sortant (Chroma / Ollama) tagué par client, endpoint et statut
+     */
+    public void recordHttpCall(String client, String method, String endpoint, String status, long durationNanos) {
+        Timer.builder("rag.http.client")
+                .description("Durée des appels HTTP vers Chroma et Ollama")
+                .tag("client", client)
+                .tag("method", method)
+                .tag("endpoint", endpoint)
+                .tag("status", status)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(durationNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Distribution de tailles (caractères de prompt, chunks par document...)
+     */
+    public void recordSize(String name, double value) {
+        DistributionSummary.builder(name)
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry)
+                .record(value);
+    }
+
+    /**
+     * Compteur tagué (hits / misses d'un cache...)
+     */
+    public void increment(String name, String kind, String id) {
+        Counter.builder(name)
+                .tag(kind, id)
+                .register(registry)
+                .increment();
+    }
+
+    /**
+     * Jauge pour un cache ou une file (taille observée à chaque scrape)
+     */
+    public <T> T gauge(String name, String kind, String id, T stateObject, ToDoubleFunction<T> valueFunction) {
+        Gauge.builder(name, stateObject, valueFunction)
+                .tag(kind, id)
+                .register(registry);
+        return stateObject;
+    }
+}
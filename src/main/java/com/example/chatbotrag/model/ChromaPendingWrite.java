@@ -0,0 +1,71 @@
+package com.example.chatbotrag.model;
+
+import jakarta.persistence.*;
+import java.time.Instant;
+
+/**
+ * Écriture Chroma décidée par une mise à jour de document (PUT /upload/{documentId}) et pas encore appliquée.
+ * Insérée dans la transaction MySQL de la bascule, supprimée une fois Chroma à jour ; les lignes restantes
+ * (échec Chroma, arrêt) sont rejouées au démarrage par DocumentUpdateService. Lue et écrite en JDBC.
+ */
+@Entity
+@Table(name = "chroma_pending_write", indexes = {
+        @Index(name = "idx_chroma_pending_write_update", columnList = "update_id"),
+        @Index(name = "idx_chroma_pending_write_document", columnList = "document_id")})
+public class ChromaPendingWrite {
+
+    public enum Operation { UPSERT, DELETE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Mise à jour à l'origine de l'écriture
+    @Column(name = "update_id", nullable = false, length = 36)
+    private String updateId;
+
+    @Column(name = "document_id", nullable = false)
+    private Long documentId;
+
+    @Column(name = "chunk_id", nullable = false)
+    private String chunkId;
+
+    // Collection visée par un DELETE ; un UPSERT va dans la collection du code SH courant du chunk
+    @Column(name = "collection_name", nullable = false)
+    private String collectionName;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "operation", nullable = false, length = 10)
+    private Operation operation;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getUpdateId() {
+        return updateId;
+    }
+
+    public Long getDocumentId() {
+        return documentId;
+    }
+
+    public String getChunkId() {
+        return chunkId;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+}
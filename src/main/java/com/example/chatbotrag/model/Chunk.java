@@ -3,6 +3,7 @@ package com.example.chatbotrag.model;
 import jakarta.persistence.*;
 
 @Entity
+@Table(indexes = @Index(name = "idx_chunk_sh_code", columnList = "sh_code"))
 public class Chunk {
 
     @Id
@@ -11,6 +12,13 @@ public class Chunk {
     @Lob
     private String text;
 
+    // Code SH de la section et SHA-256 du texte : servent au diff lors d'une mise à jour du document
+    @Column(name = "sh_code", length = 10)
+    private String shCode;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "document_id")
     private Document document;
@@ -33,6 +41,22 @@ public class Chunk {
         this.text = text;
     }
 
+    public String getShCode() {
+        return shCode;
+    }
+
+    public void setShCode(String shCode) {
+        this.shCode = shCode;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public Document getDocument() {
         return document;
     }
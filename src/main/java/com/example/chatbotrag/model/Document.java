@@ -1,6 +1,7 @@
 package com.example.chatbotrag.model;
 
 import jakarta.persistence.*;
+import java.time.Instant;
 import java.util.List;
 
 @Entity
@@ -12,6 +13,23 @@ public class Document {
     private String name; // nom du fichier
     private String language; // ex: "fr"
 
+    // Statistiques dénormalisées, écrites à l'ingestion (et à chaque mise à jour du document)
+    @Column(name = "chunk_count")
+    private Integer chunkCount;
+
+    @Column(name = "total_characters")
+    private Long totalCharacters;
+
+    @Column(name = "sh_code_count")
+    private Integer shCodeCount;
+
+    @Column(name = "ingestion_duration_ms")
+    private Long ingestionDurationMs;
+
+    // Renseigné au début d'une suppression par lots ; une suppression interrompue reprend au démarrage
+    @Column(name = "deletion_requested_at")
+    private Instant deletionRequestedAt;
+
     @OneToMany(mappedBy = "document", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Chunk> chunks;
 
@@ -41,6 +59,46 @@ public class Document {
         this.language = language;
     }
 
+    public Integer getChunkCount() {
+        return chunkCount;
+    }
+
+    public void setChunkCount(Integer chunkCount) {
+        this.chunkCount = chunkCount;
+    }
+
+    public Long getTotalCharacters() {
+        return totalCharacters;
+    }
+
+    public void setTotalCharacters(Long totalCharacters) {
+        this.totalCharacters = totalCharacters;
+    }
+
+    public Integer getShCodeCount() {
+        return shCodeCount;
+    }
+
+    public void setShCodeCount(Integer shCodeCount) {
+        this.shCodeCount = shCodeCount;
+    }
+
+    public Long getIngestionDurationMs() {
+        return ingestionDurationMs;
+    }
+
+    public void setIngestionDurationMs(Long ingestionDurationMs) {
+        this.ingestionDurationMs = ingestionDurationMs;
+    }
+
+    public Instant getDeletionRequestedAt() {
+        return deletionRequestedAt;
+    }
+
+    public void setDeletionRequestedAt(Instant deletionRequestedAt) {
+        this.deletionRequestedAt = deletionRequestedAt;
+    }
+
     public List<Chunk> getChunks() {
         return chunks;
     }
@@ -0,0 +1,84 @@
+package com.example.chatbotrag.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+/**
+ * Embedding mis en cache, adressé par le contenu : SHA-256 du (modèle, texte du chunk).
+ * Le vecteur est stocké en float32 little-endian (4 octets par dimension).
+ * Une entrée créée par le code est toujours nouvelle : save() fait un INSERT direct, sans le
+ * SELECT du merge qu'impose un @Id assigné (un doublon lève DataIntegrityViolationException).
+ */
+@Entity
+@Table(name = "embedding_cache")
+public class EmbeddingCacheEntry implements Persistable<String> {
+
+    @Id
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "model", nullable = false, length = 100)
+    private String model;
+
+    @Column(name = "dimension", nullable = false)
+    private int dimension;
+
+    @Lob
+    @Column(name = "vector", nullable = false, columnDefinition = "MEDIUMBLOB")
+    private byte[] vector;
+
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @Transient
+    private boolean isNew = true;
+
+    public EmbeddingCacheEntry() {
+    }
+
+    public EmbeddingCacheEntry(String contentHash, String model, int dimension, byte[] vector) {
+        this.contentHash = contentHash;
+        this.model = model;
+        this.dimension = dimension;
+        this.vector = vector;
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @Override
+    public String getId() {
+        return contentHash;
+    }
+
+    @Override
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public byte[] getVector() {
+        return vector;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
@@ -16,7 +16,33 @@ public interface ChunkRepository extends JpaRepository<Chunk, String> {
     java.util.List<Chunk> findByKeywordAndCodeSh(@org.springframework.data.repository.query.Param("keyword") String keyword, @org.springframework.data.repository.query.Param("codeSh") String codeSh);
 
 
+    // Chunks d'un document (diff lors d'une mise à jour)
+    java.util.List<Chunk> findByDocumentId(Long documentId);
+
+    // Page de chunks après un ID (pagination par clé) : aperçu et longueur du texte, sans charger le LOB entier
+    @org.springframework.data.jpa.repository.Query(value = "SELECT id, LEFT(text, :previewLength) AS preview, CHAR_LENGTH(text) AS textLength, document_id AS documentId FROM chunk WHERE id > :after ORDER BY id LIMIT :limit", nativeQuery = true)
+    java.util.List<ChunkSummary> findSummariesAfter(@org.springframework.data.repository.query.Param("after") String after, @org.springframework.data.repository.query.Param("previewLength") int previewLength, @org.springframework.data.repository.query.Param("limit") int limit);
+
+    @org.springframework.data.jpa.repository.Query(value = "SELECT id, LEFT(text, :previewLength) AS preview, CHAR_LENGTH(text) AS textLength, document_id AS documentId FROM chunk WHERE document_id = :documentId AND id > :after ORDER BY id LIMIT :limit", nativeQuery = true)
+    java.util.List<ChunkSummary> findSummariesByDocumentAfter(@org.springframework.data.repository.query.Param("documentId") Long documentId, @org.springframework.data.repository.query.Param("after") String after, @org.springframework.data.repository.query.Param("previewLength") int previewLength, @org.springframework.data.repository.query.Param("limit") int limit);
+
+    // Textes complets d'un document par lots (pagination par clé)
+    @org.springframework.data.jpa.repository.Query(value = "SELECT id, text FROM chunk WHERE document_id = :documentId AND id > :after ORDER BY id LIMIT :limit", nativeQuery = true)
+    java.util.List<ChunkText> findTextsByDocumentAfter(@org.springframework.data.repository.query.Param("documentId") Long documentId, @org.springframework.data.repository.query.Param("after") String after, @org.springframework.data.repository.query.Param("limit") int limit);
+
     // Récupère les N premiers chunks pour limiter la mémoire
     @org.springframework.data.jpa.repository.Query(value = "SELECT * FROM chunk LIMIT :limit", nativeQuery = true)
     java.util.List<Chunk> findTopN(@org.springframework.data.repository.query.Param("limit") int limit);
+
+    interface ChunkSummary {
+        String getId();
+        String getPreview();
+        Long getTextLength();
+        Long getDocumentId();
+    }
+
+    interface ChunkText {
+        String getId();
+        String getText();
+    }
 }
@@ -1,9 +1,30 @@
 package com.example.chatbotrag.repository;
 
 import com.example.chatbotrag.model.Document;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 @Repository
 public interface DocumentRepository extends JpaRepository<Document, Long> {
+
+    // Liste paginée : nombre de chunks agrégé en une requête, sans charger les chunks ni leur texte (documents en cours de suppression exclus)
+    @Query(value = "SELECT d.id AS id, d.name AS name, d.language AS language, COUNT(c.id) AS chunkCount, "
+            + "d.totalCharacters AS totalCharacters, d.shCodeCount AS shCodeCount, d.ingestionDurationMs AS ingestionDurationMs "
+            + "FROM Document d LEFT JOIN d.chunks c WHERE d.deletionRequestedAt IS NULL "
+            + "GROUP BY d.id, d.name, d.language, d.totalCharacters, d.shCodeCount, d.ingestionDurationMs",
+            countQuery = "SELECT COUNT(d) FROM Document d WHERE d.deletionRequestedAt IS NULL")
+    Page<DocumentSummary> findSummaries(Pageable pageable);
+
+    interface DocumentSummary {
+        Long getId();
+        String getName();
+        String getLanguage();
+        Long getChunkCount();
+        Long getTotalCharacters();
+        Integer getShCodeCount();
+        Long getIngestionDurationMs();
+    }
 }
@@ -68,6 +68,10 @@ public interface ProductMetadataRepository extends JpaRepository<ProductMetadata
     @Query("SELECT pm FROM ProductMetadata pm WHERE pm.chunk.id = :chunkId")
     Optional<ProductMetadata> findByChunkId(@Param("chunkId") String chunkId);
 
+    // Recherche par lot de chunk IDs (mise à jour incrémentale d'un document)
+    @Query("SELECT pm FROM ProductMetadata pm WHERE pm.chunk.id IN :chunkIds")
+    List<ProductMetadata> findByChunkIdIn(@Param("chunkIds") List<String> chunkIds);
+
     // Recherche de tous les produits avec des préférences tarifaires
     @Query("SELECT pm FROM ProductMetadata pm WHERE pm.preferentiels IS NOT NULL AND pm.preferentiels != ''")
     List<ProductMetadata> findAllWithPreferentialRates();
@@ -1,82 +1,163 @@
 package com.example.chatbotrag.service;
 
+import com.example.chatbotrag.logging.PayloadLogSampler;
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.repository.ProductMetadataRepository;
+import com.example.chatbotrag.store.ConversationHistoryStore;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.List;
-import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class ChatService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatService.class);
+
+    private static final String SMALLTALK_ANSWER =
+            "👋 Bonjour ! Ça va bien, merci ! Comment puis-je vous aider avec vos questions douanières aujourd'hui ?";
+    private static final String HELP_ANSWER = "🤝 Je suis votre assistant douanier spécialisé ! Je peux vous aider avec :\n\n" +
+            "• 📋 Codes SH et classifications tarifaires\n" +
+            "• 💰 Droits de douane et taxes à l'importation\n" +
+            "• 🌍 Accords commerciaux et tarifs préférentiels\n" +
+            "• 📦 Réglementations d'importation au Maroc\n\n" +
+            "Posez-moi une question spécifique sur un produit à importer !";
     
     private final VectorSearchService vectorSearchService;
     private final HybridSearchService hybridSearchService;
     private final OllamaClientService ollamaClient;
+    private final IntentRouter intentRouter;
+    private final ProductMetadataRepository productMetadataRepository;
+    private final ContextPacker contextPacker;
+    private final TemplateAnswerRenderer templateAnswerRenderer;
+    private final ConversationHistoryStore conversationHistoryStore;
+    private final RagMetrics metrics;
+    private final int contextCandidates;
+    private final boolean sessionContextEnabled;
+    private final int sessionContextMaxTokens;
     
     public ChatService(VectorSearchService vectorSearchService, 
                        HybridSearchService hybridSearchService,
-                       OllamaClientService ollamaClient) {
+                       OllamaClientService ollamaClient,
+                       IntentRouter intentRouter,
+                       ProductMetadataRepository productMetadataRepository,
+                       ContextPacker contextPacker,
+                       TemplateAnswerRenderer templateAnswerRenderer,
+                       ConversationHistoryStore conversationHistoryStore,
+                       RagMetrics metrics,
+                       @Value("${chat.context.candidates:6}") int contextCandidates,
+                       @Value("${chat.session-context.enabled:true}") boolean sessionContextEnabled,
+                       @Value("${chat.session-context.max-tokens:6000}") int sessionContextMaxTokens) {
         this.vectorSearchService = vectorSearchService;
         this.hybridSearchService = hybridSearchService;
         this.ollamaClient = ollamaClient;
+        this.intentRouter = intentRouter;
+        this.productMetadataRepository = productMetadataRepository;
+        this.contextPacker = contextPacker;
+        this.templateAnswerRenderer = templateAnswerRenderer;
+        this.conversationHistoryStore = conversationHistoryStore;
+        this.metrics = metrics;
+        this.contextCandidates = contextCandidates;
+        this.sessionContextEnabled = sessionContextEnabled;
+        this.sessionContextMaxTokens = sessionContextMaxTokens;
     }
 
     public List<String> ask(String sessionId, String userQuestion, String forcedLang) {
-        System.out.println("[CHAT_SERVICE] 🚀 Début du traitement de la question: " + userQuestion);
+        return metrics.time(RagMetrics.STAGE_CHAT_TOTAL, () -> {
+            IntentRouter.Route route = intentRouter.classify(userQuestion);
+            return metrics.intentTimer(route.intent().tag()).record(() -> doAsk(sessionId, userQuestion, forcedLang, route, null));
+        });
+    }
+
+    /**
+     * 🌊 Comme {@link #ask}, mais la réponse Mistral est transmise à {@code fragments} au fil des tokens,
+     * mise en forme HTML au passage ; les réponses fixes, gabarits et fallbacks arrivent en un seul fragment
+     */
+    public void askStreaming(String sessionId, String userQuestion, String forcedLang, Consumer<String> fragments) {
+        metrics.time(RagMetrics.STAGE_CHAT_TOTAL, () -> {
+            IntentRouter.Route route = intentRouter.classify(userQuestion);
+            metrics.intentTimer(route.intent().tag()).record(
+                    () -> doAsk(sessionId, userQuestion, forcedLang, route, fragments).forEach(fragments));
+        });
+    }
+
+    private List<String> doAsk(String sessionId, String userQuestion, String forcedLang, IntentRouter.Route route,
+                               Consumer<String> fragments) {
+        logger.atInfo().setMessage("[CHAT_SERVICE] 🚀 Début du traitement de la question")
+                .addKeyValue("sessionId", sessionId)
+                .addKeyValue("questionLength", userQuestion != null ? userQuestion.length() : 0)
+                .addKeyValue("intent", route.intent().tag())
+                .log();
         
-        // 1. 🎯 Vérifications préliminaires
-        if (userQuestion != null) {
-            String q = userQuestion.trim().toLowerCase();
-            // Reconnaissance des salutations et expressions courantes
-            if (q.matches(".*\\b(bonjour|coucou|hello|salut|bonsoir|hi|hey)\\b.*") ||
-                q.matches(".*\\b(ca va|cava|ça va|comment ça va|comment ca va)\\b.*") ||
-                q.matches(".*\\b(quoi de neuf|comment tu vas|comment allez-vous)\\b.*")) {
-                return Collections.singletonList("👋 Bonjour ! Ça va bien, merci ! Comment puis-je vous aider avec vos questions douanières aujourd'hui ?");
+        // 1. 🎯 Réponses fixes (salutations, aide) sans aucune E/S
+        switch (route.intent()) {
+            case SMALLTALK -> {
+                return Collections.singletonList(SMALLTALK_ANSWER);
             }
-            // Reconnaissance des questions générales sur l'aide
-            if (q.matches(".*\\b(aide|help|aidez-moi|comment utiliser|que peux-tu faire)\\b.*")) {
-                return Collections.singletonList("🤝 Je suis votre assistant douanier spécialisé ! Je peux vous aider avec :\n\n" +
-                    "• 📋 Codes SH et classifications tarifaires\n" +
-                    "• 💰 Droits de douane et taxes à l'importation\n" +
-                    "• 🌍 Accords commerciaux et tarifs préférentiels\n" +
-                    "• 📦 Réglementations d'importation au Maroc\n\n" +
-                    "Posez-moi une question spécifique sur un produit à importer !");
+            case HELP -> {
+                return Collections.singletonList(HELP_ANSWER);
+            }
+            default -> {
             }
         }
         if (userQuestion == null || userQuestion.isBlank()) {
             return Collections.singletonList("Désolé, je n'ai pas de réponse pour votre question.");
         }
+        boolean templateAllowed = route.intent() != IntentRouter.Intent.OPEN_QUESTION
+                && (forcedLang == null || forcedLang.isBlank() || "fr".equalsIgnoreCase(forcedLang));
         
-        // 2. 🔍 Recherche hybride des documents pertinents
-        System.out.println("[CHAT_SERVICE] 🔍 Recherche hybride des documents pertinents...");
-        final int MAX_CONTEXT_CHUNKS = 3; // Réduit pour éviter les timeouts
+        // 🏷️ Code SH cité : lecture directe de la fiche, sans embedding ni recherche vectorielle
+        if (templateAllowed && route.intent() == IntentRouter.Intent.SH_CODE_LOOKUP) {
+            Optional<String> codeAnswer = metrics.time(RagMetrics.STAGE_TEMPLATE_ANSWER, () ->
+                    productMetadataRepository.findByCodeSh(route.shCode())
+                            .flatMap(metadata -> templateAnswerRenderer.render(userQuestion, metadata)));
+            if (codeAnswer.isPresent()) {
+                logger.info("[CHAT_SERVICE] ⚡ Réponse gabarit pour le code SH {} (sans recherche ni LLM)", route.shCode());
+                metrics.increment("rag.answer", "mode", "template");
+                return Collections.singletonList(formatForWeb(codeAnswer.get()));
+            }
+        }
         
-        // Utilisation de la recherche hybride
-        List<HybridSearchService.HybridSearchResult> hybridResults = hybridSearchService.searchHybrid(userQuestion, MAX_CONTEXT_CHUNKS);
+        // 2. 🔍 Recherche hybride des documents pertinents
+        List<HybridSearchService.HybridSearchResult> hybridResults = hybridSearchService.searchHybrid(userQuestion, contextCandidates);
         
-        // Extraction des chunks textuels pour compatibilité
-        List<String> topChunks = new ArrayList<>();
-        for (HybridSearchService.HybridSearchResult result : hybridResults) {
-            topChunks.add(result.getText());
+        // ⚡ Réponse directe depuis les métadonnées produit quand un seul code SH ressort nettement
+        if (templateAllowed) {
+            Optional<String> templateAnswer = metrics.time(RagMetrics.STAGE_TEMPLATE_ANSWER,
+                    () -> templateAnswerRenderer.render(userQuestion, hybridResults));
+            if (templateAnswer.isPresent()) {
+                logger.atInfo().setMessage("[CHAT_SERVICE] ⚡ Réponse gabarit depuis les métadonnées (sans LLM)")
+                        .addKeyValue("results", hybridResults.size())
+                        .log();
+                metrics.increment("rag.answer", "mode", "template");
+                return Collections.singletonList(formatForWeb(templateAnswer.get()));
+            }
         }
         
-        // Debug: Log the chunks found
-        System.out.println("[CHAT_SERVICE] 📊 Résultats hybrides trouvés: " + hybridResults.size());
-        for (int i = 0; i < hybridResults.size(); i++) {
-            HybridSearchService.HybridSearchResult result = hybridResults.get(i);
-            String preview = result.getText().substring(0, Math.min(100, result.getText().length())).replace("\n", " ");
-            System.out.println("[CHAT_SERVICE] Résultat " + i + " (score: " + 
-                               String.format("%.3f", result.getTotalScore()) + "): " + preview + "...");
-            
-            // Log metadata info if available
-            if (result.getMetadata() != null) {
-                System.out.println("[CHAT_SERVICE] - Métadonnées: SH=" + result.getMetadata().getCodeSh() + 
-                                   ", Type=" + result.getMetadata().getTypeProduit() + 
-                                   ", État=" + result.getMetadata().getEtatProduit());
-            }
-            
-            // Check for specific content
-            if (result.getText().contains("0101292000")) {
-                System.out.println("[CHAT_SERVICE] ✅ TROUVÉ CODE SH 0101292000 dans résultat " + i);
+        // ✂️ Contexte tenu dans le budget de tokens (la taille du prompt, pas le nombre de chunks, évite les timeouts)
+        ContextPacker.PackedContext context = contextPacker.pack(userQuestion, hybridResults);
+        List<String> topChunks = context.chunks();
+        metrics.recordSize("rag.prompt.context.tokens", context.estimatedTokens());
+        
+        // Debug: Log the chunks found (détail par résultat uniquement en DEBUG)
+        logger.atInfo().setMessage("[CHAT_SERVICE] 📊 Résultats hybrides trouvés")
+                .addKeyValue("results", hybridResults.size())
+                .addKeyValue("packedChunks", topChunks.size())
+                .addKeyValue("droppedChunks", context.droppedChunks())
+                .addKeyValue("estimatedTokens", context.estimatedTokens())
+                .log();
+        if (logger.isDebugEnabled()) {
+            for (int i = 0; i < hybridResults.size(); i++) {
+                HybridSearchService.HybridSearchResult result = hybridResults.get(i);
+                logger.debug("[CHAT_SERVICE] Résultat {} (chunk={}, score={}, sh={})", i, result.getChunkId(),
+                        result.getTotalScore(), result.getMetadata() != null ? result.getMetadata().getCodeSh() : null);
             }
         }
         
@@ -84,88 +165,204 @@ public class ChatService {
             return Collections.singletonList("Désolé, je n'ai pas d'information sur ce sujet dans ma base documentaire.");
         }
         
-        // 3. 🤖 Mode de réponse: Choisir entre REGEX (legacy) ou LLM (Mistral)
-        boolean useLLM = shouldUseLLM(userQuestion, topChunks);
-        
-        if (useLLM) {
-            System.out.println("[CHAT_SERVICE] 🤖 Mode LLM activé - Génération avec Mistral");
-            return generateLLMResponse(userQuestion, topChunks, forcedLang);
-        } else {
-            System.out.println("[CHAT_SERVICE] ⚙️ Mode REGEX activé - Traitement traditionnel");
-            return generateFallbackResponse(userQuestion, topChunks);
-        }
-    }
-    
-    /**
-     * 🧠 Décision intelligente : utiliser LLM ou REGEX
-     */
-    private boolean shouldUseLLM(String userQuestion, List<String> chunks) {
-        // Critères pour utiliser le LLM:
-        // 1. Question complexe (plus de 8 mots)
-        // 2. Question contenant des mots interrogatifs
-        // 3. Contexte riche (plus de 2 chunks trouvés)
-        
-        String[] questionWords = userQuestion.split("\\s+");
-        boolean isComplexQuestion = questionWords.length > 6;
-        
-        String questionLower = userQuestion.toLowerCase();
-        boolean hasInterrogativeWords = questionLower.matches(".*(comment|pourquoi|quand|combien|quel|quelle|quels|quelles|expliquer|détails|différence).*");
-        
-        boolean hasRichContext = chunks.size() > 1;
-        
-        // Pour l'instant, utilisons toujours le LLM si des chunks sont trouvés
-        return !chunks.isEmpty();
+        // 3. 🤖 Génération avec Mistral (réponse basique en cas d'échec)
+        metrics.increment("rag.answer", "mode", "llm");
+        return generateLLMResponse(sessionId, userQuestion, topChunks, forcedLang, fragments);
     }
     
     /**
      * 🤖 Génération de réponse avec Mistral LLM
+     * <p>
+     * Au premier tour d'une session, le prompt complet (consignes + documents) est envoyé ; Ollama
+     * renvoie ses tokens "context" que l'on garde pour la session. Aux tours suivants, seuls les
+     * documents pas encore fournis et la question sont envoyés avec ce contexte : Ollama reprend
+     * l'état déjà évalué au lieu de réévaluer les consignes. Contexte trop long, d'un autre modèle
+     * ou refusé par Ollama : retour au prompt complet sans contexte.
+     * <p>
+     * Avec {@code fragments}, la réponse est lue en streaming et transmise au fil des tokens (liste
+     * renvoyée vide) ; le nouvel essai sans contexte n'a lieu que si rien n'a encore été transmis.
      */
-    private List<String> generateLLMResponse(String userQuestion, List<String> chunks, String forcedLang) {
+    private List<String> generateLLMResponse(String sessionId, String userQuestion, List<String> chunks, String forcedLang,
+                                             Consumer<String> fragments) {
+        FormattedStream stream = fragments != null ? new FormattedStream(fragments) : null;
         try {
-            // 1. 📋 Construction du contexte
-            StringBuilder contextBuilder = new StringBuilder();
-            contextBuilder.append("CONTEXTE DOCUMENTAIRE:\n");
-            for (int i = 0; i < chunks.size(); i++) {
-                contextBuilder.append("Document ").append(i + 1).append(":\n");
-                contextBuilder.append(chunks.get(i)).append("\n\n");
+            // 1. 📋 Construction du prompt (suite de conversation si la session a un contexte valide)
+            Timer.Sample promptSample = metrics.start();
+            boolean reuseSession = sessionContextEnabled && sessionId != null
+                    && !sessionId.isBlank() && !"default".equals(sessionId); // "default" est partagé par tous les clients GET
+            ConversationHistoryStore.LlmContext previous = reuseSession ? conversationHistoryStore.getLlmContext(sessionId) : null;
+            Set<String> chunkHashes = new HashSet<>();
+            chunks.forEach(chunk -> chunkHashes.add(ContentHash.of(chunk)));
+
+            String prompt = null;
+            if (previous != null && previous.model().equals(ollamaClient.getChatModel())) {
+                List<String> newChunks = chunks.stream()
+                        .filter(chunk -> !previous.sentChunks().contains(ContentHash.of(chunk)))
+                        .toList();
+                String followUpPrompt = construirePromptSuite(userQuestion, newChunks);
+                if (previous.tokens().length + ContextPacker.estimateTokens(followUpPrompt) <= sessionContextMaxTokens) {
+                    prompt = followUpPrompt;
+                }
             }
+            if (previous != null && prompt == null) {
+                conversationHistoryStore.clearLlmContext(sessionId);
+                metrics.increment("rag.llm.session.context", "result", "reset");
+            }
+            final boolean followUp = prompt != null;
+            final String fullPrompt = followUp ? prompt : construirePromptComplet(userQuestion, chunks);
+            metrics.stop(promptSample, RagMetrics.STAGE_PROMPT_BUILD);
+            metrics.recordSize("rag.prompt.chars", fullPrompt.length());
             
-            // 2. 📝 Construction du prompt pour Mistral
-            String systemPrompt = construireMistralPrompt();
-            String fullPrompt = systemPrompt + "\n\n" + contextBuilder.toString() + 
-                               "\nQUESTION: " + userQuestion + 
-                               "\n\nRÉPONSE (respectez strictement le format demandé):";
-            
-            System.out.println("[MISTRAL] 📤 Envoi du prompt à Mistral...");
-            System.out.println("[DEBUG] PROMPT COMPLET:");
-            System.out.println("=" + "=".repeat(80));
-            System.out.println(fullPrompt);
-            System.out.println("=" + "=".repeat(80));
+            logger.atInfo().setMessage("[MISTRAL] 📤 Envoi du prompt à Mistral")
+                    .addKeyValue("promptChars", fullPrompt.length())
+                    .addKeyValue("contextChunks", chunks.size())
+                    .addKeyValue("sessionContextTokens", followUp ? previous.tokens().length : 0)
+                    .log();
+            if (PayloadLogSampler.isPayloadSampled()) {
+                logger.info("[MISTRAL] PROMPT COMPLET:\n{}", fullPrompt);
+            }
             
-            // 3. 🚀 Appel à Mistral
-            String mistralResponse = ollamaClient.generateWithMistral(fullPrompt);
+            // 2. 🚀 Appel à Mistral (nouvel essai sans contexte si Ollama le refuse)
+            OllamaClientService.Generation generation;
+            boolean reused = followUp;
+            try {
+                generation = metrics.time(RagMetrics.STAGE_LLM_GENERATION,
+                        () -> generate(fullPrompt, followUp ? previous.tokens() : null, stream));
+                if (followUp && generation.response().isBlank()) {
+                    throw new IllegalStateException("réponse vide avec contexte de session");
+                }
+            } catch (Exception e) {
+                if (!followUp || (stream != null && stream.emitted)) {
+                    throw e;
+                }
+                logger.warn("[MISTRAL] ♻️ Contexte de session invalide ({}), nouvel essai avec le prompt complet", e.getMessage());
+                conversationHistoryStore.clearLlmContext(sessionId);
+                metrics.increment("rag.llm.session.context", "result", "fallback");
+                String freshPrompt = construirePromptComplet(userQuestion, chunks);
+                if (stream != null) {
+                    stream.restart();
+                }
+                generation = metrics.time(RagMetrics.STAGE_LLM_GENERATION, () -> generate(freshPrompt, null, stream));
+                reused = false;
+            }
+            if (generation.promptEvalCount() >= 0) {
+                metrics.recordSize("rag.llm.prompt.eval.tokens", generation.promptEvalCount());
+            }
+            if (reuseSession && generation.context() != null) {
+                Set<String> sentChunks = new HashSet<>(chunkHashes);
+                if (reused) {
+                    sentChunks.addAll(previous.sentChunks());
+                    metrics.increment("rag.llm.session.context", "result", "reused");
+                }
+                conversationHistoryStore.putLlmContext(sessionId, new ConversationHistoryStore.LlmContext(
+                        ollamaClient.getChatModel(), generation.context(), sentChunks, System.currentTimeMillis()));
+            }
+            String mistralResponse = generation.response();
             
             if (mistralResponse != null && !mistralResponse.trim().isEmpty()) {
-                System.out.println("[MISTRAL] ✅ Réponse reçue de Mistral (" + mistralResponse.length() + " caractères)");
-                System.out.println("[DEBUG] RÉPONSE MISTRAL:");
-                System.out.println("-" + "-".repeat(80));
-                System.out.println(mistralResponse);
-                System.out.println("-" + "-".repeat(80));
+                logger.atInfo().setMessage("[MISTRAL] ✅ Réponse reçue de Mistral")
+                        .addKeyValue("responseChars", mistralResponse.length())
+                        .addKeyValue("promptEvalTokens", generation.promptEvalCount())
+                        .log();
+                if (PayloadLogSampler.isPayloadSampled()) {
+                    logger.info("[MISTRAL] RÉPONSE MISTRAL:\n{}", mistralResponse);
+                }
                 
-                // 4. 🎨 Post-traitement pour l'affichage web
-                String formattedResponse = formatForWeb(mistralResponse);
+                // 3. 🎨 Post-traitement pour l'affichage web (déjà fait au fil des tokens en streaming)
+                if (stream != null) {
+                    stream.finish();
+                    return List.of();
+                }
+                String formattedResponse = metrics.time(RagMetrics.STAGE_FORMAT_WEB, () -> formatForWeb(mistralResponse));
                 return Collections.singletonList(formattedResponse);
             } else {
-                System.err.println("[MISTRAL] ❌ Réponse vide de Mistral, fallback vers réponse basique");
+                logger.warn("[MISTRAL] ❌ Réponse vide de Mistral, fallback vers réponse basique");
                 return generateFallbackResponse(userQuestion, chunks);
             }
             
         } catch (Exception e) {
-            System.err.println("[MISTRAL] ❌ Erreur lors de la génération LLM: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("[MISTRAL] ❌ Erreur lors de la génération LLM: {}", e.getMessage(), e);
+            if (stream != null && stream.emitted) {
+                return Collections.singletonList("<br><br>⚠️ Réponse interrompue, veuillez réessayer.");
+            }
             return generateFallbackResponse(userQuestion, chunks);
         }
     }
+
+    private OllamaClientService.Generation generate(String prompt, int[] context, FormattedStream stream) {
+        return stream == null
+                ? ollamaClient.generateWithContext(prompt, context)
+                : ollamaClient.streamWithContext(prompt, context, stream);
+    }
+
+    /**
+     * 🌊 Tokens Mistral mis en forme au fil de l'eau : seul le HTML définitif est transmis
+     */
+    private static final class FormattedStream implements Consumer<String> {
+
+        private final Consumer<String> fragments;
+        private StreamingAnswerFormatter formatter = new StreamingAnswerFormatter();
+        private boolean emitted;
+
+        FormattedStream(Consumer<String> fragments) {
+            this.fragments = fragments;
+        }
+
+        @Override
+        public void accept(String token) {
+            send(formatter.accept(token));
+        }
+
+        void finish() {
+            send(formatter.finish());
+        }
+
+        // Nouvel essai : le texte retenu par le formateur appartient à la réponse abandonnée
+        void restart() {
+            formatter = new StreamingAnswerFormatter();
+        }
+
+        private void send(String html) {
+            if (!html.isEmpty()) {
+                emitted = true;
+                fragments.accept(html);
+            }
+        }
+    }
+
+    /**
+     * 📝 Prompt complet : consignes, documents, question
+     */
+    private String construirePromptComplet(String userQuestion, List<String> chunks) {
+        StringBuilder contextBuilder = new StringBuilder();
+        contextBuilder.append("CONTEXTE DOCUMENTAIRE:\n");
+        for (int i = 0; i < chunks.size(); i++) {
+            contextBuilder.append("Document ").append(i + 1).append(":\n");
+            contextBuilder.append(chunks.get(i)).append("\n\n");
+        }
+        return construireMistralPrompt() + "\n\n" + contextBuilder +
+               "\nQUESTION: " + userQuestion +
+               "\n\nRÉPONSE (respectez strictement le format demandé):";
+    }
+
+    /**
+     * 🔁 Prompt de suite de conversation : les consignes et les documents déjà fournis sont dans le contexte Ollama
+     */
+    private String construirePromptSuite(String userQuestion, List<String> newChunks) {
+        StringBuilder builder = new StringBuilder();
+        if (newChunks.isEmpty()) {
+            builder.append("Les documents utiles ont déjà été fournis plus haut.\n");
+        } else {
+            builder.append("DOCUMENTS COMPLÉMENTAIRES:\n");
+            for (int i = 0; i < newChunks.size(); i++) {
+                builder.append("Document complémentaire ").append(i + 1).append(":\n");
+                builder.append(newChunks.get(i)).append("\n\n");
+            }
+        }
+        return builder +
+               "\nQUESTION: " + userQuestion +
+               "\n\nRÉPONSE (mêmes règles et même format que précédemment):";
+    }
     
     /**
      * 📝 Construction du prompt système pour Mistral (générique pour tous codes SH)
@@ -206,54 +403,17 @@ public class ChatService {
     }
     
     /**
-     * 🎨 Formatage de la réponse pour l'affichage web
+     * 🎨 Formatage de la réponse pour l'affichage web (une passe, voir {@link StreamingAnswerFormatter})
      */
-    private String formatForWeb(String mistralResponse) {
-        // Conversion des sauts de ligne en balises HTML
-        String formatted = mistralResponse.replace("\n", "<br>");
-        
-        // Formatage spécial pour les titres (sans emojis)
-        formatted = formatted.replace("Position Tarifaire", "<br><strong style='color:#2563eb; font-size:1.2em;'>Position Tarifaire</strong>")
-                            .replace("Droits et Taxes", "<br><br><strong style='color:#059669; font-size:1.2em;'>Droits et Taxes</strong>")
-                            .replace("Accords et Conventions", "<br><br><strong style='color:#7c3aed; font-size:1.2em;'>Accords et Conventions</strong>");
-        
-        // Formatage pour les codes SH et descriptions importantes
-        formatted = formatted.replace("Code SH :", "<br><strong style='color:#1f2937;'>Code SH :</strong>")
-                            .replace("Description :", "<br><strong style='color:#1f2937;'>Description :</strong>");
-        
-        // Formatage pour les taxes et droits
-        formatted = formatted.replace("Droit d'Importation (DI) :", "<br><strong>Droit d'Importation (DI) :</strong>")
-                            .replace("Taxe Parafiscale à l'Importation (TPI) :", "<br><strong>Taxe Parafiscale à l'Importation (TPI) :</strong>")
-                            .replace("Taxe sur la Valeur Ajoutée à l'Importation (TVA) :", "<br><strong>Taxe sur la Valeur Ajoutée à l'Importation (TVA) :</strong>");
-        
-        // Formatage pour les accords commerciaux
-        formatted = formatted.replace("Union Européenne :", "<br>Union Européenne :")
-                            .replace("Ligue Arabe :", "<br>Ligue Arabe :")
-                            .replace("Accord d'Agadir :", "<br>Accord d'Agadir :")
-                            .replace("États-Unis :", "<br>États-Unis :")
-                            .replace("Zone de libre-échange continentale africaine", "<br>Zone de libre-échange continentale africaine")
-                            .replace("Émirats Arabes Unis :", "<br>Émirats Arabes Unis :")
-                            .replace("Irak :", "<br>Irak :")
-                            .replace("Libye :", "<br>Libye :")
-                            .replace("Royaume-Uni :", "<br>Royaume-Uni :")
-                            .replace("Algérie :", "<br>Algérie :");
-        
-        // Nettoyage des balises en trop au début
-        if (formatted.startsWith("<br>")) {
-            formatted = formatted.substring(4);
-        }
-        
-        // Suppression des doubles <br> consécutifs excessifs
-        formatted = formatted.replaceAll("(<br>){3,}", "<br><br>");
-        
-        return formatted;
+    static String formatForWeb(String mistralResponse) {
+        return StreamingAnswerFormatter.format(mistralResponse);
     }
     
     /**
      * ⚙️ Méthode de fallback simple
      */
     private List<String> generateFallbackResponse(String userQuestion, List<String> chunks) {
-        System.out.println("[FALLBACK] ⚙️ Génération de réponse basique");
+        logger.info("[FALLBACK] ⚙️ Génération de réponse basique");
         
         // Réponse simple basée sur les chunks trouvés
         StringBuilder response = new StringBuilder();
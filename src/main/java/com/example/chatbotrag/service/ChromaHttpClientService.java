@@ -1,41 +1,72 @@
 package com.example.chatbotrag.service;
 
 import com.example.chatbotrag.config.Constants;
-
+import com.example.chatbotrag.logging.PayloadLogSampler;
+import com.example.chatbotrag.metrics.HttpClientMetricsInterceptor;
+import com.example.chatbotrag.metrics.RagMetrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.client.RestTemplate;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 public class ChromaHttpClientService {
 
-    private static final String BASE_URL = "http://localhost:8000/api/v1"; // Assure-toi que Chroma écoute ici
-    private final RestTemplate restTemplate = new RestTemplate();
+    private static final Logger logger = LoggerFactory.getLogger(ChromaHttpClientService.class);
+
+    // Métadonnée écrite avec chaque embedding : SHA-256 du texte, comme chunk.content_hash côté MySQL
+    public static final String CONTENT_HASH_METADATA = "content_hash";
+
+    private final String apiUrl; // Assure-toi que Chroma écoute ici (API v1)
+    private final RestTemplate restTemplate;
+    // Nom → ID des collections : évite un GET (et un POST de création) par requête
+    private final Map<String, String> collectionIds = new ConcurrentHashMap<>();
+
+    public ChromaHttpClientService(RestTemplateBuilder restTemplateBuilder, RagMetrics metrics,
+                                   @Value("${chroma.baseurl:http://localhost:8000}") String baseUrl) {
+        this.apiUrl = baseUrl + "/api/v1";
+        this.restTemplate = restTemplateBuilder
+                .additionalInterceptors(new HttpClientMetricsInterceptor("chroma", metrics))
+                .build();
+    }
 
 
     public void deleteEmbeddingById(String collectionName, String id) {
-        String collectionId = getCollectionId(collectionName); // 🔁 Récupère l'ID réel
-        String url = BASE_URL + "/collections/" + collectionId + "/delete";
+        String collectionId = findCollectionId(collectionName); // 🔁 Récupère l'ID réel
+        if (collectionId == null) {
+            return;
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/delete";
 
         Map<String, Object> payload = new HashMap<>();
         payload.put("ids", List.of(id));
 
         sendDeleteRequest(url, payload);
-        System.out.println("🗑️ Embedding supprimé : " + id);
+        logger.debug("🗑️ Embedding supprimé : {}", id);
     }
 
 
     public void deleteEmbeddingsByIds(String collectionName, List<String> ids) {
-        String collectionId = getCollectionId(collectionName); // 🔁 Récupère l'ID réel
-        String url = BASE_URL + "/collections/" + collectionId + "/delete";
+        String collectionId = findCollectionId(collectionName); // 🔁 Récupère l'ID réel
+        if (collectionId == null) {
+            return;
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/delete";
 
         Map<String, Object> payload = new HashMap<>();
         payload.put("ids", ids);
 
         sendDeleteRequest(url, payload);
-        System.out.println("🧹 Embeddings supprimés : " + ids.size());
+        logger.info("🧹 Embeddings supprimés : {}", ids.size());
     }
 
     private void sendDeleteRequest(String url, Map<String, Object> body) {
@@ -51,18 +82,49 @@ public class ChromaHttpClientService {
     }
 
 
+    /**
+     * ID of a collection, created if missing (write paths only)
+     */
     private String getCollectionId(String collectionName) {
+        String collectionId = collectionIds.get(collectionName);
+        if (collectionId != null) {
+            return collectionId;
+        }
         createCollectionIfNotExists(collectionName); // ✅ Création automatique
 
-        String url = BASE_URL + "/collections/" + collectionName;
-        ResponseEntity<Map> response = restTemplate.getForEntity(url, Map.class);
-        Map<String, Object> body = response.getBody();
-
-        if (body == null || body.get("id") == null) {
+        collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
             throw new RuntimeException("❌ Impossible de récupérer l’ID de la collection : " + collectionName);
         }
+        return collectionId;
+    }
 
-        return body.get("id").toString();
+    /**
+     * ID of an existing collection, or null when it does not exist — reads never create collections
+     */
+    private String findCollectionId(String collectionName) {
+        String collectionId = collectionIds.get(collectionName);
+        if (collectionId != null) {
+            return collectionId;
+        }
+        try {
+            ResponseEntity<Map> response = restTemplate.getForEntity(apiUrl + "/collections/" + collectionName, Map.class);
+            Map<String, Object> body = response.getBody();
+            if (body == null || body.get("id") == null) {
+                return null;
+            }
+            collectionId = body.get("id").toString();
+            collectionIds.put(collectionName, collectionId);
+            return collectionId;
+        } catch (HttpClientErrorException e) {
+            return null;
+        } catch (HttpServerErrorException e) {
+            // Chroma < 0.5 answers 500 "Collection ... does not exist" instead of 404
+            if (e.getResponseBodyAsString().contains("does not exist")) {
+                return null;
+            }
+            throw e;
+        }
     }
 
 
@@ -70,11 +132,11 @@ public class ChromaHttpClientService {
         // Vérifier si la collection existe déjà
         List<String> existingCollections = getAllCollectionNames();
         if (existingCollections.contains(collectionName)) {
-            System.out.println("✅ Collection déjà existante : " + collectionName);
+            logger.debug("✅ Collection déjà existante : {}", collectionName);
             return;
         }
 
-        String url = BASE_URL + "/collections";
+        String url = apiUrl + "/collections";
         Map<String, Object> payload = new HashMap<>();
         payload.put("name", collectionName);
 
@@ -85,9 +147,9 @@ public class ChromaHttpClientService {
 
         try {
             restTemplate.exchange(url, HttpMethod.POST, request, String.class);
-            System.out.println("✅ Collection prête : " + collectionName);
+            logger.info("✅ Collection prête : {}", collectionName);
         } catch (Exception e) {
-            System.out.println("⚠️ Création de la collection échouée : " + e.getMessage());
+            logger.warn("⚠️ Création de la collection échouée : {}", e.getMessage());
         }
     }
 
@@ -103,8 +165,11 @@ public class ChromaHttpClientService {
      */
     public List<String> getAllChunkIds(String collectionName) {
         try {
-            String collectionId = getCollectionId(collectionName);
-            String url = BASE_URL + "/collections/" + collectionId + "/get";
+            String collectionId = findCollectionId(collectionName);
+            if (collectionId == null) {
+                return new ArrayList<>();
+            }
+            String url = apiUrl + "/collections/" + collectionId + "/get";
 
             Map<String, Object> payload = new HashMap<>();
             payload.put("include", List.of("metadatas", "documents"));
@@ -121,7 +186,7 @@ public class ChromaHttpClientService {
             }
             return new ArrayList<>();
         } catch (Exception e) {
-            System.err.println("❌ Failed to get chunk IDs from collection " + collectionName + ": " + e.getMessage());
+            logger.error("❌ Failed to get chunk IDs from collection {}: {}", collectionName, e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -138,8 +203,11 @@ public class ChromaHttpClientService {
      */
     public String getChunkText(String chunkId, String collectionName) {
         try {
-            String collectionId = getCollectionId(collectionName);
-            String url = BASE_URL + "/collections/" + collectionId + "/get";
+            String collectionId = findCollectionId(collectionName);
+            if (collectionId == null) {
+                return null;
+            }
+            String url = apiUrl + "/collections/" + collectionId + "/get";
 
             Map<String, Object> payload = new HashMap<>();
             payload.put("ids", List.of(chunkId));
@@ -160,11 +228,194 @@ public class ChromaHttpClientService {
             }
             return null;
         } catch (Exception e) {
-            System.err.println("❌ Failed to get chunk text for " + chunkId + ": " + e.getMessage());
+            logger.error("❌ Failed to get chunk text for {}: {}", chunkId, e.getMessage());
             return null;
         }
     }
 
+    /**
+     * Gets one page of chunk IDs (no documents nor embeddings), in Chroma's storage order
+     */
+    public List<String> getChunkIdsPage(String collectionName, int offset, int limit) {
+        return new ArrayList<>(getChunkPage(collectionName, offset, limit, false).keySet());
+    }
+
+    /**
+     * Gets one page of chunks (ID → text), in Chroma's storage order
+     */
+    public Map<String, String> getChunkTextsPage(String collectionName, int offset, int limit) {
+        return getChunkPage(collectionName, offset, limit, true);
+    }
+
+    private Map<String, String> getChunkPage(String collectionName, int offset, int limit, boolean withDocuments) {
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return new LinkedHashMap<>();
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/get";
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("include", withDocuments ? List.of("documents") : List.of());
+        payload.put("offset", offset);
+        payload.put("limit", limit);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), Map.class);
+        Map<String, Object> body = response.getBody();
+        Map<String, String> page = new LinkedHashMap<>();
+        if (body != null && body.get("ids") != null) {
+            List<String> ids = (List<String>) body.get("ids");
+            List<String> documents = withDocuments ? (List<String>) body.get("documents") : null;
+            for (int i = 0; i < ids.size(); i++) {
+                page.put(ids.get(i), documents != null && i < documents.size() ? documents.get(i) : null);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Gets one page of embeddings (ID → vector), in Chroma's storage order
+     */
+    public Map<String, float[]> getEmbeddingsPage(String collectionName, int offset, int limit) {
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return new LinkedHashMap<>();
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/get";
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("include", List.of("embeddings"));
+        payload.put("offset", offset);
+        payload.put("limit", limit);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), Map.class);
+        Map<String, Object> body = response.getBody();
+        Map<String, float[]> page = new LinkedHashMap<>();
+        if (body != null && body.get("ids") != null && body.get("embeddings") != null) {
+            List<String> ids = (List<String>) body.get("ids");
+            List<List<Number>> embeddings = (List<List<Number>>) body.get("embeddings");
+            for (int i = 0; i < ids.size() && i < embeddings.size(); i++) {
+                List<Number> embedding = embeddings.get(i);
+                float[] vector = new float[embedding.size()];
+                for (int d = 0; d < vector.length; d++) {
+                    vector[d] = embedding.get(d).floatValue();
+                }
+                page.put(ids.get(i), vector);
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Gets one page of content hashes (ID → {@value #CONTENT_HASH_METADATA} metadata, null for embeddings
+     * written before it existed), without documents nor embeddings
+     */
+    public Map<String, String> getContentHashesPage(String collectionName, int offset, int limit) {
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return new LinkedHashMap<>();
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/get";
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("include", List.of("metadatas"));
+        payload.put("offset", offset);
+        payload.put("limit", limit);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), Map.class);
+        Map<String, Object> body = response.getBody();
+        Map<String, String> page = new LinkedHashMap<>();
+        if (body != null && body.get("ids") != null) {
+            List<String> ids = (List<String>) body.get("ids");
+            List<Map<String, Object>> metadatas = (List<Map<String, Object>>) body.get("metadatas");
+            for (int i = 0; i < ids.size(); i++) {
+                Map<String, Object> metadata = metadatas != null && i < metadatas.size() ? metadatas.get(i) : null;
+                Object hash = metadata == null ? null : metadata.get(CONTENT_HASH_METADATA);
+                page.put(ids.get(i), hash == null ? null : hash.toString());
+            }
+        }
+        return page;
+    }
+
+    /**
+     * Writes the {@value #CONTENT_HASH_METADATA} metadata of existing embeddings (no re-embedding)
+     */
+    public void updateContentHashes(String collectionName, Map<String, String> hashes) {
+        if (hashes.isEmpty()) {
+            return;
+        }
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(hashes.keySet());
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("ids", ids);
+        payload.put("metadatas", ids.stream().map(id -> Map.of(CONTENT_HASH_METADATA, hashes.get(id))).toList());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        restTemplate.exchange(apiUrl + "/collections/" + collectionId + "/update", HttpMethod.POST,
+                new HttpEntity<>(payload, headers), String.class);
+    }
+
+    private static Map<String, Object> contentHashMetadata(String text) {
+        return Map.of(CONTENT_HASH_METADATA, ContentHash.of(text == null ? "" : text));
+    }
+
+    /**
+     * Gets the texts of several chunks in a single call (ID → text, missing IDs are absent)
+     */
+    public Map<String, String> getChunkTexts(String collectionName, List<String> chunkIds) {
+        Map<String, String> texts = new LinkedHashMap<>();
+        if (chunkIds.isEmpty()) {
+            return texts;
+        }
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return texts;
+        }
+        String url = apiUrl + "/collections/" + collectionId + "/get";
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("ids", chunkIds);
+        payload.put("include", List.of("documents"));
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<Map> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), Map.class);
+        Map<String, Object> body = response.getBody();
+        if (body != null && body.get("ids") != null && body.get("documents") != null) {
+            List<String> ids = (List<String>) body.get("ids");
+            List<String> documents = (List<String>) body.get("documents");
+            for (int i = 0; i < ids.size() && i < documents.size(); i++) {
+                texts.put(ids.get(i), documents.get(i));
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * Number of embeddings in a collection
+     */
+    public long countEmbeddings(String collectionName) {
+        String collectionId = findCollectionId(collectionName);
+        if (collectionId == null) {
+            return 0;
+        }
+        Number count = restTemplate.getForObject(apiUrl + "/collections/" + collectionId + "/count", Number.class);
+        return count == null ? 0 : count.longValue();
+    }
+
     /**
      * Clears all data from the default collection
      */
@@ -180,12 +431,12 @@ public class ChromaHttpClientService {
             List<String> allIds = getAllChunkIds(collectionName);
             if (!allIds.isEmpty()) {
                 deleteEmbeddingsByIds(collectionName, allIds);
-                System.out.println("🧹 Cleared " + allIds.size() + " chunks from collection: " + collectionName);
+                logger.info("🧹 Cleared {} chunks from collection: {}", allIds.size(), collectionName);
             } else {
-                System.out.println("✅ Collection " + collectionName + " is already empty");
+                logger.info("✅ Collection {} is already empty", collectionName);
             }
         } catch (Exception e) {
-            System.err.println("❌ Failed to clear collection " + collectionName + ": " + e.getMessage());
+            logger.error("❌ Failed to clear collection {}: {}", collectionName, e.getMessage());
         }
     }
 
@@ -194,18 +445,23 @@ public class ChromaHttpClientService {
      */
     public void deleteCollection(String collectionName) {
         try {
-            String collectionId = getCollectionId(collectionName);
-            String url = BASE_URL + "/collections/" + collectionId;
+            String collectionId = findCollectionId(collectionName);
+            if (collectionId == null) {
+                logger.info("✅ Collection {} does not exist, nothing to delete", collectionName);
+                return;
+            }
+            collectionIds.remove(collectionName);
+            String url = apiUrl + "/collections/" + collectionId;
             
             ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.DELETE, null, String.class);
             
             if (response.getStatusCode().is2xxSuccessful()) {
-                System.out.println("🗑️ Collection permanently deleted: " + collectionName);
+                logger.info("🗑️ Collection permanently deleted: {}", collectionName);
             } else {
-                System.err.println("❌ Failed to delete collection " + collectionName + ": " + response.getStatusCode());
+                logger.warn("❌ Failed to delete collection {}: {}", collectionName, response.getStatusCode());
             }
         } catch (Exception e) {
-            System.err.println("❌ Failed to delete collection " + collectionName + ": " + e.getMessage());
+            logger.error("❌ Failed to delete collection {}: {}", collectionName, e.getMessage());
         }
     }
 
@@ -214,7 +470,7 @@ public class ChromaHttpClientService {
      */
     public List<String> getAllCollectionNames() {
         try {
-            String url = BASE_URL + "/collections";
+            String url = apiUrl + "/collections";
             ResponseEntity<List> response = restTemplate.getForEntity(url, List.class);
             
             List<Map<String, Object>> collections = response.getBody();
@@ -225,7 +481,7 @@ public class ChromaHttpClientService {
             }
             return new ArrayList<>();
         } catch (Exception e) {
-            System.err.println("❌ Failed to get collection names: " + e.getMessage());
+            logger.error("❌ Failed to get collection names: {}", e.getMessage());
             return new ArrayList<>();
         }
     }
@@ -236,7 +492,7 @@ public class ChromaHttpClientService {
     public void addEmbeddingWithText(String collectionName, String id, float[] embedding, String text) {
         try {
             String collectionId = getCollectionId(collectionName);
-            String url = BASE_URL + "/collections/" + collectionId + "/add";
+            String url = apiUrl + "/collections/" + collectionId + "/add";
 
             // Convert float array to List<Double>
             List<Double> embeddingList = new ArrayList<>();
@@ -248,6 +504,7 @@ public class ChromaHttpClientService {
             payload.put("ids", List.of(id));
             payload.put("embeddings", List.of(embeddingList));
             payload.put("documents", List.of(text));
+            payload.put("metadatas", List.of(contentHashMetadata(text)));
 
             HttpHeaders headers = new HttpHeaders();
             headers.setContentType(MediaType.APPLICATION_JSON);
@@ -256,23 +513,61 @@ public class ChromaHttpClientService {
             ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, request, String.class);
 
             if (response.getStatusCode().is2xxSuccessful()) {
-                System.out.println("✅ Embedding added successfully to " + collectionName + " with ID: " + id);
+                logger.debug("✅ Embedding added successfully to {} with ID: {}", collectionName, id);
             } else {
                 throw new RuntimeException("Failed to add embedding: " + response.getStatusCode());
             }
         } catch (Exception e) {
-            System.err.println("❌ Failed to add embedding to " + collectionName + ": " + e.getMessage());
+            logger.error("❌ Failed to add embedding to {}: {}", collectionName, e.getMessage());
             throw new RuntimeException("Failed to add embedding: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Upserts a batch of embeddings with their text (insert or replace by ID)
+     */
+    public void upsertEmbeddingsWithText(String collectionName, List<String> ids, List<float[]> embeddings, List<String> texts) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        String collectionId = getCollectionId(collectionName);
+        String url = apiUrl + "/collections/" + collectionId + "/upsert";
+
+        List<List<Double>> embeddingLists = new ArrayList<>(embeddings.size());
+        for (float[] embedding : embeddings) {
+            List<Double> embeddingList = new ArrayList<>(embedding.length);
+            for (float f : embedding) {
+                embeddingList.add((double) f);
+            }
+            embeddingLists.add(embeddingList);
+        }
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("ids", ids);
+        payload.put("embeddings", embeddingLists);
+        payload.put("documents", texts);
+        payload.put("metadatas", texts.stream().map(ChromaHttpClientService::contentHashMetadata).toList());
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        ResponseEntity<String> response = restTemplate.exchange(url, HttpMethod.POST, new HttpEntity<>(payload, headers), String.class);
+        if (!response.getStatusCode().is2xxSuccessful()) {
+            throw new RuntimeException("Failed to upsert embeddings: " + response.getStatusCode());
+        }
+        logger.info("✅ {} embeddings upsertés dans {}", ids.size(), collectionName);
+    }
+
     /**
      * Performs similarity search using a query embedding
      */
     public List<SearchResult> searchSimilar(String collectionName, float[] queryEmbedding, int maxResults, double minScore) {
         try {
-            String collectionId = getCollectionId(collectionName);
-            String url = BASE_URL + "/collections/" + collectionId + "/query";
+            String collectionId = findCollectionId(collectionName);
+            if (collectionId == null) {
+                return new ArrayList<>();
+            }
+            String url = apiUrl + "/collections/" + collectionId + "/query";
 
             // Convert float array to List<Double>
             List<Double> embeddingList = new ArrayList<>();
@@ -296,117 +591,124 @@ public class ChromaHttpClientService {
             }
 
             Map<String, Object> body = response.getBody();
-            System.out.println("[CHROMA_SEARCH_DEBUG] Response body: " + body);
+            if (PayloadLogSampler.isPayloadSampled()) {
+                logger.info("[CHROMA_SEARCH_DEBUG] Response body: {}", body);
+            }
             
             if (body == null) {
-                System.out.println("[CHROMA_SEARCH_DEBUG] Response body is null");
+                logger.debug("[CHROMA_SEARCH_DEBUG] Response body is null");
                 return new ArrayList<>();
             }
 
             // Parse the response
-            List<SearchResult> results = new ArrayList<>();
             List<List<String>> allDocuments = (List<List<String>>) body.get("documents");
             List<List<Double>> allDistances = (List<List<Double>>) body.get("distances");
             List<List<String>> allIds = (List<List<String>>) body.get("ids");
 
+            List<SearchResult> results = new ArrayList<>();
             if (allDocuments != null && !allDocuments.isEmpty() && 
                 allDistances != null && !allDistances.isEmpty()) {
-                
-                List<String> documents = allDocuments.get(0); // First query result
-                List<Double> distances = allDistances.get(0);
                 List<String> ids = allIds != null && !allIds.isEmpty() ? allIds.get(0) : new ArrayList<>();
-
-                for (int i = 0; i < documents.size() && i < distances.size(); i++) {
-                    String doc = documents.get(i);
-                    
-                    // Skip null documents
-                    if (doc == null) {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ⚠️ Skipping null document at index " + i);
-                        continue;
-                    }
-                    
-                    double distance = distances.get(i);
-                    
-                    // Amélioration: Calcul de similarité optimisé pour une meilleure précision
-                    // ChromaDB utilise la distance euclidienne au carré
-                    // Fonction de similarité plus graduelle et précise
-                    double similarity;
-                    if (distance < 0.3) {
-                        // Très très proche: score maximum
-                        similarity = 1.0 - (distance * 0.3);
-                    } else if (distance < 0.8) {
-                        // Très proche: score élevé
-                        similarity = 0.9 - (distance * 0.4);
-                    } else if (distance < 1.5) {
-                        // Moyennement proche: score modéré-élevé
-                        similarity = 0.8 - (distance * 0.25);
-                    } else if (distance < 3.0) {
-                        // Plus distant mais acceptable
-                        similarity = 0.6 - (distance * 0.15);
-                    } else if (distance < 6.0) {
-                        // Distant mais potentiellement pertinent
-                        similarity = 0.4 - (distance * 0.05);
-                    } else {
-                        // Très distant: score bas mais pas nul
-                        similarity = Math.max(0.02, 1.0 / (1.0 + distance * 0.5));
-                    }
-                    
-                    System.out.println("[CHROMA_SEARCH_DEBUG] Chunk " + i + ": distance=" + String.format("%.4f", distance) + ", similarity=" + String.format("%.4f", similarity));
-                    
-                    // Debug: Check for specific content et boost intelligent
-                    boolean hasTargetContent = false;
-                    
-                    // Boost pour mammifères de parcs zoologiques
-                    if (doc.contains("0106201000") || 
-                        (doc.toLowerCase().contains("mammifères") && doc.toLowerCase().contains("zoologiques")) ||
-                        (doc.toLowerCase().contains("destinés aux parcs") && doc.toLowerCase().contains("zoologiques"))) {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS MAMMAL ZOO CONTENT! Boosting similarity.");
-                        similarity = Math.max(similarity, 0.85);
-                        hasTargetContent = true;
-                    }
-                    
-                    // Boost pour chevaux (garde l'ancien)
-                    if (doc.contains("0101292000") || doc.contains("0101210000") || doc.contains("de course")) {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS HORSE CONTENT! Boosting similarity.");
-                        similarity = Math.max(similarity, 0.8);
-                        hasTargetContent = true;
-                    }
-                    
-                    // Boost pour codes SH en général
-                    if (doc.matches(".*\\b\\d{10}\\b.*")) {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS SH CODE! Boosting similarity.");
-                        similarity = Math.max(similarity, 0.75);
-                        hasTargetContent = true;
-                    }
-                    
-                    // Boost pour contenu tarifaire détaillé
-                    if (doc.toLowerCase().contains("droit d'importation") && doc.toLowerCase().contains("%") &&
-                        (doc.toLowerCase().contains("tva") || doc.toLowerCase().contains("tpi"))) {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS DETAILED TARIFF INFO! Boosting similarity.");
-                        similarity = Math.max(similarity, 0.7);
-                        hasTargetContent = true;
-                    }
-                    
-                    if (similarity >= minScore) {
-                        String id = i < ids.size() ? ids.get(i) : "unknown";
-                        results.add(new SearchResult(doc, similarity, id));
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ✅ Added result with similarity " + String.format("%.4f", similarity));
-                    } else {
-                        System.out.println("[CHROMA_SEARCH_DEBUG] ❌ Rejected result with similarity " + String.format("%.4f", similarity) + " (below " + minScore + ")");
-                    }
-                }
+                results = scoreResults(allDocuments.get(0), allDistances.get(0), ids, minScore);
             }
 
-            System.out.println("[CHROMA_SEARCH] Found " + results.size() + " results with similarity >= " + minScore);
+            logger.info("[CHROMA_SEARCH] Found {} results with similarity >= {}", results.size(), minScore);
             return results;
 
         } catch (Exception e) {
-            System.err.println("❌ Failed to search in collection " + collectionName + ": " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ Failed to search in collection {}: {}", collectionName, e.getMessage(), e);
             return new ArrayList<>();
         }
     }
 
+    /**
+     * Convertit les distances Chroma en similarités et applique les boosts métier
+     * (premier résultat de requête uniquement)
+     */
+    List<SearchResult> scoreResults(List<String> documents, List<Double> distances, List<String> ids, double minScore) {
+        List<SearchResult> results = new ArrayList<>();
+        for (int i = 0; i < documents.size() && i < distances.size(); i++) {
+            String doc = documents.get(i);
+            
+            // Skip null documents
+            if (doc == null) {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ⚠️ Skipping null document at index {}", i);
+                continue;
+            }
+            
+            double distance = distances.get(i);
+            
+            // Amélioration: Calcul de similarité optimisé pour une meilleure précision
+            // ChromaDB utilise la distance euclidienne au carré
+            // Fonction de similarité plus graduelle et précise
+            double similarity;
+            if (distance < 0.3) {
+                // Très très proche: score maximum
+                similarity = 1.0 - (distance * 0.3);
+            } else if (distance < 0.8) {
+                // Très proche: score élevé
+                similarity = 0.9 - (distance * 0.4);
+            } else if (distance < 1.5) {
+                // Moyennement proche: score modéré-élevé
+                similarity = 0.8 - (distance * 0.25);
+            } else if (distance < 3.0) {
+                // Plus distant mais acceptable
+                similarity = 0.6 - (distance * 0.15);
+            } else if (distance < 6.0) {
+                // Distant mais potentiellement pertinent
+                similarity = 0.4 - (distance * 0.05);
+            } else {
+                // Très distant: score bas mais pas nul
+                similarity = Math.max(0.02, 1.0 / (1.0 + distance * 0.5));
+            }
+            
+            logger.debug("[CHROMA_SEARCH_DEBUG] Chunk {}: distance={}, similarity={}", i, distance, similarity);
+            
+            // Debug: Check for specific content et boost intelligent
+            boolean hasTargetContent = false;
+            
+            // Boost pour mammifères de parcs zoologiques
+            if (doc.contains("0106201000") || 
+                (doc.toLowerCase().contains("mammifères") && doc.toLowerCase().contains("zoologiques")) ||
+                (doc.toLowerCase().contains("destinés aux parcs") && doc.toLowerCase().contains("zoologiques"))) {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS MAMMAL ZOO CONTENT! Boosting similarity.");
+                similarity = Math.max(similarity, 0.85);
+                hasTargetContent = true;
+            }
+            
+            // Boost pour chevaux (garde l'ancien)
+            if (doc.contains("0101292000") || doc.contains("0101210000") || doc.contains("de course")) {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS HORSE CONTENT! Boosting similarity.");
+                similarity = Math.max(similarity, 0.8);
+                hasTargetContent = true;
+            }
+            
+            // Boost pour codes SH en général
+            if (doc.matches(".*\\b\\d{10}\\b.*")) {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS SH CODE! Boosting similarity.");
+                similarity = Math.max(similarity, 0.75);
+                hasTargetContent = true;
+            }
+            
+            // Boost pour contenu tarifaire détaillé
+            if (doc.toLowerCase().contains("droit d'importation") && doc.toLowerCase().contains("%") &&
+                (doc.toLowerCase().contains("tva") || doc.toLowerCase().contains("tpi"))) {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ✅ CHUNK CONTAINS DETAILED TARIFF INFO! Boosting similarity.");
+                similarity = Math.max(similarity, 0.7);
+                hasTargetContent = true;
+            }
+            
+            if (similarity >= minScore) {
+                String id = i < ids.size() ? ids.get(i) : "unknown";
+                results.add(new SearchResult(doc, similarity, id, distance));
+                logger.debug("[CHROMA_SEARCH_DEBUG] ✅ Added result with similarity {}", similarity);
+            } else {
+                logger.debug("[CHROMA_SEARCH_DEBUG] ❌ Rejected result with similarity {} (below {})", similarity, minScore);
+            }
+        }
+        return results;
+    }
+
     /**
      * Result class for search operations
      */
@@ -414,15 +716,22 @@ public class ChromaHttpClientService {
         private final String text;
         private final double score;
         private final String id;
+        private final double distance; // distance Chroma brute, départage les scores égaux à la fusion des collections
 
         public SearchResult(String text, double score, String id) {
+            this(text, score, id, Double.NaN);
+        }
+
+        public SearchResult(String text, double score, String id, double distance) {
             this.text = text;
             this.score = score;
             this.id = id;
+            this.distance = distance;
         }
 
         public String getText() { return text; }
         public double getScore() { return score; }
         public String getId() { return id; }
+        public double getDistance() { return distance; }
     }
 }
@@ -0,0 +1,196 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.config.Constants;
+import com.example.chatbotrag.metrics.RagMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Partitionnement optionnel des embeddings par chapitre SH ({@code chroma.sharding.enabled}) :
+ * un chunk dont le code SH commence par "01" va dans {@code emsi-ai-collection-ch01}, un chunk
+ * sans code SH reste dans la collection de base. Une recherche n'interroge que les chapitres
+ * désignés par la question (code SH cité, "chapitre NN") ou par ses métadonnées, plus la
+ * collection de base ; sinon toutes les collections sont interrogées en parallèle et les
+ * résultats fusionnés par score. Désactivé : tout reste dans la collection unique.
+ */
+@Service
+public class ChromaShardRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChromaShardRouter.class);
+
+    private static final Pattern CHAPTER = Pattern.compile("(?iu)\\bchapitre\\s+(\\d{1,2})\\b");
+
+    // Meilleur score d'abord ; à score égal (boosts plafonnés), la plus petite distance Chroma
+    private static final Comparator<ChromaHttpClientService.SearchResult> BY_RELEVANCE =
+            Comparator.comparingDouble(ChromaHttpClientService.SearchResult::getScore).reversed()
+                    .thenComparingDouble(ChromaHttpClientService.SearchResult::getDistance);
+
+    private final ChromaHttpClientService chromaHttpClientService;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+    private final int maxRoutedChapters;
+    private final ExecutorService searchExecutor;
+
+    public ChromaShardRouter(ChromaHttpClientService chromaHttpClientService,
+                             ShCodeCatalogueService shCodeCatalogue,
+                             RagMetrics metrics,
+                             @Value("${chroma.sharding.enabled:false}") boolean enabled,
+                             @Value("${chroma.sharding.max-routed-chapters:3}") int maxRoutedChapters,
+                             @Value("${chroma.sharding.parallelism:8}") int parallelism) {
+        this.chromaHttpClientService = chromaHttpClientService;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.maxRoutedChapters = maxRoutedChapters;
+        this.searchExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "chroma-shard-search");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Chapitre SH (deux premiers chiffres) d'un code, null si le code n'en a pas
+     */
+    static String chapterOf(String shCode) {
+        if (shCode == null || shCode.length() < 2 || !Character.isDigit(shCode.charAt(0)) || !Character.isDigit(shCode.charAt(1))) {
+            return null;
+        }
+        return shCode.substring(0, 2);
+    }
+
+    /**
+     * Collection Chroma d'un chunk selon son code SH
+     */
+    public String collectionFor(String shCode) {
+        String chapter = enabled ? chapterOf(shCode) : null;
+        return chapter == null ? Constants.CHROMA_COLLECTION_NAME : Constants.CHROMA_SHARD_PREFIX + chapter;
+    }
+
+    /**
+     * Éléments regroupés par collection Chroma (écritures et suppressions par lots)
+     */
+    public <T> Map<String, List<T>> groupByCollection(Collection<T> items, Function<T, String> shCode) {
+        Map<String, List<T>> byCollection = new LinkedHashMap<>();
+        for (T item : items) {
+            byCollection.computeIfAbsent(collectionFor(shCode.apply(item)), c -> new ArrayList<>()).add(item);
+        }
+        return byCollection;
+    }
+
+    /**
+     * Collections existant dans Chroma (base et chapitres), même si le partitionnement a été désactivé
+     * depuis : synchronisation, contrôle de cohérence, index local et purge les parcourent toutes
+     */
+    public List<String> storedCollections() {
+        List<String> collections = new ArrayList<>();
+        collections.add(Constants.CHROMA_COLLECTION_NAME);
+        chromaHttpClientService.getAllCollectionNames().stream()
+                .filter(name -> name.startsWith(Constants.CHROMA_SHARD_PREFIX))
+                .sorted()
+                .forEach(collections::add);
+        return collections;
+    }
+
+    /**
+     * Chapitres désignés par la question (codes SH, "chapitre 3") et par les codes SH de ses métadonnées
+     */
+    public Set<String> chapters(String question, Collection<String> metadataCodes) {
+        Set<String> chapters = new TreeSet<>();
+        if (question != null) {
+            IntentRouter.shCodes(question).forEach(code -> chapters.add(chapterOf(code)));
+            Matcher matcher = CHAPTER.matcher(question);
+            while (matcher.find()) {
+                chapters.add(String.format("%02d", Integer.parseInt(matcher.group(1))));
+            }
+        }
+        for (String code : metadataCodes) {
+            String chapter = chapterOf(code);
+            if (chapter != null) {
+                chapters.add(chapter);
+            }
+        }
+        return chapters;
+    }
+
+    /**
+     * Recherche de similarité sur les collections des chapitres donnés (et la collection de base) ;
+     * aucun chapitre connu, ou plus de {@code chroma.sharding.max-routed-chapters} : toutes les collections
+     */
+    public List<ChromaHttpClientService.SearchResult> searchSimilar(float[] queryEmbedding, int maxResults, double minScore,
+                                                                    Set<String> chapters) {
+        if (!enabled) {
+            return chromaHttpClientService.searchSimilar(Constants.CHROMA_COLLECTION_NAME, queryEmbedding, maxResults, minScore);
+        }
+        List<String> existing = chromaHttpClientService.getAllCollectionNames();
+        Set<String> indexed = indexedChapters(existing);
+        List<String> routed = chapters.size() <= maxRoutedChapters
+                ? chapters.stream().filter(indexed::contains).toList()
+                : List.of();
+        List<String> targets = new ArrayList<>();
+        if (existing.contains(Constants.CHROMA_COLLECTION_NAME)) {
+            targets.add(Constants.CHROMA_COLLECTION_NAME);
+        }
+        (routed.isEmpty() ? indexed : routed).forEach(chapter -> targets.add(Constants.CHROMA_SHARD_PREFIX + chapter));
+        metrics.increment("rag.vector.shard.route", "mode", routed.isEmpty() ? "fanout" : "routed");
+        metrics.recordSize("rag.vector.shards.searched", targets.size());
+        logger.debug("[SHARDS] 🔀 Recherche sur {} collections (chapitres demandés : {})", targets.size(), chapters);
+
+        List<CompletableFuture<List<ChromaHttpClientService.SearchResult>>> searches = targets.stream()
+                .map(collection -> CompletableFuture.supplyAsync(() ->
+                        chromaHttpClientService.searchSimilar(collection, queryEmbedding, maxResults, minScore), searchExecutor))
+                .toList();
+        List<ChromaHttpClientService.SearchResult> merged = new ArrayList<>();
+        searches.forEach(search -> merged.addAll(search.join())); // une collection en erreur renvoie une liste vide
+        merged.sort(BY_RELEVANCE);
+        return merged.size() > maxResults ? new ArrayList<>(merged.subList(0, maxResults)) : merged;
+    }
+
+    /**
+     * Chapitres ayant une collection dans Chroma, restreints à ceux du catalogue SH (snapshot en cache)
+     * quand il est disponible : aucune requête vers une collection absente ou vide
+     */
+    private Set<String> indexedChapters(List<String> existingCollections) {
+        Set<String> chapters = new TreeSet<>();
+        existingCollections.stream()
+                .filter(name -> name.startsWith(Constants.CHROMA_SHARD_PREFIX))
+                .forEach(name -> chapters.add(name.substring(Constants.CHROMA_SHARD_PREFIX.length())));
+        try {
+            Set<String> catalogued = new HashSet<>();
+            shCodeCatalogue.getSnapshot().chapters().forEach(chapter -> catalogued.add(chapter.chapter()));
+            chapters.retainAll(catalogued);
+        } catch (Exception e) {
+            logger.warn("[SHARDS] ⚠️ Catalogue SH indisponible ({}), chapitres lus dans Chroma", e.getMessage());
+        }
+        return chapters;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        searchExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.Chunk;
+import com.example.chatbotrag.model.ProductMetadata;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Insertions JDBC par lots des chunks et de leurs métadonnées produit. Les chunks ont déjà
+ * leur ID (UUID_chunk_i) ; les ID IDENTITY de product_metadata sont générés par MySQL, ce
+ * qui empêche Hibernate de regrouper ces insertions. Appelé dans la transaction de
+ * l'appelant (JdbcTemplate partage la connexion du JpaTransactionManager).
+ */
+@Service
+public class ChunkBatchWriter {
+
+    static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_CHUNK_SQL =
+            "INSERT INTO chunk (id, text, sh_code, content_hash, document_id) VALUES (?, ?, ?, ?, ?)";
+
+    // code_sh est unique : comme l'ancien save() unitaire en échec, un doublon est ignoré (no-op
+    // sur la clé dupliquée). Pas d'INSERT IGNORE, qui masquerait aussi FK, NOT NULL et troncatures
+    private static final String INSERT_METADATA_SQL =
+            "INSERT INTO product_metadata (code_sh, description, type_produit, etat_produit, desossage, age_animal, "
+                    + "partie_anatomique, usage_specifique, droit_importation, tpi, tva, preferentiels, quotas, chunk_id, "
+                    + "mots_cles_normalises, synonymes) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+                    + "ON DUPLICATE KEY UPDATE id = id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ChunkBatchWriter(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public void insertChunks(List<Chunk> chunks, Long documentId) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_CHUNK_SQL, chunks, BATCH_SIZE, (ps, chunk) -> {
+            ps.setString(1, chunk.getId());
+            ps.setString(2, chunk.getText());
+            ps.setString(3, chunk.getShCode());
+            ps.setString(4, chunk.getContentHash());
+            ps.setLong(5, documentId);
+        });
+    }
+
+    /**
+     * Les métadonnées doivent référencer un chunk déjà inséré ; un code_sh déjà pris est ignoré,
+     * toute autre erreur fait échouer le lot (et la transaction de l'appelant)
+     */
+    public void insertMetadata(List<ProductMetadata> metadataList) {
+        if (metadataList.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_METADATA_SQL, metadataList, BATCH_SIZE, (ps, metadata) -> {
+            ps.setString(1, metadata.getCodeSh());
+            ps.setString(2, metadata.getDescription());
+            ps.setString(3, metadata.getTypeProduit());
+            ps.setString(4, metadata.getEtatProduit());
+            ps.setString(5, metadata.getDesossage());
+            ps.setString(6, metadata.getAgeAnimal());
+            ps.setString(7, metadata.getPartieAnatomique());
+            ps.setString(8, metadata.getUsageSpecifique());
+            setDouble(ps, 9, metadata.getDroitImportation());
+            setDouble(ps, 10, metadata.getTpi());
+            setDouble(ps, 11, metadata.getTva());
+            ps.setString(12, metadata.getPreferentiels());
+            ps.setString(13, metadata.getQuotas());
+            ps.setString(14, metadata.getChunk() == null ? null : metadata.getChunk().getId());
+            ps.setString(15, metadata.getMotsClesNormalises());
+            ps.setString(16, metadata.getSynonymes());
+        });
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, Double value) throws SQLException {
+        if (value == null) {
+            ps.setNull(index, Types.DOUBLE);
+        } else {
+            ps.setDouble(index, value);
+        }
+    }
+}
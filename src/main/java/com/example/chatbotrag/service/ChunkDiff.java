@@ -0,0 +1,121 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.Chunk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+
+/**
+ * Diff entre les chunks stockés d'un document et ceux de sa nouvelle version.
+ * Un chunk au texte identique (même SHA-256) est conservé tel quel ; parmi les autres,
+ * un nouveau chunk reprend l'ID d'un ancien chunk du même code SH (mise à jour),
+ * le reste est inséré ou supprimé. L'ordre du document départage les doublons.
+ */
+public final class ChunkDiff {
+
+    public record Update(Chunk existing, SHCodeDocumentParser.DocumentChunk replacement) {
+    }
+
+    private final List<Chunk> unchanged = new ArrayList<>();
+    private final List<Update> updates = new ArrayList<>();
+    private final List<SHCodeDocumentParser.DocumentChunk> inserts = new ArrayList<>();
+    private final List<Chunk> deletes = new ArrayList<>();
+
+    private ChunkDiff() {
+    }
+
+    public static ChunkDiff compute(List<Chunk> existingChunks, List<SHCodeDocumentParser.DocumentChunk> newChunks) {
+        ChunkDiff diff = new ChunkDiff();
+
+        // 1. Textes identiques
+        Map<String, Deque<Chunk>> byHash = new HashMap<>();
+        for (Chunk chunk : existingChunks) {
+            byHash.computeIfAbsent(hashOf(chunk), h -> new ArrayDeque<>()).add(chunk);
+        }
+        Set<Chunk> matched = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<SHCodeDocumentParser.DocumentChunk> changed = new ArrayList<>();
+        for (SHCodeDocumentParser.DocumentChunk chunk : newChunks) {
+            Deque<Chunk> sameText = byHash.get(ContentHash.of(chunk.getText()));
+            if (sameText != null && !sameText.isEmpty()) {
+                Chunk kept = sameText.poll();
+                diff.unchanged.add(kept);
+                matched.add(kept);
+            } else {
+                changed.add(chunk);
+            }
+        }
+
+        // 2. Même code SH : mise à jour en place, sinon insertion
+        Map<String, Deque<Chunk>> remainingByShCode = new LinkedHashMap<>();
+        List<Chunk> remainingWithoutCode = new ArrayList<>();
+        for (Chunk chunk : existingChunks) {
+            if (matched.contains(chunk)) {
+                continue;
+            }
+            String shCode = shCodeOf(chunk);
+            if (shCode == null) {
+                remainingWithoutCode.add(chunk);
+            } else {
+                remainingByShCode.computeIfAbsent(shCode, c -> new ArrayDeque<>()).add(chunk);
+            }
+        }
+        for (SHCodeDocumentParser.DocumentChunk chunk : changed) {
+            Deque<Chunk> sameCode = chunk.getShCode() == null ? null : remainingByShCode.get(chunk.getShCode());
+            if (sameCode != null && !sameCode.isEmpty()) {
+                diff.updates.add(new Update(sameCode.poll(), chunk));
+            } else {
+                diff.inserts.add(chunk);
+            }
+        }
+
+        // 3. Anciens chunks sans correspondance
+        remainingByShCode.values().forEach(diff.deletes::addAll);
+        diff.deletes.addAll(remainingWithoutCode);
+        return diff;
+    }
+
+    /**
+     * Empreinte stockée, ou recalculée pour les chunks ingérés avant l'ajout de la colonne
+     */
+    private static String hashOf(Chunk chunk) {
+        if (chunk.getContentHash() != null) {
+            return chunk.getContentHash();
+        }
+        return ContentHash.of(chunk.getText() == null ? "" : chunk.getText());
+    }
+
+    private static String shCodeOf(Chunk chunk) {
+        if (chunk.getShCode() != null) {
+            return chunk.getShCode();
+        }
+        if (chunk.getText() == null) {
+            return null;
+        }
+        Matcher matcher = SHCodeDocumentParser.SH_CODE_PATTERN.matcher(chunk.getText());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    public List<Chunk> getUnchanged() { return unchanged; }
+    public List<Update> getUpdates() { return updates; }
+    public List<SHCodeDocumentParser.DocumentChunk> getInserts() { return inserts; }
+    public List<Chunk> getDeletes() { return deletes; }
+
+    public boolean isEmpty() {
+        return updates.isEmpty() && inserts.isEmpty() && deletes.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "inchangés=" + unchanged.size() + ", mis à jour=" + updates.size()
+                + ", insérés=" + inserts.size() + ", supprimés=" + deletes.size();
+    }
+}
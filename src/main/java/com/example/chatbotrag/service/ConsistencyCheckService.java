@@ -0,0 +1,277 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.ToLongFunction;
+import java.util.zip.CRC32;
+
+/**
+ * Contrôle de cohérence Chroma / MySQL par empreintes de buckets : chaque chunk (ID, et
+ * SHA-256 du texte si {@code sync.consistency.compare-content}) est rangé dans un bucket
+ * selon le CRC32 de son ID, et chaque bucket est résumé par un XOR d'empreintes 64 bits et un
+ * compteur, indépendants de l'ordre de lecture. Seuls ces résumés sont gardés en mémoire ; les
+ * buckets divergents sont ensuite relus (MySQL par {@code MOD(CRC32(id), n)}, Chroma en ne
+ * gardant que leurs IDs) pour lister les chunks absents d'un côté ou au contenu différent.
+ * Côté Chroma l'empreinte vient de la métadonnée content_hash, jamais du texte, sauf pour les
+ * embeddings écrits avant elle (textes relus une fois, métadonnée complétée au passage).
+ */
+@Service
+public class ConsistencyCheckService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConsistencyCheckService.class);
+
+    private static final int PAGE_SIZE = 1000;
+    private static final int MAX_SAMPLE_IDS = 20;
+
+    public record ConsistencyReport(Instant checkedAt, long durationMs, int buckets, int mismatchedBuckets,
+                                    long chromaChunks, long mysqlChunks,
+                                    List<String> missingInMySql, long missingInMySqlCount,
+                                    List<String> missingInChroma, long missingInChromaCount,
+                                    List<String> contentMismatches, long contentMismatchCount) {
+
+        public boolean isConsistent() {
+            return mismatchedBuckets == 0;
+        }
+
+        public long getDrift() {
+            return missingInMySqlCount + missingInChromaCount + contentMismatchCount;
+        }
+    }
+
+    private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final boolean enabled;
+    private final int bucketCount;
+    private final boolean compareContent;
+
+    private volatile ConsistencyReport lastReport;
+
+    public ConsistencyCheckService(ChromaHttpClientService chromaHttpClientService,
+                                   ChromaShardRouter shardRouter,
+                                   JdbcTemplate jdbcTemplate,
+                                   RagMetrics metrics,
+                                   @Value("${sync.consistency.enabled:true}") boolean enabled,
+                                   @Value("${sync.consistency.buckets:256}") int bucketCount,
+                                   @Value("${sync.consistency.compare-content:false}") boolean compareContent) {
+        this.chromaHttpClientService = chromaHttpClientService;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.enabled = enabled;
+        this.bucketCount = bucketCount;
+        this.compareContent = compareContent;
+        // -1 tant qu'aucun contrôle n'a tourné
+        metrics.gauge("rag.sync.drift", "kind", "missing_in_mysql", this, s -> s.driftValue(ConsistencyReport::missingInMySqlCount));
+        metrics.gauge("rag.sync.drift", "kind", "missing_in_chroma", this, s -> s.driftValue(ConsistencyReport::missingInChromaCount));
+        metrics.gauge("rag.sync.drift", "kind", "content_mismatch", this, s -> s.driftValue(ConsistencyReport::contentMismatchCount));
+        metrics.gauge("rag.sync.drift", "kind", "mismatched_buckets", this, s -> s.driftValue(ConsistencyReport::mismatchedBuckets));
+    }
+
+    @Scheduled(initialDelayString = "${sync.consistency.initial-delay:PT1M}", fixedDelayString = "${sync.consistency.interval:PT5M}")
+    public void scheduledCheck() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            check();
+        } catch (Exception e) {
+            logger.warn("⚠️ Contrôle de cohérence Chroma / MySQL impossible : {}", e.getMessage());
+        }
+    }
+
+    public ConsistencyReport getLastReport() {
+        return lastReport;
+    }
+
+    public synchronized ConsistencyReport check() {
+        long start = System.nanoTime();
+        BucketDigests chroma = new BucketDigests(bucketCount);
+        BucketDigests mysql = new BucketDigests(bucketCount);
+        forEachChromaChunk(chroma::add);
+        forEachMySqlChunk(mysql::add);
+
+        Set<Integer> mismatched = chroma.mismatchedBuckets(mysql);
+        List<String> missingInMySql = new ArrayList<>();
+        List<String> missingInChroma = new ArrayList<>();
+        List<String> contentMismatches = new ArrayList<>();
+
+        if (!mismatched.isEmpty()) {
+            // Détail des seuls buckets divergents : Chroma relu en ne gardant que leurs IDs, MySQL par prédicat de bucket
+            Map<String, String> chromaChunks = new HashMap<>();
+            forEachChromaChunk((id, hash) -> {
+                if (mismatched.contains(bucketOf(id))) {
+                    chromaChunks.put(id, hash);
+                }
+            });
+            Map<String, String> mysqlChunks = mySqlChunksIn(mismatched);
+
+            chromaChunks.forEach((id, hash) -> {
+                if (!mysqlChunks.containsKey(id)) {
+                    missingInMySql.add(id);
+                } else if (!Objects.equals(hash, mysqlChunks.get(id))) {
+                    contentMismatches.add(id);
+                }
+            });
+            mysqlChunks.keySet().stream().filter(id -> !chromaChunks.containsKey(id)).forEach(missingInChroma::add);
+        }
+
+        ConsistencyReport report = new ConsistencyReport(Instant.now(), (System.nanoTime() - start) / 1_000_000,
+                bucketCount, mismatched.size(), chroma.total, mysql.total,
+                sample(missingInMySql), missingInMySql.size(),
+                sample(missingInChroma), missingInChroma.size(),
+                sample(contentMismatches), contentMismatches.size());
+        lastReport = report;
+
+        if (report.isConsistent()) {
+            logger.info("✅ Chroma / MySQL cohérents ({} chunks, {} ms)", report.chromaChunks(), report.durationMs());
+        } else {
+            logger.warn("⚠️ Divergence Chroma / MySQL : {} buckets, {} absents de MySQL, {} absents de Chroma, {} contenus différents",
+                    report.mismatchedBuckets(), report.missingInMySqlCount(), report.missingInChromaCount(), report.contentMismatchCount());
+        }
+        return report;
+    }
+
+    // Toutes les collections (base et chapitres SH) : les buckets ne dépendent que de l'ID du chunk
+    private void forEachChromaChunk(BiConsumer<String, String> consumer) {
+        for (String collection : shardRouter.storedCollections()) {
+            int offset = 0;
+            while (true) {
+                Map<String, String> page = compareContent
+                        ? contentHashesPage(collection, offset)
+                        : idsOnly(chromaHttpClientService.getChunkIdsPage(collection, offset, PAGE_SIZE));
+                page.forEach(consumer);
+                offset += page.size();
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Empreintes lues dans les métadonnées ; les embeddings écrits avant la métadonnée content_hash ont
+     * leur texte relu (ces IDs seulement) et la métadonnée complétée pour les contrôles suivants
+     */
+    private Map<String, String> contentHashesPage(String collection, int offset) {
+        Map<String, String> page = chromaHttpClientService.getContentHashesPage(collection, offset, PAGE_SIZE);
+        List<String> withoutHash = page.entrySet().stream().filter(entry -> entry.getValue() == null).map(Map.Entry::getKey).toList();
+        if (withoutHash.isEmpty()) {
+            return page;
+        }
+        Map<String, String> texts = chromaHttpClientService.getChunkTexts(collection, withoutHash);
+        Map<String, String> backfill = new HashMap<>();
+        for (String id : withoutHash) {
+            String hash = ContentHash.of(Objects.requireNonNullElse(texts.get(id), ""));
+            page.put(id, hash);
+            backfill.put(id, hash);
+        }
+        try {
+            chromaHttpClientService.updateContentHashes(collection, backfill);
+        } catch (Exception e) {
+            logger.debug("Métadonnée content_hash non complétée dans {} : {}", collection, e.getMessage());
+        }
+        return page;
+    }
+
+    private Map<String, String> mySqlChunksIn(Set<Integer> buckets) {
+        Map<String, String> hashes = new HashMap<>();
+        namedJdbcTemplate.query((compareContent
+                        ? "SELECT id, COALESCE(content_hash, SHA2(COALESCE(text, ''), 256)) FROM chunk"
+                        : "SELECT id, NULL FROM chunk") + " WHERE MOD(CRC32(id), :bucketCount) IN (:buckets)",
+                Map.of("bucketCount", bucketCount, "buckets", buckets),
+                rs -> {
+                    hashes.put(rs.getString(1), rs.getString(2));
+                });
+        return hashes;
+    }
+
+    private void forEachMySqlChunk(BiConsumer<String, String> consumer) {
+        // Pagination par clé ; SHA2 recalcule l'empreinte des chunks ingérés avant la colonne content_hash
+        String sql = compareContent
+                ? "SELECT id, COALESCE(content_hash, SHA2(COALESCE(text, ''), 256)) AS hash FROM chunk WHERE id > ? ORDER BY id LIMIT ?"
+                : "SELECT id, NULL AS hash FROM chunk WHERE id > ? ORDER BY id LIMIT ?";
+        String lastId = "";
+        while (true) {
+            List<String[]> page = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)}, lastId, PAGE_SIZE);
+            page.forEach(row -> consumer.accept(row[0], row[1]));
+            if (page.size() < PAGE_SIZE) {
+                return;
+            }
+            lastId = page.get(page.size() - 1)[0];
+        }
+    }
+
+    // Même valeur que MOD(CRC32(id), n) côté MySQL (IDs ASCII)
+    private int bucketOf(String id) {
+        CRC32 crc = new CRC32();
+        crc.update(id.getBytes(StandardCharsets.UTF_8));
+        return (int) (crc.getValue() % bucketCount);
+    }
+
+    private double driftValue(ToLongFunction<ConsistencyReport> field) {
+        ConsistencyReport report = lastReport;
+        return report == null ? -1 : field.applyAsLong(report);
+    }
+
+    private static Map<String, String> idsOnly(List<String> ids) {
+        Map<String, String> page = new HashMap<>();
+        ids.forEach(id -> page.put(id, null));
+        return page;
+    }
+
+    private static List<String> sample(List<String> ids) {
+        return ids.size() <= MAX_SAMPLE_IDS ? ids : new ArrayList<>(ids.subList(0, MAX_SAMPLE_IDS));
+    }
+
+    /**
+     * XOR des empreintes et nombre de chunks par bucket
+     */
+    private final class BucketDigests {
+        private final long[] digests;
+        private final long[] counts;
+        private long total;
+
+        BucketDigests(int buckets) {
+            this.digests = new long[buckets];
+            this.counts = new long[buckets];
+        }
+
+        void add(String id, String contentHash) {
+            String itemHash = contentHash == null ? ContentHash.of(id) : ContentHash.of(id, contentHash);
+            int bucket = bucketOf(id);
+            digests[bucket] ^= Long.parseUnsignedLong(itemHash.substring(0, 16), 16);
+            counts[bucket]++;
+            total++;
+        }
+
+        Set<Integer> mismatchedBuckets(BucketDigests other) {
+            Set<Integer> mismatched = new HashSet<>();
+            for (int i = 0; i < digests.length; i++) {
+                if (digests[i] != other.digests[i] || counts[i] != other.counts[i]) {
+                    mismatched.add(i);
+                }
+            }
+            return mismatched;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.ProductMetadata;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Construit le contexte documentaire du prompt Mistral dans un budget de tokens :
+ * phrases types retirées, chunks redondants écartés, tri par score fusionné, et le chunk
+ * dont le code SH correspond le mieux à la question toujours gardé en premier.
+ * Sur Ollama CPU, le temps d'évaluation du prompt est proportionnel à sa longueur.
+ */
+@Service
+public class ContextPacker {
+
+    public record PackedContext(List<String> chunks, int estimatedTokens, int droppedChunks) {}
+
+    /**
+     * Phrases répétées dans chaque fiche tarifaire, sans information pour la réponse
+     * (tolérantes au mojibake des extractions PDF : "à" peut sortir en "Ã" + espace insécable,
+     * l'apostrophe en "’" ou "â€™", d'où ".{1,2}" et ".{1,3}" à leur place)
+     */
+    static final List<Pattern> BOILERPLATE = List.of(
+            Pattern.compile("L.{1,3}importation au Maroc des produits relatifs .{1,2} cette position est soumise[^\\n]*?en vigueur\\.?"),
+            Pattern.compile("Les mesures tarifaires applicables .{1,2} cette position sont les droits de douanes suivants\\s*:"));
+
+    private static final Pattern SH_CODE = Pattern.compile("\\b(\\d{10})\\b");
+    private static final Pattern QUESTION_CODE = Pattern.compile("\\b(\\d{4,10})\\b");
+    private static final Pattern BLANK_LINES = Pattern.compile("\\n[ \\t]*(\\n[ \\t]*)+");
+
+    // Part des lignes d'un chunk déjà présentes au-delà de laquelle il est redondant. Comparaison limitée
+    // aux chunks du même code SH : deux positions différentes partagent la plupart de leurs lignes d'accords
+    private static final double OVERLAP_THRESHOLD = 0.8;
+
+    private final int tokenBudget;
+
+    public ContextPacker(@Value("${chat.context.token-budget:1200}") int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    public PackedContext pack(String question, List<HybridSearchService.HybridSearchResult> results) {
+        List<Candidate> candidates = new ArrayList<>(results.size());
+        Set<String> seenIds = new HashSet<>();
+        for (HybridSearchService.HybridSearchResult result : results) {
+            if (result.getText() == null || result.getText().isBlank()
+                    || (result.getChunkId() != null && !seenIds.add(result.getChunkId()))) {
+                continue;
+            }
+            String text = stripBoilerplate(result.getText());
+            candidates.add(new Candidate(text, result.getTotalScore(), shCodeOf(result), lines(text), estimateTokens(text)));
+        }
+        candidates.sort(Comparator.comparingDouble(Candidate::score).reversed());
+
+        Candidate pinned = bestShCodeMatch(question, candidates);
+        if (pinned != null) {
+            candidates.remove(pinned);
+            candidates.add(0, pinned);
+        }
+
+        List<String> chunks = new ArrayList<>();
+        Map<String, Set<String>> packedLinesByCode = new HashMap<>();
+        Set<String> packedLines = new HashSet<>();
+        int tokens = 0;
+        int dropped = 0;
+        for (Candidate candidate : candidates) {
+            boolean mustKeep = candidate == pinned;
+            Set<String> comparable = candidate.shCode() == null
+                    ? packedLines : packedLinesByCode.getOrDefault(candidate.shCode(), Set.of());
+            if (!mustKeep && (isRedundant(candidate, comparable) || tokens + candidate.tokens() > tokenBudget)) {
+                dropped++;
+                continue;
+            }
+            chunks.add(candidate.text());
+            packedLines.addAll(candidate.lines());
+            if (candidate.shCode() != null) {
+                packedLinesByCode.computeIfAbsent(candidate.shCode(), code -> new HashSet<>()).addAll(candidate.lines());
+            }
+            tokens += candidate.tokens();
+        }
+        return new PackedContext(chunks, tokens, dropped);
+    }
+
+    /**
+     * Estimation des tokens Mistral sans tokenizer : ~3,5 caractères par token en français,
+     * chaque chiffre compte pour un token (le tokenizer de Mistral découpe les nombres chiffre par chiffre)
+     */
+    static int estimateTokens(String text) {
+        int digits = 0;
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.isDigit(text.charAt(i))) {
+                digits++;
+            }
+        }
+        return (int) Math.ceil((text.length() - digits) / 3.5) + digits;
+    }
+
+    static String stripBoilerplate(String text) {
+        String stripped = text;
+        for (Pattern pattern : BOILERPLATE) {
+            stripped = pattern.matcher(stripped).replaceAll("");
+        }
+        return BLANK_LINES.matcher(stripped).replaceAll("\n\n").strip();
+    }
+
+    /**
+     * Chunk à garder en priorité : code SH cité en entier dans la question, sinon le code
+     * partageant le plus long préfixe (chapitre, position...) avec un nombre de la question,
+     * sinon le mieux classé des chunks portant un code SH
+     */
+    private static Candidate bestShCodeMatch(String question, List<Candidate> candidates) {
+        List<String> questionCodes = new ArrayList<>();
+        Matcher matcher = QUESTION_CODE.matcher(question == null ? "" : question);
+        while (matcher.find()) {
+            questionCodes.add(matcher.group(1));
+        }
+        Candidate best = null;
+        int bestPrefix = 0;
+        for (Candidate candidate : candidates) {
+            if (candidate.shCode() == null) {
+                continue;
+            }
+            int prefix = 0;
+            for (String code : questionCodes) {
+                if (candidate.shCode().startsWith(code)) {
+                    prefix = Math.max(prefix, code.length());
+                }
+            }
+            if (best == null || prefix > bestPrefix) {
+                best = candidate;
+                bestPrefix = prefix;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isRedundant(Candidate candidate, Set<String> packedLines) {
+        if (candidate.lines().isEmpty()) {
+            return true;
+        }
+        long shared = candidate.lines().stream().filter(packedLines::contains).count();
+        return shared >= OVERLAP_THRESHOLD * candidate.lines().size();
+    }
+
+    private static String shCodeOf(HybridSearchService.HybridSearchResult result) {
+        ProductMetadata metadata = result.getMetadata();
+        if (metadata != null && metadata.getCodeSh() != null) {
+            return metadata.getCodeSh();
+        }
+        Matcher matcher = SH_CODE.matcher(result.getText());
+        return matcher.find() ? matcher.group(1) : null;
+    }
+
+    private static Set<String> lines(String text) {
+        Set<String> lines = new LinkedHashSet<>();
+        for (String line : text.split("\\n")) {
+            String normalized = line.strip().toLowerCase();
+            if (!normalized.isEmpty()) {
+                lines.add(normalized);
+            }
+        }
+        return lines;
+    }
+
+    private record Candidate(String text, double score, String shCode, Set<String> lines, int tokens) {}
+}
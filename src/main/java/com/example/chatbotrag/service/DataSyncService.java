@@ -1,163 +1,287 @@
 package com.example.chatbotrag.service;
 
-import com.example.chatbotrag.config.Constants;
 import com.example.chatbotrag.model.Chunk;
 import com.example.chatbotrag.model.Document;
 import com.example.chatbotrag.repository.ChunkRepository;
 import com.example.chatbotrag.repository.DocumentRepository;
 import dev.langchain4j.store.embedding.chroma.ChromaEmbeddingStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
 
 @Service
 public class DataSyncService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DataSyncService.class);
+
+    // IDs read from Chroma per page, and chunks fetched / inserted per batch
+    private static final int ID_PAGE_SIZE = 1000;
+    private static final int FETCH_BATCH_SIZE = 100;
+
     private final ChromaEmbeddingStore embeddingStore;
     private final DocumentRepository documentRepository;
     private final ChunkRepository chunkRepository;
     private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
+    private final ConsistencyCheckService consistencyCheckService;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AtomicReference<SyncProgress> lastSync = new AtomicReference<>();
 
     public DataSyncService(
             ChromaEmbeddingStore embeddingStore,
             DocumentRepository documentRepository,
             ChunkRepository chunkRepository,
-            ChromaHttpClientService chromaHttpClientService) {
+            ChromaHttpClientService chromaHttpClientService,
+            ChromaShardRouter shardRouter,
+            ConsistencyCheckService consistencyCheckService,
+            ChunkBatchWriter chunkBatchWriter,
+            ShCodeCatalogueService shCodeCatalogue,
+            NamedParameterJdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager) {
         this.embeddingStore = embeddingStore;
         this.documentRepository = documentRepository;
         this.chunkRepository = chunkRepository;
         this.chromaHttpClientService = chromaHttpClientService;
+        this.shardRouter = shardRouter;
+        this.consistencyCheckService = consistencyCheckService;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
      * Synchronizes data from ChromaDB to MySQL database
-     * This method recovers chunks that exist in ChromaDB but are missing from MySQL
+     * This method recovers chunks that exist in ChromaDB but are missing from MySQL.
+     * Chroma IDs are read page by page, each page is diffed against MySQL with a single
+     * IN query, and the missing chunks are fetched with batched /get calls then inserted
+     * with JDBC batches (one transaction per batch).
      */
-    @Transactional
     public String syncChromaToMySQL() {
+        SyncProgress progress = new SyncProgress();
+        SyncProgress previous = lastSync.get();
+        if ((previous != null && !previous.isFinished()) || !lastSync.compareAndSet(previous, progress)) {
+            return "Synchronization already running";
+        }
+
         try {
-            System.out.println("[SYNC] Starting ChromaDB to MySQL synchronization...");
-            
-            // Get all chunks from ChromaDB (using the correct collection name)
-            List<String> chromaChunkIds = chromaHttpClientService.getAllChunkIds(Constants.CHROMA_COLLECTION_NAME);
-            System.out.println("[SYNC] Found " + chromaChunkIds.size() + " chunks in ChromaDB");
-            
-            if (chromaChunkIds.isEmpty()) {
-                return "No chunks found in ChromaDB to synchronize";
+            logger.info("[SYNC] Starting ChromaDB to MySQL synchronization...");
+            // Collection de base et, si partitionnement, une collection par chapitre SH
+            List<String> collections = shardRouter.storedCollections();
+            long chromaTotal = 0;
+            for (String collection : collections) {
+                chromaTotal += chromaHttpClientService.countEmbeddings(collection);
             }
+            progress.chromaTotal = chromaTotal;
+            logger.info("[SYNC] Found {} chunks in ChromaDB", progress.chromaTotal);
 
-            // Check which chunks are missing from MySQL
-            List<String> existingChunkIds = chunkRepository.findAll().stream()
-                    .map(Chunk::getId)
-                    .toList();
-            
-            List<String> missingChunkIds = chromaChunkIds.stream()
-                    .filter(id -> !existingChunkIds.contains(id))
-                    .toList();
-            
-            System.out.println("[SYNC] Found " + missingChunkIds.size() + " chunks missing from MySQL");
-            
-            if (missingChunkIds.isEmpty()) {
-                return "All chunks are already synchronized";
+            if (progress.chromaTotal == 0) {
+                return progress.finish("No chunks found in ChromaDB to synchronize");
             }
 
-            // Create a generic document for orphaned chunks
-            Document genericDocument = new Document();
-            genericDocument.setName("Recovered_Document_" + UUID.randomUUID().toString().substring(0, 8));
-            genericDocument.setLanguage("unknown");
-            genericDocument.setChunks(new ArrayList<>());
-            
-            Document savedDocument = documentRepository.save(genericDocument);
-            System.out.println("[SYNC] Created generic document: " + savedDocument.getName() + " (ID: " + savedDocument.getId() + ")");
-
-            // Recover chunks from ChromaDB
-            int recoveredCount = 0;
-            for (String chunkId : missingChunkIds) {
-                try {
-                    String chunkText = chromaHttpClientService.getChunkText(chunkId, Constants.CHROMA_COLLECTION_NAME);
-                    if (chunkText != null && !chunkText.trim().isEmpty()) {
-                        Chunk chunk = new Chunk();
-                        chunk.setId(chunkId);
-                        chunk.setText(chunkText);
-                        chunk.setDocument(savedDocument);
-                        
-                        chunkRepository.save(chunk);
-                        savedDocument.getChunks().add(chunk);
-                        recoveredCount++;
-                        
-                        System.out.println("[SYNC] Recovered chunk: " + chunkId.substring(0, Math.min(20, chunkId.length())) + "...");
+            Long recoveredDocumentId = null;
+            for (String collection : collections) {
+                int offset = 0;
+                while (true) {
+                    List<String> pageIds = chromaHttpClientService.getChunkIdsPage(collection, offset, ID_PAGE_SIZE);
+                    if (pageIds.isEmpty()) {
+                        break;
+                    }
+                    offset += pageIds.size();
+                    progress.scanned.addAndGet(pageIds.size());
+
+                    List<String> missingIds = findMissingChunkIds(pageIds);
+                    progress.missing.addAndGet(missingIds.size());
+
+                    for (int from = 0; from < missingIds.size(); from += FETCH_BATCH_SIZE) {
+                        List<String> batch = missingIds.subList(from, Math.min(from + FETCH_BATCH_SIZE, missingIds.size()));
+                        try {
+                            Map<String, String> texts = chromaHttpClientService.getChunkTexts(collection, batch);
+                            texts.values().removeIf(text -> text == null || text.trim().isEmpty());
+                            progress.failed.addAndGet(batch.size() - texts.size());
+                            if (texts.isEmpty()) {
+                                continue;
+                            }
+                            if (recoveredDocumentId == null) {
+                                recoveredDocumentId = createRecoveredDocument();
+                            }
+                            insertChunks(texts, recoveredDocumentId);
+                            progress.recovered.addAndGet(texts.size());
+                        } catch (Exception e) {
+                            progress.failed.addAndGet(batch.size());
+                            logger.warn("[SYNC] Failed to recover {} chunks starting at {} from {}", batch.size(), batch.get(0), collection, e);
+                        }
+                    }
+
+                    logger.info("[SYNC] {}", progress);
+                    if (pageIds.size() < ID_PAGE_SIZE) {
+                        break;
                     }
-                } catch (Exception e) {
-                    System.err.println("[SYNC] Failed to recover chunk " + chunkId + ": " + e.getMessage());
                 }
             }
 
-            documentRepository.save(savedDocument);
-            
-            String result = "Synchronization completed! Recovered " + recoveredCount + " chunks from ChromaDB to MySQL";
-            System.out.println("[SYNC] " + result);
-            return result;
-            
+            if (progress.missing.get() == 0) {
+                return progress.finish("All chunks are already synchronized");
+            }
+            return progress.finish("Synchronization completed! Recovered " + progress.recovered.get() + " chunks from ChromaDB to MySQL");
+
         } catch (Exception e) {
             String error = "Synchronization failed: " + e.getMessage();
-            System.err.println("[SYNC] " + error);
-            e.printStackTrace();
-            return error;
+            logger.error("[SYNC] {}", error, e);
+            return progress.finish(error);
         }
     }
 
+    /**
+     * Progress of the running (or last) synchronization, null if none ran since startup
+     */
+    public SyncProgress getSyncProgress() {
+        return lastSync.get();
+    }
+
+    private List<String> findMissingChunkIds(List<String> chromaIds) {
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(
+                "SELECT id FROM chunk WHERE id IN (:ids)", Map.of("ids", chromaIds), String.class));
+        return chromaIds.stream().filter(id -> !existing.contains(id)).toList();
+    }
+
+    private Long createRecoveredDocument() {
+        // Create a generic document for orphaned chunks
+        Document genericDocument = new Document();
+        genericDocument.setName("Recovered_Document_" + UUID.randomUUID().toString().substring(0, 8));
+        genericDocument.setLanguage("unknown");
+        genericDocument.setChunks(new ArrayList<>());
+
+        Document savedDocument = documentRepository.save(genericDocument);
+        logger.info("[SYNC] Created generic document: {} (ID: {})", savedDocument.getName(), savedDocument.getId());
+        return savedDocument.getId();
+    }
+
+    private void insertChunks(Map<String, String> texts, Long documentId) {
+        List<Chunk> chunks = new ArrayList<>(texts.size());
+        texts.forEach((id, text) -> {
+            Matcher matcher = SHCodeDocumentParser.SH_CODE_PATTERN.matcher(text);
+            Chunk chunk = new Chunk();
+            chunk.setId(id);
+            chunk.setText(text);
+            chunk.setShCode(matcher.find() ? matcher.group(1) : null);
+            chunk.setContentHash(ContentHash.of(text));
+            chunks.add(chunk);
+        });
+        transactionTemplate.executeWithoutResult(status -> chunkBatchWriter.insertChunks(chunks, documentId));
+        shCodeCatalogue.invalidate();
+    }
+
     /**
      * Clears all data from both ChromaDB and MySQL
      */
     @Transactional
     public String clearAllData() {
         try {
-            System.out.println("[SYNC] Clearing all data from both stores...");
+            logger.info("[SYNC] Clearing all data from both stores...");
             
             // Clear MySQL
             chunkRepository.deleteAll();
             documentRepository.deleteAll();
+            shCodeCatalogue.invalidate();
             
-            // Clear ChromaDB
-            chromaHttpClientService.clearCollection(Constants.CHROMA_COLLECTION_NAME);
+            // Clear ChromaDB (every shard collection)
+            shardRouter.storedCollections().forEach(chromaHttpClientService::clearCollection);
             
             String result = "All data cleared from both ChromaDB and MySQL";
-            System.out.println("[SYNC] " + result);
+            logger.info("[SYNC] {}", result);
             return result;
             
         } catch (Exception e) {
             String error = "Failed to clear data: " + e.getMessage();
-            System.err.println("[SYNC] " + error);
+            logger.error("[SYNC] {}", error, e);
             return error;
         }
     }
 
     /**
-     * Gets synchronization status
+     * Gets synchronization status from the last scheduled consistency report (see ConsistencyCheckService);
+     * GET /sync/consistency?refresh=true runs a new check
      */
     public String getSyncStatus() {
         try {
-            long mysqlChunkCount = chunkRepository.count();
             long mysqlDocumentCount = documentRepository.count();
-            
-            List<String> chromaChunkIds = chromaHttpClientService.getAllChunkIds(Constants.CHROMA_COLLECTION_NAME);
-            long chromaChunkCount = chromaChunkIds.size();
-            
+            ConsistencyCheckService.ConsistencyReport report = consistencyCheckService.getLastReport();
+            if (report == null) {
+                return String.format("Sync Status:\nMySQL - Documents: %d\nNo consistency check has run yet", mysqlDocumentCount);
+            }
+
             return String.format(
                 "Sync Status:\n" +
                 "MySQL - Documents: %d, Chunks: %d\n" +
                 "ChromaDB - Chunks: %d\n" +
+                "Drift - Missing in MySQL: %d, Missing in ChromaDB: %d, Content mismatches: %d\n" +
                 "Sync Status: %s",
                 mysqlDocumentCount,
-                mysqlChunkCount,
-                chromaChunkCount,
-                (mysqlChunkCount == chromaChunkCount) ? "SYNCHRONIZED" : "OUT OF SYNC"
+                report.mysqlChunks(),
+                report.chromaChunks(),
+                report.missingInMySqlCount(),
+                report.missingInChromaCount(),
+                report.contentMismatchCount(),
+                report.isConsistent() ? "SYNCHRONIZED" : "OUT OF SYNC"
             );
         } catch (Exception e) {
             return "Failed to get sync status: " + e.getMessage();
         }
     }
+
+    /**
+     * Counters of a ChromaDB to MySQL synchronization, readable while it runs
+     */
+    public static class SyncProgress {
+        private final Instant startedAt = Instant.now();
+        private volatile Instant finishedAt;
+        private volatile long chromaTotal;
+        private volatile String result;
+        private final AtomicLong scanned = new AtomicLong();
+        private final AtomicLong missing = new AtomicLong();
+        private final AtomicLong recovered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+
+        private String finish(String result) {
+            this.result = result;
+            this.finishedAt = Instant.now();
+            logger.info("[SYNC] {} ({})", result, this);
+            return result;
+        }
+
+        public boolean isFinished() { return finishedAt != null; }
+        public Instant getStartedAt() { return startedAt; }
+        public Instant getFinishedAt() { return finishedAt; }
+        public long getChromaTotal() { return chromaTotal; }
+        public long getScanned() { return scanned.get(); }
+        public long getMissing() { return missing.get(); }
+        public long getRecovered() { return recovered.get(); }
+        public long getFailed() { return failed.get(); }
+        public String getResult() { return result; }
+
+        @Override
+        public String toString() {
+            return "scanned " + scanned.get() + "/" + chromaTotal + ", missing " + missing.get()
+                    + ", recovered " + recovered.get() + ", failed " + failed.get();
+        }
+    }
 }
@@ -1,70 +1,190 @@
 package com.example.chatbotrag.service;
 
-import com.example.chatbotrag.config.Constants;
 import com.example.chatbotrag.model.Chunk;
-import com.example.chatbotrag.model.Document;
 import com.example.chatbotrag.repository.ChunkRepository;
-import com.example.chatbotrag.repository.DocumentRepository;
 import com.example.chatbotrag.repository.ProductMetadataRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Timestamp;
+import java.time.Instant;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 @Service
 public class DeleteService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DeleteService.class);
+
+    public enum DeletionStatus { DELETED, IN_PROGRESS, NOT_FOUND }
+
+    // Chunks supprimés par lot : un lot = un delete Chroma + une courte transaction MySQL
+    static final int DELETE_BATCH_SIZE = 1000;
+
     private final ChunkRepository chunkRepository;
-    private final DocumentRepository documentRepository;
     private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
     private final ProductMetadataRepository productMetadataRepository;
-    private static final String COLLECTION_NAME = Constants.CHROMA_COLLECTION_NAME;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // Suppressions de gros documents, une à la fois en arrière-plan
+    private final ExecutorService deletionExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "document-deletion");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Set<Long> deletionsInProgress = ConcurrentHashMap.newKeySet();
 
     public DeleteService(ChunkRepository chunkRepository,
-                         DocumentRepository documentRepository,
                          ChromaHttpClientService chromaHttpClientService,
-                         ProductMetadataRepository productMetadataRepository) {
+                         ChromaShardRouter shardRouter,
+                         ProductMetadataRepository productMetadataRepository,
+                         ShCodeCatalogueService shCodeCatalogue,
+                         NamedParameterJdbcTemplate jdbcTemplate,
+                         PlatformTransactionManager transactionManager) {
         this.chunkRepository = chunkRepository;
-        this.documentRepository = documentRepository;
         this.chromaHttpClientService = chromaHttpClientService;
+        this.shardRouter = shardRouter;
         this.productMetadataRepository = productMetadataRepository;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // ✅ Supprime un chunk + son embedding
     public void deleteChunkById(String chunkId) {
         // Supprimer les métadonnées avant le chunk pour éviter des erreurs de contrainte.
         productMetadataRepository.findByChunkId(chunkId).ifPresent(productMetadataRepository::delete);
-        chromaHttpClientService.deleteEmbeddingById(COLLECTION_NAME, chunkId);
+        String shCode = chunkRepository.findById(chunkId).map(Chunk::getShCode).orElse(null);
+        chromaHttpClientService.deleteEmbeddingById(shardRouter.collectionFor(shCode), chunkId);
         chunkRepository.deleteById(chunkId);
-        System.out.println("❌ Chunk supprimé : " + chunkId);
+        shCodeCatalogue.invalidate();
+        logger.info("❌ Chunk supprimé : {}", chunkId);
     }
 
-    // ✅ Supprime un document + ses chunks + embeddings
-    public void deleteDocumentById(String documentIdStr) {
+    /**
+     * ✅ Supprime un document + ses chunks + embeddings, par lots de {@value #DELETE_BATCH_SIZE} chunks.
+     * Le document est d'abord marqué ; au-delà d'un lot la suppression continue en arrière-plan
+     * et reprend au redémarrage si elle est interrompue.
+     */
+    public DeletionStatus deleteDocumentById(String documentIdStr) {
+        Long documentId;
         try {
-            Long documentId = Long.parseLong(documentIdStr);
-            documentRepository.findById(documentId).ifPresentOrElse(document -> {
-                List<String> chunkIds = document.getChunks().stream()
-                        .map(Chunk::getId)
-                        .collect(Collectors.toList());
-
-                try {
-                    if (!chunkIds.isEmpty()) {
-                        // Supprimer les métadonnées associées avant.
-                        chunkIds.forEach(id -> productMetadataRepository.findByChunkId(id).ifPresent(productMetadataRepository::delete));
-                        chromaHttpClientService.deleteEmbeddingsByIds(COLLECTION_NAME, chunkIds);
-                    }
-                } catch (Exception e) {
-                    System.err.println("[WARN] Failed to delete embeddings from ChromaDB: " + e.getMessage());
-                    System.out.println("[INFO] Continuing with database cleanup...");
-                }
-                documentRepository.delete(document); // cascade = chunks supprimés
-                System.out.println("🧼 Document supprimé avec " + chunkIds.size() + " chunks : " + documentId);
-            }, () -> {
-                System.out.println("⚠️ Document introuvable : " + documentIdStr);
-            });
+            documentId = Long.parseLong(documentIdStr);
         } catch (NumberFormatException e) {
-            System.err.println("❌ ID de document invalide : " + documentIdStr);
+            logger.warn("❌ ID de document invalide : {}", documentIdStr);
+            return DeletionStatus.NOT_FOUND;
+        }
+
+        int marked = jdbcTemplate.update(
+                "UPDATE document SET deletion_requested_at = COALESCE(deletion_requested_at, :now) WHERE id = :id",
+                Map.of("now", Timestamp.from(Instant.now()), "id", documentId));
+        if (marked == 0) {
+            logger.warn("⚠️ Document introuvable : {}", documentIdStr);
+            return DeletionStatus.NOT_FOUND;
+        }
+
+        Long chunkCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM chunk WHERE document_id = :id",
+                Map.of("id", documentId), Long.class);
+        if (chunkCount != null && chunkCount > DELETE_BATCH_SIZE) {
+            submitDeletion(documentId);
+            logger.info("⏳ Suppression en arrière-plan du document {} ({} chunks)", documentId, chunkCount);
+            return DeletionStatus.IN_PROGRESS;
+        }
+        if (!deletionsInProgress.add(documentId)) {
+            return DeletionStatus.IN_PROGRESS; // déjà en cours en arrière-plan
+        }
+        try {
+            purgeDocument(documentId);
+        } finally {
+            deletionsInProgress.remove(documentId);
+        }
+        return DeletionStatus.DELETED;
+    }
+
+    /**
+     * Reprend les suppressions interrompues (arrêt pendant un job, échec Chroma)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingDeletions() {
+        try {
+            List<Long> pending = jdbcTemplate.queryForList(
+                    "SELECT id FROM document WHERE deletion_requested_at IS NOT NULL", Map.of(), Long.class);
+            pending.forEach(this::submitDeletion);
+            if (!pending.isEmpty()) {
+                logger.info("🔁 Reprise de {} suppression(s) de document interrompue(s)", pending.size());
+            }
+        } catch (Exception e) {
+            logger.warn("⚠️ Reprise des suppressions impossible : {}", e.getMessage(), e);
         }
     }
+
+    private void submitDeletion(Long documentId) {
+        if (!deletionsInProgress.add(documentId)) {
+            return;
+        }
+        deletionExecutor.submit(() -> {
+            try {
+                purgeDocument(documentId);
+            } catch (Exception e) {
+                // Le document reste marqué : une nouvelle demande ou le prochain démarrage reprend où on s'est arrêté
+                logger.error("❌ Suppression du document {} interrompue : {}", documentId, e.getMessage(), e);
+            } finally {
+                deletionsInProgress.remove(documentId);
+            }
+        });
+    }
+
+    /**
+     * Lots idempotents : chaque lot relit les chunks restants, une reprise repart donc de là où l'on s'est arrêté.
+     * Boucle jusqu'à ce qu'il ne reste aucun chunk (y compris ceux ajoutés entre-temps), chacun retiré de Chroma
+     * avant MySQL ; le document n'est supprimé qu'ensuite
+     */
+    void purgeDocument(Long documentId) {
+        Map<String, Object> byDocument = Map.of("documentId", documentId);
+        int deleted = 0;
+        while (true) {
+            List<String[]> rows = jdbcTemplate.query(
+                    "SELECT id, sh_code FROM chunk WHERE document_id = :documentId ORDER BY id LIMIT " + DELETE_BATCH_SIZE,
+                    byDocument, (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)});
+            if (rows.isEmpty()) {
+                break;
+            }
+            List<String> chunkIds = rows.stream().map(row -> row[0]).toList();
+            // Chroma d'abord (une requête par collection) : en cas d'échec, MySQL garde les chunks et la reprise réessaie ce lot
+            shardRouter.groupByCollection(rows, row -> row[1]).forEach((collection, shardRows) ->
+                    chromaHttpClientService.deleteEmbeddingsByIds(collection, shardRows.stream().map(row -> row[0]).toList()));
+            Map<String, Object> byIds = Map.of("ids", chunkIds);
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.update("DELETE FROM product_metadata WHERE chunk_id IN (:ids)", byIds);
+                jdbcTemplate.update("DELETE FROM chunk WHERE id IN (:ids)", byIds);
+            });
+            deleted += chunkIds.size();
+            shCodeCatalogue.invalidate();
+            logger.debug("🧹 Document {} : {} chunks supprimés", documentId, deleted);
+        }
+
+        // Plus aucun chunk : une mise à jour concurrente est refusée une fois le document marqué
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.update("DELETE FROM document WHERE id = :documentId", byDocument));
+        logger.info("🧼 Document supprimé avec {} chunks : {}", deleted, documentId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deletionExecutor.shutdownNow();
+    }
 }
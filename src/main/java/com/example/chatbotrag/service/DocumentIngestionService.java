@@ -1,30 +1,38 @@
 package com.example.chatbotrag.service;
 
-import com.example.chatbotrag.config.Constants;
+import com.example.chatbotrag.metrics.RagMetrics;
 import com.example.chatbotrag.model.Chunk;
 import com.example.chatbotrag.model.Document; // Votre entité JPA Document
 import com.example.chatbotrag.model.ProductMetadata;
-import com.example.chatbotrag.repository.ProductMetadataRepository;
 import com.example.chatbotrag.repository.ChunkRepository;
 import com.example.chatbotrag.repository.DocumentRepository;
 
-// Imports pour Apache Tika
-import org.apache.tika.Tika;
-import org.apache.tika.exception.TikaException;
-
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.store.embedding.chroma.ChromaEmbeddingStore;
 
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.io.InputStreamSource;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 // Imports pour l'ancienne méthode PDF (deviennent obsolètes si Tika est utilisé pour tout)
 import org.apache.pdfbox.pdmodel.PDDocument;
@@ -34,16 +42,23 @@ import org.apache.pdfbox.text.PDFTextStripper;
 @Service
 public class DocumentIngestionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(DocumentIngestionService.class);
+
     private final ProductMetadataExtractionService metadataExtractionService;
-    private final ProductMetadataRepository productMetadataRepository;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final TransactionTemplate transactionTemplate;
 
     private final ChromaEmbeddingStore embeddingStore;
-    private final OllamaClientService ollamaClient;
     private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
     private final DocumentRepository documentRepository;
     private final ChunkRepository chunkRepository;
     private final LanguageDetectionService languageDetectionService;
     private final SHCodeDocumentParser shCodeParser;
+    private final StreamingDocumentExtractor streamingExtractor;
+    private final EmbeddingCacheService embeddingCache;
+    private final RagMetrics metrics;
 
     private static final int CHUNK_SIZE = 1000;
     private static String lastDetectedLanguage = "en"; // Rappel: attention avec la concurrence
@@ -51,23 +66,33 @@ public class DocumentIngestionService {
     public DocumentIngestionService(
             ChromaEmbeddingStore embeddingStore,
             ChromaHttpClientService chromaHttpClientService,
-            OllamaClientService ollamaClient,
+            ChromaShardRouter shardRouter,
             LanguageDetectionService languageDetectionService,
             DocumentRepository documentRepository,
             ChunkRepository chunkRepository,
 SHCodeDocumentParser shCodeParser,
             ProductMetadataExtractionService metadataExtractionService,
-            ProductMetadataRepository productMetadataRepository) {
+            ChunkBatchWriter chunkBatchWriter,
+            ShCodeCatalogueService shCodeCatalogue,
+            PlatformTransactionManager transactionManager,
+            StreamingDocumentExtractor streamingExtractor,
+            EmbeddingCacheService embeddingCache,
+            RagMetrics metrics) {
 
         this.embeddingStore = embeddingStore;
         this.chromaHttpClientService = chromaHttpClientService;
-        this.ollamaClient = ollamaClient;
+        this.shardRouter = shardRouter;
         this.languageDetectionService = languageDetectionService;
         this.documentRepository = documentRepository;
         this.chunkRepository = chunkRepository;
 this.shCodeParser = shCodeParser;
         this.metadataExtractionService = metadataExtractionService;
-        this.productMetadataRepository = productMetadataRepository;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.streamingExtractor = streamingExtractor;
+        this.embeddingCache = embeddingCache;
+        this.metrics = metrics;
     }
 
     public static String getLastDetectedLanguage() {
@@ -76,6 +101,14 @@ this.shCodeParser = shCodeParser;
 
     public String ingestDocument(MultipartFile multipartFile) throws IOException {
         String originalFilename = multipartFile.getOriginalFilename();
+        validateFileName(originalFilename);
+        return ingestDocument(originalFilename, multipartFile, IngestionProgress.NONE);
+    }
+
+    /**
+     * Vérifie le nom et l'extension du fichier avant ingestion (synchrone, avant toute mise en file)
+     */
+    public void validateFileName(String originalFilename) {
         if (originalFilename == null || originalFilename.isEmpty()) {
             throw new IllegalArgumentException("Le nom du fichier ne peut pas être vide.");
         }
@@ -85,155 +118,192 @@ this.shCodeParser = shCodeParser;
             throw new IllegalArgumentException("Type de fichier non supporté : " + originalFilename +
                     ". Seuls les fichiers .pdf et .docx sont acceptés.");
         }
+    }
 
-        String fullText;
-        try (InputStream inputStream = multipartFile.getInputStream()) {
-            Tika tika = new Tika();
-            try {
-                fullText = tika.parseToString(inputStream);
-            } catch (TikaException e) {
-                System.err.println("Erreur de parsing Tika pour le fichier " + originalFilename + ": " + e.getMessage());
-                e.printStackTrace(); // Affiche le stacktrace complet dans les logs backend
-                throw new IOException("Erreur lors de l'extraction du texte du fichier: " + e.getMessage(), e);
-            }
-        }
-
-        if (fullText == null || fullText.trim().isEmpty()) {
-            System.out.println("⚠️ Le texte extrait du fichier " + originalFilename + " est vide. L'ingestion est annulée.");
-            throw new IllegalArgumentException("Aucun contenu textuel n'a pu être extrait du fichier : " + originalFilename);
+    /**
+     * Ingestion d'un fichier déjà validé, avec suivi de progression et annulation
+     * (utilisé par les jobs asynchrones d'IngestionJobService)
+     */
+    public String ingestDocument(String originalFilename, InputStreamSource source, IngestionProgress progress) throws IOException {
+        progress.onPhase(IngestionProgress.Phase.EXTRACTING);
+        // Extraction en streaming : l'embedding commence pendant que Tika lit la suite du document
+        try (StreamingDocumentExtractor.ChunkStream chunks = streamingExtractor.extract(source, originalFilename, progress)) {
+            ParseTimingIterator timedChunks = new ParseTimingIterator(chunks);
+            String documentId = metrics.time(RagMetrics.STAGE_INGEST_TOTAL, () -> ingestChunks(timedChunks, () -> {
+                if (chunks.getCharacterCount() == 0) {
+                    logger.warn("⚠️ Le texte extrait du fichier {} est vide. L'ingestion est annulée.", originalFilename);
+                    throw new IllegalArgumentException("Aucun contenu textuel n'a pu être extrait du fichier : " + originalFilename);
+                }
+                return languageDetectionService.detectLanguage(chunks.getLanguageSample());
+            }, originalFilename, progress));
+            metrics.stageTimer(RagMetrics.STAGE_INGEST_PARSE).record(timedChunks.nanos, TimeUnit.NANOSECONDS);
+            return documentId;
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
         }
-
-        return processTextForIngestion(fullText, originalFilename);
     }
 
     private String processTextForIngestion(String fullText, String documentName) {
-        String documentIdUUID = UUID.randomUUID().toString();
-        System.out.println("📄 Ingestion d'un nouveau document : " + documentName + " (UUID de référence pour chunks: " + documentIdUUID + ")");
-        
-        // Debug: Check if the specific content exists in the full text
-        if (fullText.contains("0101292000")) {
-            System.out.println("✅ [DEBUG] Trouvé SH code 0101292000 dans le texte complet");
-        } else {
-            System.out.println("❌ [DEBUG] SH code 0101292000 NOT FOUND dans le texte complet");
-        }
-        
-        if (fullText.contains("de course") && fullText.contains("vingt")) {
-            System.out.println("✅ [DEBUG] Trouvé fragments 'de course' et 'vingt' dans le texte");
-        } else {
-            System.out.println("❌ [DEBUG] Fragments 'de course' et/ou 'vingt' manquants");
-        }
-        
-        System.out.println("📏 [DEBUG] Taille du texte complet: " + fullText.length() + " caractères");
-        System.out.println("📝 [DEBUG] Premiers 500 caractères: " + fullText.substring(0, Math.min(500, fullText.length())));
-
-        String lang = languageDetectionService.detectLanguage(fullText);
-        lastDetectedLanguage = lang;
-        System.out.println("🌐 Langue détectée : " + lang);
+        return metrics.time(RagMetrics.STAGE_INGEST_TOTAL, () -> {
+            logger.debug("📏 Taille du texte complet : {} caractères", fullText.length());
+
+            List<SHCodeDocumentParser.DocumentChunk> parsedChunks = metrics.time(RagMetrics.STAGE_INGEST_PARSE,
+                    () -> shCodeParser.parseDocument(fullText, documentName));
+            return ingestChunks(parsedChunks.iterator(), () -> languageDetectionService.detectLanguage(fullText), documentName,
+                    IngestionProgress.NONE);
+        });
+    }
 
-        // Use SH code-aware parser for regulatory documents
-        List<SHCodeDocumentParser.DocumentChunk> parsedChunks = shCodeParser.parseDocument(fullText, documentName);
-        
-        // Convert parsed chunks to text chunks for compatibility
-        List<String> textChunks = new ArrayList<>();
-        for (SHCodeDocumentParser.DocumentChunk parsedChunk : parsedChunks) {
-            textChunks.add(parsedChunk.getText());
-        }
-        
-        // Debug: Check chunks for specific content
-        System.out.println("📊 [DEBUG] Nombre total de chunks générés: " + textChunks.size());
-        for (int i = 0; i < parsedChunks.size(); i++) {
-            SHCodeDocumentParser.DocumentChunk parsedChunk = parsedChunks.get(i);
-            String chunk = parsedChunk.getText();
-            System.out.println("🏷️ [DEBUG] Chunk " + i + " - SH Code: " + parsedChunk.getShCode() + ", Words: " + parsedChunk.getWordCount());
-            
-            if (chunk.contains("0101292000")) {
-                System.out.println("✅ [DEBUG] SH code 0101292000 trouvé dans le chunk " + i);
-                System.out.println("📝 [DEBUG] Contenu du chunk " + i + ": " + chunk.substring(0, Math.min(200, chunk.length())) + "...");
-                System.out.println("💰 [DEBUG] Métadonnées - DI: " + parsedChunk.getDi() + "%, TPI: " + parsedChunk.getTpi() + "%, TVA: " + parsedChunk.getTva() + "%");
-            }
-            if (chunk.contains("de course") && chunk.contains("vingt")) {
-                System.out.println("✅ [DEBUG] Fragments clés trouvés dans le chunk " + i);
-                System.out.println("📝 [DEBUG] Contenu du chunk " + i + ": " + chunk.substring(0, Math.min(200, chunk.length())) + "...");
-            }
-        }
+    /**
+     * Embedding, stockage Chroma et persistance des chunks au fur et à mesure qu'ils arrivent.
+     * La langue est détectée une fois tous les chunks consommés (texte complet ou échantillon).
+     * En cas d'annulation ou d'erreur avant la persistance, les embeddings déjà écrits dans Chroma sont supprimés.
+     * Textes des chunks et métadonnées restent en mémoire jusqu'à la transaction finale (tout ou rien) :
+     * la taille d'un document ingérable est bornée par le tas (cf. README).
+     */
+    private String ingestChunks(Iterator<SHCodeDocumentParser.DocumentChunk> parsedChunks,
+                                Supplier<String> languageDetector,
+                                String documentName,
+                                IngestionProgress progress) {
+        long startNanos = System.nanoTime();
+        String documentIdUUID = UUID.randomUUID().toString();
+        logger.info("📄 Ingestion d'un nouveau document : {} (UUID de référence pour chunks : {})", documentName, documentIdUUID);
 
         Document documentEntity = new Document();
         documentEntity.setName(documentName);
-        documentEntity.setLanguage(lang);
 
         List<Chunk> chunkEntities = new ArrayList<>();
         List<ProductMetadata> metadataList = new ArrayList<>();
+        Map<String, List<String>> storedIds = new LinkedHashMap<>(); // collection Chroma → IDs écrits
         
-        for (int i = 0; i < textChunks.size(); i++) {
-            String chunkText = textChunks.get(i);
-            String chunkStoreId = documentIdUUID + "_chunk_" + i;
-            SHCodeDocumentParser.DocumentChunk parsedChunk = parsedChunks.get(i);
-
-            List<Double> vector = ollamaClient.embed(chunkText);
-            if (vector == null || vector.isEmpty()) {
-                System.err.println("[WARN] Embedding vide pour le chunk index " + i + " (ID: " + chunkStoreId + "). Chunk ignoré.");
-                continue;
-            }
-            float[] floatArray = new float[vector.size()];
-            for (int j = 0; j < vector.size(); j++) {
-                floatArray[j] = vector.get(j).floatValue();
-            }
-            Embedding embedding = new Embedding(floatArray);
-            System.out.println("[INFO] Embedding généré pour le chunk " + i + " (ID: " + chunkStoreId + ", taille: " + floatArray.length + ")");
+        int i = -1;
+        String lang;
+        try {
+            while (parsedChunks.hasNext()) {
+                if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                    throw new CancellationException("Ingestion annulée : " + documentName);
+                }
+                SHCodeDocumentParser.DocumentChunk parsedChunk = parsedChunks.next();
+                i++;
+                String chunkText = parsedChunk.getText();
+                String chunkStoreId = documentIdUUID + "_chunk_" + i;
+
+                logger.debug("🏷️ Chunk {} - SH Code : {}, mots : {}", i, parsedChunk.getShCode(), parsedChunk.getWordCount());
+
+                // Cache adressé par le contenu : un chunk inchangé n'est pas revectorisé
+                float[] floatArray = metrics.time(RagMetrics.STAGE_INGEST_EMBED, () -> embeddingCache.embed(chunkText));
+                if (floatArray.length == 0) {
+                    logger.warn("⚠️ Embedding vide pour le chunk index {} (ID : {}). Chunk ignoré.", i, chunkStoreId);
+                    continue;
+                }
+                progress.onChunkEmbedded();
+                Embedding embedding = new Embedding(floatArray);
+                logger.debug("Embedding généré pour le chunk {} (ID : {}, taille : {})", i, chunkStoreId, floatArray.length);
             
-            // Store chunk text and embedding in ChromaDB with proper ID
-            try {
-                chromaHttpClientService.addEmbeddingWithText(Constants.CHROMA_COLLECTION_NAME, chunkStoreId, floatArray, chunkText);
-                System.out.println("[INFO] Chunk sauvegardé dans ChromaDB avec ID: " + chunkStoreId);
-            } catch (Exception e) {
-                System.err.println("[ERROR] Erreur lors de la sauvegarde du chunk " + chunkStoreId + " dans ChromaDB: " + e.getMessage());
-                continue; // Skip this chunk and continue with the next one
-            }
+                // Store chunk text and embedding in ChromaDB with proper ID (collection du chapitre SH si partitionnement)
+                String collection = shardRouter.collectionFor(parsedChunk.getShCode());
+                try {
+                    metrics.time(RagMetrics.STAGE_INGEST_STORE_CHROMA, () ->
+                            chromaHttpClientService.addEmbeddingWithText(collection, chunkStoreId, floatArray, chunkText));
+                    storedIds.computeIfAbsent(collection, c -> new ArrayList<>()).add(chunkStoreId);
+                    progress.onChunkStored();
+                    logger.debug("Chunk sauvegardé dans ChromaDB ({}) avec ID : {}", collection, chunkStoreId);
+                } catch (Exception e) {
+                    logger.error("❌ Erreur lors de la sauvegarde du chunk {} dans ChromaDB : {}", chunkStoreId, e.getMessage());
+                    continue; // Skip this chunk and continue with the next one
+                }
             
-            // Créer l'entité Chunk
-            Chunk chunkEntity = new Chunk();
-            chunkEntity.setId(chunkStoreId);
-            chunkEntity.setText(chunkText);
-            chunkEntity.setDocument(documentEntity);
-            chunkEntities.add(chunkEntity);
+                // Créer l'entité Chunk
+                Chunk chunkEntity = new Chunk();
+                chunkEntity.setId(chunkStoreId);
+                chunkEntity.setText(chunkText);
+                chunkEntity.setShCode(parsedChunk.getShCode());
+                chunkEntity.setContentHash(ContentHash.of(chunkText));
+                chunkEntity.setDocument(documentEntity);
+                chunkEntities.add(chunkEntity);
             
-            // Préparer les métadonnées pour ce chunk spécifique (sauvegarde différée)
-            try {
-                ProductMetadata metadata = metadataExtractionService.extractMetadata(parsedChunk);
-                metadata.setChunk(chunkEntity);
-                metadataList.add(metadata);
-                System.out.println("[INFO] Métadonnées préparées pour le chunk " + i + " (SH Code: " + parsedChunk.getShCode() + ")");
-            } catch (Exception e) {
-                System.err.println("[ERROR] Erreur lors de la préparation des métadonnées pour le chunk " + i + ": " + e.getMessage());
+                // Préparer les métadonnées pour ce chunk spécifique (sauvegarde différée)
+                try {
+                    ProductMetadata metadata = metadataExtractionService.extractMetadata(parsedChunk);
+                    metadata.setChunk(chunkEntity);
+                    metadataList.add(metadata);
+                    logger.debug("Métadonnées préparées pour le chunk {} (SH Code : {})", i, parsedChunk.getShCode());
+                } catch (Exception e) {
+                    logger.error("❌ Erreur lors de la préparation des métadonnées pour le chunk {} : {}", i, e.getMessage());
+                }
             }
+
+            lang = metrics.time(RagMetrics.STAGE_INGEST_LANGUAGE, languageDetector);
+        } catch (RuntimeException e) {
+            removeStoredEmbeddings(storedIds, documentName);
+            throw e;
         }
 
-        // Sauvegarder le document avec tous ses chunks
-        documentEntity.setChunks(chunkEntities);
-        Document savedDocument = documentRepository.save(documentEntity); // L'ID Long du Document est généré ici
-        
-        // Sauvegarder les métadonnées après que les chunks soient persistés
-        for (ProductMetadata metadata : metadataList) {
-            try {
-                productMetadataRepository.save(metadata);
-                System.out.println("[INFO] Métadonnées sauvegardées pour le chunk: " + metadata.getChunk().getId());
-            } catch (Exception e) {
-                System.err.println("[ERROR] Erreur lors de la sauvegarde des métadonnées: " + e.getMessage());
-            }
+        // Chunks réellement ingérés : ceux sans embedding ou refusés par Chroma ne comptent pas
+        metrics.recordSize("rag.ingestion.chunks.per.document", chunkEntities.size());
+        lastDetectedLanguage = lang;
+        documentEntity.setLanguage(lang);
+        documentEntity.setChunkCount(chunkEntities.size());
+        documentEntity.setTotalCharacters(chunkEntities.stream().mapToLong(c -> c.getText().length()).sum());
+        documentEntity.setShCodeCount((int) chunkEntities.stream().map(Chunk::getShCode).filter(Objects::nonNull).distinct().count());
+        logger.debug("🌐 Langue détectée : {}", lang);
+
+        // Document, puis chunks et métadonnées en insertions JDBC par lots, dans une seule transaction
+        Timer.Sample persistSample = metrics.start();
+        Document savedDocument;
+        try {
+            progress.onPhase(IngestionProgress.Phase.PERSISTING); // dernier point d'annulation, embeddings retirés si annulé
+            savedDocument = transactionTemplate.execute(status -> {
+                // Durée de l'ingestion (extraction, embeddings, Chroma) jusqu'à la persistance
+                documentEntity.setIngestionDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+                Document saved = documentRepository.save(documentEntity); // L'ID Long du Document est généré ici
+                chunkBatchWriter.insertChunks(chunkEntities, saved.getId());
+                chunkBatchWriter.insertMetadata(metadataList);
+                return saved;
+            });
+        } catch (RuntimeException e) {
+            removeStoredEmbeddings(storedIds, documentName);
+            throw e;
         }
+        shCodeCatalogue.invalidate();
+        logger.debug("{} chunks et {} métadonnées insérés par lots", chunkEntities.size(), metadataList.size());
+        metrics.stop(persistSample, RagMetrics.STAGE_INGEST_PERSIST);
 
-        System.out.println("✅ Ingestion terminée : " + textChunks.size() + " chunks liés à " + documentName + " (ID BDD Document: " + savedDocument.getId() + ")");
+        logger.info("✅ Ingestion terminée : {} chunks liés à {} (ID BDD Document : {}, {} ignorés)",
+                chunkEntities.size(), documentName, savedDocument.getId(), i + 1 - chunkEntities.size());
 
         if (savedDocument.getId() == null) {
-            System.err.println("⚠️ L'ID du document (" + documentName + ") sauvegardé est null après l'opération save. Retour de l'UUID de référence comme fallback.");
+            logger.warn("⚠️ L'ID du document ({}) sauvegardé est null après l'opération save. Retour de l'UUID de référence comme fallback.", documentName);
             return documentIdUUID;
         }
         return savedDocument.getId().toString(); // Retourne l'ID Long auto-généré du Document, converti en String.
     }
 
+    private void removeStoredEmbeddings(Map<String, List<String>> storedIds, String documentName) {
+        if (storedIds.isEmpty()) {
+            return;
+        }
+        // Une annulation interrompt le thread : on lève le drapeau le temps du nettoyage
+        boolean interrupted = Thread.interrupted();
+        try {
+            int removed = 0;
+            for (Map.Entry<String, List<String>> stored : storedIds.entrySet()) {
+                chromaHttpClientService.deleteEmbeddingsByIds(stored.getKey(), stored.getValue());
+                removed += stored.getValue().size();
+            }
+            logger.info("🧹 Ingestion interrompue pour {} : {} embeddings retirés de ChromaDB", documentName, removed);
+        } catch (Exception e) {
+            logger.error("❌ Nettoyage ChromaDB impossible pour {} : {}", documentName, e.getMessage());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
     @Deprecated
     public String ingestPdf(File pdfFile, String documentName) throws IOException {
-        System.out.println("Appel de la méthode ingestPdf (obsolète) pour : " + documentName);
+        logger.debug("Appel de la méthode ingestPdf (obsolète) pour : {}", documentName);
         String fullText = extractTextFromPdfUsingPdfBox(pdfFile);
         return processTextForIngestion(fullText, documentName);
     }
@@ -270,4 +340,37 @@ this.shCodeParser = shCodeParser;
         return chunks;
     }
 
-}
\ No newline at end of file
+    /**
+     * Temps passé à attendre l'extraction et le découpage SH : sur le chemin en streaming, Tika et le
+     * découpeur produisent les chunks pendant leur consommation, l'étape ingest.parse est cette attente
+     */
+    private static final class ParseTimingIterator implements Iterator<SHCodeDocumentParser.DocumentChunk> {
+
+        private final Iterator<SHCodeDocumentParser.DocumentChunk> chunks;
+        private long nanos;
+
+        ParseTimingIterator(Iterator<SHCodeDocumentParser.DocumentChunk> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public boolean hasNext() {
+            long start = System.nanoTime();
+            try {
+                return chunks.hasNext();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public SHCodeDocumentParser.DocumentChunk next() {
+            long start = System.nanoTime();
+            try {
+                return chunks.next();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+    }
+}
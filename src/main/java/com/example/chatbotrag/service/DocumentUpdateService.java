@@ -0,0 +1,431 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.model.ChromaPendingWrite;
+import com.example.chatbotrag.model.Chunk;
+import com.example.chatbotrag.model.Document;
+import com.example.chatbotrag.model.ProductMetadata;
+import com.example.chatbotrag.repository.ChunkRepository;
+import com.example.chatbotrag.repository.DocumentRepository;
+import com.example.chatbotrag.repository.ProductMetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Mise à jour incrémentale d'un document (PUT /upload/{documentId}) : la nouvelle version
+ * est découpée puis comparée aux chunks stockés (empreinte du texte, puis code SH), et seuls
+ * les insertions, mises à jour et suppressions sont appliquées.
+ *
+ * L'ancienne version reste servie pendant l'extraction et l'embedding. Les chunks insérés sont écrits
+ * dans Chroma avant la bascule MySQL (une transaction) ; les réécritures et suppressions Chroma sont
+ * enregistrées dans cette même transaction (table chroma_pending_write), appliquées juste après, et
+ * rejouées au démarrage si Chroma a échoué entre-temps.
+ */
+@Service
+public class DocumentUpdateService {
+
+    private static final Logger logger = LoggerFactory.getLogger(DocumentUpdateService.class);
+
+    private static final int CHROMA_BATCH_SIZE = 100;
+
+    private final DocumentRepository documentRepository;
+    private final ChunkRepository chunkRepository;
+    private final ProductMetadataRepository productMetadataRepository;
+    private final ProductMetadataExtractionService metadataExtractionService;
+    private final StreamingDocumentExtractor streamingExtractor;
+    private final EmbeddingCacheService embeddingCache;
+    private final ChunkBatchWriter chunkBatchWriter;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
+    private final LanguageDetectionService languageDetectionService;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RagMetrics metrics;
+
+    public DocumentUpdateService(DocumentRepository documentRepository,
+                                 ChunkRepository chunkRepository,
+                                 ProductMetadataRepository productMetadataRepository,
+                                 ProductMetadataExtractionService metadataExtractionService,
+                                 StreamingDocumentExtractor streamingExtractor,
+                                 EmbeddingCacheService embeddingCache,
+                                 ChunkBatchWriter chunkBatchWriter,
+                                 ShCodeCatalogueService shCodeCatalogue,
+                                 ChromaHttpClientService chromaHttpClientService,
+                                 ChromaShardRouter shardRouter,
+                                 LanguageDetectionService languageDetectionService,
+                                 NamedParameterJdbcTemplate jdbcTemplate,
+                                 PlatformTransactionManager transactionManager,
+                                 RagMetrics metrics) {
+        this.documentRepository = documentRepository;
+        this.chunkRepository = chunkRepository;
+        this.productMetadataRepository = productMetadataRepository;
+        this.metadataExtractionService = metadataExtractionService;
+        this.streamingExtractor = streamingExtractor;
+        this.embeddingCache = embeddingCache;
+        this.chunkBatchWriter = chunkBatchWriter;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.chromaHttpClientService = chromaHttpClientService;
+        this.shardRouter = shardRouter;
+        this.languageDetectionService = languageDetectionService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.metrics = metrics;
+    }
+
+    /**
+     * @return l'ID du document mis à jour
+     * @throws IllegalArgumentException document inconnu ou nouvelle version vide
+     */
+    public String updateDocument(Long documentId, String fileName, InputStreamSource source, IngestionProgress progress) throws IOException {
+        long startNanos = System.nanoTime();
+        Document document = documentRepository.findById(documentId)
+                .orElseThrow(() -> new IllegalArgumentException("Document introuvable : " + documentId));
+        if (document.getDeletionRequestedAt() != null) {
+            throw new IllegalArgumentException("Document en cours de suppression : " + documentId);
+        }
+        try {
+            applyPendingWrites(documentId, null, Map.of()); // écritures Chroma d'une mise à jour précédente restées en attente
+        } catch (RuntimeException e) {
+            logger.warn("⚠️ Écritures Chroma en attente du document {} non appliquées : {}", documentId, e.getMessage());
+        }
+
+        // 1. Nouvelle version : extraction en streaming, l'ancienne reste servie
+        progress.onPhase(IngestionProgress.Phase.EXTRACTING);
+        List<SHCodeDocumentParser.DocumentChunk> newChunks = new ArrayList<>();
+        String languageSample;
+        try (StreamingDocumentExtractor.ChunkStream chunks = streamingExtractor.extract(source, fileName, progress)) {
+            chunks.forEachRemaining(newChunks::add);
+            if (chunks.getCharacterCount() == 0) {
+                throw new IllegalArgumentException("Aucun contenu textuel n'a pu être extrait du fichier : " + fileName);
+            }
+            languageSample = chunks.getLanguageSample();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<Chunk> storedChunks = chunkRepository.findByDocumentId(documentId);
+        // Version comparée dans la transaction de bascule : une autre mise à jour passée entre-temps la modifie
+        Map<String, String> baseVersion = new HashMap<>();
+        storedChunks.forEach(chunk -> baseVersion.put(chunk.getId(), chunk.getContentHash()));
+        ChunkDiff diff = ChunkDiff.compute(storedChunks, newChunks);
+        logger.info("🔀 Mise à jour du document {} ({}) : {}", documentId, fileName, diff);
+
+        // 2. Embeddings des chunks nouveaux ou modifiés (cache : les textes déjà vus ne rappellent pas Ollama)
+        String updateId = UUID.randomUUID().toString(); // préfixe des nouveaux chunks, clé des écritures Chroma en attente
+        Map<String, float[]> vectors = new HashMap<>(); // ID de chunk → vecteur
+        List<Chunk> changedChunks = new ArrayList<>();
+        List<SHCodeDocumentParser.DocumentChunk> changedParsed = new ArrayList<>();
+        Map<String, List<String>> chromaDeletes = new LinkedHashMap<>(); // collection Chroma → IDs à retirer
+
+        for (ChunkDiff.Update update : diff.getUpdates()) {
+            Chunk chunk = update.existing();
+            String previousCollection = shardRouter.collectionFor(chunk.getShCode());
+            applyParsed(chunk, update.replacement());
+            if (!previousCollection.equals(shardRouter.collectionFor(chunk.getShCode()))) {
+                // Code SH passé dans un autre chapitre : l'ancien embedding est retiré de sa collection
+                chromaDeletes.computeIfAbsent(previousCollection, c -> new ArrayList<>()).add(chunk.getId());
+            }
+            changedChunks.add(chunk);
+            changedParsed.add(update.replacement());
+        }
+        int insertIndex = 0;
+        for (SHCodeDocumentParser.DocumentChunk parsed : diff.getInserts()) {
+            Chunk chunk = new Chunk();
+            chunk.setId(updateId + "_chunk_" + insertIndex++);
+            chunk.setDocument(document);
+            applyParsed(chunk, parsed);
+            changedChunks.add(chunk);
+            changedParsed.add(parsed);
+        }
+        for (Chunk chunk : changedChunks) {
+            if (progress.isCancelled() || Thread.currentThread().isInterrupted()) {
+                throw new CancellationException("Mise à jour annulée : " + fileName);
+            }
+            float[] vector = metrics.time(RagMetrics.STAGE_INGEST_EMBED, () -> embeddingCache.embed(chunk.getText()));
+            if (vector.length == 0) {
+                throw new IllegalStateException("Embedding vide pour le chunk " + chunk.getId() + ", mise à jour abandonnée");
+            }
+            progress.onChunkEmbedded();
+            vectors.put(chunk.getId(), vector);
+        }
+
+        // 3. Chunks insérés dans Chroma, puis bascule MySQL en une transaction (chunk + product_metadata)
+        progress.onPhase(IngestionProgress.Phase.PERSISTING);
+        String language = languageDetectionService.detectLanguage(languageSample);
+        int shCodeCount = (int) newChunks.stream().map(SHCodeDocumentParser.DocumentChunk::getShCode).filter(Objects::nonNull).distinct().count();
+        long totalCharacters = newChunks.stream().mapToLong(chunk -> chunk.getText().length()).sum();
+        Consumer<Document> documentUpdate = managed -> {
+            managed.setLanguage(language);
+            managed.setChunkCount(newChunks.size());
+            managed.setTotalCharacters(totalCharacters);
+            managed.setShCodeCount(shCodeCount);
+            managed.setIngestionDurationMs((System.nanoTime() - startNanos) / 1_000_000);
+        };
+        List<String> deletedIds = diff.getDeletes().stream().map(Chunk::getId).toList();
+        diff.getDeletes().forEach(chunk -> chromaDeletes
+                .computeIfAbsent(shardRouter.collectionFor(chunk.getShCode()), c -> new ArrayList<>()).add(chunk.getId()));
+        int updateCount = diff.getUpdates().size();
+        List<Chunk> insertedChunks = changedChunks.subList(updateCount, changedChunks.size());
+
+        // Gardes DELETE enregistrées avant d'écrire les nouveaux vecteurs : sans commit MySQL (échec, arrêt),
+        // leur rejeu retire de Chroma ces chunks inconnus de MySQL ; après le commit elles sont sans effet
+        transactionTemplate.executeWithoutResult(status -> recordPendingWrites(updateId, documentId,
+                ChromaPendingWrite.Operation.DELETE, insertedChunks));
+        try {
+            Map<String, List<Chunk>> insertsByCollection = shardRouter.groupByCollection(insertedChunks, Chunk::getShCode);
+            for (Map.Entry<String, List<Chunk>> shard : insertsByCollection.entrySet()) {
+                List<Chunk> chunks = shard.getValue();
+                for (int from = 0; from < chunks.size(); from += CHROMA_BATCH_SIZE) {
+                    List<Chunk> batch = chunks.subList(from, Math.min(from + CHROMA_BATCH_SIZE, chunks.size()));
+                    metrics.time(RagMetrics.STAGE_INGEST_STORE_CHROMA, () -> chromaHttpClientService.upsertEmbeddingsWithText(
+                            shard.getKey(), batch.stream().map(Chunk::getId).toList(),
+                            batch.stream().map(chunk -> vectors.get(chunk.getId())).toList(), batch.stream().map(Chunk::getText).toList()));
+                    batch.forEach(chunk -> progress.onChunkStored());
+                }
+            }
+
+            metrics.time(RagMetrics.STAGE_INGEST_PERSIST, () -> transactionTemplate.executeWithoutResult(status -> {
+                lockForUpdate(documentId, baseVersion);
+                persist(documentId, documentUpdate, changedChunks, changedParsed, diff, deletedIds);
+                // Les gardes deviennent inutiles, remplacées par les réécritures et suppressions Chroma de la bascule
+                jdbcTemplate.update("DELETE FROM chroma_pending_write WHERE update_id = :updateId", Map.of("updateId", updateId));
+                recordPendingWrites(updateId, documentId, ChromaPendingWrite.Operation.UPSERT, changedChunks.subList(0, updateCount));
+                for (Map.Entry<String, List<String>> shard : chromaDeletes.entrySet()) {
+                    recordPendingWrites(updateId, documentId, ChromaPendingWrite.Operation.DELETE, shard.getKey(), shard.getValue());
+                }
+            }));
+        } catch (RuntimeException e) {
+            // MySQL inchangé : les gardes retirent de Chroma les chunks insérés (sinon au prochain démarrage)
+            try {
+                applyPendingWrites(null, updateId, vectors);
+            } catch (RuntimeException cleanup) {
+                logger.warn("⚠️ Nettoyage Chroma de la mise à jour {} reporté au démarrage : {}", updateId, cleanup.getMessage());
+            }
+            throw e;
+        }
+        shCodeCatalogue.invalidate();
+
+        // 4. Réécritures et suppressions Chroma enregistrées par la bascule, avec les vecteurs déjà calculés
+        try {
+            applyPendingWrites(null, updateId, vectors);
+            for (int i = 0; i < updateCount; i++) {
+                progress.onChunkStored();
+            }
+        } catch (RuntimeException e) {
+            // MySQL est déjà à jour ; les écritures restent dans chroma_pending_write et sont rejouées au démarrage
+            // (ou à la prochaine mise à jour du document)
+            logger.error("❌ Document {} mis à jour dans MySQL mais pas encore dans ChromaDB : {}", documentId, e.getMessage(), e);
+            throw e;
+        }
+
+        logger.info("✅ Document {} mis à jour : {}", documentId, diff);
+        return documentId.toString();
+    }
+
+    /**
+     * Verrouille la ligne du document jusqu'au commit (une suppression demandée, une autre mise à jour
+     * attendent) et vérifie qu'il n'a changé ni d'état ni de chunks depuis le calcul du diff
+     */
+    private void lockForUpdate(Long documentId, Map<String, String> baseVersion) {
+        Map<String, Object> byDocument = Map.of("documentId", documentId);
+        List<Boolean> marked = jdbcTemplate.query(
+                "SELECT deletion_requested_at IS NOT NULL FROM document WHERE id = :documentId FOR UPDATE",
+                byDocument, (rs, rowNum) -> rs.getBoolean(1));
+        if (marked.isEmpty() || marked.get(0)) {
+            throw new IllegalStateException("Document supprimé ou en cours de suppression : " + documentId);
+        }
+        Map<String, String> currentVersion = new HashMap<>();
+        jdbcTemplate.query("SELECT id, content_hash FROM chunk WHERE document_id = :documentId", byDocument,
+                rs -> {
+                    currentVersion.put(rs.getString(1), rs.getString(2));
+                });
+        if (!currentVersion.equals(baseVersion)) {
+            throw new IllegalStateException("Document " + documentId + " modifié par une autre mise à jour pendant celle-ci, à relancer");
+        }
+    }
+
+    private void recordPendingWrites(String updateId, Long documentId, ChromaPendingWrite.Operation operation, List<Chunk> chunks) {
+        Map<String, List<String>> byCollection = new LinkedHashMap<>();
+        shardRouter.groupByCollection(chunks, Chunk::getShCode).forEach((collection, shardChunks) ->
+                byCollection.put(collection, shardChunks.stream().map(Chunk::getId).toList()));
+        byCollection.forEach((collection, ids) -> recordPendingWrites(updateId, documentId, operation, collection, ids));
+    }
+
+    private void recordPendingWrites(String updateId, Long documentId, ChromaPendingWrite.Operation operation,
+                                     String collection, List<String> chunkIds) {
+        Timestamp now = Timestamp.from(Instant.now());
+        MapSqlParameterSource[] rows = chunkIds.stream()
+                .map(chunkId -> new MapSqlParameterSource()
+                        .addValue("updateId", updateId)
+                        .addValue("documentId", documentId)
+                        .addValue("chunkId", chunkId)
+                        .addValue("collection", collection)
+                        .addValue("operation", operation.name())
+                        .addValue("createdAt", now))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO chroma_pending_write (update_id, document_id, chunk_id, collection_name, operation, created_at) "
+                + "VALUES (:updateId, :documentId, :chunkId, :collection, :operation, :createdAt)", rows);
+    }
+
+    /**
+     * Rejoue les écritures Chroma restées en attente (échec Chroma ou arrêt pendant une mise à jour)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePendingWrites() {
+        CompletableFuture.runAsync(() -> {
+            try {
+                int applied = applyPendingWrites(null, null, Map.of());
+                if (applied > 0) {
+                    logger.info("🔁 {} écriture(s) Chroma de mises à jour interrompues rejouée(s)", applied);
+                }
+            } catch (Exception e) {
+                logger.warn("⚠️ Reprise des écritures Chroma en attente impossible : {}", e.getMessage(), e);
+            }
+        });
+    }
+
+    /**
+     * Applique les écritures en attente (d'un document, d'une mise à jour, ou toutes), relues contre l'état
+     * MySQL courant : un UPSERT réécrit le vecteur du chunk s'il existe encore (document non supprimé), dans la
+     * collection de son code SH ; un DELETE retire l'embedding sauf si le chunk vit toujours dans cette collection.
+     * Idempotent : une ligne n'est supprimée qu'une fois son lot écrit dans Chroma.
+     * @param vectors vecteurs déjà calculés, sinon recalculés via le cache d'embeddings
+     * @return nombre d'écritures appliquées
+     */
+    int applyPendingWrites(Long documentId, String updateId, Map<String, float[]> vectors) {
+        MapSqlParameterSource filter = new MapSqlParameterSource();
+        StringBuilder sql = new StringBuilder("SELECT id, chunk_id, collection_name, operation FROM chroma_pending_write WHERE 1 = 1");
+        if (documentId != null) {
+            sql.append(" AND document_id = :documentId");
+            filter.addValue("documentId", documentId);
+        }
+        if (updateId != null) {
+            sql.append(" AND update_id = :updateId");
+            filter.addValue("updateId", updateId);
+        }
+        sql.append(" ORDER BY id");
+        List<PendingWrite> pending = jdbcTemplate.query(sql.toString(), filter, (rs, rowNum) -> new PendingWrite(
+                rs.getLong(1), rs.getString(2), rs.getString(3), ChromaPendingWrite.Operation.valueOf(rs.getString(4))));
+
+        for (int from = 0; from < pending.size(); from += CHROMA_BATCH_SIZE) {
+            List<PendingWrite> batch = pending.subList(from, Math.min(from + CHROMA_BATCH_SIZE, pending.size()));
+            Map<String, StoredChunk> stored = new HashMap<>();
+            jdbcTemplate.query("SELECT c.id, c.text, c.sh_code FROM chunk c JOIN document d ON d.id = c.document_id "
+                            + "WHERE c.id IN (:ids) AND d.deletion_requested_at IS NULL",
+                    Map.of("ids", batch.stream().map(PendingWrite::chunkId).distinct().toList()),
+                    rs -> {
+                        stored.put(rs.getString(1), new StoredChunk(rs.getString(2), rs.getString(3)));
+                    });
+
+            Map<String, List<String>> upserts = new LinkedHashMap<>();
+            Map<String, List<String>> deletes = new LinkedHashMap<>();
+            for (PendingWrite write : batch) {
+                StoredChunk chunk = stored.get(write.chunkId());
+                String currentCollection = chunk == null ? null : shardRouter.collectionFor(chunk.shCode());
+                if (write.operation() == ChromaPendingWrite.Operation.UPSERT && chunk != null) {
+                    upserts.computeIfAbsent(currentCollection, c -> new ArrayList<>()).add(write.chunkId());
+                } else if (write.operation() == ChromaPendingWrite.Operation.DELETE && !write.collection().equals(currentCollection)) {
+                    deletes.computeIfAbsent(write.collection(), c -> new ArrayList<>()).add(write.chunkId());
+                }
+            }
+            for (Map.Entry<String, List<String>> shard : upserts.entrySet()) {
+                List<String> ids = shard.getValue().stream().distinct().toList();
+                List<String> texts = ids.stream().map(id -> stored.get(id).text()).toList();
+                List<float[]> shardVectors = new ArrayList<>(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    float[] vector = vectors.get(ids.get(i));
+                    if (vector == null) {
+                        String text = texts.get(i);
+                        vector = metrics.time(RagMetrics.STAGE_INGEST_EMBED, () -> embeddingCache.embed(text));
+                    }
+                    if (vector.length == 0) {
+                        throw new IllegalStateException("Embedding vide pour le chunk " + ids.get(i));
+                    }
+                    shardVectors.add(vector);
+                }
+                metrics.time(RagMetrics.STAGE_INGEST_STORE_CHROMA, () ->
+                        chromaHttpClientService.upsertEmbeddingsWithText(shard.getKey(), ids, shardVectors, texts));
+            }
+            deletes.forEach(chromaHttpClientService::deleteEmbeddingsByIds);
+            jdbcTemplate.update("DELETE FROM chroma_pending_write WHERE id IN (:ids)",
+                    Map.of("ids", batch.stream().map(PendingWrite::id).toList()));
+        }
+        return pending.size();
+    }
+
+    private record PendingWrite(long id, String chunkId, String collection, ChromaPendingWrite.Operation operation) {}
+
+    private record StoredChunk(String text, String shCode) {}
+
+    private void persist(Long documentId, Consumer<Document> documentUpdate, List<Chunk> changedChunks,
+                         List<SHCodeDocumentParser.DocumentChunk> changedParsed, ChunkDiff diff, List<String> deletedIds) {
+        // Métadonnées des chunks supprimés ou réécrits, puis chunks supprimés
+        List<String> staleMetadataChunkIds = new ArrayList<>(deletedIds);
+        diff.getUpdates().forEach(update -> staleMetadataChunkIds.add(update.existing().getId()));
+        if (!staleMetadataChunkIds.isEmpty()) {
+            productMetadataRepository.deleteAllInBatch(productMetadataRepository.findByChunkIdIn(staleMetadataChunkIds));
+        }
+        if (!deletedIds.isEmpty()) {
+            chunkRepository.deleteAllByIdInBatch(deletedIds);
+        }
+
+        // Chunks réécrits (UPDATE regroupés par Hibernate), puis nouveaux chunks en insertion JDBC par lots
+        int updateCount = diff.getUpdates().size();
+        chunkRepository.saveAll(changedChunks.subList(0, updateCount));
+        chunkRepository.flush();
+        chunkBatchWriter.insertChunks(changedChunks.subList(updateCount, changedChunks.size()), documentId);
+
+        // code_sh est unique : une métadonnée déjà portée par un autre chunk est conservée
+        List<String> codes = changedParsed.stream().map(SHCodeDocumentParser.DocumentChunk::getShCode).distinct().toList();
+        Set<String> takenCodes = new HashSet<>();
+        if (!codes.isEmpty()) {
+            productMetadataRepository.findByCodeShIn(codes).forEach(existing -> takenCodes.add(existing.getCodeSh()));
+        }
+        List<ProductMetadata> metadataList = new ArrayList<>();
+        for (int i = 0; i < changedChunks.size(); i++) {
+            SHCodeDocumentParser.DocumentChunk parsed = changedParsed.get(i);
+            if (parsed.getShCode() == null || !takenCodes.add(parsed.getShCode())) {
+                continue;
+            }
+            ProductMetadata metadata = metadataExtractionService.extractMetadata(parsed);
+            metadata.setChunk(changedChunks.get(i));
+            metadataList.add(metadata);
+        }
+        chunkBatchWriter.insertMetadata(metadataList);
+
+        // Entité gérée par la transaction : langue et statistiques écrites au commit
+        documentRepository.findById(documentId).ifPresent(documentUpdate);
+    }
+
+    private static void applyParsed(Chunk chunk, SHCodeDocumentParser.DocumentChunk parsed) {
+        chunk.setText(parsed.getText());
+        chunk.setShCode(parsed.getShCode());
+        chunk.setContentHash(ContentHash.of(parsed.getText()));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.model.EmbeddingCacheEntry;
+import com.example.chatbotrag.repository.EmbeddingCacheRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Cache persistant des embeddings d'ingestion, adressé par le contenu : la clé est le
+ * SHA-256 du (modèle, texte du chunk). Une nouvelle version d'un document dont la plupart
+ * des chunks sont inchangés n'appelle Ollama que pour les chunks modifiés.
+ * Une panne du cache (MySQL) n'empêche jamais l'embedding : on retombe sur Ollama.
+ */
+@Service
+public class EmbeddingCacheService {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddingCacheService.class);
+
+    private static final String CACHE_METRIC = "rag.embedding.cache";
+
+    private final EmbeddingCacheRepository repository;
+    private final OllamaClientService ollamaClient;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+
+    public EmbeddingCacheService(EmbeddingCacheRepository repository,
+                                 OllamaClientService ollamaClient,
+                                 RagMetrics metrics,
+                                 @Value("${ingestion.embedding-cache.enabled:true}") boolean enabled) {
+        this.repository = repository;
+        this.ollamaClient = ollamaClient;
+        this.metrics = metrics;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Embedding d'un chunk : lu dans le cache si le même texte a déjà été vectorisé
+     * avec le même modèle, sinon calculé par Ollama puis enregistré.
+     * @return le vecteur, ou un tableau vide si Ollama n'a rien renvoyé
+     */
+    public float[] embed(String chunkText) {
+        if (!enabled) {
+            return toFloatArray(ollamaClient.embed(chunkText));
+        }
+        String model = ollamaClient.getEmbeddingModel();
+        String key = contentHash(model, chunkText);
+
+        Optional<float[]> cached = lookup(key);
+        if (cached.isPresent()) {
+            metrics.increment(CACHE_METRIC, "result", "hit");
+            return cached.get();
+        }
+        metrics.increment(CACHE_METRIC, "result", "miss");
+
+        float[] vector = toFloatArray(ollamaClient.embed(chunkText));
+        if (vector.length > 0) {
+            store(key, model, vector);
+        }
+        return vector;
+    }
+
+    private Optional<float[]> lookup(String key) {
+        try {
+            return repository.findById(key).map(entry -> decode(entry.getVector(), entry.getDimension()));
+        } catch (Exception e) {
+            logger.warn("⚠️ Cache d'embeddings indisponible en lecture : {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private void store(String key, String model, float[] vector) {
+        try {
+            repository.save(new EmbeddingCacheEntry(key, model, vector.length, encode(vector)));
+        } catch (DataIntegrityViolationException e) {
+            // Même chunk vectorisé en parallèle par un autre job : l'entrée existe déjà
+            logger.debug("Entrée de cache déjà présente : {}", key);
+        } catch (Exception e) {
+            logger.warn("⚠️ Cache d'embeddings indisponible en écriture : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Clé du cache : SHA-256 de "modèle \0 texte"
+     */
+    static String contentHash(String model, String text) {
+        return ContentHash.of(model, text);
+    }
+
+    static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(vector);
+        return buffer.array();
+    }
+
+    static float[] decode(byte[] bytes, int dimension) {
+        float[] vector = new float[dimension];
+        ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(vector);
+        return vector;
+    }
+
+    private static float[] toFloatArray(List<Double> vector) {
+        if (vector == null || vector.isEmpty()) {
+            return new float[0];
+        }
+        float[] floatArray = new float[vector.size()];
+        for (int j = 0; j < vector.size(); j++) {
+            floatArray[j] = vector.get(j).floatValue();
+        }
+        return floatArray;
+    }
+}
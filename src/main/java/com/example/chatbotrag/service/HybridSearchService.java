@@ -4,7 +4,10 @@ import com.example.chatbotrag.model.ProductMetadata;
 import com.example.chatbotrag.model.Chunk;
 import com.example.chatbotrag.repository.ProductMetadataRepository;
 import com.example.chatbotrag.repository.ChunkRepository;
-import com.example.chatbotrag.config.Constants;
+import com.example.chatbotrag.metrics.RagMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -19,62 +22,77 @@ import java.util.stream.Collectors;
 @Service
 public class HybridSearchService {
 
+    private static final Logger logger = LoggerFactory.getLogger(HybridSearchService.class);
+
     private final VectorSearchService vectorSearchService;
     private final ProductMetadataRepository productMetadataRepository;
     private final ProductMetadataExtractionService metadataExtractionService;
-    private final ChromaHttpClientService chromaHttpClientService;
+    private final LocalVectorIndexService localVectorIndex;
+    private final ChromaShardRouter shardRouter;
     private final OllamaClientService ollamaClient;
     private final ChunkRepository chunkRepository;
+    private final RagMetrics metrics;
 
     public HybridSearchService(VectorSearchService vectorSearchService,
                                ProductMetadataRepository productMetadataRepository,
                                ProductMetadataExtractionService metadataExtractionService,
-                               ChromaHttpClientService chromaHttpClientService,
+                               LocalVectorIndexService localVectorIndex,
+                               ChromaShardRouter shardRouter,
                                OllamaClientService ollamaClient,
-                               ChunkRepository chunkRepository) {
+                               ChunkRepository chunkRepository,
+                               RagMetrics metrics) {
         this.vectorSearchService = vectorSearchService;
         this.productMetadataRepository = productMetadataRepository;
         this.metadataExtractionService = metadataExtractionService;
-        this.chromaHttpClientService = chromaHttpClientService;
+        this.localVectorIndex = localVectorIndex;
+        this.shardRouter = shardRouter;
         this.ollamaClient = ollamaClient;
         this.chunkRepository = chunkRepository;
+        this.metrics = metrics;
     }
 
     /**
      * Recherche hybride principale
      */
     public List<HybridSearchResult> searchHybrid(String userQuery, int topK) {
-        System.out.println("🔍 [HYBRID_SEARCH] Début recherche hybride pour: " + userQuery);
-        long startTime = System.currentTimeMillis();
+        logger.debug("🔍 [HYBRID_SEARCH] Début recherche hybride pour: {}", userQuery);
+        Timer.Sample totalSample = metrics.start();
 
         try {
-            // 1. Extraction des métadonnées de la requête
+            // 1. Extraction des métadonnées de la requête + 2. Recherche par métadonnées exactes (priorité haute)
+            Timer.Sample metadataSample = metrics.start();
             Map<String, String> queryMetadata = metadataExtractionService.extractQueryMetadata(userQuery);
-            System.out.println("📊 [HYBRID_SEARCH] Métadonnées extraites: " + queryMetadata);
-
-            // 2. Recherche par métadonnées exactes (priorité haute)
+            logger.debug("📊 [HYBRID_SEARCH] Métadonnées extraites: {}", queryMetadata);
             List<HybridSearchResult> metadataResults = searchByMetadata(queryMetadata, topK);
+            metrics.stop(metadataSample, RagMetrics.STAGE_METADATA_SEARCH);
             
-            // 3. Recherche vectorielle
-            List<HybridSearchResult> vectorResults = performVectorSearch(userQuery, topK * 2);
-            
-            // 4. Fusion et scoring hybride
-            List<HybridSearchResult> hybridResults = combineAndScore(metadataResults, vectorResults, queryMetadata);
+            // 3. Recherche vectorielle, limitée aux chapitres SH désignés par la question ou ses métadonnées
+            Set<String> chapters = shardRouter.isEnabled() ? shardRouter.chapters(userQuery, metadataResults.stream()
+                    .map(HybridSearchResult::getMetadata)
+                    .filter(Objects::nonNull)
+                    .map(ProductMetadata::getCodeSh)
+                    .toList()) : Set.of();
+            List<HybridSearchResult> vectorResults = performVectorSearch(userQuery, topK * 2, chapters);
             
-            // 5. Tri et sélection finale
-            List<HybridSearchResult> finalResults = hybridResults.stream()
-                    .sorted((a, b) -> Double.compare(b.getTotalScore(), a.getTotalScore()))
-                    .limit(topK)
-                    .collect(Collectors.toList());
-
-            long duration = System.currentTimeMillis() - startTime;
-            System.out.println("✅ [HYBRID_SEARCH] Recherche terminée en " + duration + "ms. Résultats: " + finalResults.size());
+            // 4. Fusion et scoring hybride + 5. Tri et sélection finale
+            List<HybridSearchResult> finalResults = metrics.time(RagMetrics.STAGE_FUSION, () ->
+                    combineAndScore(metadataResults, vectorResults, queryMetadata).stream()
+                            .sorted((a, b) -> Double.compare(b.getTotalScore(), a.getTotalScore()))
+                            .limit(topK)
+                            .collect(Collectors.toList()));
+
+            long duration = metrics.stop(totalSample, RagMetrics.STAGE_HYBRID_SEARCH);
+            logger.atInfo().setMessage("✅ [HYBRID_SEARCH] Recherche terminée")
+                    .addKeyValue("durationMs", duration)
+                    .addKeyValue("metadataCandidates", metadataResults.size())
+                    .addKeyValue("vectorCandidates", vectorResults.size())
+                    .addKeyValue("results", finalResults.size())
+                    .log();
             
             return finalResults;
 
         } catch (Exception e) {
-            System.err.println("❌ [HYBRID_SEARCH] Erreur: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("❌ [HYBRID_SEARCH] Erreur: {}", e.getMessage(), e);
             return fallbackToVectorSearch(userQuery, topK);
         }
     }
@@ -83,12 +101,11 @@ public class HybridSearchService {
      * Recherche basée sur les métadonnées structurées
      */
     private List<HybridSearchResult> searchByMetadata(Map<String, String> queryMetadata, int topK) {
-        System.out.println("📋 [METADATA_SEARCH] Recherche par métadonnées...");
         
         List<HybridSearchResult> results = new ArrayList<>();
         
         if (queryMetadata.isEmpty()) {
-            System.out.println("⚠️ [METADATA_SEARCH] Aucune métadonnée extraite");
+            logger.debug("⚠️ [METADATA_SEARCH] Aucune métadonnée extraite");
             return results;
         }
 
@@ -100,7 +117,7 @@ public class HybridSearchService {
                 queryMetadata.get("usage")
         );
 
-        System.out.println("📊 [METADATA_SEARCH] Candidats trouvés: " + candidates.size());
+        logger.debug("📊 [METADATA_SEARCH] Candidats trouvés: {}", candidates.size());
 
         // Scoring et conversion
         for (ProductMetadata metadata : candidates) {
@@ -115,8 +132,7 @@ public class HybridSearchService {
                             metadata
                     );
                     results.add(result);
-                    System.out.println("✅ [METADATA_SEARCH] Ajouté résultat SH: " + metadata.getCodeSh() + 
-                                       " (score: " + String.format("%.3f", metadataScore) + ")");
+                    logger.debug("✅ [METADATA_SEARCH] Ajouté résultat SH: {} (score: {})", metadata.getCodeSh(), metadataScore);
                 }
             }
         }
@@ -133,7 +149,6 @@ public class HybridSearchService {
      * Recherche fuzzy par métadonnées
      */
     private List<HybridSearchResult> performFuzzyMetadataSearch(Map<String, String> queryMetadata, int needed) {
-        System.out.println("🔍 [FUZZY_SEARCH] Recherche fuzzy...");
         
         List<HybridSearchResult> results = new ArrayList<>();
         
@@ -157,7 +172,7 @@ public class HybridSearchService {
                                 metadata
                         );
                         results.add(result);
-                        System.out.println("🔍 [FUZZY_SEARCH] Ajouté résultat fuzzy SH: " + metadata.getCodeSh());
+                        logger.debug("🔍 [FUZZY_SEARCH] Ajouté résultat fuzzy SH: {}", metadata.getCodeSh());
                     }
                 }
             }
@@ -169,16 +184,15 @@ public class HybridSearchService {
     /**
      * Recherche vectorielle
      */
-    private List<HybridSearchResult> performVectorSearch(String userQuery, int topK) {
-        System.out.println("🧠 [VECTOR_SEARCH] Recherche vectorielle...");
+    private List<HybridSearchResult> performVectorSearch(String userQuery, int topK, Set<String> chapters) {
         
         List<HybridSearchResult> results = new ArrayList<>();
         
         try {
             // Génération embedding
-            List<Double> questionVector = ollamaClient.embed(userQuery);
+            List<Double> questionVector = metrics.time(RagMetrics.STAGE_QUERY_EMBEDDING, () -> ollamaClient.embed(userQuery));
             if (questionVector == null || questionVector.isEmpty()) {
-                System.err.println("❌ [VECTOR_SEARCH] Impossible de générer l'embedding");
+                logger.warn("❌ [VECTOR_SEARCH] Impossible de générer l'embedding");
                 return results;
             }
 
@@ -187,15 +201,10 @@ public class HybridSearchService {
                 questionEmbedding[i] = questionVector.get(i).floatValue();
             }
 
-            // Recherche dans ChromaDB
-            List<ChromaHttpClientService.SearchResult> vectorResults = chromaHttpClientService.searchSimilar(
-                    Constants.CHROMA_COLLECTION_NAME,
-                    questionEmbedding,
-                    topK,
-                    0.1
-            );
+            // Recherche vectorielle (index local si activé, sinon ChromaDB)
+            List<ChromaHttpClientService.SearchResult> vectorResults = localVectorIndex.searchSimilar(questionEmbedding, topK, 0.1, chapters);
 
-            System.out.println("📊 [VECTOR_SEARCH] Résultats vectoriels: " + vectorResults.size());
+            logger.debug("📊 [VECTOR_SEARCH] Résultats vectoriels: {}", vectorResults.size());
 
             // Conversion en HybridSearchResult
             for (ChromaHttpClientService.SearchResult vectorResult : vectorResults) {
@@ -213,7 +222,7 @@ public class HybridSearchService {
             }
 
         } catch (Exception e) {
-            System.err.println("❌ [VECTOR_SEARCH] Erreur: " + e.getMessage());
+            logger.error("❌ [VECTOR_SEARCH] Erreur: {}", e.getMessage(), e);
         }
 
         return results;
@@ -225,8 +234,6 @@ public class HybridSearchService {
     private List<HybridSearchResult> combineAndScore(List<HybridSearchResult> metadataResults,
                                                      List<HybridSearchResult> vectorResults,
                                                      Map<String, String> queryMetadata) {
-        System.out.println("🔗 [COMBINE_SCORE] Fusion des résultats...");
-        
         Map<String, HybridSearchResult> combinedResults = new HashMap<>();
         
         // Ajout des résultats métadonnées
@@ -262,7 +269,7 @@ public class HybridSearchService {
             result.setTotalScore(totalScore);
         }
         
-        System.out.println("✅ [COMBINE_SCORE] Résultats combinés: " + combinedResults.size());
+        logger.debug("✅ [COMBINE_SCORE] Résultats combinés: {}", combinedResults.size());
         return new ArrayList<>(combinedResults.values());
     }
 
@@ -345,7 +352,7 @@ public class HybridSearchService {
      * Fallback vers recherche vectorielle pure
      */
     private List<HybridSearchResult> fallbackToVectorSearch(String userQuery, int topK) {
-        System.out.println("🔄 [FALLBACK] Utilisation de la recherche vectorielle pure");
+        logger.warn("🔄 [FALLBACK] Utilisation de la recherche vectorielle pure");
         
         List<String> vectorResults = vectorSearchService.findTopKRelevantChunks(userQuery, topK);
         List<HybridSearchResult> results = new ArrayList<>();
@@ -0,0 +1,128 @@
+package com.example.chatbotrag.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+
+/**
+ * Découpage par code SH au fil de l'eau : reçoit le texte déjà normalisé par morceaux
+ * et émet chaque {@link SHCodeDocumentParser.DocumentChunk} dès que la section suivante
+ * commence. Seule la section en cours reste en mémoire (plus le dernier chunk optimisé,
+ * qui peut encore absorber une petite section voisine).
+ *
+ * Produit les mêmes chunks que {@link SHCodeDocumentParser#parseDocument} sur le texte complet.
+ */
+public class IncrementalSHCodeChunker {
+
+    /**
+     * Marge de re-scan : une occurrence du motif SH fait au plus ~35 caractères sur un
+     * texte normalisé (un seul espace entre les mots), on reprend donc assez loin en arrière
+     * pour ne jamais couper un "le code SH ... correspond à" entre deux morceaux.
+     */
+    private static final int RESCAN_MARGIN = 64;
+
+    private final SHCodeDocumentParser parser;
+    private final Consumer<SHCodeDocumentParser.DocumentChunk> sink;
+
+    // Texte de la section en cours (ou fin du préambule avant le premier code SH)
+    private final StringBuilder window = new StringBuilder();
+    // Position absolue (dans le texte normalisé complet) de window[0]
+    private long windowOffset;
+    private int scanFrom;
+    private String currentShCode;
+    private int currentStart = -1;
+
+    private final List<SHCodeDocumentParser.DocumentChunk> optimizedTail = new ArrayList<>();
+    private int emittedCount;
+    private boolean finished;
+
+    public IncrementalSHCodeChunker(SHCodeDocumentParser parser, Consumer<SHCodeDocumentParser.DocumentChunk> sink) {
+        this.parser = parser;
+        this.sink = sink;
+    }
+
+    /**
+     * Ajoute du texte normalisé (voir {@link TariffTextNormalizer.Streaming})
+     */
+    public void append(CharSequence normalizedText) {
+        if (finished) {
+            throw new IllegalStateException("Chunker déjà terminé");
+        }
+        if (normalizedText.isEmpty()) {
+            return;
+        }
+        window.append(normalizedText);
+
+        Matcher matcher = SHCodeDocumentParser.SH_CODE_PATTERN.matcher(window);
+        int position = scanFrom;
+        while (matcher.find(position)) {
+            closeSection(matcher.start());
+            currentShCode = matcher.group(1);
+            currentStart = matcher.start();
+            position = matcher.end();
+        }
+        scanFrom = Math.max(position, window.length() - RESCAN_MARGIN);
+        compact();
+    }
+
+    /**
+     * Fin du document : ferme la dernière section et émet les chunks restants
+     */
+    public void finish() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        closeSection(window.length());
+        for (SHCodeDocumentParser.DocumentChunk chunk : optimizedTail) {
+            emit(chunk);
+        }
+        optimizedTail.clear();
+        window.setLength(0);
+    }
+
+    public int getEmittedCount() {
+        return emittedCount;
+    }
+
+    private void closeSection(int endInWindow) {
+        if (currentShCode == null) {
+            return;
+        }
+        int startPos = (int) (windowOffset + currentStart);
+        int endPos = (int) (windowOffset + endInWindow);
+        SHCodeDocumentParser.DocumentChunk chunk =
+                parser.buildSectionChunk(window.substring(currentStart, endInWindow), currentShCode, startPos, endPos);
+        if (chunk == null) {
+            return;
+        }
+        parser.appendOptimized(optimizedTail, chunk);
+        // Tous les chunks sauf le dernier sont définitifs
+        while (optimizedTail.size() > 1) {
+            emit(optimizedTail.remove(0));
+        }
+    }
+
+    /**
+     * Supprime du buffer ce qui précède la section en cours (ou, avant le premier code SH,
+     * tout sauf la marge de re-scan)
+     */
+    private void compact() {
+        int keepFrom = currentShCode != null ? currentStart : Math.max(0, window.length() - RESCAN_MARGIN);
+        if (keepFrom == 0) {
+            return;
+        }
+        window.delete(0, keepFrom);
+        windowOffset += keepFrom;
+        scanFrom -= keepFrom;
+        if (currentShCode != null) {
+            currentStart = 0;
+        }
+    }
+
+    private void emit(SHCodeDocumentParser.DocumentChunk chunk) {
+        emittedCount++;
+        sink.accept(chunk);
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.chatbotrag.service;
+
+import java.time.Instant;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Job d'ingestion asynchrone d'un fichier : phase, compteurs de chunks et résultat.
+ * Mis à jour par le thread du job et par le thread d'extraction, lu par les requêtes de suivi.
+ */
+public class IngestionJob implements IngestionProgress {
+
+    private final String id;
+    private final String fileName;
+    private final long sizeBytes;
+    private final Instant createdAt = Instant.now();
+
+    private volatile Phase phase = Phase.QUEUED;
+    private volatile Instant startedAt;
+    private volatile Instant finishedAt;
+    private volatile String documentId;
+    private volatile String error;
+    private volatile boolean cancelRequested;
+    private volatile Future<?> future;
+
+    private final AtomicInteger chunksParsed = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksStored = new AtomicInteger();
+
+    public IngestionJob(String id, String fileName, long sizeBytes) {
+        this.id = id;
+        this.fileName = fileName;
+        this.sizeBytes = sizeBytes;
+    }
+
+    /**
+     * Synchronisé avec {@link #requestCancel()} : une annulation arrivée avant PERSISTING arrête le job
+     * ici, avant la transaction ; une fois PERSISTING atteint, plus aucune annulation n'est acceptée
+     */
+    @Override
+    public synchronized void onPhase(Phase newPhase) {
+        if (newPhase == Phase.PERSISTING && cancelRequested) {
+            throw new CancellationException("Job " + id + " annulé avant la persistance");
+        }
+        if (newPhase == Phase.EXTRACTING && startedAt == null) {
+            startedAt = Instant.now();
+        }
+        if (newPhase.isFinished()) {
+            finishedAt = Instant.now();
+        }
+        phase = newPhase;
+    }
+
+    @Override
+    public void onChunkParsed() {
+        chunksParsed.incrementAndGet();
+    }
+
+    @Override
+    public void onChunkEmbedded() {
+        if (phase == Phase.EXTRACTING) {
+            phase = Phase.EMBEDDING;
+        }
+        chunksEmbedded.incrementAndGet();
+    }
+
+    @Override
+    public void onChunkStored() {
+        chunksStored.incrementAndGet();
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return cancelRequested;
+    }
+
+    /**
+     * Passage de la file à l'exécution (false si annulé entre-temps)
+     */
+    synchronized boolean start() {
+        if (cancelRequested) {
+            return false;
+        }
+        onPhase(Phase.EXTRACTING);
+        return true;
+    }
+
+    void complete(String documentId) {
+        this.documentId = documentId;
+        onPhase(Phase.COMPLETED);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        onPhase(Phase.FAILED);
+    }
+
+    /**
+     * Demande l'annulation ; un job encore en file passe directement à CANCELLED. Refusée pendant
+     * PERSISTING : interrompre la transaction JDBC, ou annoncer une annulation puis terminer en COMPLETED,
+     * laisserait MySQL et Chroma dans un état incohérent
+     * @return false si le job était déjà terminé ou en cours de persistance
+     */
+    synchronized boolean requestCancel() {
+        if (phase.isFinished() || phase == Phase.PERSISTING) {
+            return false;
+        }
+        cancelRequested = true;
+        if (phase == Phase.QUEUED) {
+            // La tâche reste en file pour nettoyer son fichier temporaire, puis s'arrête aussitôt
+            onPhase(Phase.CANCELLED);
+            return true;
+        }
+        Future<?> running = future;
+        if (running != null) {
+            running.cancel(true); // débloque l'attente du prochain chunk
+        }
+        return true;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Débit en chunks stockés par seconde depuis le démarrage du job
+     */
+    public double getChunksPerSecond() {
+        Instant start = startedAt;
+        if (start == null) {
+            return 0.0;
+        }
+        Instant end = finishedAt != null ? finishedAt : Instant.now();
+        long millis = Math.max(1, end.toEpochMilli() - start.toEpochMilli());
+        return Math.round(chunksStored.get() * 100_000.0 / millis) / 100.0;
+    }
+
+    public String getId() { return id; }
+    public String getFileName() { return fileName; }
+    public long getSizeBytes() { return sizeBytes; }
+    public Instant getCreatedAt() { return createdAt; }
+    public Instant getStartedAt() { return startedAt; }
+    public Instant getFinishedAt() { return finishedAt; }
+    public Phase getPhase() { return phase; }
+    public String getDocumentId() { return documentId; }
+    public String getError() { return error; }
+    public int getChunksParsed() { return chunksParsed.get(); }
+    public int getChunksEmbedded() { return chunksEmbedded.get(); }
+    public int getChunksStored() { return chunksStored.get(); }
+}
@@ -0,0 +1,173 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jobs d'ingestion asynchrones : l'upload copie le fichier sur disque et rend la main
+ * immédiatement, l'ingestion tourne sur un pool dédié à concurrence bornée (les autres
+ * jobs attendent dans une file bornée). Les jobs terminés restent consultables pendant
+ * {@code ingestion.jobs.retention-minutes}.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final DocumentIngestionService ingestionService;
+    private final DocumentUpdateService updateService;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(DocumentIngestionService ingestionService,
+                               DocumentUpdateService updateService,
+                               RagMetrics metrics,
+                               @Value("${ingestion.jobs.concurrency:2}") int concurrency,
+                               @Value("${ingestion.jobs.queue-capacity:100}") int queueCapacity,
+                               @Value("${ingestion.jobs.retention-minutes:60}") long retentionMinutes) {
+        this.ingestionService = ingestionService;
+        this.updateService = updateService;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ingestion-job-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        metrics.gauge("rag.ingestion.jobs", "state", "queued", executor, e -> e.getQueue().size());
+        metrics.gauge("rag.ingestion.jobs", "state", "running", executor, ThreadPoolExecutor::getActiveCount);
+    }
+
+    /**
+     * Valide le fichier, le copie hors de la requête HTTP et met le job en file
+     * @throws IllegalArgumentException fichier refusé
+     * @throws RejectedExecutionException file de jobs pleine
+     */
+    public IngestionJob submit(MultipartFile file) throws IOException {
+        return enqueue(file, (job, source) -> ingestionService.ingestDocument(job.getFileName(), source, job));
+    }
+
+    /**
+     * Nouvelle version d'un document existant : seuls les chunks modifiés sont réécrits
+     */
+    public IngestionJob submitUpdate(Long documentId, MultipartFile file) throws IOException {
+        return enqueue(file, (job, source) -> updateService.updateDocument(documentId, job.getFileName(), source, job));
+    }
+
+    private IngestionJob enqueue(MultipartFile file, JobTask task) throws IOException {
+        String fileName = file.getOriginalFilename();
+        ingestionService.validateFileName(fileName);
+        evictExpiredJobs();
+
+        // Le MultipartFile n'est plus lisible une fois la requête terminée
+        Path tempFile = Files.createTempFile("ingestion-", "-" + Path.of(fileName).getFileName());
+        file.transferTo(tempFile);
+
+        IngestionJob job = new IngestionJob(UUID.randomUUID().toString(), fileName, file.getSize());
+        jobs.put(job.getId(), job);
+        try {
+            job.setFuture(executor.submit(() -> run(job, tempFile, task)));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        logger.info("📥 Job d'ingestion {} en file pour {} ({} octets)", job.getId(), fileName, file.getSize());
+        return job;
+    }
+
+    public IngestionJob getJob(String jobId) {
+        return jobs.get(jobId);
+    }
+
+    /**
+     * Jobs connus, du plus récent au plus ancien
+     */
+    public List<IngestionJob> listJobs() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparing(IngestionJob::getCreatedAt).reversed())
+                .toList();
+    }
+
+    /**
+     * Annule un job en file ou en cours (refusé une fois la persistance commencée) ; les embeddings déjà écrits sont retirés de Chroma
+     * @return le job, ou null s'il est inconnu
+     */
+    public IngestionJob cancel(String jobId) {
+        IngestionJob job = jobs.get(jobId);
+        if (job != null && job.requestCancel()) {
+            logger.info("🛑 Annulation demandée pour le job {} ({})", jobId, job.getFileName());
+        }
+        return job;
+    }
+
+    private void run(IngestionJob job, Path file, JobTask task) {
+        try {
+            if (!job.start()) {
+                return;
+            }
+            String documentId = task.run(job, new FileSystemResource(file));
+            job.complete(documentId);
+            logger.info("✅ Job {} terminé : document {} ({} chunks, {} chunks/s)",
+                    job.getId(), documentId, job.getChunksStored(), job.getChunksPerSecond());
+        } catch (CancellationException e) {
+            job.onPhase(IngestionProgress.Phase.CANCELLED);
+            logger.info("🛑 Job {} annulé après {} chunks", job.getId(), job.getChunksStored());
+        } catch (Exception e) {
+            if (job.isCancelled()) {
+                job.onPhase(IngestionProgress.Phase.CANCELLED);
+            } else {
+                job.fail(e.getMessage());
+                logger.error("❌ Job {} en échec pour {} : {}", job.getId(), job.getFileName(), e.getMessage(), e);
+            }
+        } finally {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("⚠️ Fichier temporaire non supprimé : {}", file);
+            }
+        }
+    }
+
+    private void evictExpiredJobs() {
+        Instant limit = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.getFinishedAt() != null && job.getFinishedAt().isBefore(limit));
+    }
+
+    @FunctionalInterface
+    private interface JobTask {
+        String run(IngestionJob job, InputStreamSource source) throws IOException;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.chatbotrag.service;
+
+/**
+ * Suivi d'une ingestion : appelé par le pipeline à chaque étape et chunk traité.
+ * {@link #NONE} pour les appels synchrones sans suivi.
+ */
+public interface IngestionProgress {
+
+    IngestionProgress NONE = new IngestionProgress() {
+    };
+
+    enum Phase {
+        QUEUED, EXTRACTING, EMBEDDING, PERSISTING, COMPLETED, FAILED, CANCELLED;
+
+        public boolean isFinished() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    default void onPhase(Phase phase) {
+    }
+
+    // Chunk produit par le découpage SH (thread d'extraction)
+    default void onChunkParsed() {
+    }
+
+    default void onChunkEmbedded() {
+    }
+
+    // Chunk écrit dans Chroma
+    default void onChunkStored() {
+    }
+
+    /**
+     * Vérifié entre deux chunks : l'ingestion s'arrête et nettoie ce qu'elle a déjà écrit
+     */
+    default boolean isCancelled() {
+        return false;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chatbotrag.service;
+
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Classe chaque question avant toute E/S (motifs compilés une seule fois) pour l'envoyer
+ * vers le chemin le moins coûteux capable d'y répondre :
+ * <ul>
+ *   <li>SMALLTALK / HELP : réponse fixe ;</li>
+ *   <li>SH_CODE_LOOKUP : un code SH à 10 chiffres cité, lecture directe de product_metadata ;</li>
+ *   <li>TARIFF_FIELD : produit ou droits demandés, recherche hybride puis gabarit ou Mistral ;</li>
+ *   <li>OPEN_QUESTION : explication, comparaison, procédure, plusieurs codes : recherche hybride puis Mistral.</li>
+ * </ul>
+ */
+@Service
+public class IntentRouter {
+
+    public enum Intent {
+        SMALLTALK, HELP, SH_CODE_LOOKUP, TARIFF_FIELD, OPEN_QUESTION;
+
+        /**
+         * Valeur du tag "intent" des métriques
+         */
+        public String tag() {
+            return name().toLowerCase();
+        }
+    }
+
+    /**
+     * Intention détectée et, pour SH_CODE_LOOKUP, le code normalisé sur 10 chiffres
+     */
+    public record Route(Intent intent, String shCode) {}
+
+    private static final Pattern SMALLTALK = Pattern.compile(
+            "(?iu)\\b(bonjour|coucou|hello|salut|bonsoir|hi|hey|ca va|cava|ça va|comment ça va|comment ca va|"
+                    + "quoi de neuf|comment tu vas|comment allez-vous)\\b");
+    private static final Pattern HELP = Pattern.compile(
+            "(?iu)\\b(aide|help|aidez-moi|comment utiliser|que peux-tu faire)\\b");
+    // Code SH à 10 chiffres, éventuellement écrit par groupes ("0101.21.00.00", "0101 21 00 00")
+    private static final Pattern SH_CODE = Pattern.compile("(?<!\\d)(\\d{4})[. ]?(\\d{2})[. ]?(\\d{2})[. ]?(\\d{2})(?!\\d)");
+    // Champs tarifaires ou produit : la question n'est pas du bavardage même si elle commence par "bonjour"
+    private static final Pattern TARIFF_SIGNAL = Pattern.compile(
+            "(?iu)\\b(droits?|taxes?|tva|tpi|di|tarif\\w*|accords?|pr[ée]f[ée]rentiel\\w*|douane\\w*|import\\w*|"
+                    + "code|sh|position|produits?)\\b");
+
+    /**
+     * Questions hors du gabarit de réponse (explications, comparaisons, procédures, quotas...) : laissées au LLM
+     */
+    static final Pattern OPEN_QUESTION = Pattern.compile(
+            "(?iu)\\b(pourquoi|comment|diff[ée]rence|compar\\w*|expliqu\\w*|proc[ée]dure\\w*|formalit[ée]s?|documents?|"
+                    + "licences?|certificats?|quotas?|contingents?|calcul\\w*|exemples?|r[ée]sum\\w*|historique)\\b");
+
+    public Route classify(String question) {
+        if (question == null || question.isBlank()) {
+            return new Route(Intent.OPEN_QUESTION, null);
+        }
+        Set<String> codes = shCodes(question);
+        boolean tariffSignal = !codes.isEmpty() || TARIFF_SIGNAL.matcher(question).find();
+
+        if (!tariffSignal && SMALLTALK.matcher(question).find()) {
+            return new Route(Intent.SMALLTALK, null);
+        }
+        if (!tariffSignal && HELP.matcher(question).find()) {
+            return new Route(Intent.HELP, null);
+        }
+        if (codes.size() > 1 || OPEN_QUESTION.matcher(question).find()) {
+            return new Route(Intent.OPEN_QUESTION, null);
+        }
+        if (codes.size() == 1) {
+            return new Route(Intent.SH_CODE_LOOKUP, codes.iterator().next());
+        }
+        return new Route(Intent.TARIFF_FIELD, null);
+    }
+
+    static Set<String> shCodes(String question) {
+        Set<String> codes = new LinkedHashSet<>();
+        Matcher matcher = SH_CODE.matcher(question);
+        while (matcher.find()) {
+            codes.add(matcher.group(1) + matcher.group(2) + matcher.group(3) + matcher.group(4));
+        }
+        return codes;
+    }
+}
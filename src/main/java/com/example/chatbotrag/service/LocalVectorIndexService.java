@@ -0,0 +1,280 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.store.QuantizedVectorIndex;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Index vectoriel local ({@link QuantizedVectorIndex}) chargé depuis Chroma par pages : la recherche
+ * de similarité évite l'appel HTTP à Chroma. Désactivé par défaut ({@code vector.local-index.enabled}) ;
+ * tant que l'index n'est pas construit, les recherches passent par Chroma. Il est reconstruit quand des
+ * chunks ont été écrits sur cette instance ou que le nombre d'embeddings Chroma a changé.
+ * Il couvre toutes les collections ({@link ChromaShardRouter}) : une fois en mémoire, le tarif
+ * entier est parcouru, le routage par chapitre ne concerne que les recherches Chroma.
+ */
+@Service
+public class LocalVectorIndexService {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocalVectorIndexService.class);
+
+    private static final int PAGE_SIZE = 1000;
+    private static final String FILE_PREFIX = "vectors-";
+    // Le répertoire est partagé par les instances d'un même hôte : chaque fichier porte le PID de son instance
+    private static final long PID = ProcessHandle.current().pid();
+
+    private final ChromaHttpClientService chromaHttpClientService;
+    private final ChromaShardRouter shardRouter;
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ShCodeCatalogueService shCodeCatalogue;
+    private final RagMetrics metrics;
+    private final boolean enabled;
+    private final QuantizedVectorIndex.Mode mode;
+    private final Path directory;
+    private final int rescoreFactor;
+    private final int binaryCandidateFactor;
+
+    private volatile QuantizedVectorIndex index;
+    private volatile long builtVersion = -1;
+
+    public LocalVectorIndexService(ChromaHttpClientService chromaHttpClientService,
+                                   ChromaShardRouter shardRouter,
+                                   NamedParameterJdbcTemplate jdbcTemplate,
+                                   ShCodeCatalogueService shCodeCatalogue,
+                                   RagMetrics metrics,
+                                   @Value("${vector.local-index.enabled:false}") boolean enabled,
+                                   @Value("${vector.local-index.mode:INT8}") QuantizedVectorIndex.Mode mode,
+                                   @Value("${vector.local-index.directory:${java.io.tmpdir}/chatbot-rag-vectors}") Path directory,
+                                   @Value("${vector.local-index.rescore-factor:4}") int rescoreFactor,
+                                   @Value("${vector.local-index.binary-candidate-factor:50}") int binaryCandidateFactor) {
+        this.chromaHttpClientService = chromaHttpClientService;
+        this.shardRouter = shardRouter;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shCodeCatalogue = shCodeCatalogue;
+        this.metrics = metrics;
+        this.enabled = enabled;
+        this.mode = mode;
+        this.directory = directory;
+        this.rescoreFactor = rescoreFactor;
+        this.binaryCandidateFactor = binaryCandidateFactor;
+        // 📈 Taille de l'index et mémoire occupée (tas / fichier mappé)
+        metrics.gauge("rag.vector.index", "kind", "size", this, s -> s.indexValue(QuantizedVectorIndex::size));
+        metrics.gauge("rag.vector.index", "kind", "heap_bytes", this, s -> s.indexValue(QuantizedVectorIndex::heapBytes));
+        metrics.gauge("rag.vector.index", "kind", "mapped_bytes", this, s -> s.indexValue(QuantizedVectorIndex::mappedBytes));
+    }
+
+    public boolean isReady() {
+        return enabled && index != null;
+    }
+
+    /**
+     * Recherche de similarité sur l'index local s'il est prêt, sinon sur Chroma.
+     * Scores et boosts identiques à {@link ChromaHttpClientService#searchSimilar}.
+     */
+    public List<ChromaHttpClientService.SearchResult> searchSimilar(float[] queryEmbedding, int maxResults, double minScore) {
+        return searchSimilar(queryEmbedding, maxResults, minScore, Set.of());
+    }
+
+    /**
+     * Idem, en limitant la recherche Chroma aux collections des chapitres SH donnés (vide : toutes)
+     */
+    public List<ChromaHttpClientService.SearchResult> searchSimilar(float[] queryEmbedding, int maxResults, double minScore,
+                                                                    Set<String> chapters) {
+        QuantizedVectorIndex current = enabled ? index : null;
+        if (current == null || current.getDimension() != queryEmbedding.length) {
+            return metrics.time(RagMetrics.STAGE_CHROMA_QUERY,
+                    () -> shardRouter.searchSimilar(queryEmbedding, maxResults, minScore, chapters));
+        }
+        return metrics.time(RagMetrics.STAGE_LOCAL_VECTOR_QUERY, () -> {
+            List<QuantizedVectorIndex.Hit> hits = current.search(queryEmbedding, maxResults);
+            if (hits.isEmpty()) {
+                return new ArrayList<>();
+            }
+            // Textes lus dans MySQL : un chunk supprimé depuis la construction de l'index est ignoré
+            Map<String, String> texts = new HashMap<>();
+            jdbcTemplate.query("SELECT id, text FROM chunk WHERE id IN (:ids)",
+                    Map.of("ids", hits.stream().map(QuantizedVectorIndex.Hit::id).toList()),
+                    rs -> { texts.put(rs.getString(1), rs.getString(2)); });
+
+            List<String> documents = new ArrayList<>(hits.size());
+            List<Double> distances = new ArrayList<>(hits.size());
+            List<String> ids = new ArrayList<>(hits.size());
+            for (QuantizedVectorIndex.Hit hit : hits) {
+                String text = texts.get(hit.id());
+                if (text != null) {
+                    documents.add(text);
+                    distances.add((double) hit.distance());
+                    ids.add(hit.id());
+                }
+            }
+            return chromaHttpClientService.scoreResults(documents, distances, ids, minScore);
+        });
+    }
+
+    @Scheduled(initialDelayString = "${vector.local-index.initial-delay:PT30S}", fixedDelayString = "${vector.local-index.refresh-interval:PT1M}")
+    public void scheduledRefresh() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            logger.warn("⚠️ Reconstruction de l'index vectoriel local impossible : {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Reconstruit l'index si des chunks ont été écrits depuis la dernière construction
+     */
+    public synchronized void refresh() {
+        long version = shCodeCatalogue.getVersion();
+        List<String> collections = shardRouter.storedCollections();
+        long chromaCount = 0;
+        for (String collection : collections) {
+            chromaCount += chromaHttpClientService.countEmbeddings(collection);
+        }
+        QuantizedVectorIndex current = index;
+        if (version == builtVersion && chromaCount == (current == null ? 0 : current.size())) {
+            return;
+        }
+        rebuild(version, collections);
+    }
+
+    private void rebuild(long version, List<String> collections) {
+        long start = System.nanoTime();
+        Path file = directory.resolve(FILE_PREFIX + PID + "-" + System.currentTimeMillis() + ".f32");
+        QuantizedVectorIndex built;
+        try {
+            Files.createDirectories(directory);
+            built = load(file, collections);
+        } catch (IOException e) {
+            throw new IllegalStateException("Répertoire de l'index vectoriel inaccessible : " + directory, e);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+            throw e;
+        }
+
+        QuantizedVectorIndex previous = index;
+        index = built;
+        builtVersion = version;
+        if (previous != null) {
+            previous.close();
+        } else {
+            deleteStaleFiles(file);
+        }
+        if (built != null) {
+            logger.info("🧭 Index vectoriel local ({}) : {} vecteurs, {} Mo sur le tas, {} Mo mappés, construit en {} ms",
+                    built.getMode(), built.size(), built.heapBytes() >> 20, built.mappedBytes() >> 20,
+                    (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private QuantizedVectorIndex load(Path file, List<String> collections) {
+        QuantizedVectorIndex.Builder builder = null;
+        try {
+            for (String collection : collections) {
+                int offset = 0;
+                while (true) {
+                    Map<String, float[]> page = chromaHttpClientService.getEmbeddingsPage(collection, offset, PAGE_SIZE);
+                    for (Map.Entry<String, float[]> entry : page.entrySet()) {
+                        if (builder == null) {
+                            builder = QuantizedVectorIndex.builder(entry.getValue().length, mode)
+                                    .file(file)
+                                    .rescoreFactor(rescoreFactor)
+                                    .binaryCandidateFactor(binaryCandidateFactor);
+                        }
+                        builder.add(entry.getKey(), entry.getValue());
+                    }
+                    offset += page.size();
+                    if (page.size() < PAGE_SIZE) {
+                        break;
+                    }
+                }
+            }
+            // Collection vide : recherches sur Chroma
+            return builder == null ? null : builder.build();
+        } catch (RuntimeException e) {
+            // Ferme le fichier avant sa suppression par rebuild
+            if (builder != null) {
+                try {
+                    builder.abort();
+                } catch (RuntimeException closeFailure) {
+                    e.addSuppressed(closeFailure);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Fichiers laissés par cette instance ou par une instance arrêtée avant d'avoir fermé son index ;
+     * ceux d'une instance encore vivante sur le même hôte sont conservés
+     */
+    private void deleteStaleFiles(Path current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, FILE_PREFIX + "*.f32")) {
+            for (Path file : files) {
+                if (!file.equals(current) && isStale(file)) {
+                    deleteQuietly(file);
+                }
+            }
+        } catch (IOException e) {
+            logger.debug("Nettoyage de {} impossible : {}", directory, e.getMessage());
+        }
+    }
+
+    private static boolean isStale(Path file) throws IOException {
+        String name = file.getFileName().toString();
+        String[] parts = name.substring(FILE_PREFIX.length(), name.length() - ".f32".length()).split("-");
+        try {
+            if (parts.length == 2) {
+                long owner = Long.parseLong(parts[0]);
+                return owner == PID || ProcessHandle.of(owner).map(process -> !process.isAlive()).orElse(true);
+            }
+            Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return false; // fichier d'un autre format : pas le nôtre
+        }
+        // Ancien nommage sans PID : seulement les fichiers antérieurs au démarrage de cette instance
+        Instant processStart = ProcessHandle.current().info().startInstant().orElse(Instant.EPOCH);
+        return Files.getLastModifiedTime(file).toInstant().isBefore(processStart);
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Suppression de {} impossible : {}", file, e.getMessage());
+        }
+    }
+
+    private double indexValue(ToLongFunction<QuantizedVectorIndex> field) {
+        QuantizedVectorIndex current = index;
+        return current == null ? 0 : field.applyAsLong(current);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        QuantizedVectorIndex current = index;
+        index = null;
+        if (current != null) {
+            current.close();
+        }
+    }
+}
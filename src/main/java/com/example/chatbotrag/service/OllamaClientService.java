@@ -1,50 +1,122 @@
 package com.example.chatbotrag.service;
 
+import com.example.chatbotrag.metrics.HttpClientMetricsInterceptor;
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
 public class OllamaClientService {
 
+    private static final Logger logger = LoggerFactory.getLogger(OllamaClientService.class);
+
     private final RestTemplate restTemplate;
-    private static final String BASE_URL = "http://localhost:11434"; // L'URL de base d'Ollama
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final String baseUrl; // L'URL de base d'Ollama
+    private final String embeddingModel;
+    private final String chatModel;
+    private final String keepAlive; // Durée de maintien en mémoire après le dernier appel ("30m", "-1" = jamais déchargé)
 
-    public OllamaClientService(RestTemplateBuilder restTemplateBuilder) {
+    public OllamaClientService(RestTemplateBuilder restTemplateBuilder, RagMetrics metrics,
+                               @Value("${ollama.baseurl:http://localhost:11434}") String baseUrl,
+                               @Value("${ollama.embeddingmodel.name:bge-m3}") String embeddingModel,
+                               @Value("${ollama.chatmodel.name:mistral}") String chatModel,
+                               @Value("${ollama.keep-alive:30m}") String keepAlive) {
+        this.baseUrl = baseUrl;
+        this.embeddingModel = embeddingModel;
+        this.chatModel = chatModel;
+        this.keepAlive = keepAlive;
         this.restTemplate = restTemplateBuilder
                 .connectTimeout(Duration.ofSeconds(60))
                 .readTimeout(Duration.ofSeconds(300))
+                .additionalInterceptors(new HttpClientMetricsInterceptor("ollama", metrics))
                 .build();
     }
 
 
+    public String getEmbeddingModel() {
+        return embeddingModel;
+    }
+
+    public String getChatModel() {
+        return chatModel;
+    }
+
+    /**
+     * 🔥 Charge un modèle en mémoire pour keep_alive : requête de génération sans prompt
+     * (rien n'est généré), ou un embedding minimal pour le modèle d'embedding.
+     * Les erreurs HTTP sont propagées à l'appelant.
+     */
+    public void preload(String model) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("model", model);
+        body.put("keep_alive", keepAlive);
+        if (model.equals(embeddingModel)) {
+            body.put("prompt", "warm-up");
+            restTemplate.postForObject(baseUrl + "/api/embeddings", body, Map.class);
+        } else {
+            body.put("stream", false);
+            restTemplate.postForObject(baseUrl + "/api/generate", body, Map.class);
+        }
+    }
+
+    /**
+     * 📋 Modèles actuellement chargés en mémoire par Ollama (GET /api/ps), sans le tag ":latest".
+     * Les erreurs HTTP sont propagées à l'appelant.
+     */
+    public Set<String> loadedModels() {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> responseMap = restTemplate.getForObject(baseUrl + "/api/ps", Map.class);
+        Set<String> models = new HashSet<>();
+        if (responseMap != null && responseMap.get("models") instanceof List<?> entries) {
+            for (Object entry : entries) {
+                if (entry instanceof Map<?, ?> model && model.get("name") instanceof String name) {
+                    models.add(name.endsWith(":latest") ? name.substring(0, name.length() - ":latest".length()) : name);
+                }
+            }
+        }
+        return models;
+    }
+
     public List<Double> embed(String input) {
         Map<String, Object> body = new HashMap<>();
-        body.put("model", "bge-m3"); // Modèle d'embedding
+        body.put("model", embeddingModel); // Modèle d'embedding
         body.put("prompt", input);
+        body.put("keep_alive", keepAlive);
 
         try {
             @SuppressWarnings("unchecked")
-            Map<String, Object> responseMap = restTemplate.postForObject(BASE_URL + "/api/embeddings", body, Map.class);
+            Map<String, Object> responseMap = restTemplate.postForObject(baseUrl + "/api/embeddings", body, Map.class);
 
             if (responseMap != null && responseMap.get("embedding") instanceof List) {
                 @SuppressWarnings("unchecked")
                 List<Double> vector = (List<Double>) responseMap.get("embedding");
                 return vector;
             } else {
-                System.err.println("Ollama embed response: corps de réponse nul ou 'embedding' n'est pas une liste. Réponse: " + responseMap);
+                logger.warn("Ollama embed response: corps de réponse nul ou 'embedding' n'est pas une liste. Réponse: {}", responseMap);
                 return Collections.emptyList();
             }
         } catch (Exception e) {
-            System.err.println("Erreur lors de l'appel à Ollama pour l'embedding: " + e.getMessage());
-            e.printStackTrace();
+            logger.error("Erreur lors de l'appel à Ollama pour l'embedding: {}", e.getMessage(), e);
             return Collections.emptyList();
         }
     }
@@ -53,14 +125,63 @@ public class OllamaClientService {
      * 🤖 Génération de réponse avec Mistral (mode non-streaming)
      */
     public String generateWithMistral(String prompt) {
-        return generateResponse(prompt, "mistral", false);
+        return generateResponse(prompt, chatModel, false);
     }
     
+    /**
+     * Réponse de Mistral avec les tokens {@code context} (prompt + réponse évalués) à renvoyer au tour suivant
+     */
+    public record Generation(String response, int[] context, int promptEvalCount) {}
+
+    /**
+     * 🧠 Génération avec Mistral reprenant l'état d'une conversation : {@code context} est le tableau
+     * renvoyé par Ollama au tour précédent (null pour un premier tour). Ollama n'évalue alors que
+     * les tokens du nouveau prompt quand le préfixe est encore dans son cache KV.
+     * Les erreurs HTTP et les réponses invalides sont propagées, pour permettre un nouvel essai sans contexte.
+     */
+    public Generation generateWithContext(String prompt, int[] context) {
+        Map<String, Object> requestBodyMap = new HashMap<>();
+        requestBodyMap.put("model", chatModel);
+        requestBodyMap.put("prompt", prompt);
+        requestBodyMap.put("stream", false);
+        requestBodyMap.put("keep_alive", keepAlive);
+        requestBodyMap.put("options", generationOptions());
+        if (context != null) {
+            requestBodyMap.put("context", context);
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> responseMap = restTemplate.postForObject(baseUrl + "/api/generate", requestBodyMap, Map.class);
+        if (responseMap == null || !(responseMap.get("response") instanceof String response)) {
+            throw new IllegalStateException("Réponse Ollama invalide : " + responseMap);
+        }
+        return new Generation(response, contextTokens(responseMap), promptEvalCount(responseMap));
+    }
+
+    /**
+     * 🌊 Variante en streaming de {@link #generateWithContext} : chaque fragment de texte est passé à
+     * {@code onToken} dès sa réception (lignes NDJSON d'Ollama), sans attendre la fin de la réponse.
+     * Le contexte et prompt_eval_count sont lus sur le dernier message ("done": true).
+     * Les erreurs HTTP, les erreurs Ollama et celles de {@code onToken} sont propagées.
+     */
+    public Generation streamWithContext(String prompt, int[] context, Consumer<String> onToken) {
+        Map<String, Object> requestBodyMap = new HashMap<>();
+        requestBodyMap.put("model", chatModel);
+        requestBodyMap.put("prompt", prompt);
+        requestBodyMap.put("stream", true);
+        requestBodyMap.put("keep_alive", keepAlive);
+        requestBodyMap.put("options", generationOptions());
+        if (context != null) {
+            requestBodyMap.put("context", context);
+        }
+        return stream(requestBodyMap, onToken);
+    }
+
     /**
      * 🌊 Génération de réponse avec Mistral (mode streaming)
      */
     public List<String> streamWithMistral(String prompt) {
-        return generateStreamResponse(prompt, "mistral");
+        return generateStreamResponse(prompt, chatModel);
     }
     
     /**
@@ -70,27 +191,23 @@ public class OllamaClientService {
         Map<String, Object> requestBodyMap = new HashMap<>();
         requestBodyMap.put("model", model);
         requestBodyMap.put("prompt", prompt);
+        requestBodyMap.put("keep_alive", keepAlive);
         requestBodyMap.put("stream", false);
 
-        Map<String, Object> options = new HashMap<>();
-        options.put("temperature", 0.2); // Température basse pour des réponses factuelles
-        options.put("top_p", 0.9);
-        options.put("top_k", 40);
-        requestBodyMap.put("options", options);
+        requestBodyMap.put("options", generationOptions());
 
         try {
             @SuppressWarnings("unchecked")
-            Map<String, Object> responseMap = restTemplate.postForObject(BASE_URL + "/api/generate", requestBodyMap, Map.class);
+            Map<String, Object> responseMap = restTemplate.postForObject(baseUrl + "/api/generate", requestBodyMap, Map.class);
 
             if (responseMap != null && responseMap.get("response") instanceof String) {
                 return (String) responseMap.get("response");
             } else {
-                System.err.println("[MISTRAL] Réponse invalide: " + responseMap);
+                logger.warn("[MISTRAL] Réponse invalide: {}", responseMap);
                 return "Erreur lors de la génération de la réponse.";
             }
         } catch (Exception e) {
-            System.err.println("[MISTRAL] Erreur lors de l'appel à Ollama avec " + model + ": " + e.getMessage());
-            e.printStackTrace();
+            logger.error("[MISTRAL] Erreur lors de l'appel à Ollama avec {}: {}", model, e.getMessage(), e);
             return "Erreur lors de la communication avec le modèle " + model + ".";
         }
     }
@@ -102,38 +219,81 @@ public class OllamaClientService {
         Map<String, Object> requestBodyMap = new HashMap<>();
         requestBodyMap.put("model", model);
         requestBodyMap.put("prompt", prompt);
+        requestBodyMap.put("keep_alive", keepAlive);
         requestBodyMap.put("stream", true);
 
-        Map<String, Object> options = new HashMap<>();
-        options.put("temperature", 0.2);
-        options.put("top_p", 0.9);
-        options.put("top_k", 40);
-        requestBodyMap.put("options", options);
+        requestBodyMap.put("options", generationOptions());
 
         try {
             List<String> responses = new ArrayList<>();
-            @SuppressWarnings("unchecked")
-            List<Map<String, Object>> chunkMaps = restTemplate.postForObject(BASE_URL + "/api/generate", requestBodyMap, List.class);
-
-            if (chunkMaps != null) {
-                for (Map<String, Object> chunkMap : chunkMaps) {
-                    Object responseObj = chunkMap.get("response");
-                    if (responseObj instanceof String) {
-                        responses.add((String) responseObj);
-                    }
-                }
-            }
+            stream(requestBodyMap, responses::add);
             return responses;
         } catch (Exception e) {
-            System.err.println("[MISTRAL] Erreur lors du streaming avec " + model + ": " + e.getMessage());
-            e.printStackTrace();
+            logger.error("[MISTRAL] Erreur lors du streaming avec {}: {}", model, e.getMessage(), e);
             return Collections.emptyList();
         }
     }
 
+    /**
+     * Lecture ligne à ligne de la réponse NDJSON de /api/generate (un objet JSON par ligne)
+     */
+    private Generation stream(Map<String, Object> requestBodyMap, Consumer<String> onToken) {
+        Generation generation = restTemplate.execute(baseUrl + "/api/generate", HttpMethod.POST,
+                restTemplate.httpEntityCallback(requestBodyMap), response -> {
+                    StringBuilder text = new StringBuilder();
+                    BufferedReader reader = new BufferedReader(new InputStreamReader(response.getBody(), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (line.isBlank()) {
+                            continue;
+                        }
+                        @SuppressWarnings("unchecked")
+                        Map<String, Object> chunkMap = objectMapper.readValue(line, Map.class);
+                        if (chunkMap.get("error") != null) {
+                            throw new IllegalStateException("Erreur Ollama : " + chunkMap.get("error"));
+                        }
+                        if (chunkMap.get("response") instanceof String token && !token.isEmpty()) {
+                            text.append(token);
+                            onToken.accept(token);
+                        }
+                        if (Boolean.TRUE.equals(chunkMap.get("done"))) {
+                            return new Generation(text.toString(), contextTokens(chunkMap), promptEvalCount(chunkMap));
+                        }
+                    }
+                    throw new IllegalStateException("Flux Ollama interrompu avant la fin de la réponse");
+                });
+        if (generation == null) {
+            throw new IllegalStateException("Réponse Ollama vide");
+        }
+        return generation;
+    }
+
+    private static int[] contextTokens(Map<String, Object> responseMap) {
+        if (!(responseMap.get("context") instanceof List<?> tokens)) {
+            return null;
+        }
+        int[] context = new int[tokens.size()];
+        for (int i = 0; i < context.length; i++) {
+            context[i] = ((Number) tokens.get(i)).intValue();
+        }
+        return context;
+    }
+
+    private static int promptEvalCount(Map<String, Object> responseMap) {
+        return responseMap.get("prompt_eval_count") instanceof Number count ? count.intValue() : -1;
+    }
+
+    private static Map<String, Object> generationOptions() {
+        Map<String, Object> options = new HashMap<>();
+        options.put("temperature", 0.2); // Température basse pour des réponses factuelles
+        options.put("top_p", 0.9);
+        options.put("top_k", 40);
+        return options;
+    }
+
     @Deprecated
     public List<String> chatStream(String prompt, String model) {
-        System.out.println("[DEPRECATED] Utilisation de chatStream obsolète. Utilisez generateStreamResponse() à la place.");
+        logger.info("[DEPRECATED] Utilisation de chatStream obsolète. Utilisez generateStreamResponse() à la place.");
         return generateStreamResponse(prompt, model);
     }
 }
\ No newline at end of file
@@ -4,6 +4,8 @@ import com.example.chatbotrag.model.ProductMetadata;
 import com.example.chatbotrag.service.SHCodeDocumentParser.DocumentChunk;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
@@ -17,6 +19,8 @@ import java.util.regex.Matcher;
 @Service
 public class ProductMetadataExtractionService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ProductMetadataExtractionService.class);
+
     private final ObjectMapper objectMapper;
     
     // Patterns pour l'extraction intelligente
@@ -122,7 +126,7 @@ public class ProductMetadataExtractionService {
      * Extrait les métadonnées d'un DocumentChunk du parser SH
      */
     public ProductMetadata extractMetadata(DocumentChunk chunk) {
-        System.out.println("🔍 [METADATA_EXTRACTION] Début extraction pour SH: " + chunk.getShCode());
+        logger.debug("🔍 [METADATA_EXTRACTION] Début extraction pour SH: {}", chunk.getShCode());
         
         ProductMetadata metadata = new ProductMetadata();
         metadata.setCodeSh(chunk.getShCode());
@@ -140,7 +144,7 @@ public class ProductMetadataExtractionService {
             try {
                 metadata.setPreferentiels(objectMapper.writeValueAsString(chunk.getAgreements()));
             } catch (JsonProcessingException e) {
-                System.err.println("⚠️ [METADATA_EXTRACTION] Erreur serialisation JSON: " + e.getMessage());
+                logger.error("⚠️ [METADATA_EXTRACTION] Erreur serialisation JSON: {}", e.getMessage());
                 metadata.setPreferentiels(String.join(", ", chunk.getAgreements()));
             }
         }
@@ -178,7 +182,7 @@ public class ProductMetadataExtractionService {
         // Génération des synonymes
         metadata.setSynonymes(generateSynonyms(metadata));
         
-        System.out.println("✅ [METADATA_EXTRACTION] Métadonnées extraites: " + metadata.toString());
+        logger.debug("✅ [METADATA_EXTRACTION] Métadonnées extraites: {}", metadata);
         return metadata;
     }
 
@@ -193,7 +197,7 @@ public class ProductMetadataExtractionService {
             // Recherche de normalisation
             for (Map.Entry<String, String> entry : NORMALIZATION_MAP.entrySet()) {
                 if (extracted.contains(entry.getKey())) {
-                    System.out.println("🔄 [NORMALIZATION] '" + extracted + "' -> '" + entry.getValue() + "'");
+                    logger.debug("🔄 [NORMALIZATION] '{}' -> '{}'", extracted, entry.getValue());
                     return entry.getValue();
                 }
             }
@@ -342,7 +346,7 @@ public class ProductMetadataExtractionService {
             queryMetadata.put("usage", usage);
         }
         
-        System.out.println("🔍 [QUERY_METADATA] Métadonnées extraites de la requête: " + queryMetadata);
+        logger.debug("🔍 [QUERY_METADATA] Métadonnées extraites de la requête: {}", queryMetadata);
         return queryMetadata;
     }
 
@@ -1,5 +1,7 @@
 package com.example.chatbotrag.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import java.util.*;
 import java.util.regex.Matcher;
@@ -12,12 +14,14 @@ import java.util.regex.Pattern;
 @Service
 public class SHCodeDocumentParser {
 
+    private static final Logger logger = LoggerFactory.getLogger(SHCodeDocumentParser.class);
+
     private static final int MIN_CHUNK_SIZE = 150; // words
     private static final int MAX_CHUNK_SIZE = 400; // words
     private static final int PREFERRED_CHUNK_SIZE = 300; // words
     
     // Regex patterns for SH code detection
-    private static final Pattern SH_CODE_PATTERN = Pattern.compile(
+    static final Pattern SH_CODE_PATTERN = Pattern.compile(
         "(?i)(?:le\\s+)?code\\s+sh\\s+(\\d{10})\\s+correspond\\s+à", 
         Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE
     );
@@ -52,14 +56,14 @@ public class SHCodeDocumentParser {
      * Parses a document and chunks it by SH code sections
      */
     public List<DocumentChunk> parseDocument(String documentText, String documentName) {
-        System.out.println("🔧 [SH_PARSER] Starting SH code-aware parsing for: " + documentName);
+        logger.debug("🔧 [SH_PARSER] Starting SH code-aware parsing for: {}", documentName);
         
         // Normalize text
         String normalizedText = normalizeText(documentText);
         
         // Find all SH code positions
         List<SHCodeLocation> shCodeLocations = findSHCodeLocations(normalizedText);
-        System.out.println("📊 [SH_PARSER] Found " + shCodeLocations.size() + " SH codes in document");
+        logger.info("📊 [SH_PARSER] Found {} SH codes in document", shCodeLocations.size());
         
         // Create chunks based on SH code boundaries
         List<DocumentChunk> chunks = createSHCodeChunks(normalizedText, shCodeLocations);
@@ -67,32 +71,16 @@ public class SHCodeDocumentParser {
         // Post-process chunks (size optimization, metadata extraction)
         chunks = optimizeChunks(chunks);
         
-        System.out.println("✅ [SH_PARSER] Generated " + chunks.size() + " optimized chunks");
+        logger.info("✅ [SH_PARSER] Generated {} optimized chunks", chunks.size());
         
         return chunks;
     }
 
     /**
-     * Normalizes text by fixing encoding issues and whitespace
+     * Normalizes text by fixing encoding issues and whitespace (single pass, see TariffTextNormalizer)
      */
-    private String normalizeText(String text) {
-        return text
-            .replaceAll("\\s+", " ") // Normalize whitespace
-            .replaceAll("Ã©", "é")
-            .replaceAll("Ã ", "à")
-            .replaceAll("Ã¨", "è")
-            .replaceAll("Ã´", "ô")
-            .replaceAll("Ã¢", "â")
-            .replaceAll("Ã§", "ç")
-            .replaceAll("Ãª", "ê")
-            .replaceAll("Ã®", "î")
-            .replaceAll("Ã¯", "ï")
-            .replaceAll("Ã¹", "ù")
-            .replaceAll("Ã»", "û")
-            .replaceAll("â", "'")
-            .replaceAll("â", "–")
-            .replaceAll("â", "—")
-            .trim();
+    String normalizeText(String text) {
+        return TariffTextNormalizer.normalize(text);
     }
 
     /**
@@ -106,7 +94,7 @@ public class SHCodeDocumentParser {
             String shCode = matcher.group(1);
             int startPos = matcher.start();
             locations.add(new SHCodeLocation(shCode, startPos));
-            System.out.println("🎯 [SH_PARSER] Found SH code: " + shCode + " at position " + startPos);
+            logger.debug("🎯 [SH_PARSER] Found SH code: {} at position {}", shCode, startPos);
         }
         
         return locations;
@@ -127,29 +115,38 @@ public class SHCodeDocumentParser {
                 ? shCodeLocations.get(i + 1).position 
                 : text.length();
             
-            // Extract chunk text
-            String chunkText = text.substring(startPos, endPos).trim();
-            
-            if (!chunkText.isEmpty()) {
-                DocumentChunk chunk = new DocumentChunk();
-                chunk.setText(chunkText);
-                chunk.setShCode(currentLocation.shCode);
-                chunk.setStartPosition(startPos);
-                chunk.setEndPosition(endPos);
-                chunk.setWordCount(countWords(chunkText));
-                
-                // Extract metadata
-                extractMetadata(chunk);
-                
+            DocumentChunk chunk = buildSectionChunk(text.substring(startPos, endPos), currentLocation.shCode, startPos, endPos);
+            if (chunk != null) {
                 chunks.add(chunk);
-                System.out.println("📝 [SH_PARSER] Created chunk for SH " + currentLocation.shCode + 
-                    " (" + chunk.getWordCount() + " words)");
             }
         }
         
         return chunks;
     }
 
+    /**
+     * Builds the chunk of one SH section (null if the section is empty).
+     * Shared with IncrementalSHCodeChunker so both paths produce the same chunks.
+     */
+    DocumentChunk buildSectionChunk(String sectionText, String shCode, int startPos, int endPos) {
+        String chunkText = sectionText.trim();
+        if (chunkText.isEmpty()) {
+            return null;
+        }
+        DocumentChunk chunk = new DocumentChunk();
+        chunk.setText(chunkText);
+        chunk.setShCode(shCode);
+        chunk.setStartPosition(startPos);
+        chunk.setEndPosition(endPos);
+        chunk.setWordCount(countWords(chunkText));
+        
+        // Extract metadata
+        extractMetadata(chunk);
+        
+        logger.debug("📝 [SH_PARSER] Created chunk for SH {} ({} words)", shCode, chunk.getWordCount());
+        return chunk;
+    }
+
     /**
      * Optimizes chunks by splitting large ones and merging small ones
      */
@@ -157,25 +154,33 @@ public class SHCodeDocumentParser {
         List<DocumentChunk> optimizedChunks = new ArrayList<>();
         
         for (DocumentChunk chunk : chunks) {
-            if (chunk.getWordCount() > MAX_CHUNK_SIZE) {
-                // Split large chunks
-                List<DocumentChunk> splitChunks = splitLargeChunk(chunk);
-                optimizedChunks.addAll(splitChunks);
-            } else if (chunk.getWordCount() < MIN_CHUNK_SIZE && !optimizedChunks.isEmpty()) {
-                // Try to merge with previous chunk if it's from the same SH family
-                DocumentChunk previousChunk = optimizedChunks.get(optimizedChunks.size() - 1);
-                if (canMergeChunks(previousChunk, chunk)) {
-                    mergeChunks(previousChunk, chunk);
-                    System.out.println("🔗 [SH_PARSER] Merged small chunk with SH " + chunk.getShCode());
-                } else {
-                    optimizedChunks.add(chunk);
-                }
+            appendOptimized(optimizedChunks, chunk);
+        }
+        
+        return optimizedChunks;
+    }
+
+    /**
+     * Appends one chunk to the optimized list: only the last element can still be
+     * modified (merge), which lets IncrementalSHCodeChunker emit the others right away.
+     */
+    void appendOptimized(List<DocumentChunk> optimizedChunks, DocumentChunk chunk) {
+        if (chunk.getWordCount() > MAX_CHUNK_SIZE) {
+            // Split large chunks
+            List<DocumentChunk> splitChunks = splitLargeChunk(chunk);
+            optimizedChunks.addAll(splitChunks);
+        } else if (chunk.getWordCount() < MIN_CHUNK_SIZE && !optimizedChunks.isEmpty()) {
+            // Try to merge with previous chunk if it's from the same SH family
+            DocumentChunk previousChunk = optimizedChunks.get(optimizedChunks.size() - 1);
+            if (canMergeChunks(previousChunk, chunk)) {
+                mergeChunks(previousChunk, chunk);
+                logger.debug("🔗 [SH_PARSER] Merged small chunk with SH {}", chunk.getShCode());
             } else {
                 optimizedChunks.add(chunk);
             }
+        } else {
+            optimizedChunks.add(chunk);
         }
-        
-        return optimizedChunks;
     }
 
     /**
@@ -218,8 +223,7 @@ public class SHCodeDocumentParser {
             splitChunks.add(chunk);
         }
         
-        System.out.println("✂️ [SH_PARSER] Split large chunk for SH " + largeChunk.getShCode() + 
-            " into " + splitChunks.size() + " smaller chunks");
+        logger.debug("✂️ [SH_PARSER] Split large chunk for SH {} into {} smaller chunks", largeChunk.getShCode(), splitChunks.size());
         
         return splitChunks.isEmpty() ? Arrays.asList(largeChunk) : splitChunks;
     }
@@ -334,7 +338,7 @@ public class SHCodeDocumentParser {
                 String value = matcher.group(1).replace(",", ".");
                 return Double.parseDouble(value);
             } catch (NumberFormatException e) {
-                System.err.println("⚠️ [SH_PARSER] Could not parse numeric value: " + matcher.group(1));
+                logger.warn("⚠️ [SH_PARSER] Could not parse numeric value: {}", matcher.group(1));
             }
         }
         return null;
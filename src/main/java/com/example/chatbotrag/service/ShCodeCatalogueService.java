@@ -0,0 +1,152 @@
+package com.example.chatbotrag.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+
+/**
+ * Catalogue des codes SH (chapitre → position → code, avec nombre de chunks) construit par
+ * agrégation sur chunk.sh_code, colonne remplie à l'ingestion depuis SHCodeDocumentParser.
+ * Le snapshot est servi tel quel jusqu'à une ingestion / suppression ({@link #invalidate()})
+ * ou l'expiration de {@code catalogue.sh-codes.max-age} (modifications faites par une autre instance).
+ */
+@Service
+public class ShCodeCatalogueService {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShCodeCatalogueService.class);
+
+    private static final int BACKFILL_BATCH_SIZE = 500;
+
+    public record CodeEntry(String code, long chunkCount) {}
+
+    public record HeadingEntry(String heading, long chunkCount, List<CodeEntry> codes) {}
+
+    public record ChapterEntry(String chapter, long chunkCount, List<HeadingEntry> headings) {}
+
+    public record Snapshot(long version, String etag, Instant builtAt, long chunkCount,
+                           List<String> codes, List<ChapterEntry> chapters) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Duration maxAge;
+    private final AtomicLong version = new AtomicLong();
+
+    private volatile Snapshot snapshot;
+    private volatile boolean legacyBackfilled;
+
+    public ShCodeCatalogueService(JdbcTemplate jdbcTemplate,
+                                  @Value("${catalogue.sh-codes.max-age:PT5M}") Duration maxAge) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Snapshot courant, reconstruit s'il a été invalidé ou a expiré
+     */
+    public Snapshot getSnapshot() {
+        Snapshot current = snapshot;
+        if (current != null && current.builtAt().plus(maxAge).isAfter(Instant.now())) {
+            return current;
+        }
+        return rebuild();
+    }
+
+    /**
+     * À appeler après toute écriture de chunks (ingestion, mise à jour, suppression, synchronisation)
+     */
+    public void invalidate() {
+        version.incrementAndGet();
+        snapshot = null;
+    }
+
+    /**
+     * Compteur des écritures de chunks sur cette instance (incrémenté par {@link #invalidate()})
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    private synchronized Snapshot rebuild() {
+        Snapshot current = snapshot;
+        if (current != null && current.builtAt().plus(maxAge).isAfter(Instant.now())) {
+            return current; // reconstruit par un autre thread entre-temps
+        }
+        long buildVersion = version.get();
+        if (!legacyBackfilled) {
+            backfillLegacyChunks();
+            legacyBackfilled = true;
+        }
+
+        List<CodeEntry> entries = jdbcTemplate.query(
+                "SELECT sh_code, COUNT(*) FROM chunk WHERE sh_code IS NOT NULL GROUP BY sh_code ORDER BY sh_code",
+                (rs, rowNum) -> new CodeEntry(rs.getString(1), rs.getLong(2)));
+
+        Map<String, Map<String, List<CodeEntry>>> tree = new LinkedHashMap<>();
+        StringBuilder digestInput = new StringBuilder();
+        long total = 0;
+        for (CodeEntry entry : entries) {
+            tree.computeIfAbsent(entry.code().substring(0, 2), c -> new LinkedHashMap<>())
+                    .computeIfAbsent(entry.code().substring(0, 4), h -> new ArrayList<>())
+                    .add(entry);
+            digestInput.append(entry.code()).append(':').append(entry.chunkCount()).append('\n');
+            total += entry.chunkCount();
+        }
+
+        List<ChapterEntry> chapters = new ArrayList<>(tree.size());
+        tree.forEach((chapter, headings) -> {
+            List<HeadingEntry> headingEntries = new ArrayList<>(headings.size());
+            headings.forEach((heading, codes) -> headingEntries.add(
+                    new HeadingEntry(heading, codes.stream().mapToLong(CodeEntry::chunkCount).sum(), List.copyOf(codes))));
+            chapters.add(new ChapterEntry(chapter, headingEntries.stream().mapToLong(HeadingEntry::chunkCount).sum(),
+                    List.copyOf(headingEntries)));
+        });
+
+        // ETag dérivé du contenu : identique d'une instance ou d'un redémarrage à l'autre
+        String etag = "\"" + ContentHash.of(digestInput.toString()).substring(0, 16) + "\"";
+        Snapshot built = new Snapshot(buildVersion, etag, Instant.now(), total,
+                entries.stream().map(CodeEntry::code).toList(), List.copyOf(chapters));
+        // Une invalidation pendant la construction laisse le snapshot à reconstruire
+        if (version.get() == buildVersion) {
+            snapshot = built;
+        }
+        logger.info("📚 Catalogue SH reconstruit : {} codes, {} chapitres, {} chunks (version {})",
+                entries.size(), chapters.size(), total, buildVersion);
+        return built;
+    }
+
+    /**
+     * Chunks ingérés avant les colonnes sh_code / content_hash : code SH et empreinte calculés une fois depuis le texte
+     */
+    private void backfillLegacyChunks() {
+        int updated = 0;
+        while (true) {
+            List<String[]> batch = jdbcTemplate.query(
+                    "SELECT id, text FROM chunk WHERE content_hash IS NULL LIMIT ?",
+                    (rs, rowNum) -> new String[]{rs.getString(1), rs.getString(2)}, BACKFILL_BATCH_SIZE);
+            if (batch.isEmpty()) {
+                break;
+            }
+            List<Object[]> rows = new ArrayList<>(batch.size());
+            for (String[] row : batch) {
+                String text = row[1] == null ? "" : row[1];
+                Matcher matcher = SHCodeDocumentParser.SH_CODE_PATTERN.matcher(text);
+                rows.add(new Object[]{matcher.find() ? matcher.group(1) : null, ContentHash.of(text), row[0]});
+            }
+            jdbcTemplate.batchUpdate("UPDATE chunk SET sh_code = COALESCE(sh_code, ?), content_hash = ? WHERE id = ?", rows);
+            updated += batch.size();
+        }
+        if (updated > 0) {
+            logger.info("🏷️ Code SH et empreinte renseignés pour {} chunks existants", updated);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.chatbotrag.service;
+
+import java.util.Arrays;
+
+/**
+ * Mise en forme HTML d'une réponse en une seule passe, guidée par un trie des titres et libellés
+ * (sauts de ligne en {@code <br>}, titres et libellés de taxes en gras, accords à la ligne).
+ *
+ * Le texte peut arriver token par token : chaque appel à {@link #accept} renvoie le HTML devenu
+ * définitif, le reste (début possible d'un libellé, série de {@code <br>} en cours) attend le
+ * morceau suivant ou {@link #finish}. Le résultat concaténé est identique à l'ancienne chaîne de
+ * {@code String.replace} de formatForWeb ({@code <br>} initial retiré, séries de trois {@code <br>}
+ * ou plus ramenées à deux). Une instance par réponse, non thread-safe.
+ */
+public final class StreamingAnswerFormatter {
+
+    private static final String BR = "<br>";
+    private static final int MAX_CONSECUTIVE_BREAKS = 2;
+
+    private static final Node ROOT = new Node();
+    // Premiers caractères des motifs (tous en Latin-1) : les autres sont recopiés sans parcourir le trie
+    private static final boolean[] PATTERN_START = new boolean[256];
+
+    static {
+        // Sauts de ligne et <br> déjà présents dans le texte comptent dans les séries de <br>
+        add("\n", 1, "");
+        add(BR, 1, "");
+        add("Position Tarifaire", 1, "<strong style='color:#2563eb; font-size:1.2em;'>Position Tarifaire</strong>");
+        add("Droits et Taxes", 2, "<strong style='color:#059669; font-size:1.2em;'>Droits et Taxes</strong>");
+        add("Accords et Conventions", 2, "<strong style='color:#7c3aed; font-size:1.2em;'>Accords et Conventions</strong>");
+        add("Code SH :", 1, "<strong style='color:#1f2937;'>Code SH :</strong>");
+        add("Description :", 1, "<strong style='color:#1f2937;'>Description :</strong>");
+        for (String label : new String[]{"Droit d'Importation (DI) :", "Taxe Parafiscale à l'Importation (TPI) :",
+                "Taxe sur la Valeur Ajoutée à l'Importation (TVA) :"}) {
+            add(label, 1, "<strong>" + label + "</strong>");
+        }
+        for (String agreement : new String[]{"Union Européenne :", "Ligue Arabe :", "Accord d'Agadir :", "États-Unis :",
+                "Zone de libre-échange continentale africaine", "Émirats Arabes Unis :", "Irak :", "Libye :",
+                "Royaume-Uni :", "Algérie :"}) {
+            add(agreement, 1, agreement);
+        }
+    }
+
+    private final StringBuilder pending = new StringBuilder();
+    private int breaks; // <br> en attente : leur nombre final dépend de ce qui suit
+    private boolean started;
+
+    /**
+     * Mise en forme d'une réponse complète
+     */
+    public static String format(String text) {
+        StreamingAnswerFormatter formatter = new StreamingAnswerFormatter();
+        return formatter.accept(text) + formatter.finish();
+    }
+
+    /**
+     * Ajoute un morceau de texte et renvoie le HTML devenu définitif (éventuellement vide)
+     */
+    public String accept(CharSequence token) {
+        pending.append(token);
+        StringBuilder out = new StringBuilder(pending.length() + 64);
+        process(out, false);
+        return out.toString();
+    }
+
+    /**
+     * Fin de la réponse : renvoie tout le HTML restant
+     */
+    public String finish() {
+        StringBuilder out = new StringBuilder(pending.length() + 16);
+        process(out, true);
+        flushBreaks(out);
+        return out.toString();
+    }
+
+    private void process(StringBuilder out, boolean end) {
+        int length = pending.length();
+        int i = 0;
+        while (i < length) {
+            char c = pending.charAt(i);
+            if (c >= 256 || !PATTERN_START[c]) {
+                emit(out, c);
+                i++;
+                continue;
+            }
+            // Plus long motif commençant en i ; indécis si le texte s'arrête au milieu d'un motif possible
+            Node node = ROOT;
+            Node match = null;
+            int matchEnd = i;
+            int j = i;
+            while (j < length && (node = node.child(pending.charAt(j))) != null) {
+                j++;
+                if (node.html != null) {
+                    match = node;
+                    matchEnd = j;
+                }
+            }
+            if (j == length && node != null && node.hasChildren() && !end) {
+                break;
+            }
+            if (match == null) {
+                emit(out, c);
+                i++;
+            } else {
+                breaks += match.breaks;
+                if (!match.html.isEmpty()) {
+                    emit(out, match.html);
+                }
+                i = matchEnd;
+            }
+        }
+        pending.delete(0, i);
+    }
+
+    private void emit(StringBuilder out, char c) {
+        flushBreaks(out);
+        started = true;
+        out.append(c);
+    }
+
+    private void emit(StringBuilder out, String html) {
+        flushBreaks(out);
+        started = true;
+        out.append(html);
+    }
+
+    private void flushBreaks(StringBuilder out) {
+        int count = breaks;
+        if (!started && count > 0) {
+            count--; // <br> initial retiré
+        }
+        if (count > MAX_CONSECUTIVE_BREAKS) {
+            count = MAX_CONSECUTIVE_BREAKS;
+        }
+        for (int k = 0; k < count; k++) {
+            out.append(BR);
+        }
+        breaks = 0;
+    }
+
+    private static void add(String pattern, int breaks, String html) {
+        PATTERN_START[pattern.charAt(0)] = true;
+        Node node = ROOT;
+        for (int i = 0; i < pattern.length(); i++) {
+            node = node.childOrCreate(pattern.charAt(i));
+        }
+        node.breaks = breaks;
+        node.html = html;
+    }
+
+    /**
+     * Nœud du trie : quelques enfants au plus, parcourus linéairement
+     */
+    private static final class Node {
+
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int breaks;
+        private String html; // non null si un motif se termine ici
+
+        Node child(char c) {
+            for (int k = 0; k < keys.length; k++) {
+                if (keys[k] == c) {
+                    return children[k];
+                }
+            }
+            return null;
+        }
+
+        boolean hasChildren() {
+            return keys.length > 0;
+        }
+
+        Node childOrCreate(char c) {
+            Node child = child(c);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = c;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
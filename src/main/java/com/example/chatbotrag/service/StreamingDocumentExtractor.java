@@ -0,0 +1,262 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import io.micrometer.core.instrument.Timer;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.function.Consumer;
+
+/**
+ * Extraction Tika en streaming : le texte arrive par callbacks SAX, est normalisé au fil
+ * de l'eau puis découpé par {@link IncrementalSHCodeChunker}. Le parsing tourne sur un
+ * thread dédié et remplit une file bornée : l'embedding des premiers chunks commence
+ * pendant que la suite du document est encore lue, et la mémoire reste bornée par la
+ * taille de la file plutôt que par celle du document (pas de limite d'écriture Tika).
+ */
+@Service
+public class StreamingDocumentExtractor {
+
+    private static final Logger logger = LoggerFactory.getLogger(StreamingDocumentExtractor.class);
+
+    // Échantillon de texte conservé pour la détection de langue
+    static final int LANGUAGE_SAMPLE_CHARS = 20_000;
+
+    private final SHCodeDocumentParser shCodeParser;
+    private final RagMetrics metrics;
+    private final int queueCapacity;
+
+    public StreamingDocumentExtractor(SHCodeDocumentParser shCodeParser,
+                                      RagMetrics metrics,
+                                      @Value("${ingestion.streaming.queue-capacity:32}") int queueCapacity) {
+        this.shCodeParser = shCodeParser;
+        this.metrics = metrics;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Démarre l'extraction de la source ; les chunks sont lus via l'itérateur retourné,
+     * qui doit être fermé (arrête le parsing si la consommation s'interrompt).
+     */
+    public ChunkStream extract(InputStreamSource source, String documentName) {
+        return extract(source, documentName, IngestionProgress.NONE);
+    }
+
+    public ChunkStream extract(InputStreamSource source, String documentName, IngestionProgress progress) {
+        ChunkStream stream = new ChunkStream(queueCapacity);
+        Thread producer = new Thread(() -> produce(source, documentName, stream, progress), "tika-extract-" + documentName);
+        producer.setDaemon(true);
+        stream.producer = producer;
+        producer.start();
+        return stream;
+    }
+
+    private void produce(InputStreamSource source, String documentName, ChunkStream stream, IngestionProgress progress) {
+        Timer.Sample extractSample = metrics.start();
+        ShCodeContentHandler handler = new ShCodeContentHandler(shCodeParser, chunk -> {
+            stream.put(chunk);
+            progress.onChunkParsed();
+        });
+        try (InputStream inputStream = source.getInputStream()) {
+            AutoDetectParser parser = new AutoDetectParser();
+            ParseContext context = new ParseContext();
+            context.set(Parser.class, parser); // documents embarqués, comme Tika#parseToString
+            parser.parse(inputStream, new BodyContentHandler(handler), new Metadata(), context);
+            handler.finish();
+            logger.info("📄 Extraction terminée pour {} : {} caractères, {} chunks",
+                    documentName, handler.characterCount, handler.chunker.getEmittedCount());
+            stream.characterCount = handler.characterCount;
+            stream.complete(handler.languageSample.toString(), null);
+        } catch (Exception e) {
+            if (stream.closed) {
+                logger.debug("Extraction de {} interrompue (consommateur fermé)", documentName);
+            } else {
+                logger.error("❌ Erreur d'extraction Tika pour {} : {}", documentName, e.getMessage(), e);
+            }
+            stream.complete(handler.languageSample.toString(), e);
+        } finally {
+            metrics.stop(extractSample, RagMetrics.STAGE_INGEST_EXTRACT);
+        }
+    }
+
+    /**
+     * Handler SAX : normalisation incrémentale puis découpage SH
+     */
+    static final class ShCodeContentHandler extends DefaultHandler {
+
+        private final TariffTextNormalizer.Streaming normalizer = new TariffTextNormalizer.Streaming();
+        private final IncrementalSHCodeChunker chunker;
+        private final StringBuilder normalized = new StringBuilder();
+        private final StringBuilder languageSample = new StringBuilder();
+        private long characterCount;
+
+        ShCodeContentHandler(SHCodeDocumentParser parser, Consumer<SHCodeDocumentParser.DocumentChunk> sink) {
+            this.chunker = new IncrementalSHCodeChunker(parser, sink);
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            normalizer.append(ch, start, length, normalized);
+            flush();
+        }
+
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            characters(ch, start, length);
+        }
+
+        void finish() throws SAXException {
+            normalizer.finish(normalized);
+            flush();
+            try {
+                chunker.finish();
+            } catch (StreamClosedException e) {
+                throw new SAXException(e);
+            }
+        }
+
+        private void flush() throws SAXException {
+            if (normalized.isEmpty()) {
+                return;
+            }
+            characterCount += normalized.length();
+            if (languageSample.length() < LANGUAGE_SAMPLE_CHARS) {
+                languageSample.append(normalized, 0, Math.min(normalized.length(), LANGUAGE_SAMPLE_CHARS - languageSample.length()));
+            }
+            try {
+                chunker.append(normalized);
+            } catch (StreamClosedException e) {
+                throw new SAXException(e);
+            } finally {
+                normalized.setLength(0);
+            }
+        }
+    }
+
+    /**
+     * Levée côté producteur quand le consommateur a fermé le flux
+     */
+    private static final class StreamClosedException extends RuntimeException {
+        StreamClosedException() {
+            super("Flux de chunks fermé par le consommateur");
+        }
+    }
+
+    /**
+     * Chunks produits par l'extraction, dans l'ordre du document. {@link #next()} bloque
+     * jusqu'au chunk suivant ; une erreur d'extraction est relancée en {@link UncheckedIOException}.
+     */
+    public static final class ChunkStream implements Iterator<SHCodeDocumentParser.DocumentChunk>, AutoCloseable {
+
+        private static final Object END = new Object();
+
+        private final BlockingQueue<Object> queue;
+        private volatile boolean closed;
+        private volatile Thread producer;
+        private volatile Exception failure;
+        private volatile String languageSample = "";
+        private volatile long characterCount;
+        private Object next;
+
+        ChunkStream(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        }
+
+        /**
+         * Échantillon du début du texte (disponible une fois l'itération terminée)
+         */
+        public String getLanguageSample() {
+            return languageSample;
+        }
+
+        /**
+         * Nombre de caractères normalisés extraits (disponible une fois l'itération terminée)
+         */
+        public long getCharacterCount() {
+            return characterCount;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                try {
+                    next = queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Lecture des chunks interrompue");
+                }
+            }
+            if (next == END) {
+                if (failure != null) {
+                    throw new UncheckedIOException(failure instanceof IOException io ? io
+                            : new IOException("Erreur lors de l'extraction du texte du fichier: " + failure.getMessage(), failure));
+                }
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public SHCodeDocumentParser.DocumentChunk next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            SHCodeDocumentParser.DocumentChunk chunk = (SHCodeDocumentParser.DocumentChunk) next;
+            next = null;
+            return chunk;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+            queue.clear(); // débloque un producteur en attente de place
+            Thread thread = producer;
+            if (thread != null) {
+                thread.interrupt();
+            }
+        }
+
+        private void put(SHCodeDocumentParser.DocumentChunk chunk) {
+            if (closed) {
+                throw new StreamClosedException();
+            }
+            try {
+                queue.put(chunk);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new StreamClosedException();
+            }
+        }
+
+        private void complete(String sample, Exception error) {
+            languageSample = sample;
+            failure = error;
+            if (closed) {
+                return;
+            }
+            try {
+                queue.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
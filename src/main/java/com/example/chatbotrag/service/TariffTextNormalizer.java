@@ -0,0 +1,172 @@
+package com.example.chatbotrag.service;
+
+/**
+ * Normalisation en une seule passe du texte extrait des PDF tarifaires :
+ * réduction des blancs et réparation du mojibake UTF-8 lu en Latin-1 ("Ã©" -> "é").
+ *
+ * Produit exactement le même résultat que l'ancienne chaîne de {@code replaceAll}
+ * (blancs, puis mojibake, puis apostrophes, puis {@code trim()}), avec une seule
+ * allocation de la taille du texte au lieu d'une copie complète par remplacement.
+ */
+public final class TariffTextNormalizer {
+
+    private static final char MOJIBAKE_LEAD = 'Ã';
+    private static final char A_CIRCUMFLEX = 'â';
+
+    /**
+     * Second caractère du mojibake -> caractère réparé (0 = pas de correspondance).
+     * "Ã¢" donne une apostrophe : l'ancienne chaîne le réparait en "â" puis remplaçait tout "â" par "'".
+     */
+    private static final char[] MOJIBAKE_TABLE = new char[256];
+
+    static {
+        MOJIBAKE_TABLE['©'] = 'é';
+        MOJIBAKE_TABLE['¨'] = 'è';
+        MOJIBAKE_TABLE['´'] = 'ô';
+        MOJIBAKE_TABLE['¢'] = '\''; // "Ã¢" -> "â" -> "'"
+        MOJIBAKE_TABLE['§'] = 'ç';
+        MOJIBAKE_TABLE['ª'] = 'ê';
+        MOJIBAKE_TABLE['®'] = 'î';
+        MOJIBAKE_TABLE['¯'] = 'ï';
+        MOJIBAKE_TABLE['¹'] = 'ù';
+        MOJIBAKE_TABLE['»'] = 'û';
+    }
+
+    private TariffTextNormalizer() {
+    }
+
+    public static String normalize(CharSequence text) {
+        int length = text.length();
+        char[] out = new char[length]; // aucun remplacement n'allonge le texte
+        int written = 0;
+        int i = 0;
+        while (i < length) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                out[written++] = ' ';
+                i = skipWhitespace(text, i + 1, length);
+            } else if (c == MOJIBAKE_LEAD && i + 1 < length) {
+                char next = text.charAt(i + 1);
+                if (isWhitespace(next)) {
+                    // "Ã" + blancs : les blancs réduits à un espace forment "Ã " -> "à"
+                    out[written++] = 'à';
+                    i = skipWhitespace(text, i + 2, length);
+                } else if (next < 256 && MOJIBAKE_TABLE[next] != 0) {
+                    out[written++] = MOJIBAKE_TABLE[next];
+                    i += 2;
+                } else {
+                    out[written++] = c;
+                    i++;
+                }
+            } else if (c == A_CIRCUMFLEX) {
+                out[written++] = '\'';
+                i++;
+            } else {
+                out[written++] = c;
+                i++;
+            }
+        }
+
+        // Équivalent de String.trim() sur le résultat
+        int start = 0;
+        while (start < written && out[start] <= ' ') start++;
+        int end = written;
+        while (end > start && out[end - 1] <= ' ') end--;
+        return new String(out, start, end - start);
+    }
+
+    /**
+     * Variante incrémentale pour l'extraction en streaming : le texte arrive par morceaux
+     * (callbacks SAX de Tika) et le résultat concaténé est identique à {@link #normalize}
+     * appliqué au texte complet, quelle que soit la découpe.
+     */
+    public static final class Streaming {
+
+        private boolean skippingWhitespace;
+        private boolean pendingLead;
+        private boolean started;
+        // Caractères <= ' ' retenus tant qu'on ne sait pas s'ils seront supprimés par le trim final
+        private final StringBuilder pendingBlanks = new StringBuilder();
+
+        public void append(char[] chars, int start, int length, StringBuilder out) {
+            int end = start + length;
+            for (int i = start; i < end; i++) {
+                accept(chars[i], out);
+            }
+        }
+
+        public void append(CharSequence text, StringBuilder out) {
+            for (int i = 0; i < text.length(); i++) {
+                accept(text.charAt(i), out);
+            }
+        }
+
+        /**
+         * Fin du texte : vide l'état en attente (les blancs finaux sont supprimés)
+         */
+        public void finish(StringBuilder out) {
+            if (pendingLead) {
+                pendingLead = false;
+                emit(MOJIBAKE_LEAD, out);
+            }
+            pendingBlanks.setLength(0);
+        }
+
+        private void accept(char c, StringBuilder out) {
+            if (pendingLead) {
+                pendingLead = false;
+                if (isWhitespace(c)) {
+                    emit('à', out);
+                    skippingWhitespace = true;
+                    return;
+                }
+                if (c < 256 && MOJIBAKE_TABLE[c] != 0) {
+                    emit(MOJIBAKE_TABLE[c], out);
+                    return;
+                }
+                emit(MOJIBAKE_LEAD, out);
+            }
+            if (isWhitespace(c)) {
+                if (!skippingWhitespace) {
+                    emit(' ', out);
+                    skippingWhitespace = true;
+                }
+                return;
+            }
+            skippingWhitespace = false;
+            if (c == MOJIBAKE_LEAD) {
+                pendingLead = true;
+            } else if (c == A_CIRCUMFLEX) {
+                emit('\'', out);
+            } else {
+                emit(c, out);
+            }
+        }
+
+        private void emit(char c, StringBuilder out) {
+            if (c <= ' ') {
+                if (started) pendingBlanks.append(c);
+                return;
+            }
+            if (pendingBlanks.length() > 0) {
+                out.append(pendingBlanks);
+                pendingBlanks.setLength(0);
+            }
+            started = true;
+            out.append(c);
+        }
+    }
+
+    /**
+     * Classe {@code \s} des regex Java (sans UNICODE_CHARACTER_CLASS)
+     */
+    static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    private static int skipWhitespace(CharSequence text, int from, int length) {
+        int i = from;
+        while (i < length && isWhitespace(text.charAt(i))) i++;
+        return i;
+    }
+}
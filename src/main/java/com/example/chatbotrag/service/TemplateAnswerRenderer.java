@@ -0,0 +1,191 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.ProductMetadata;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Réponse "Position Tarifaire / Droits et Taxes / Accords et Conventions" rendue directement
+ * depuis {@link ProductMetadata}, sans appel à Mistral, quand la recherche désigne un seul
+ * code SH avec assez de confiance et que la question ne demande rien d'autre que ces champs.
+ * Renvoie {@link Optional#empty()} dans tous les autres cas : le LLM reste la voie normale.
+ */
+@Service
+public class TemplateAnswerRenderer {
+
+    private static final Pattern SH_CODE = Pattern.compile("\\b(\\d{10})\\b");
+    // Description trop longue : c'est le texte brut du chunk, pas une désignation
+    private static final int MAX_DESCRIPTION_LENGTH = 300;
+    private static final String NOT_SPECIFIED = "Non spécifié dans les documents";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final boolean enabled;
+    private final double minScore;
+    private final double minMargin;
+
+    public TemplateAnswerRenderer(@Value("${chat.template.enabled:true}") boolean enabled,
+                                  @Value("${chat.template.min-score:0.7}") double minScore,
+                                  @Value("${chat.template.min-margin:0.15}") double minMargin) {
+        this.enabled = enabled;
+        this.minScore = minScore;
+        this.minMargin = minMargin;
+    }
+
+    public Optional<String> render(String question, List<HybridSearchService.HybridSearchResult> results) {
+        if (!enabled || question == null || results.isEmpty() || IntentRouter.OPEN_QUESTION.matcher(question).find()) {
+            return Optional.empty();
+        }
+        Set<String> questionCodes = IntentRouter.shCodes(question);
+        if (questionCodes.size() > 1) {
+            return Optional.empty(); // plusieurs positions demandées
+        }
+        return render(confidentMatch(questionCodes, results));
+    }
+
+    /**
+     * Réponse pour une fiche déjà identifiée (code SH cité, lu directement en base)
+     */
+    public Optional<String> render(String question, ProductMetadata metadata) {
+        if (!enabled || question == null || IntentRouter.OPEN_QUESTION.matcher(question).find()) {
+            return Optional.empty();
+        }
+        return render(metadata);
+    }
+
+    private Optional<String> render(ProductMetadata match) {
+        if (match == null || match.getDroitImportation() == null || match.getTva() == null) {
+            return Optional.empty();
+        }
+        String description = cleanDescription(match.getDescription());
+        if (description == null) {
+            return Optional.empty();
+        }
+        return Optional.of(renderAnswer(match, description));
+    }
+
+    /**
+     * Métadonnées du seul code SH retenu : celui cité en entier dans la question, sinon le premier
+     * résultat s'il atteint le score minimal et devance d'assez loin le meilleur autre code SH
+     */
+    private ProductMetadata confidentMatch(Set<String> questionCodes, List<HybridSearchService.HybridSearchResult> results) {
+        if (!questionCodes.isEmpty()) {
+            String code = questionCodes.iterator().next();
+            return results.stream()
+                    .map(HybridSearchService.HybridSearchResult::getMetadata)
+                    .filter(metadata -> metadata != null && code.equals(metadata.getCodeSh()))
+                    .findFirst().orElse(null);
+        }
+
+        HybridSearchService.HybridSearchResult best = null;
+        for (HybridSearchService.HybridSearchResult result : results) {
+            if (best == null || result.getTotalScore() > best.getTotalScore()) {
+                best = result;
+            }
+        }
+        ProductMetadata metadata = best.getMetadata();
+        if (metadata == null || metadata.getCodeSh() == null || best.getTotalScore() < minScore) {
+            return null;
+        }
+        for (HybridSearchService.HybridSearchResult other : results) {
+            boolean otherCode = other.getMetadata() == null || !metadata.getCodeSh().equals(other.getMetadata().getCodeSh());
+            if (otherCode && best.getTotalScore() - other.getTotalScore() < minMargin) {
+                return null; // deux positions trop proches : au LLM de trancher avec la question
+            }
+        }
+        return metadata;
+    }
+
+    private String renderAnswer(ProductMetadata metadata, String description) {
+        StringBuilder answer = new StringBuilder(512);
+        answer.append("Pour l'importation de ").append(lowerFirst(description))
+                .append(" au Maroc, voici les informations clés à prendre en compte :\n\n");
+
+        answer.append("Position Tarifaire\n");
+        answer.append("Code SH : ").append(metadata.getCodeSh()).append('\n');
+        answer.append("Description : ").append(description).append(".\n\n");
+
+        answer.append("Droits et Taxes\n");
+        answer.append("Droit d'Importation (DI) : ").append(percent(metadata.getDroitImportation())).append('\n');
+        answer.append("Taxe Parafiscale à l'Importation (TPI) : ").append(percent(metadata.getTpi())).append('\n');
+        answer.append("Taxe sur la Valeur Ajoutée à l'Importation (TVA) : ").append(percent(metadata.getTva())).append("\n\n");
+
+        answer.append("Accords et Conventions\n");
+        List<String> agreements = agreements(metadata.getPreferentiels());
+        if (agreements.isEmpty()) {
+            answer.append(NOT_SPECIFIED).append('\n');
+        } else {
+            answer.append("Les ").append(lowerFirst(description))
+                    .append(" peuvent bénéficier de droits préférentiels dans le cadre des accords suivants :\n\n");
+            for (String agreement : agreements) {
+                answer.append(agreement).append('\n');
+            }
+        }
+        return answer.toString().strip();
+    }
+
+    /**
+     * Accords stockés en JSON (["Union Européenne: 0%", ...]) ou, à défaut, séparés par des virgules ;
+     * rendus "Union Européenne : 0 %"
+     */
+    private List<String> agreements(String preferentiels) {
+        if (preferentiels == null || preferentiels.isBlank()) {
+            return List.of();
+        }
+        List<String> entries;
+        try {
+            entries = objectMapper.readValue(preferentiels, new TypeReference<List<String>>() {});
+        } catch (Exception e) {
+            entries = List.of(preferentiels.split(",\\s*"));
+        }
+        List<String> agreements = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            int separator = entry.lastIndexOf(':');
+            if (separator <= 0) {
+                agreements.add(entry.strip());
+                continue;
+            }
+            String rate = entry.substring(separator + 1).replace("%", "").strip();
+            try {
+                agreements.add(entry.substring(0, separator).strip() + " : " + percent(Double.parseDouble(rate)));
+            } catch (NumberFormatException e) {
+                agreements.add(entry.substring(0, separator).strip() + " : " + entry.substring(separator + 1).strip());
+            }
+        }
+        return agreements;
+    }
+
+    private static String cleanDescription(String description) {
+        if (description == null) {
+            return null;
+        }
+        String cleaned = description.strip().replaceAll("\\s+", " ").replaceAll("[\\s.;:]+$", "");
+        if (cleaned.isEmpty() || cleaned.length() > MAX_DESCRIPTION_LENGTH || SH_CODE.matcher(cleaned).find()) {
+            return null;
+        }
+        return cleaned;
+    }
+
+    // Format des fiches : virgule décimale, pas de ",0" ("2,5 %", "40 %")
+    static String percent(Double value) {
+        if (value == null) {
+            return NOT_SPECIFIED;
+        }
+        String number = value == Math.rint(value) ? String.valueOf(value.longValue()) : String.valueOf(value).replace('.', ',');
+        return number + " %";
+    }
+
+    private static String lowerFirst(String text) {
+        if (text.length() > 1 && Character.isUpperCase(text.charAt(0)) && !Character.isUpperCase(text.charAt(1))) {
+            return Character.toLowerCase(text.charAt(0)) + text.substring(1);
+        }
+        return text;
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.chatbotrag.service;
 
 import com.example.chatbotrag.config.Constants;
+import com.example.chatbotrag.metrics.RagMetrics;
 import com.example.chatbotrag.model.Chunk;
 import com.example.chatbotrag.repository.ChunkRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import com.example.chatbotrag.repository.ProductMetadataRepository;
 import com.example.chatbotrag.model.ProductMetadata;
@@ -14,46 +17,51 @@ import java.util.regex.Matcher;
 @Service
 public class VectorSearchService {
 
-    private final ChromaHttpClientService chromaHttpClientService;
+    private static final Logger logger = LoggerFactory.getLogger(VectorSearchService.class);
+
     private final OllamaClientService ollamaClient;
     private final ChunkRepository chunkRepository;
     private final ProductMetadataRepository productMetadataRepository;
     private final ProductMetadataExtractionService metadataExtractionService;
+    private final LocalVectorIndexService localVectorIndex;
+    private final RagMetrics metrics;
 
-    public VectorSearchService(ChromaHttpClientService chromaHttpClientService,
-                               OllamaClientService ollamaClient,
+    public VectorSearchService(OllamaClientService ollamaClient,
                                ChunkRepository chunkRepository,
                                ProductMetadataRepository productMetadataRepository,
-                               ProductMetadataExtractionService metadataExtractionService) {
-        this.chromaHttpClientService = chromaHttpClientService;
+                               ProductMetadataExtractionService metadataExtractionService,
+                               LocalVectorIndexService localVectorIndex,
+                               RagMetrics metrics) {
         this.ollamaClient = ollamaClient;
         this.chunkRepository = chunkRepository;
         this.productMetadataRepository = productMetadataRepository;
         this.metadataExtractionService = metadataExtractionService;
+        this.localVectorIndex = localVectorIndex;
+        this.metrics = metrics;
     }
 
     public List<String> findTopKRelevantChunks(String userQuestion, int topK) {
         long startTotal = System.currentTimeMillis();
-        System.out.println("[VECTOR_SEARCH] 🔍 Question utilisateur : " + userQuestion);
+        logger.debug("[VECTOR_SEARCH] 🔍 Question utilisateur : {}", userQuestion);
 
         try {
             // 0. 🎯 RECHERCHE PRIORITAIRE PAR CODE SH SPÉCIFIQUE
             List<String> priorityResults = searchBySpecificSHCode(userQuestion, topK);
             if (!priorityResults.isEmpty()) {
-                System.out.println("[VECTOR_SEARCH] ✅ Trouvé résultats prioritaires par code SH : " + priorityResults.size());
+                logger.info("[VECTOR_SEARCH] ✅ Trouvé résultats prioritaires par code SH : {}", priorityResults.size());
                 return priorityResults;
             }
             
             // 1. 🧠 Génération de l'embedding pour la question utilisateur
-            System.out.println("[VECTOR_SEARCH] 📊 Génération de l'embedding pour la question...");
-            List<Double> questionVector = ollamaClient.embed(userQuestion);
+            logger.debug("[VECTOR_SEARCH] 📊 Génération de l'embedding pour la question...");
+            List<Double> questionVector = metrics.time(RagMetrics.STAGE_QUERY_EMBEDDING, () -> ollamaClient.embed(userQuestion));
             
             if (questionVector == null || questionVector.isEmpty()) {
-                System.err.println("[VECTOR_SEARCH] ❌ Impossible de générer l'embedding pour la question. Fallback vers recherche par mots-clés.");
+                logger.warn("[VECTOR_SEARCH] ❌ Impossible de générer l'embedding pour la question. Fallback vers recherche par mots-clés.");
                 return fallbackKeywordSearch(userQuestion, topK);
             }
             
-            System.out.println("[VECTOR_SEARCH] ✅ Embedding généré (dimension: " + questionVector.size() + ")");
+            logger.debug("[VECTOR_SEARCH] ✅ Embedding généré (dimension: {})", questionVector.size());
             
 // Search by metadata score
             Map<String, String> queryMetadata = metadataExtractionService.extractQueryMetadata(userQuestion);
@@ -71,7 +79,7 @@ public class VectorSearchService {
                 topMetadataChunks.add(metadata.getChunk().getText());
             }
             if (!topMetadataChunks.isEmpty()) {
-                System.out.println("[VECTOR_SEARCH] ✅ Résultats trouvés par scores de métadonnées.");
+                logger.info("[VECTOR_SEARCH] ✅ Résultats trouvés par scores de métadonnées.");
                 return topMetadataChunks;
             }
 
@@ -81,36 +89,37 @@ public class VectorSearchService {
                 questionEmbedding[i] = questionVector.get(i).floatValue();
             }
             
-            // 3. 🔎 Recherche vectorielle dans ChromaDB avec HTTP client
-            System.out.println("[VECTOR_SEARCH] 🔎 Recherche vectorielle dans " + Constants.CHROMA_COLLECTION_NAME + "...");
-            List<ChromaHttpClientService.SearchResult> searchResults = chromaHttpClientService.searchSimilar(
-                    Constants.CHROMA_COLLECTION_NAME, 
-                    questionEmbedding, 
+            // 3. 🔎 Recherche vectorielle (index local si activé, sinon ChromaDB)
+            logger.debug("[VECTOR_SEARCH] 🔎 Recherche vectorielle dans {}...", Constants.CHROMA_COLLECTION_NAME);
+            List<ChromaHttpClientService.SearchResult> searchResults = localVectorIndex.searchSimilar(
+                    questionEmbedding,
                     topK * 5, // Récupérer plus de résultats pour un meilleur filtrage
                     0.1 // Score de similarité minimum plus élevé pour de meilleurs résultats
             );
             
             // Debug: Log all search results
-            System.out.println("[VECTOR_SEARCH] 📊 Tous les résultats trouvés :");
-            for (int i = 0; i < searchResults.size(); i++) {
-                ChromaHttpClientService.SearchResult result = searchResults.get(i);
-                String preview = result.getText().substring(0, Math.min(150, result.getText().length())).replace("\n", " ");
-                System.out.println("[VECTOR_SEARCH] Result " + i + " (score: " + String.format("%.4f", result.getScore()) + "): " + preview + "...");
-                
-                // Check if this result contains our target content
-                if (result.getText().contains("0101292000") || result.getText().contains("de course")) {
-                    System.out.println("[VECTOR_SEARCH] ✅ FOUND TARGET CONTENT in result " + i);
+            if (logger.isDebugEnabled()) {
+                logger.debug("[VECTOR_SEARCH] 📊 Tous les résultats trouvés :");
+                for (int i = 0; i < searchResults.size(); i++) {
+                    ChromaHttpClientService.SearchResult result = searchResults.get(i);
+                    String preview = result.getText().substring(0, Math.min(150, result.getText().length())).replace("\n", " ");
+                    logger.debug("[VECTOR_SEARCH] Result {} (score: {}): {}...", i, result.getScore(), preview);
+
+                    // Check if this result contains our target content
+                    if (result.getText().contains("0101292000") || result.getText().contains("de course")) {
+                        logger.debug("[VECTOR_SEARCH] ✅ FOUND TARGET CONTENT in result {}", i);
+                    }
                 }
             }
             
             if (searchResults.isEmpty()) {
-                System.err.println("[VECTOR_SEARCH] ⚠️ Aucun résultat vectoriel trouvé. Fallback vers recherche par mots-clés.");
+                logger.warn("[VECTOR_SEARCH] ⚠️ Aucun résultat vectoriel trouvé. Fallback vers recherche par mots-clés.");
                 return fallbackKeywordSearch(userQuestion, topK);
             }
             
             // 4. 📋 Extraction et post-filtrage des résultats
             List<String> results = new ArrayList<>();
-            System.out.println("[VECTOR_SEARCH] 📋 Résultats trouvés : " + searchResults.size());
+            logger.info("[VECTOR_SEARCH] 📋 Résultats trouvés : {}", searchResults.size());
             
             for (ChromaHttpClientService.SearchResult searchResult : searchResults) {
                 if (results.size() >= topK) break;
@@ -122,22 +131,19 @@ public class VectorSearchService {
                 // 5. ✅ Filtrage intelligent basé sur le contenu
                 if (isValidResult(chunkText, userQuestion) || containsRelevantContent(chunkText, userQuestion)) {
                     results.add(chunkText);
-                    System.out.println("[VECTOR_SEARCH] ✅ Chunk sélectionné (ID: " + chunkId + ", score: " + String.format("%.4f", score) + "): " 
-                        + chunkText.substring(0, Math.min(100, chunkText.length())).replace("\n", " ") + "...");
-                } else {
-                    System.out.println("[VECTOR_SEARCH] ❌ Chunk rejeté (ID: " + chunkId + ", score: " + String.format("%.4f", score) + "): " 
-                        + chunkText.substring(0, Math.min(100, chunkText.length())).replace("\n", " ") + "...");
+                    if (logger.isDebugEnabled()) logger.debug("[VECTOR_SEARCH] ✅ Chunk sélectionné (ID: {}, score: {}): {}...", chunkId, score, chunkText.substring(0, Math.min(100, chunkText.length())).replace("\n", " "));
+                } else if (logger.isDebugEnabled()) {
+                    logger.debug("[VECTOR_SEARCH] ❌ Chunk rejeté (ID: {}, score: {}): {}...", chunkId, score, chunkText.substring(0, Math.min(100, chunkText.length())).replace("\n", " "));
                 }
             }
             
             long duration = System.currentTimeMillis() - startTotal;
-            System.out.println("[VECTOR_SEARCH] ⏱️ Recherche vectorielle terminée en " + duration + "ms. Chunks retournés : " + results.size());
+            logger.info("[VECTOR_SEARCH] ⏱️ Recherche vectorielle terminée en {}ms. Chunks retournés : {}", duration, results.size());
             
             return results.isEmpty() ? fallbackKeywordSearch(userQuestion, topK) : results;
             
         } catch (Exception e) {
-            System.err.println("[VECTOR_SEARCH] ❌ Erreur lors de la recherche vectorielle : " + e.getMessage());
-            e.printStackTrace();
+            logger.error("[VECTOR_SEARCH] ❌ Erreur lors de la recherche vectorielle : {}", e.getMessage(), e);
             return fallbackKeywordSearch(userQuestion, topK);
         }
     }
@@ -146,7 +152,7 @@ public class VectorSearchService {
      * 🔄 Méthode de fallback utilisant la recherche par mots-clés (ancienne méthode)
      */
     private List<String> fallbackKeywordSearch(String userQuestion, int topK) {
-        System.out.println("[FALLBACK] 🔄 Utilisation de la recherche par mots-clés comme fallback");
+        logger.info("[FALLBACK] 🔄 Utilisation de la recherche par mots-clés comme fallback");
         
         int chunkLimit = 500;
         List<Chunk> allChunks = chunkRepository.findTopN(chunkLimit);
@@ -185,7 +191,7 @@ public class VectorSearchService {
             result.add(sc.chunk);
         }
         
-        System.out.println("[FALLBACK] 📋 Chunks sélectionnés par mots-clés : " + result.size());
+        logger.info("[FALLBACK] 📋 Chunks sélectionnés par mots-clés : {}", result.size());
         return result;
     }
     
@@ -202,7 +208,7 @@ public class VectorSearchService {
         
         // 1. 🎯 Filtrage prioritaire pour codes SH
         if (chunkText.matches(".*\\b\\d{10}\\b.*")) {
-            System.out.println("[VALID_RESULT] ✅ Chunk contient un code SH - priorité élevée");
+            logger.debug("[VALID_RESULT] ✅ Chunk contient un code SH - priorité élevée");
             return true;
         }
         
@@ -211,7 +217,7 @@ public class VectorSearchService {
             if (chunkLower.contains("mammifères") || chunkLower.contains("zoologiques") || 
                 chunkLower.contains("parcs") || chunkLower.contains("destinés") ||
                 chunkLower.contains("0106201000")) {
-                System.out.println("[VALID_RESULT] ✅ Chunk pertinent pour mammifères de parcs zoologiques");
+                logger.debug("[VALID_RESULT] ✅ Chunk pertinent pour mammifères de parcs zoologiques");
                 return true;
             }
         }
@@ -220,7 +226,7 @@ public class VectorSearchService {
         if (questionLower.contains("cheval") || questionLower.contains("course")) {
             if (chunkLower.contains("cheval") || chunkLower.contains("course") || 
                 chunkText.contains("0101292000") || chunkText.contains("0101210000")) {
-                System.out.println("[VALID_RESULT] ✅ Chunk pertinent pour chevaux");
+                logger.debug("[VALID_RESULT] ✅ Chunk pertinent pour chevaux");
                 return true;
             }
         }
@@ -243,17 +249,17 @@ public class VectorSearchService {
         
         // 5. 🔍 Validation basée sur le nombre de correspondances
         if (matchCount >= 2) {
-            System.out.println("[VALID_RESULT] ✅ Chunk pertinent avec " + matchCount + " correspondances");
+            logger.debug("[VALID_RESULT] ✅ Chunk pertinent avec {} correspondances", matchCount);
             return true;
         }
         
         // 6. 📖 Vérification de contenu substantiel
         if (chunkText.length() > 100 && matchCount >= 1) {
-            System.out.println("[VALID_RESULT] ✅ Chunk substantiel avec contenu pertinent");
+            logger.debug("[VALID_RESULT] ✅ Chunk substantiel avec contenu pertinent");
             return true;
         }
         
-        System.out.println("[VALID_RESULT] ❌ Chunk rejeté - pas assez pertinent");
+        logger.debug("[VALID_RESULT] ❌ Chunk rejeté - pas assez pertinent");
         return false;
     }
     
@@ -274,7 +280,7 @@ public class VectorSearchService {
                 (chunkLower.contains("mammifères") && chunkLower.contains("zoologiques")) ||
                 (chunkLower.contains("destinés aux parcs") && chunkLower.contains("zoologiques")) ||
                 (chunkLower.contains("animaux vivants") && chunkLower.contains("mammifères"))) {
-                System.out.println("[CONTENT_MATCH] 🎯 Trouvé contenu spécifique pour mammifères de parcs zoologiques");
+                logger.debug("[CONTENT_MATCH] 🎯 Trouvé contenu spécifique pour mammifères de parcs zoologiques");
                 return true;
             }
         }
@@ -284,20 +290,20 @@ public class VectorSearchService {
             if (chunkText.contains("0101292000") || chunkText.contains("0101210000") ||
                 (chunkLower.contains("cheval") && chunkLower.contains("course")) ||
                 (chunkLower.contains("âgés de moins de six") && chunkLower.contains("vingt"))) {
-                System.out.println("[CONTENT_MATCH] 🎯 Trouvé contenu spécifique pour chevaux de course");
+                logger.debug("[CONTENT_MATCH] 🎯 Trouvé contenu spécifique pour chevaux de course");
                 return true;
             }
         }
         
         // 3. 📋 Recherche générale de codes SH
         if (chunkText.matches(".*\\b\\d{10}\\b.*")) {
-            System.out.println("[CONTENT_MATCH] 🎯 Trouvé code SH dans le chunk");
+            logger.debug("[CONTENT_MATCH] 🎯 Trouvé code SH dans le chunk");
             return true;
         }
         
         // 4. 💰 Recherche de contenu tarifaire spécifique
         if (chunkLower.contains("droit d'importation") && chunkLower.contains("%")) {
-            System.out.println("[CONTENT_MATCH] 🎯 Trouvé contenu tarifaire spécifique");
+            logger.debug("[CONTENT_MATCH] 🎯 Trouvé contenu tarifaire spécifique");
             return true;
         }
         
@@ -306,7 +312,7 @@ public class VectorSearchService {
                                         "zone de libre échange", "émirats arabes unis", "royaume-uni"};
         for (String agreement : commercialAgreements) {
             if (chunkLower.contains(agreement)) {
-                System.out.println("[CONTENT_MATCH] 🎯 Trouvé accord commercial: " + agreement);
+                logger.debug("[CONTENT_MATCH] 🎯 Trouvé accord commercial: {}", agreement);
                 return true;
             }
         }
@@ -323,7 +329,7 @@ public class VectorSearchService {
         
         // 1. 🐾 Mammifères destinés aux parcs zoologiques
         if (questionLower.contains("mammifères") && questionLower.contains("zoologiques")) {
-            System.out.println("[SH_SEARCH] 🐾 Recherche spécifique pour mammifères de parcs zoologiques (code 0106201000)");
+            logger.debug("[SH_SEARCH] 🐾 Recherche spécifique pour mammifères de parcs zoologiques (code 0106201000)");
             
             // Recherche MULTIPLE pour récupérer chunks liés
             Set<String> collectedTexts = new HashSet<>();
@@ -332,7 +338,7 @@ public class VectorSearchService {
             Optional<Chunk> mainChunk = chunkRepository.findFirstByKeyword("0106201000");
             if (mainChunk.isPresent()) {
                 collectedTexts.add(mainChunk.get().getText());
-                System.out.println("[SH_SEARCH] ✅ Trouvé chunk principal avec code 0106201000");
+                logger.debug("[SH_SEARCH] ✅ Trouvé chunk principal avec code 0106201000");
             }
             
             // 2. Recherche par termes associés pour compléter les infos
@@ -340,7 +346,7 @@ public class VectorSearchService {
             for (Chunk chunk : additionalChunks) {
                 if (chunk.getText() != null && !chunk.getText().trim().isEmpty()) {
                     collectedTexts.add(chunk.getText());
-                    System.out.println("[SH_SEARCH] ✅ Ajouté chunk additonnel mammifères");
+                    logger.debug("[SH_SEARCH] ✅ Ajouté chunk additonnel mammifères");
                 }
             }
             
@@ -350,7 +356,7 @@ public class VectorSearchService {
                 Optional<Chunk> tariffChunk = chunkRepository.findFirstByKeyword(keyword);
                 if (tariffChunk.isPresent() && tariffChunk.get().getText().toLowerCase().contains("mammifères")) {
                     collectedTexts.add(tariffChunk.get().getText());
-                    System.out.println("[SH_SEARCH] ✅ Ajouté chunk tarifaire avec: " + keyword);
+                    logger.debug("[SH_SEARCH] ✅ Ajouté chunk tarifaire avec: {}", keyword);
                 }
             }
             
@@ -363,7 +369,7 @@ public class VectorSearchService {
         
         // 2. 🏇 Chevaux de course (garde l'ancien système)
         else if (questionLower.contains("cheval") && questionLower.contains("course")) {
-            System.out.println("[SH_SEARCH] 🏇 Recherche spécifique pour chevaux de course (code 0101292000)");
+            logger.debug("[SH_SEARCH] 🏇 Recherche spécifique pour chevaux de course (code 0101292000)");
             
             List<Chunk> chunks = chunkRepository.findByKeywordAndCodeSh("cheval", "0101292000");
             if (chunks.isEmpty()) {
@@ -380,7 +386,7 @@ public class VectorSearchService {
                 if (results.size() >= topK) break;
                 if (chunk.getText() != null && !chunk.getText().trim().isEmpty()) {
                     results.add(chunk.getText());
-                    System.out.println("[SH_SEARCH] ✅ Ajouté chunk avec code 0101292000");
+                    logger.debug("[SH_SEARCH] ✅ Ajouté chunk avec code 0101292000");
                 }
             }
         }
@@ -393,18 +399,18 @@ public class VectorSearchService {
             
             while (matcher.find() && results.size() < topK) {
                 String codeFound = matcher.group();
-                System.out.println("[SH_SEARCH] 🔍 Code SH détecté dans la question : " + codeFound);
+                logger.debug("[SH_SEARCH] 🔍 Code SH détecté dans la question : {}", codeFound);
                 
                 Optional<Chunk> chunk = chunkRepository.findFirstByKeyword(codeFound);
                 if (chunk.isPresent() && chunk.get().getText() != null && !chunk.get().getText().trim().isEmpty()) {
                     results.add(chunk.get().getText());
-                    System.out.println("[SH_SEARCH] ✅ Ajouté chunk avec code " + codeFound);
+                    logger.debug("[SH_SEARCH] ✅ Ajouté chunk avec code {}", codeFound);
                 }
             }
         }
         
         if (!results.isEmpty()) {
-            System.out.println("[SH_SEARCH] 🎯 Recherche prioritaire réussie : " + results.size() + " chunks trouvés");
+            logger.debug("[SH_SEARCH] 🎯 Recherche prioritaire réussie : {} chunks trouvés", results.size());
         }
         
         return results;
@@ -1,15 +1,40 @@
 package com.example.chatbotrag.store;
 
+import com.example.chatbotrag.metrics.RagMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 @Component
 public class ConversationHistoryStore {
 
+    /**
+     * État Mistral d'une session : tokens "context" renvoyés par Ollama au dernier tour,
+     * empreintes des chunks déjà fournis au modèle, et date du dernier usage
+     */
+    public record LlmContext(String model, int[] tokens, Set<String> sentChunks, long lastUsedMillis) {}
+
     // Stocke l'historique par session
     private final Map<String, List<String>> historyMap = new HashMap<>();
 
+    // 🧠 Contexte Ollama par session, supprimé avec l'historique
+    private final Map<String, LlmContext> llmContextMap = new ConcurrentHashMap<>();
+
+    // Au-delà, le cache KV d'Ollama n'a plus ce préfixe : le contexte coûterait plus qu'un prompt neuf
+    private final Duration llmContextTtl;
+
+    public ConversationHistoryStore(RagMetrics metrics,
+                                    @Value("${chat.session-context.ttl:PT30M}") Duration llmContextTtl) {
+        this.llmContextTtl = llmContextTtl;
+        // 📈 Nombre de sessions en mémoire
+        metrics.gauge("rag.cache.size", "cache", "conversation_history", historyMap, Map::size);
+        metrics.gauge("rag.cache.size", "cache", "llm_context", llmContextMap, Map::size);
+    }
+
     // 🔄 Récupère l’historique complet (en texte)
     public String getHistory(String sessionId) {
         List<String> history = historyMap.getOrDefault(sessionId, new ArrayList<>());
@@ -23,9 +48,10 @@ public class ConversationHistoryStore {
         historyMap.get(sessionId).add("🤖 " + answer);
     }
 
-    // 🧹 Supprime l'historique d’une session
+    // 🧹 Supprime l'historique d’une session (et son contexte Mistral)
     public void clear(String sessionId) {
         historyMap.remove(sessionId);
+        llmContextMap.remove(sessionId);
     }
 
     // 🧠 Récupère les N derniers messages (ex: 10 pour 5 tours)
@@ -34,4 +60,34 @@ public class ConversationHistoryStore {
         int start = Math.max(0, history.size() - count);
         return history.subList(start, history.size());
     }
+
+    // 🧠 Contexte Mistral de la session, null s'il n'existe pas ou a expiré
+    public LlmContext getLlmContext(String sessionId) {
+        LlmContext context = llmContextMap.get(sessionId);
+        if (context != null && isExpired(context, System.currentTimeMillis())) {
+            llmContextMap.remove(sessionId, context);
+            return null;
+        }
+        return context;
+    }
+
+    public void putLlmContext(String sessionId, LlmContext context) {
+        llmContextMap.put(sessionId, context);
+    }
+
+    // ♻️ Oublie le contexte Mistral (invalide ou trop long) en gardant l'historique
+    public void clearLlmContext(String sessionId) {
+        llmContextMap.remove(sessionId);
+    }
+
+    // ⏳ Purge des contextes Mistral inutilisés depuis plus que le TTL
+    @Scheduled(fixedDelayString = "${chat.session-context.ttl:PT30M}")
+    public void evictIdleLlmContexts() {
+        long now = System.currentTimeMillis();
+        llmContextMap.values().removeIf(context -> isExpired(context, now));
+    }
+
+    private boolean isExpired(LlmContext context, long now) {
+        return now - context.lastUsedMillis() > llmContextTtl.toMillis();
+    }
 }
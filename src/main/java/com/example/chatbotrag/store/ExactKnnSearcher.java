@@ -0,0 +1,225 @@
+package com.example.chatbotrag.store;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Recherche exacte des k plus proches voisins par parcours complet d'une matrice float32
+ * stockée ligne par ligne dans de grands blocs contigus. Le parcours est découpé en partitions
+ * fork/join, chacune gardant son propre top-k borné, fusionnés à la remontée. Distances calculées
+ * en SIMD si le module jdk.incubator.vector est chargé, en boucle scalaire sinon.
+ * Sert de référence (rappel) pour les modes quantifiés de {@link QuantizedVectorIndex}.
+ */
+public final class ExactKnnSearcher {
+
+    /**
+     * L2 : distance euclidienne au carré ; INNER_PRODUCT : 1 - produit scalaire (espace "ip" de Chroma)
+     */
+    public enum Metric { L2, INNER_PRODUCT }
+
+    static final boolean SIMD = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+
+    // Lignes par tâche fork/join : amortit le coût d'une tâche tout en répartissant sur tous les cœurs
+    static final int PARTITION_ROWS = 2048;
+
+    // Taille d'un bloc de lignes contigu (~16 000 vecteurs à 1024 dimensions)
+    private static final int BLOCK_BYTES = 64 << 20;
+
+    private final int dimension;
+    private final Metric metric;
+    private final int size;
+    private final int rowsPerBlock;
+    private final float[][] blocks;
+    private final String[] ids;
+    private final ForkJoinPool pool;
+
+    private ExactKnnSearcher(Builder builder) {
+        this.dimension = builder.dimension;
+        this.metric = builder.metric;
+        this.size = builder.ids.size();
+        this.rowsPerBlock = builder.rowsPerBlock;
+        this.ids = builder.ids.toArray(new String[0]);
+        this.pool = builder.pool;
+        this.blocks = builder.blocks.toArray(new float[0][]);
+        // Dernier bloc ramené au nombre de lignes réellement écrites
+        int lastRows = size - (blocks.length - 1) * rowsPerBlock;
+        if (blocks.length > 0 && blocks[blocks.length - 1].length != lastRows * dimension) {
+            blocks[blocks.length - 1] = Arrays.copyOf(blocks[blocks.length - 1], lastRows * dimension);
+        }
+    }
+
+    public static Builder builder(int dimension, Metric metric) {
+        return new Builder(dimension, metric);
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long heapBytes() {
+        return (long) size * dimension * Float.BYTES;
+    }
+
+    /**
+     * Les {@code k} plus proches voisins, du plus proche au plus éloigné
+     */
+    public List<QuantizedVectorIndex.Hit> search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimension de la requête " + query.length + " ≠ " + dimension);
+        }
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return List.of();
+        }
+        PartitionScan scan = new PartitionScan(query, k, 0, size);
+        TopK top = size <= 2 * PARTITION_ROWS ? scan.compute() : pool.invoke(scan);
+
+        int[] ordinals = new int[top.size()];
+        float[] distances = new float[ordinals.length];
+        top.drainTo(ordinals, distances);
+        List<QuantizedVectorIndex.Hit> hits = new ArrayList<>(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            hits.add(new QuantizedVectorIndex.Hit(ids[ordinals[i]], distances[i]));
+        }
+        return hits;
+    }
+
+    /**
+     * Parcours de [from, to) : découpé en deux tant qu'il dépasse {@link #PARTITION_ROWS} lignes
+     */
+    private final class PartitionScan extends RecursiveTask<TopK> {
+
+        private final float[] query;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        PartitionScan(float[] query, int k, int from, int to) {
+            this.query = query;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected TopK compute() {
+            if (to - from <= PARTITION_ROWS) {
+                return scan();
+            }
+            int middle = (from + to) >>> 1;
+            PartitionScan left = new PartitionScan(query, k, from, middle);
+            left.fork();
+            TopK top = new PartitionScan(query, k, middle, to).compute();
+            top.addAll(left.join());
+            return top;
+        }
+
+        private TopK scan() {
+            TopK top = new TopK(k);
+            boolean l2 = metric == Metric.L2;
+            for (int row = from; row < to; row++) {
+                float[] block = blocks[row / rowsPerBlock];
+                int offset = (row % rowsPerBlock) * dimension;
+                float distance = l2 ? squaredL2(query, block, offset, dimension) : 1f - dot(query, block, offset, dimension);
+                if (distance < top.threshold()) {
+                    top.offer(row, distance);
+                }
+            }
+            return top;
+        }
+    }
+
+    static float dot(float[] query, float[] matrix, int offset, int dimension) {
+        if (SIMD) {
+            return VectorKernels.dot(query, matrix, offset, dimension);
+        }
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int d = 0;
+        for (; d + 3 < dimension; d += 4) {
+            s0 += query[d] * matrix[offset + d];
+            s1 += query[d + 1] * matrix[offset + d + 1];
+            s2 += query[d + 2] * matrix[offset + d + 2];
+            s3 += query[d + 3] * matrix[offset + d + 3];
+        }
+        for (; d < dimension; d++) {
+            s0 += query[d] * matrix[offset + d];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    static float squaredL2(float[] query, float[] matrix, int offset, int dimension) {
+        if (SIMD) {
+            return VectorKernels.squaredL2(query, matrix, offset, dimension);
+        }
+        float s0 = 0f, s1 = 0f;
+        int d = 0;
+        for (; d + 1 < dimension; d += 2) {
+            float diff0 = query[d] - matrix[offset + d];
+            float diff1 = query[d + 1] - matrix[offset + d + 1];
+            s0 += diff0 * diff0;
+            s1 += diff1 * diff1;
+        }
+        for (; d < dimension; d++) {
+            float diff = query[d] - matrix[offset + d];
+            s0 += diff * diff;
+        }
+        return s0 + s1;
+    }
+
+    public static final class Builder {
+
+        private final int dimension;
+        private final Metric metric;
+        private final int rowsPerBlock;
+        private final List<String> ids = new ArrayList<>();
+        private final List<float[]> blocks = new ArrayList<>();
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        private Builder(int dimension, Metric metric) {
+            if (dimension <= 0) {
+                throw new IllegalArgumentException("Dimension invalide : " + dimension);
+            }
+            this.dimension = dimension;
+            this.metric = metric;
+            this.rowsPerBlock = Math.max(1, BLOCK_BYTES / (dimension * Float.BYTES));
+        }
+
+        /**
+         * Pool des partitions (pool commun par défaut)
+         */
+        public Builder pool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public Builder add(String id, float[] vector) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("Vecteur " + id + " de dimension " + vector.length + " ≠ " + dimension);
+            }
+            int row = ids.size() % rowsPerBlock;
+            if (row == 0) {
+                blocks.add(new float[Math.min(rowsPerBlock, 1024) * dimension]);
+            }
+            float[] block = blocks.get(blocks.size() - 1);
+            if ((row + 1) * dimension > block.length) {
+                // Bloc agrandi par doublement jusqu'à rowsPerBlock lignes
+                block = Arrays.copyOf(block, Math.min(rowsPerBlock, 2 * row) * dimension);
+                blocks.set(blocks.size() - 1, block);
+            }
+            System.arraycopy(vector, 0, block, row * dimension, dimension);
+            ids.add(id);
+            return this;
+        }
+
+        public ExactKnnSearcher build() {
+            return new ExactKnnSearcher(this);
+        }
+    }
+}
@@ -0,0 +1,445 @@
+package com.example.chatbotrag.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Index vectoriel local en mémoire, distance L2 au carré (métrique par défaut de Chroma).
+ * <ul>
+ *   <li>{@link Mode#FLOAT} : vecteurs float32 sur le tas, parcours exact par {@link ExactKnnSearcher} (référence non quantifiée) ;</li>
+ *   <li>{@link Mode#INT8} : un octet par dimension (min / pas propres à chaque dimension) sur le tas,
+ *       les meilleurs candidats sont re-scorés sur les vecteurs float32 d'un fichier mappé en mémoire ;</li>
+ *   <li>{@link Mode#INT8_BINARY} : en plus, un bit par dimension (au-dessus de la moyenne ou non) ;
+ *       une distance de Hamming présélectionne les candidats avant le score int8.</li>
+ * </ul>
+ * À 1024 dimensions, un vecteur coûte 4 Ko sur le tas en FLOAT contre 1 Ko (+ 128 octets en binaire)
+ * en mode quantifié, les float32 restant dans le cache de pages de l'OS. Immuable une fois construit.
+ */
+public final class QuantizedVectorIndex implements Closeable {
+
+    public enum Mode { FLOAT, INT8, INT8_BINARY }
+
+    public record Hit(String id, float distance) {}
+
+    // Vecteurs par bloc de codes int8 (un tableau Java est limité à 2^31 octets)
+    private static final int CODE_BLOCK_VECTORS = 1 << 16;
+
+    private final Mode mode;
+    private final int dimension;
+    private final int size;
+    private final String[] ids;
+    private final float[] squaredNorms;
+    private final int rescoreFactor;
+    private final int binaryCandidateFactor;
+
+    // FLOAT
+    private final ExactKnnSearcher exact;
+
+    // INT8 / INT8_BINARY : valeur ≈ min[d] + step[d] * (code & 0xFF)
+    private final float[] min;
+    private final float[] step;
+    private final byte[][] codeBlocks;
+
+    // INT8_BINARY : bit d = vecteur[d] > moyenne[d]
+    private final float[] mean;
+    private final int words;
+    private final long[] binaryCodes;
+
+    // Vecteurs float32 pour le re-scoring, mappés par régions de moins de 2 Go
+    private final Path file;
+    private final FileChannel channel;
+    private final MappedByteBuffer[] regions;
+    private final int vectorsPerRegion;
+
+    private QuantizedVectorIndex(Builder builder, ExactKnnSearcher exact, MappedByteBuffer[] regions) {
+        this.mode = builder.mode;
+        this.dimension = builder.dimension;
+        this.size = builder.ids.size();
+        this.ids = builder.ids.toArray(new String[0]);
+        this.squaredNorms = builder.squaredNorms.length == size
+                ? builder.squaredNorms : Arrays.copyOf(builder.squaredNorms, size);
+        this.rescoreFactor = builder.rescoreFactor;
+        this.binaryCandidateFactor = builder.binaryCandidateFactor;
+        this.exact = exact;
+        this.file = builder.file;
+        this.channel = builder.channel;
+        this.regions = regions;
+        this.vectorsPerRegion = builder.vectorsPerRegion();
+
+        if (mode == Mode.FLOAT) {
+            min = step = mean = null;
+            codeBlocks = null;
+            words = 0;
+            binaryCodes = null;
+            return;
+        }
+        min = new float[dimension];
+        step = new float[dimension];
+        for (int d = 0; d < dimension; d++) {
+            min[d] = builder.min[d];
+            step[d] = (builder.max[d] - builder.min[d]) / 255f;
+        }
+        boolean binary = mode == Mode.INT8_BINARY;
+        mean = binary ? new float[dimension] : null;
+        if (binary) {
+            for (int d = 0; d < dimension; d++) {
+                mean[d] = (float) (builder.sums[d] / Math.max(1, size));
+            }
+        }
+        words = binary ? (dimension + 63) >>> 6 : 0;
+        binaryCodes = binary ? new long[size * words] : null;
+
+        // Deuxième passe sur le fichier mappé : codes int8 (et binaires)
+        codeBlocks = new byte[(size + CODE_BLOCK_VECTORS - 1) / CODE_BLOCK_VECTORS][];
+        for (int b = 0; b < codeBlocks.length; b++) {
+            codeBlocks[b] = new byte[Math.min(CODE_BLOCK_VECTORS, size - b * CODE_BLOCK_VECTORS) * dimension];
+        }
+        float[] vector = new float[dimension];
+        for (int i = 0; i < size; i++) {
+            readVector(i, vector);
+            byte[] block = codeBlocks[i / CODE_BLOCK_VECTORS];
+            int base = (i % CODE_BLOCK_VECTORS) * dimension;
+            for (int d = 0; d < dimension; d++) {
+                int code = step[d] == 0f ? 0 : Math.round((vector[d] - min[d]) / step[d]);
+                block[base + d] = (byte) Math.max(0, Math.min(255, code));
+                if (binary && vector[d] > mean[d]) {
+                    binaryCodes[i * words + (d >>> 6)] |= 1L << (d & 63);
+                }
+            }
+        }
+    }
+
+    public static Builder builder(int dimension, Mode mode) {
+        return new Builder(dimension, mode);
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Octets occupés sur le tas par les vecteurs, codes et normes (hors IDs)
+     */
+    public long heapBytes() {
+        long bytes = (long) size * Float.BYTES;
+        if (mode == Mode.FLOAT) {
+            return bytes + exact.heapBytes();
+        }
+        bytes += (long) size * dimension + 2L * dimension * Float.BYTES;
+        if (binaryCodes != null) {
+            bytes += (long) binaryCodes.length * Long.BYTES + (long) dimension * Float.BYTES;
+        }
+        return bytes;
+    }
+
+    /**
+     * Octets des vecteurs float32 mappés depuis le fichier (hors tas, 0 en mode FLOAT)
+     */
+    public long mappedBytes() {
+        return mode == Mode.FLOAT ? 0 : (long) size * dimension * Float.BYTES;
+    }
+
+    /**
+     * Les {@code k} plus proches voisins, du plus proche au plus éloigné
+     */
+    public List<Hit> search(float[] query, int k) {
+        if (query.length != dimension) {
+            throw new IllegalArgumentException("Dimension de la requête " + query.length + " ≠ " + dimension);
+        }
+        k = Math.min(k, size);
+        if (k <= 0) {
+            return List.of();
+        }
+        if (mode == Mode.FLOAT) {
+            return exact.search(query, k);
+        }
+        float queryNorm = dot(query, query);
+
+        // Score int8 : q·v ≈ Σ q[d]·min[d] + Σ (q[d]·step[d])·code[d]
+        float[] scaledQuery = new float[dimension];
+        float offset = 0f;
+        for (int d = 0; d < dimension; d++) {
+            scaledQuery[d] = query[d] * step[d];
+            offset += query[d] * min[d];
+        }
+        TopK approximate = new TopK(Math.min(size, k * rescoreFactor));
+        if (binaryCodes != null) {
+            for (int i : hammingCandidates(query, Math.min(size, k * binaryCandidateFactor))) {
+                approximate.offer(i, queryNorm + squaredNorms[i] - 2f * (offset + int8Dot(scaledQuery, i)));
+            }
+        } else {
+            for (int i = 0; i < size; i++) {
+                approximate.offer(i, queryNorm + squaredNorms[i] - 2f * (offset + int8Dot(scaledQuery, i)));
+            }
+        }
+
+        // Re-scoring exact des candidats sur les vecteurs float32 mappés
+        int[] candidates = new int[approximate.size()];
+        approximate.drainTo(candidates, new float[candidates.length]);
+        TopK top = new TopK(k);
+        float[] vector = new float[dimension];
+        for (int i : candidates) {
+            readVector(i, vector);
+            top.offer(i, queryNorm + squaredNorms[i] - 2f * dot(query, vector));
+        }
+        return toHits(top);
+    }
+
+    private int[] hammingCandidates(float[] query, int count) {
+        long[] queryBits = new long[words];
+        for (int d = 0; d < dimension; d++) {
+            if (query[d] > mean[d]) {
+                queryBits[d >>> 6] |= 1L << (d & 63);
+            }
+        }
+        TopK top = new TopK(count);
+        for (int i = 0; i < size; i++) {
+            int base = i * words;
+            int distance = 0;
+            for (int w = 0; w < words; w++) {
+                distance += Long.bitCount(queryBits[w] ^ binaryCodes[base + w]);
+            }
+            if (distance < top.threshold()) {
+                top.offer(i, distance);
+            }
+        }
+        int[] candidates = new int[top.size()];
+        top.drainTo(candidates, new float[candidates.length]);
+        return candidates;
+    }
+
+    private float int8Dot(float[] scaledQuery, int i) {
+        byte[] block = codeBlocks[i / CODE_BLOCK_VECTORS];
+        int base = (i % CODE_BLOCK_VECTORS) * dimension;
+        // 4 accumulateurs indépendants : la somme n'attend pas l'addition précédente
+        float s0 = 0f, s1 = 0f, s2 = 0f, s3 = 0f;
+        int d = 0;
+        for (; d + 3 < dimension; d += 4) {
+            s0 += scaledQuery[d] * (block[base + d] & 0xFF);
+            s1 += scaledQuery[d + 1] * (block[base + d + 1] & 0xFF);
+            s2 += scaledQuery[d + 2] * (block[base + d + 2] & 0xFF);
+            s3 += scaledQuery[d + 3] * (block[base + d + 3] & 0xFF);
+        }
+        for (; d < dimension; d++) {
+            s0 += scaledQuery[d] * (block[base + d] & 0xFF);
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    private void readVector(int i, float[] target) {
+        MappedByteBuffer region = regions[i / vectorsPerRegion];
+        int base = (i % vectorsPerRegion) * dimension * Float.BYTES;
+        for (int d = 0; d < dimension; d++) {
+            target[d] = region.getFloat(base + d * Float.BYTES);
+        }
+    }
+
+    private List<Hit> toHits(TopK top) {
+        int[] ordinals = new int[top.size()];
+        float[] distances = new float[ordinals.length];
+        top.drainTo(ordinals, distances);
+        List<Hit> hits = new ArrayList<>(ordinals.length);
+        for (int i = 0; i < ordinals.length; i++) {
+            hits.add(new Hit(ids[ordinals[i]], distances[i]));
+        }
+        return hits;
+    }
+
+    private static float dot(float[] a, float[] b) {
+        return ExactKnnSearcher.dot(a, b, 0, a.length);
+    }
+
+    /**
+     * Ferme et supprime le fichier des vecteurs float32 (les recherches en cours restent valides)
+     */
+    @Override
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Construction en deux passes : les vecteurs sont écrits dans le fichier au fil de l'eau
+     * (min / max / moyenne par dimension), puis quantifiés depuis le fichier mappé.
+     * Une construction abandonnée doit être fermée ({@link #abort()}) pour libérer le fichier ouvert.
+     */
+    public static final class Builder implements Closeable {
+
+        private final int dimension;
+        private final Mode mode;
+        private final List<String> ids = new ArrayList<>();
+        private final ExactKnnSearcher.Builder exactBuilder;
+        private float[] squaredNorms = new float[1024];
+        private final float[] min;
+        private final float[] max;
+        private final double[] sums;
+        private int rescoreFactor = 4;
+        private int binaryCandidateFactor = 50;
+        private Path file;
+        private FileChannel channel;
+        private ByteBuffer writeBuffer;
+        private boolean built;
+
+        private Builder(int dimension, Mode mode) {
+            if (dimension <= 0) {
+                throw new IllegalArgumentException("Dimension invalide : " + dimension);
+            }
+            this.dimension = dimension;
+            this.mode = mode;
+            this.min = new float[dimension];
+            this.max = new float[dimension];
+            this.sums = new double[dimension];
+            this.exactBuilder = mode == Mode.FLOAT ? ExactKnnSearcher.builder(dimension, ExactKnnSearcher.Metric.L2) : null;
+            Arrays.fill(min, Float.POSITIVE_INFINITY);
+            Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        }
+
+        /**
+         * Fichier des vecteurs float32 (obligatoire hors mode FLOAT), recréé s'il existe
+         */
+        public Builder file(Path file) {
+            this.file = file;
+            return this;
+        }
+
+        /**
+         * Candidats re-scorés en float32 : k × facteur (4 par défaut)
+         */
+        public Builder rescoreFactor(int rescoreFactor) {
+            this.rescoreFactor = Math.max(1, rescoreFactor);
+            return this;
+        }
+
+        /**
+         * Candidats retenus par la présélection binaire : k × facteur (50 par défaut)
+         */
+        public Builder binaryCandidateFactor(int binaryCandidateFactor) {
+            this.binaryCandidateFactor = Math.max(1, binaryCandidateFactor);
+            return this;
+        }
+
+        public Builder add(String id, float[] vector) {
+            if (vector.length != dimension) {
+                throw new IllegalArgumentException("Vecteur " + id + " de dimension " + vector.length + " ≠ " + dimension);
+            }
+            int i = ids.size();
+            if (i == squaredNorms.length) {
+                squaredNorms = Arrays.copyOf(squaredNorms, i * 2);
+            }
+            squaredNorms[i] = dot(vector, vector);
+            ids.add(id);
+            if (mode == Mode.FLOAT) {
+                exactBuilder.add(id, vector);
+                return this;
+            }
+            for (int d = 0; d < dimension; d++) {
+                min[d] = Math.min(min[d], vector[d]);
+                max[d] = Math.max(max[d], vector[d]);
+                sums[d] += vector[d];
+            }
+            write(vector);
+            return this;
+        }
+
+        private void write(float[] vector) {
+            try {
+                if (channel == null) {
+                    if (file == null) {
+                        throw new IllegalStateException("Fichier des vecteurs requis en mode " + mode);
+                    }
+                    channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                            StandardOpenOption.READ, StandardOpenOption.WRITE);
+                    writeBuffer = ByteBuffer.allocateDirect(dimension * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+                }
+                writeBuffer.clear();
+                writeBuffer.asFloatBuffer().put(vector);
+                while (writeBuffer.hasRemaining()) {
+                    channel.write(writeBuffer);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        private int vectorsPerRegion() {
+            return Integer.MAX_VALUE / (dimension * Float.BYTES);
+        }
+
+        public QuantizedVectorIndex build() {
+            if (built) {
+                throw new IllegalStateException("Index déjà construit");
+            }
+            if (mode == Mode.FLOAT) {
+                built = true;
+                return new QuantizedVectorIndex(this, exactBuilder.build(), null);
+            }
+            if (ids.isEmpty()) {
+                built = true;
+                return new QuantizedVectorIndex(this, null, new MappedByteBuffer[0]);
+            }
+            try {
+                long bytesPerVector = (long) dimension * Float.BYTES;
+                int perRegion = vectorsPerRegion();
+                MappedByteBuffer[] regions = new MappedByteBuffer[Math.max(1, (ids.size() + perRegion - 1) / perRegion)];
+                for (int r = 0; r < regions.length; r++) {
+                    long first = (long) r * perRegion;
+                    long count = Math.min(perRegion, ids.size() - first);
+                    regions[r] = channel.map(FileChannel.MapMode.READ_ONLY, first * bytesPerVector, count * bytesPerVector);
+                    regions[r].order(ByteOrder.LITTLE_ENDIAN);
+                }
+                built = true;
+                return new QuantizedVectorIndex(this, null, regions);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Abandonne la construction : ferme le fichier des vecteurs (sans le supprimer).
+         * Sans effet une fois {@link #build()} réussi, le fichier appartenant alors à l'index
+         */
+        public void abort() {
+            if (built || channel == null) {
+                return;
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                channel = null;
+            }
+        }
+
+        @Override
+        public void close() {
+            abort();
+        }
+    }
+}
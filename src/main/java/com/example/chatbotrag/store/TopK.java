@@ -0,0 +1,107 @@
+package com.example.chatbotrag.store;
+
+/**
+ * Sélection bornée des N plus petites distances : tas max sur tableaux primitifs
+ * (la racine est le pire candidat retenu), sans objet alloué par vecteur parcouru.
+ */
+final class TopK {
+
+    private final int capacity;
+    private final int[] ordinals;
+    private final float[] distances;
+    private int size;
+
+    TopK(int capacity) {
+        this.capacity = capacity;
+        this.ordinals = new int[capacity];
+        this.distances = new float[capacity];
+    }
+
+    /**
+     * Propose un candidat ; ignoré s'il n'est pas meilleur que le pire retenu
+     */
+    void offer(int ordinal, float distance) {
+        if (size < capacity) {
+            ordinals[size] = ordinal;
+            distances[size] = distance;
+            siftUp(size++);
+        } else if (capacity > 0 && distance < distances[0]) {
+            ordinals[0] = ordinal;
+            distances[0] = distance;
+            siftDown(0);
+        }
+    }
+
+    /**
+     * Distance à battre pour entrer dans la sélection (+∞ tant qu'elle n'est pas pleine)
+     */
+    float threshold() {
+        return size < capacity ? Float.POSITIVE_INFINITY : distances[0];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Fusionne une autre sélection (ex. celle d'une autre partition)
+     */
+    void addAll(TopK other) {
+        for (int i = 0; i < other.size; i++) {
+            offer(other.ordinals[i], other.distances[i]);
+        }
+    }
+
+    /**
+     * Ordinaux et distances retenus, du plus proche au plus éloigné ; vide la sélection
+     */
+    void drainTo(int[] sortedOrdinals, float[] sortedDistances) {
+        for (int i = size - 1; i >= 0; i--) {
+            sortedOrdinals[i] = ordinals[0];
+            sortedDistances[i] = distances[0];
+            removeRoot();
+        }
+    }
+
+    private void removeRoot() {
+        size--;
+        ordinals[0] = ordinals[size];
+        distances[0] = distances[size];
+        siftDown(0);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (distances[parent] >= distances[i]) {
+                return;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int largest = left + 1 < size && distances[left + 1] > distances[left] ? left + 1 : left;
+            if (distances[i] >= distances[largest]) {
+                return;
+            }
+            swap(i, largest);
+            i = largest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        int ordinal = ordinals[a];
+        ordinals[a] = ordinals[b];
+        ordinals[b] = ordinal;
+        float distance = distances[a];
+        distances[a] = distances[b];
+        distances[b] = distance;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chatbotrag.store;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Produit scalaire et distance L2² en SIMD (API Vector, module incubateur jdk.incubator.vector).
+ * Chargée uniquement si le module est présent au démarrage ({@code --add-modules=jdk.incubator.vector}),
+ * sinon {@link ExactKnnSearcher} reste sur la boucle scalaire.
+ */
+final class VectorKernels {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private VectorKernels() {
+    }
+
+    static float dot(float[] query, float[] matrix, int offset, int dimension) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(dimension);
+        int d = 0;
+        for (; d < bound; d += SPECIES.length()) {
+            FloatVector q = FloatVector.fromArray(SPECIES, query, d);
+            FloatVector v = FloatVector.fromArray(SPECIES, matrix, offset + d);
+            sum = q.fma(v, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; d < dimension; d++) {
+            result += query[d] * matrix[offset + d];
+        }
+        return result;
+    }
+
+    static float squaredL2(float[] query, float[] matrix, int offset, int dimension) {
+        FloatVector sum = FloatVector.zero(SPECIES);
+        int bound = SPECIES.loopBound(dimension);
+        int d = 0;
+        for (; d < bound; d += SPECIES.length()) {
+            FloatVector diff = FloatVector.fromArray(SPECIES, query, d)
+                    .sub(FloatVector.fromArray(SPECIES, matrix, offset + d));
+            sum = diff.fma(diff, sum);
+        }
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; d < dimension; d++) {
+            float diff = query[d] - matrix[offset + d];
+            result += diff * diff;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,19 @@
+-- Migration pour créer la table embedding_cache
+-- Cache des embeddings adressé par le contenu : SHA-256 du (modèle, texte du chunk)
+-- Une ré-ingestion d'un document presque inchangé ne rappelle Ollama que pour les chunks modifiés
+
+CREATE TABLE embedding_cache (
+    content_hash VARCHAR(64) PRIMARY KEY,
+    model VARCHAR(100) NOT NULL,
+    dimension INT NOT NULL,
+
+    -- Vecteur en float32 little-endian, 4 octets par dimension (4 Ko pour bge-m3)
+    vector MEDIUMBLOB NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+
+    -- Index pour le suivi par modèle
+    INDEX idx_embedding_cache_model (model)
+);
+
+ALTER TABLE embedding_cache
+    COMMENT = 'Cache des embeddings Ollama adressé par le contenu des chunks';
@@ -0,0 +1,8 @@
+-- Migration pour le diff de chunks lors de la mise à jour d'un document (PUT /upload/{documentId})
+-- Les chunks existants gardent content_hash NULL : l'empreinte est alors recalculée depuis le texte
+
+ALTER TABLE chunk
+    ADD COLUMN sh_code VARCHAR(10),
+    ADD COLUMN content_hash VARCHAR(64);
+
+CREATE INDEX idx_chunk_document_id ON chunk(document_id);
@@ -0,0 +1,4 @@
+-- Catalogue des codes SH (GET /chunks/sh-codes) : agrégation sur chunk.sh_code
+-- Les chunks antérieurs à V4 sont complétés au premier calcul du catalogue (ShCodeCatalogueService)
+
+CREATE INDEX idx_chunk_sh_code ON chunk(sh_code);
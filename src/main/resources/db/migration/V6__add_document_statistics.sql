@@ -0,0 +1,8 @@
+-- Statistiques par document écrites à l'ingestion (GET /documents)
+-- Restent NULL pour les documents ingérés avant cette migration
+
+ALTER TABLE document
+    ADD COLUMN chunk_count INT,
+    ADD COLUMN total_characters BIGINT,
+    ADD COLUMN sh_code_count INT,
+    ADD COLUMN ingestion_duration_ms BIGINT;
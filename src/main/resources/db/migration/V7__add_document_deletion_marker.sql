@@ -0,0 +1,5 @@
+-- Suppression par lots des gros documents (DELETE /delete/document/{documentId})
+-- Un document marqué est masqué de GET /documents ; sa suppression reprend au redémarrage si elle a été interrompue
+
+ALTER TABLE document
+    ADD COLUMN deletion_requested_at DATETIME(6);
@@ -0,0 +1,17 @@
+-- Écritures Chroma d'une mise à jour de document (PUT /upload/{documentId}) pas encore appliquées
+-- Insérées dans la transaction de la bascule MySQL, supprimées une fois Chroma à jour, rejouées au démarrage sinon
+
+CREATE TABLE chroma_pending_write (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    update_id VARCHAR(36) NOT NULL,
+    document_id BIGINT NOT NULL,
+    chunk_id VARCHAR(255) NOT NULL,
+    collection_name VARCHAR(255) NOT NULL,
+
+    -- UPSERT : vecteur du chunk (relu dans MySQL) ; DELETE : embedding à retirer de collection_name
+    operation VARCHAR(10) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+
+    INDEX idx_chroma_pending_write_update (update_id),
+    INDEX idx_chroma_pending_write_document (document_id)
+);
@@ -0,0 +1,130 @@
+package com.example.chatbotrag.benchmark;
+
+import ch.qos.logback.classic.Level;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Jeux de données partagés par les benchmarks JMH.
+ * Le texte tarifaire reprend la structure des fiches réelles (code SH, DI/TPI/TVA,
+ * accords préférentiels), dont une partie avec l'encodage cassé des extractions PDF.
+ */
+public final class BenchmarkData {
+
+    public static final String TARIFF_SAMPLE = "/benchmark/tarif-sample.txt";
+
+    static {
+        // Hors contexte Spring, logback journalise en DEBUG par défaut : on mesure le code, pas la console
+        Logger root = LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME);
+        if (root instanceof ch.qos.logback.classic.Logger logbackRoot) {
+            logbackRoot.setLevel(Level.WARN);
+        }
+    }
+
+    private BenchmarkData() {
+    }
+
+    public static String tariffText() {
+        try (InputStream in = BenchmarkData.class.getResourceAsStream(TARIFF_SAMPLE)) {
+            if (in == null) {
+                throw new IllegalStateException("Ressource introuvable : " + TARIFF_SAMPLE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Questions utilisateur typiques (viandes, animaux vivants, code SH explicite)
+     */
+    public static List<String> userQueries() {
+        return List.of(
+                "Quels sont les droits de douane pour la viande bovine fraîche désossée ?",
+                "viandes de porc congelées en carcasses ou demi-carcasses",
+                "importation de chevaux de course au Maroc",
+                "animaux vivants destinés aux parcs zoologiques",
+                "quel est le taux de TVA pour le code SH 0101292000 ?",
+                "viande ovine réfrigérée avec os âgés de moins de six mois",
+                "droit d'importation pour les poissons vivants",
+                "Bonjour, pouvez-vous m'aider ?"
+        );
+    }
+
+    /**
+     * Réponse Mistral au format imposé par le prompt (trois sections)
+     */
+    public static String mistralResponse() {
+        return "Pour l'importation de chevaux de course au Maroc, voici les informations clés à prendre en compte :\n\n" +
+               "Position Tarifaire\n" +
+               "Code SH : 0101292000\n" +
+               "Description : Chevaux, ânes, mulets et bardots vivants - - - de course.\n\n" +
+               "Droits et Taxes\n" +
+               "Droit d'Importation (DI) : 2,5 %\n" +
+               "Taxe Parafiscale à l'Importation (TPI) : 0,25 %\n" +
+               "Taxe sur la Valeur Ajoutée à l'Importation (TVA) : 20 %\n\n" +
+               "Accords et Conventions\n" +
+               "Les chevaux de course peuvent bénéficier de droits préférentiels dans le cadre des accords suivants :\n\n" +
+               "Union Européenne : 0%\n" +
+               "Ligue Arabe : 0%\n" +
+               "Accord d'Agadir : 0%\n" +
+               "États-Unis : 0%\n" +
+               "Zone de libre-échange continentale africaine (5 ans) : 0,5%\n" +
+               "Zone de libre-échange continentale africaine (10 ans) : 1,5%\n" +
+               "Émirats Arabes Unis : 0%\n" +
+               "Irak : 0.0%\n" +
+               "Libye : 0.0%\n" +
+               "Royaume-Uni : 0%\n" +
+               "Algérie : 0.0%\n\n\n\n";
+    }
+
+    /**
+     * Embeddings synthétiques normalisés, regroupés autour de quelques centaines de « thèmes »
+     * comme les chunks d'un même chapitre tarifaire (un tirage uniforme rendrait tous les voisins équidistants)
+     */
+    public static float[][] embeddings(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        float[][] centers = new float[Math.max(1, count / 50)][dimension];
+        for (float[] center : centers) {
+            for (int d = 0; d < dimension; d++) {
+                center[d] = (float) random.nextGaussian();
+            }
+        }
+        float[][] vectors = new float[count][];
+        for (int i = 0; i < count; i++) {
+            vectors[i] = perturb(centers[random.nextInt(centers.length)], 3.0f, random);
+        }
+        return vectors;
+    }
+
+    /**
+     * Variante normalisée d'un vecteur (bruit gaussien d'écart-type relatif {@code noise})
+     */
+    public static float[] perturb(float[] vector, float noise, Random random) {
+        float scale = noise * (float) Math.sqrt(squaredNorm(vector) / vector.length);
+        float[] result = new float[vector.length];
+        for (int d = 0; d < vector.length; d++) {
+            result[d] = vector[d] + scale * (float) random.nextGaussian();
+        }
+        float norm = (float) Math.sqrt(squaredNorm(result));
+        for (int d = 0; d < result.length; d++) {
+            result[d] /= norm;
+        }
+        return result;
+    }
+
+    private static double squaredNorm(float[] vector) {
+        double sum = 0;
+        for (float v : vector) {
+            sum += (double) v * v;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chatbotrag.config;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.service.OllamaClientService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.web.client.ResourceAccessException;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class OllamaModelWarmupTest {
+
+    @Test
+    void reloadsOnlyColdModelsAndReportsReadiness() {
+        OllamaClientService ollama = mock(OllamaClientService.class);
+        when(ollama.getChatModel()).thenReturn("mistral");
+        when(ollama.getEmbeddingModel()).thenReturn("bge-m3");
+        when(ollama.loadedModels())
+                .thenThrow(new ResourceAccessException("Connection refused"))
+                .thenReturn(Set.of("bge-m3"))
+                .thenReturn(Set.of("mistral", "bge-m3"));
+        OllamaModelWarmup warmup = new OllamaModelWarmup(ollama, new RagMetrics(new SimpleMeterRegistry()), true);
+
+        // Ollama injoignable : aucun préchargement, nœud hors service
+        warmup.warmUp();
+        assertFalse(warmup.isReady());
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        verify(ollama, never()).preload(anyString());
+
+        // Mistral déchargé : seul Mistral est rechargé
+        warmup.warmUp();
+        verify(ollama).preload("mistral");
+        verify(ollama, never()).preload("bge-m3");
+        assertTrue(warmup.isReady());
+        assertEquals(Status.UP, warmup.health().getStatus());
+
+        // Tout est chaud : aucun appel de préchargement supplémentaire
+        warmup.warmUp();
+        verify(ollama, times(1)).preload(anyString());
+    }
+
+    @Test
+    void failedPreloadKeepsNodeOutOfService() {
+        OllamaClientService ollama = mock(OllamaClientService.class);
+        when(ollama.getChatModel()).thenReturn("mistral");
+        when(ollama.getEmbeddingModel()).thenReturn("bge-m3");
+        when(ollama.loadedModels()).thenReturn(Set.of());
+        doThrow(new ResourceAccessException("Read timed out")).when(ollama).preload("mistral");
+        OllamaModelWarmup warmup = new OllamaModelWarmup(ollama, new RagMetrics(new SimpleMeterRegistry()), true);
+
+        warmup.warmUp();
+
+        assertEquals(Status.OUT_OF_SERVICE, warmup.health().getStatus());
+        assertEquals(false, ((Map<?, ?>) warmup.health().getDetails().get("models")).get("mistral"));
+        assertEquals(true, ((Map<?, ?>) warmup.health().getDetails().get("models")).get("bge-m3"));
+    }
+}
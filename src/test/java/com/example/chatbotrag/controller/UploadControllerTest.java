@@ -0,0 +1,45 @@
+package com.example.chatbotrag.controller;
+
+import com.example.chatbotrag.service.IngestionJob;
+import com.example.chatbotrag.service.IngestionJobService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class UploadControllerTest {
+
+    private final IngestionJobService jobService = mock(IngestionJobService.class);
+    private final UploadController controller = new UploadController(jobService);
+
+    @Test
+    void fullQueueIsRetryableButInvalidFilesAreNot() throws IOException {
+        MultipartFile[] files = {file("a.pdf"), file("b.pdf")};
+
+        when(jobService.submit(any())).thenThrow(new RejectedExecutionException("file pleine"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, controller.uploadDocuments(files).getStatusCode());
+
+        reset(jobService);
+        when(jobService.submit(any()))
+                .thenThrow(new RejectedExecutionException("file pleine"))
+                .thenThrow(new IllegalArgumentException("Type de fichier non supporté"));
+        assertEquals(HttpStatus.BAD_REQUEST, controller.uploadDocuments(files).getStatusCode());
+
+        reset(jobService);
+        when(jobService.submit(any()))
+                .thenReturn(new IngestionJob("job-1", "a.pdf", 3))
+                .thenThrow(new RejectedExecutionException("file pleine"));
+        assertEquals(HttpStatus.ACCEPTED, controller.uploadDocuments(files).getStatusCode());
+    }
+
+    private static MultipartFile file(String name) {
+        return new MockMultipartFile("files", name, "application/pdf", new byte[]{1, 2, 3});
+    }
+}
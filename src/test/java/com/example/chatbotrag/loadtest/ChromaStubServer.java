@@ -0,0 +1,296 @@
+package com.example.chatbotrag.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stub Chroma (API v1) en mémoire : collections, add/upsert, query (L2 au carré, comme la
+ * métrique par défaut de Chroma), get (ids / where / limit / offset), delete et suppression
+ * de collection. Couvre les appels de ChromaHttpClientService, AdminController et du
+ * ChromaEmbeddingStore langchain4j.
+ */
+public class ChromaStubServer extends JsonStubServer {
+
+    private static final String API = "/api/v1";
+
+    private final Map<String, StubCollection> collectionsByName = new ConcurrentHashMap<>();
+    private final Map<String, StubCollection> collectionsById = new ConcurrentHashMap<>();
+
+    public ChromaStubServer(int port, StubBehavior behavior) throws IOException {
+        super("chroma", port, behavior);
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, String path) throws IOException {
+        if (!path.startsWith(API)) {
+            notFound(exchange, method, path);
+            return;
+        }
+        String[] segments = path.substring(API.length()).split("/");
+        // segments[0] est vide (chemin commençant par "/")
+        if (segments.length == 2 && "heartbeat".equals(segments[1])) {
+            writeJson(exchange, 200, Map.of("nanosecond heartbeat", System.nanoTime()));
+            return;
+        }
+        if (segments.length < 2 || !"collections".equals(segments[1])) {
+            notFound(exchange, method, path);
+            return;
+        }
+
+        if (segments.length == 2) {
+            if ("GET".equals(method)) {
+                List<Map<String, Object>> all = new ArrayList<>();
+                collectionsByName.values().forEach(c -> all.add(c.describe()));
+                writeJson(exchange, 200, all);
+            } else if ("POST".equals(method)) {
+                createCollection(exchange, readJson(exchange));
+            } else {
+                notFound(exchange, method, path);
+            }
+            return;
+        }
+
+        String ref = segments[2];
+        if (segments.length == 3) {
+            StubCollection collection = resolve(ref);
+            if (collection == null) {
+                writeJson(exchange, 404, Map.of("error", "Collection " + ref + " does not exist."));
+            } else if ("GET".equals(method)) {
+                writeJson(exchange, 200, collection.describe());
+            } else if ("DELETE".equals(method)) {
+                collectionsByName.remove(collection.name);
+                collectionsById.remove(collection.id);
+                writeJson(exchange, 200, Map.of());
+            } else {
+                notFound(exchange, method, path);
+            }
+            return;
+        }
+
+        StubCollection collection = collectionsById.get(ref);
+        if (collection == null) {
+            writeJson(exchange, 404, Map.of("error", "Collection " + ref + " does not exist."));
+            return;
+        }
+        Map<String, Object> request = readJson(exchange);
+        switch (segments[3]) {
+            case "add", "upsert" -> {
+                collection.add(request);
+                writeJson(exchange, 201, true);
+            }
+            case "query" -> writeJson(exchange, 200, collection.query(request));
+            case "get" -> writeJson(exchange, 200, collection.get(request));
+            case "delete" -> writeJson(exchange, 200, collection.delete(request));
+            case "count" -> writeJson(exchange, 200, collection.entries.size());
+            default -> notFound(exchange, method, path);
+        }
+    }
+
+    public int size(String collectionName) {
+        StubCollection collection = collectionsByName.get(collectionName);
+        return collection == null ? 0 : collection.entries.size();
+    }
+
+    private StubCollection resolve(String ref) {
+        StubCollection byName = collectionsByName.get(ref);
+        return byName != null ? byName : collectionsById.get(ref);
+    }
+
+    private void createCollection(HttpExchange exchange, Map<String, Object> request) throws IOException {
+        String name = String.valueOf(request.get("name"));
+        StubCollection existing = collectionsByName.get(name);
+        if (existing != null) {
+            if (Boolean.TRUE.equals(request.get("get_or_create"))) {
+                writeJson(exchange, 200, existing.describe());
+            } else {
+                writeJson(exchange, 409, Map.of("error", "UniqueConstraintError('Collection " + name + " already exists')"));
+            }
+            return;
+        }
+        StubCollection created = collectionsByName.computeIfAbsent(name, StubCollection::new);
+        collectionsById.put(created.id, created);
+        writeJson(exchange, 200, created.describe());
+    }
+
+    private record Entry(String id, float[] embedding, String document, Map<String, Object> metadata) {
+    }
+
+    private static final class StubCollection {
+
+        private final String id = UUID.randomUUID().toString();
+        private final String name;
+        private final Map<String, Entry> entries = Collections.synchronizedMap(new LinkedHashMap<>());
+
+        StubCollection(String name) {
+            this.name = name;
+        }
+
+        Map<String, Object> describe() {
+            Map<String, Object> description = new LinkedHashMap<>();
+            description.put("id", id);
+            description.put("name", name);
+            description.put("metadata", null);
+            return description;
+        }
+
+        @SuppressWarnings("unchecked")
+        void add(Map<String, Object> request) {
+            List<String> ids = (List<String>) request.get("ids");
+            List<List<Number>> embeddings = (List<List<Number>>) request.get("embeddings");
+            List<String> documents = (List<String>) request.get("documents");
+            List<Map<String, Object>> metadatas = (List<Map<String, Object>>) request.get("metadatas");
+            for (int i = 0; i < ids.size(); i++) {
+                float[] vector = toVector(embeddings.get(i));
+                String document = documents != null && i < documents.size() ? documents.get(i) : null;
+                Map<String, Object> metadata = metadatas != null && i < metadatas.size() ? metadatas.get(i) : null;
+                entries.put(ids.get(i), new Entry(ids.get(i), vector, document, metadata));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> query(Map<String, Object> request) {
+            List<List<Number>> queries = (List<List<Number>>) request.get("query_embeddings");
+            int nResults = ((Number) request.getOrDefault("n_results", 10)).intValue();
+            Map<String, Object> where = (Map<String, Object>) request.get("where");
+            List<Entry> snapshot = snapshot(where);
+
+            List<List<String>> ids = new ArrayList<>();
+            List<List<String>> documents = new ArrayList<>();
+            List<List<Double>> distances = new ArrayList<>();
+            List<List<Map<String, Object>>> metadatas = new ArrayList<>();
+            List<List<float[]>> embeddings = new ArrayList<>();
+            for (List<Number> query : queries) {
+                float[] q = toVector(query);
+                PriorityQueue<Map.Entry<Double, Entry>> heap =
+                        new PriorityQueue<>((a, b) -> Double.compare(b.getKey(), a.getKey()));
+                for (Entry entry : snapshot) {
+                    heap.offer(Map.entry(squaredL2(q, entry.embedding), entry));
+                    if (heap.size() > nResults) heap.poll();
+                }
+                List<Map.Entry<Double, Entry>> nearest = new ArrayList<>(heap);
+                nearest.sort(Map.Entry.comparingByKey());
+                List<String> rowIds = new ArrayList<>();
+                List<String> rowDocs = new ArrayList<>();
+                List<Double> rowDistances = new ArrayList<>();
+                List<Map<String, Object>> rowMetadatas = new ArrayList<>();
+                List<float[]> rowEmbeddings = new ArrayList<>();
+                for (Map.Entry<Double, Entry> hit : nearest) {
+                    rowIds.add(hit.getValue().id);
+                    rowDocs.add(hit.getValue().document);
+                    rowDistances.add(hit.getKey());
+                    rowMetadatas.add(hit.getValue().metadata);
+                    rowEmbeddings.add(hit.getValue().embedding);
+                }
+                ids.add(rowIds);
+                documents.add(rowDocs);
+                distances.add(rowDistances);
+                metadatas.add(rowMetadatas);
+                embeddings.add(rowEmbeddings);
+            }
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("ids", ids);
+            response.put("documents", documents);
+            response.put("distances", distances);
+            response.put("metadatas", metadatas);
+            List<String> include = (List<String>) request.get("include");
+            response.put("embeddings", include != null && include.contains("embeddings") ? embeddings : null);
+            return response;
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, Object> get(Map<String, Object> request) {
+            List<String> requestedIds = (List<String>) request.get("ids");
+            Map<String, Object> where = (Map<String, Object>) request.get("where");
+            int offset = request.get("offset") instanceof Number n ? n.intValue() : 0;
+            int limit = request.get("limit") instanceof Number n ? n.intValue() : Integer.MAX_VALUE;
+            List<String> include = request.get("include") instanceof List<?> l
+                    ? (List<String>) l : List.of("documents", "metadatas");
+
+            List<Entry> selected = new ArrayList<>();
+            if (requestedIds != null) {
+                for (String id : requestedIds) {
+                    Entry entry = entries.get(id);
+                    if (entry != null && matches(entry, where)) selected.add(entry);
+                }
+            } else {
+                selected = snapshot(where);
+            }
+            List<Entry> page = selected.subList(Math.min(offset, selected.size()),
+                    (int) Math.min((long) offset + limit, selected.size()));
+
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("ids", page.stream().map(Entry::id).toList());
+            response.put("documents", include.contains("documents") ? page.stream().map(Entry::document).toList() : null);
+            response.put("metadatas", include.contains("metadatas") ? page.stream().map(Entry::metadata).toList() : null);
+            response.put("embeddings", include.contains("embeddings") ? page.stream().map(Entry::embedding).toList() : null);
+            return response;
+        }
+
+        @SuppressWarnings("unchecked")
+        List<String> delete(Map<String, Object> request) {
+            List<String> requestedIds = (List<String>) request.get("ids");
+            Map<String, Object> where = (Map<String, Object>) request.get("where");
+            List<String> deleted = new ArrayList<>();
+            synchronized (entries) {
+                Iterator<Entry> it = entries.values().iterator();
+                while (it.hasNext()) {
+                    Entry entry = it.next();
+                    boolean idMatch = requestedIds == null || requestedIds.contains(entry.id);
+                    if (idMatch && matches(entry, where)) {
+                        deleted.add(entry.id);
+                        it.remove();
+                    }
+                }
+            }
+            return deleted;
+        }
+
+        private List<Entry> snapshot(Map<String, Object> where) {
+            List<Entry> result = new ArrayList<>();
+            synchronized (entries) {
+                for (Entry entry : entries.values()) {
+                    if (matches(entry, where)) result.add(entry);
+                }
+            }
+            return result;
+        }
+
+        /**
+         * Filtre where minimal : égalité simple {"cle": valeur} ou {"cle": {"$eq": valeur}}
+         */
+        @SuppressWarnings("unchecked")
+        private static boolean matches(Entry entry, Map<String, Object> where) {
+            if (where == null || where.isEmpty()) return true;
+            if (entry.metadata == null) return false;
+            for (Map.Entry<String, Object> condition : where.entrySet()) {
+                Object expected = condition.getValue();
+                if (expected instanceof Map<?, ?> operator) {
+                    expected = ((Map<String, Object>) operator).get("$eq");
+                }
+                if (!Objects.equals(String.valueOf(entry.metadata.get(condition.getKey())), String.valueOf(expected))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static float[] toVector(List<Number> values) {
+            float[] vector = new float[values.size()];
+            for (int i = 0; i < vector.length; i++) vector[i] = values.get(i).floatValue();
+            return vector;
+        }
+
+        private static double squaredL2(float[] a, float[] b) {
+            double sum = 0.0;
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                double d = a[i] - b[i];
+                sum += d * d;
+            }
+            return sum;
+        }
+    }
+}
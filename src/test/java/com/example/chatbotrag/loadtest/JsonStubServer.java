@@ -0,0 +1,112 @@
+package com.example.chatbotrag.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Base des stubs HTTP/JSON (JDK HttpServer, un thread virtuel par requête).
+ * Applique la latence et les pannes injectées avant de déléguer à {@link #handle}.
+ */
+abstract class JsonStubServer implements AutoCloseable {
+
+    protected static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final String name;
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final StubBehavior behavior;
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong injectedFailures = new AtomicLong();
+
+    protected JsonStubServer(String name, int port, StubBehavior behavior) throws IOException {
+        this.name = name;
+        this.behavior = behavior;
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server.setExecutor(executor);
+        this.server.createContext("/", this::dispatch);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public String baseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public long requestCount() {
+        return requestCount.get();
+    }
+
+    public long injectedFailures() {
+        return injectedFailures.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    protected abstract void handle(HttpExchange exchange, String method, String path) throws IOException;
+
+    private void dispatch(HttpExchange exchange) {
+        requestCount.incrementAndGet();
+        try (exchange) {
+            behavior.applyLatency();
+            if (behavior.shouldFail()) {
+                injectedFailures.incrementAndGet();
+                writeJson(exchange, 500, Map.of("error", "injected failure (" + name + ")"));
+                return;
+            }
+            handle(exchange, exchange.getRequestMethod(), exchange.getRequestURI().getPath());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            try {
+                writeJson(exchange, 500, Map.of("error", String.valueOf(e.getMessage())));
+            } catch (IOException ignored) {
+                // réponse déjà commencée : la connexion est fermée
+            }
+        }
+    }
+
+    protected static Map<String, Object> readJson(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] body = in.readAllBytes();
+            if (body.length == 0) {
+                return Map.of();
+            }
+            return MAPPER.readValue(body, new TypeReference<Map<String, Object>>() {});
+        }
+    }
+
+    protected static void writeJson(HttpExchange exchange, int status, Object body) throws IOException {
+        byte[] bytes = MAPPER.writeValueAsBytes(body);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    protected static void notFound(HttpExchange exchange, String method, String path) throws IOException {
+        writeJson(exchange, 404, Map.of("error", "no stub for " + method + " " + path));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.chatbotrag.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latences d'un scénario. Les durées sont mesurées depuis l'instant d'envoi
+ * <em>prévu</em> (charge en boucle ouverte), pour ne pas masquer la file d'attente
+ * quand le service ralentit.
+ */
+final class LatencyRecorder {
+
+    private final String scenario;
+    private long[] samples = new long[1024];
+    private int count;
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    LatencyRecorder(String scenario) {
+        this.scenario = scenario;
+    }
+
+    synchronized void recordSuccess(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    void recordError() {
+        errors.incrementAndGet();
+    }
+
+    void recordDropped() {
+        dropped.incrementAndGet();
+    }
+
+    /**
+     * Synthèse : débit (succès par seconde), erreurs et percentiles en millisecondes
+     */
+    synchronized Map<String, Object> summary(double durationSeconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("scenario", scenario);
+        summary.put("ok", count);
+        summary.put("errors", errors.get());
+        summary.put("dropped", dropped.get());
+        summary.put("throughputPerSec", round(count / durationSeconds));
+        summary.put("meanMs", round(count == 0 ? 0.0 : Arrays.stream(sorted).average().orElse(0) / 1e6));
+        summary.put("p50Ms", percentileMs(sorted, 0.50));
+        summary.put("p95Ms", percentileMs(sorted, 0.95));
+        summary.put("p99Ms", percentileMs(sorted, 0.99));
+        summary.put("maxMs", count == 0 ? 0.0 : round(sorted[count - 1] / 1e6));
+        return summary;
+    }
+
+    private static double percentileMs(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0.0;
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return round(sorted[Math.max(0, Math.min(index, sorted.length - 1))] / 1e6);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,399 @@
+package com.example.chatbotrag.loadtest;
+
+import com.example.chatbotrag.ChatbotRagApplication;
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Test de charge de bout en bout : démarre des stubs Ollama et Chroma (latence et pannes
+ * injectables), démarre l'application pointée sur ces stubs (ou cible une instance déjà
+ * lancée avec --target) puis envoie /chat, /chat/stream et /upload à débit constant
+ * (boucle ouverte). Rapporte débit, erreurs et percentiles p50/p95/p99 par scénario.
+ *
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--rps=20 --duration=60 --ollama-token-delay-ms=10"
+ * </pre>
+ *
+ * Options (--cle=valeur) :
+ * <ul>
+ *   <li>--target : URL d'une instance déjà démarrée (sinon démarrage embarqué ; MySQL reste requis,
+ *       les options --spring.* sont transmises à l'application)</li>
+ *   <li>--rps, --duration, --warmup (secondes), --max-in-flight</li>
+ *   <li>--mix=chat:70,stream:20,upload:10</li>
+ *   <li>--ollama-port, --ollama-latency-ms, --ollama-jitter-ms, --ollama-failure-rate, --ollama-token-delay-ms</li>
+ *   <li>--chroma-port, --chroma-latency-ms, --chroma-jitter-ms, --chroma-failure-rate</li>
+ *   <li>--user, --password (Basic auth pour /upload), --report (fichier JSON)</li>
+ * </ul>
+ */
+public class LoadTestRunner {
+
+    private static final String SCENARIO_CHAT = "chat";
+    private static final String SCENARIO_STREAM = "stream";
+    private static final String SCENARIO_UPLOAD = "upload";
+    private static final String STREAM_FIRST_BYTE = "stream.ttfb";
+
+    private final Map<String, String> options;
+    private final HttpClient httpClient;
+    private final ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor();
+    private final List<String> questions = BenchmarkData.userQueries();
+    private final byte[] uploadPdf;
+    private final AtomicLong sequence = new AtomicLong();
+    private String targetUrl;
+
+    LoadTestRunner(Map<String, String> options) throws IOException {
+        this.options = options;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(workers)
+                .build();
+        this.uploadPdf = tariffPdf(BenchmarkData.tariffText());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        List<String> appArgs = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("--spring.")) {
+                appArgs.add(arg);
+            } else if (arg.startsWith("--") && arg.contains("=")) {
+                options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+            }
+        }
+        new LoadTestRunner(options).run(appArgs.toArray(String[]::new));
+    }
+
+    void run(String[] appArgs) throws Exception {
+        StubBehavior ollamaBehavior = new StubBehavior(longOption("ollama-latency-ms", 0),
+                longOption("ollama-jitter-ms", 0), doubleOption("ollama-failure-rate", 0.0));
+        StubBehavior chromaBehavior = new StubBehavior(longOption("chroma-latency-ms", 0),
+                longOption("chroma-jitter-ms", 0), doubleOption("chroma-failure-rate", 0.0));
+
+        try (OllamaStubServer ollama = new OllamaStubServer((int) longOption("ollama-port", 0), ollamaBehavior,
+                     OllamaStubServer.DEFAULT_DIMENSION, longOption("ollama-token-delay-ms", 5));
+             ChromaStubServer chroma = new ChromaStubServer((int) longOption("chroma-port", 0), chromaBehavior)) {
+            ollama.start();
+            chroma.start();
+            System.out.println("🧪 Stub Ollama : " + ollama.baseUrl() + " | Stub Chroma : " + chroma.baseUrl());
+
+            ConfigurableApplicationContext app = null;
+            if (options.containsKey("target")) {
+                targetUrl = options.get("target");
+            } else {
+                app = new SpringApplicationBuilder(ChatbotRagApplication.class)
+                        .properties("server.port=0",
+                                "ollama.baseurl=" + ollama.baseUrl(),
+                                "chroma.baseurl=" + chroma.baseUrl())
+                        .run(appArgs);
+                targetUrl = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+            }
+            System.out.println("🎯 Cible : " + targetUrl);
+
+            try {
+                seed();
+                int rps = (int) longOption("rps", 10);
+                int maxInFlight = (int) longOption("max-in-flight", 512);
+                String[] schedule = buildSchedule(options.getOrDefault("mix", "chat:70,stream:20,upload:10"));
+
+                long warmup = longOption("warmup", 10);
+                if (warmup > 0) {
+                    System.out.println("🔥 Warm-up " + warmup + "s à " + rps + " req/s...");
+                    runPhase(rps, warmup, maxInFlight, schedule, newRecorders());
+                }
+                long duration = longOption("duration", 60);
+                System.out.println("🚀 Mesure " + duration + "s à " + rps + " req/s...");
+                Map<String, LatencyRecorder> recorders = newRecorders();
+                double elapsed = runPhase(rps, duration, maxInFlight, schedule, recorders);
+                report(recorders, elapsed, rps, ollama, chroma);
+            } finally {
+                if (app != null) {
+                    app.close();
+                }
+                workers.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Un document est ingéré avant la mesure pour que /chat trouve des chunks
+     */
+    private void seed() throws Exception {
+        HttpResponse<String> response = httpClient.send(uploadRequest("tarif-seed.pdf"), HttpResponse.BodyHandlers.ofString());
+        System.out.println("🌱 Seed /upload → HTTP " + response.statusCode());
+        if (!is2xx(response.statusCode())) {
+            return;
+        }
+        // L'ingestion est asynchrone : on attend la fin du job avant de mesurer
+        ObjectMapper mapper = new ObjectMapper();
+        String jobId = mapper.readTree(response.body()).path(0).path("jobId").asText();
+        long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(5);
+        String phase = "QUEUED";
+        while (System.nanoTime() < deadline) {
+            HttpResponse<String> status = httpClient.send(authorized(HttpRequest.newBuilder(URI.create(targetUrl + "/upload/jobs/" + jobId)))
+                    .GET().build(), HttpResponse.BodyHandlers.ofString());
+            phase = mapper.readTree(status.body()).path("phase").asText();
+            if (phase.equals("COMPLETED") || phase.equals("FAILED") || phase.equals("CANCELLED")) {
+                break;
+            }
+            Thread.sleep(200);
+        }
+        System.out.println("🌱 Seed job " + jobId + " → " + phase);
+    }
+
+    /**
+     * Envoie les requêtes aux instants prévus (start + i / rps) ; la latence est mesurée depuis cet instant
+     * @return durée réelle de la phase en secondes
+     */
+    private double runPhase(int rps, long seconds, int maxInFlight, String[] schedule,
+                            Map<String, LatencyRecorder> recorders) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        long period = TimeUnit.SECONDS.toNanos(1) / rps;
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        for (long i = 0; ; i++) {
+            long intended = start + i * period;
+            if (intended >= end) break;
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            String scenario = schedule[(int) (i % schedule.length)];
+            LatencyRecorder recorder = recorders.get(scenario);
+            if (!inFlight.tryAcquire()) {
+                recorder.recordDropped();
+                continue;
+            }
+            workers.submit(() -> {
+                try {
+                    execute(scenario, intended, recorder, recorders.get(STREAM_FIRST_BYTE));
+                } finally {
+                    inFlight.release();
+                }
+            });
+        }
+        // Attente des requêtes encore en vol
+        inFlight.tryAcquire(maxInFlight, 5, TimeUnit.MINUTES);
+        inFlight.release(maxInFlight);
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    private void execute(String scenario, long intended, LatencyRecorder recorder, LatencyRecorder firstByte) {
+        try {
+            long n = sequence.incrementAndGet();
+            boolean ok = switch (scenario) {
+                case SCENARIO_CHAT -> {
+                    String url = targetUrl + "/chat?question=" + encode(questions.get((int) (n % questions.size())))
+                            + "&sessionId=lt-" + (n % 50) + "&lang=fr";
+                    HttpResponse<Void> response = httpClient.send(HttpRequest.newBuilder(URI.create(url))
+                            .timeout(Duration.ofMinutes(5)).GET().build(), HttpResponse.BodyHandlers.discarding());
+                    yield is2xx(response.statusCode());
+                }
+                case SCENARIO_STREAM -> {
+                    String body = new ObjectMapper().writeValueAsString(Map.of(
+                            "question", questions.get((int) (n % questions.size())),
+                            "sessionId", "lt-stream-" + (n % 50),
+                            "lang", "fr"));
+                    HttpResponse<InputStream> response = httpClient.send(HttpRequest.newBuilder(URI.create(targetUrl + "/chat/stream"))
+                            .timeout(Duration.ofMinutes(5))
+                            .header("Content-Type", "application/json")
+                            .header("Accept", "text/event-stream")
+                            .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofInputStream());
+                    try (InputStream in = response.body()) {
+                        if (in.read() >= 0) {
+                            firstByte.recordSuccess(System.nanoTime() - intended);
+                        }
+                        in.transferTo(OutputStream.nullOutputStream());
+                    }
+                    yield is2xx(response.statusCode());
+                }
+                case SCENARIO_UPLOAD -> {
+                    HttpResponse<String> response = httpClient.send(uploadRequest("tarif-lt-" + n + ".pdf"),
+                            HttpResponse.BodyHandlers.ofString());
+                    yield is2xx(response.statusCode()) && !response.body().contains("❌");
+                }
+                default -> throw new IllegalArgumentException("Scénario inconnu : " + scenario);
+            };
+            if (ok) {
+                recorder.recordSuccess(System.nanoTime() - intended);
+            } else {
+                recorder.recordError();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recorder.recordError();
+        } catch (Exception e) {
+            recorder.recordError();
+        }
+    }
+
+    private HttpRequest uploadRequest(String filename) {
+        String boundary = "----loadtest" + UUID.randomUUID();
+        ByteArrayOutputStream body = new ByteArrayOutputStream(uploadPdf.length + 512);
+        body.writeBytes(("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"files\"; filename=\"" + filename + "\"\r\n"
+                + "Content-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(uploadPdf);
+        body.writeBytes(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return authorized(HttpRequest.newBuilder(URI.create(targetUrl + "/upload")))
+                .timeout(Duration.ofMinutes(10))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body.toByteArray()))
+                .build();
+    }
+
+    private HttpRequest.Builder authorized(HttpRequest.Builder builder) {
+        String credentials = options.getOrDefault("user", "admin") + ":" + options.getOrDefault("password", "admin123");
+        return builder.header("Authorization", "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private void report(Map<String, LatencyRecorder> recorders, double elapsed, int rps,
+                        JsonStubServer... stubs) throws IOException {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        recorders.values().forEach(r -> rows.add(r.summary(elapsed)));
+
+        System.out.println();
+        System.out.printf("📊 Résultats (%.1fs, cible %d req/s)%n", elapsed, rps);
+        System.out.printf("%-12s %8s %7s %8s %10s %9s %9s %9s %9s%n",
+                "scénario", "ok", "erreurs", "rejetées", "débit/s", "p50 ms", "p95 ms", "p99 ms", "max ms");
+        for (Map<String, Object> row : rows) {
+            System.out.printf("%-12s %8s %7s %8s %10s %9s %9s %9s %9s%n", row.get("scenario"), row.get("ok"),
+                    row.get("errors"), row.get("dropped"), row.get("throughputPerSec"),
+                    row.get("p50Ms"), row.get("p95Ms"), row.get("p99Ms"), row.get("maxMs"));
+        }
+        Map<String, Object> stubStats = new LinkedHashMap<>();
+        for (JsonStubServer stub : stubs) {
+            stubStats.put(stub.name(), Map.of("requests", stub.requestCount(), "injectedFailures", stub.injectedFailures()));
+            System.out.printf("🧪 %s : %d requêtes, %d pannes injectées%n", stub.name(), stub.requestCount(), stub.injectedFailures());
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("target", targetUrl);
+        report.put("targetRps", rps);
+        report.put("durationSeconds", elapsed);
+        report.put("options", options);
+        report.put("scenarios", rows);
+        report.put("stubs", stubStats);
+        Path file = Path.of(options.getOrDefault("report", "target/loadtest-report.json"));
+        if (file.getParent() != null) Files.createDirectories(file.getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), report);
+        System.out.println("📝 Rapport : " + file.toAbsolutePath());
+    }
+
+    private static Map<String, LatencyRecorder> newRecorders() {
+        Map<String, LatencyRecorder> recorders = new LinkedHashMap<>();
+        for (String scenario : List.of(SCENARIO_CHAT, SCENARIO_STREAM, STREAM_FIRST_BYTE, SCENARIO_UPLOAD)) {
+            recorders.put(scenario, new LatencyRecorder(scenario));
+        }
+        return recorders;
+    }
+
+    /**
+     * Répartition déterministe des scénarios selon les poids de --mix
+     */
+    static String[] buildSchedule(String mix) {
+        List<String> slots = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.trim().split(":");
+            int weight = Integer.parseInt(kv[1].trim());
+            for (int i = 0; i < weight; i++) slots.add(kv[0].trim());
+        }
+        if (slots.isEmpty()) throw new IllegalArgumentException("--mix vide");
+        Collections.shuffle(slots, new Random(42));
+        return slots.toArray(String[]::new);
+    }
+
+    /**
+     * PDF multi-pages généré avec PDFBox à partir de l'extrait tarifaire (police standard WinAnsi)
+     */
+    static byte[] tariffPdf(String text) throws IOException {
+        PDFont font = PDType1Font.HELVETICA;
+        List<String> lines = new ArrayList<>();
+        for (String paragraph : text.split("\n")) {
+            String clean = encodable(font, paragraph);
+            while (clean.length() > 110) {
+                int cut = clean.lastIndexOf(' ', 110);
+                if (cut <= 0) cut = 110;
+                lines.add(clean.substring(0, cut));
+                clean = clean.substring(cut).stripLeading();
+            }
+            lines.add(clean);
+        }
+        try (PDDocument document = new PDDocument(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            int linesPerPage = 70;
+            for (int from = 0; from < lines.size(); from += linesPerPage) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(font, 8);
+                    content.setLeading(10);
+                    content.newLineAtOffset(36, 760);
+                    for (String line : lines.subList(from, Math.min(from + linesPerPage, lines.size()))) {
+                        content.showText(line);
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static String encodable(PDFont font, String text) {
+        StringBuilder sb = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            try {
+                font.encode(String.valueOf(c));
+                sb.append(c);
+            } catch (IOException | IllegalArgumentException e) {
+                sb.append('\'');
+            }
+        }
+        return sb.toString();
+    }
+
+    private long longOption(String name, long defaultValue) {
+        return options.containsKey(name) ? Long.parseLong(options.get(name)) : defaultValue;
+    }
+
+    private double doubleOption(String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private static boolean is2xx(int status) {
+        return status >= 200 && status < 300;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.chatbotrag.loadtest;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.sun.net.httpserver.HttpExchange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Stub Ollama : /api/embeddings, /api/embed, /api/generate (réponse unique ou NDJSON
+ * en streaming), /api/tags et /api/ps (modèles toujours chargés). Les embeddings sont déterministes (sac de mots haché),
+ * ce qui donne des distances cohérentes côté Chroma. La génération renvoie une réponse
+ * au format du prompt, émise token par token avec un délai configurable.
+ */
+public class OllamaStubServer extends JsonStubServer {
+
+    public static final int DEFAULT_DIMENSION = 1024;
+
+    private final int dimension;
+    private final long tokenDelayMs;
+    private final List<String> answerTokens;
+
+    public OllamaStubServer(int port, StubBehavior behavior, int dimension, long tokenDelayMs) throws IOException {
+        super("ollama", port, behavior);
+        this.dimension = dimension;
+        this.tokenDelayMs = tokenDelayMs;
+        this.answerTokens = tokenize(BenchmarkData.mistralResponse());
+    }
+
+    @Override
+    protected void handle(HttpExchange exchange, String method, String path) throws IOException {
+        switch (method + " " + path) {
+            case "POST /api/embeddings" -> {
+                Map<String, Object> request = readJson(exchange);
+                writeJson(exchange, 200, Map.of("embedding", embed(String.valueOf(request.get("prompt")), dimension)));
+            }
+            case "POST /api/embed" -> {
+                Map<String, Object> request = readJson(exchange);
+                List<float[]> embeddings = new ArrayList<>();
+                Object input = request.get("input");
+                if (input instanceof List<?> inputs) {
+                    for (Object text : inputs) {
+                        embeddings.add(embed(String.valueOf(text), dimension));
+                    }
+                } else {
+                    embeddings.add(embed(String.valueOf(input), dimension));
+                }
+                writeJson(exchange, 200, Map.of("model", String.valueOf(request.get("model")), "embeddings", embeddings));
+            }
+            case "POST /api/generate" -> generate(exchange, readJson(exchange));
+            case "GET /api/tags", "GET /api/ps" -> writeJson(exchange, 200, Map.of("models", List.of(
+                    Map.of("name", "mistral:latest", "model", "mistral:latest"),
+                    Map.of("name", "bge-m3:latest", "model", "bge-m3:latest"))));
+            default -> notFound(exchange, method, path);
+        }
+    }
+
+    private void generate(HttpExchange exchange, Map<String, Object> request) throws IOException {
+        String model = String.valueOf(request.getOrDefault("model", "mistral"));
+        boolean stream = !Boolean.FALSE.equals(request.get("stream")); // Ollama streame par défaut
+
+        if (request.get("prompt") == null) {
+            // Préchargement (sans prompt) : Ollama répond aussitôt, sans rien générer
+            writeJson(exchange, 200, finalChunk(model, ""));
+            return;
+        }
+
+        if (!stream) {
+            sleepQuietly(tokenDelayMs * answerTokens.size());
+            writeJson(exchange, 200, finalChunk(model, String.join("", answerTokens)));
+            return;
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/x-ndjson");
+        exchange.sendResponseHeaders(200, 0); // chunked
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (String token : answerTokens) {
+                sleepQuietly(tokenDelayMs);
+                Map<String, Object> chunk = new LinkedHashMap<>();
+                chunk.put("model", model);
+                chunk.put("created_at", Instant.now().toString());
+                chunk.put("response", token);
+                chunk.put("done", false);
+                out.write(MAPPER.writeValueAsBytes(chunk));
+                out.write('\n');
+                out.flush();
+            }
+            Map<String, Object> done = finalChunk(model, "");
+            out.write(MAPPER.writeValueAsBytes(done));
+            out.write('\n');
+        }
+    }
+
+    private Map<String, Object> finalChunk(String model, String response) {
+        Map<String, Object> chunk = new LinkedHashMap<>();
+        chunk.put("model", model);
+        chunk.put("created_at", Instant.now().toString());
+        chunk.put("response", response);
+        chunk.put("done", true);
+        chunk.put("context", List.of(1, 2, 3));
+        chunk.put("eval_count", answerTokens.size());
+        return chunk;
+    }
+
+    /**
+     * Embedding normalisé : chaque mot est haché sur deux dimensions
+     */
+    static float[] embed(String text, int dimension) {
+        float[] vector = new float[dimension];
+        for (String token : text.toLowerCase().split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) continue;
+            int hash = token.hashCode();
+            vector[Math.floorMod(hash, dimension)] += 1.0f;
+            vector[Math.floorMod(hash * 31 + 7, dimension)] += 0.5f;
+        }
+        double norm = 0.0;
+        for (float v : vector) norm += v * v;
+        if (norm == 0.0) {
+            vector[0] = 1.0f;
+            return vector;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        for (int i = 0; i < dimension; i++) vector[i] *= inv;
+        return vector;
+    }
+
+    /**
+     * Découpe en tokens "à la LLM" : chaque mot garde l'espace qui le précède
+     */
+    private static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        int start = 0;
+        for (int i = 1; i < text.length(); i++) {
+            if (Character.isWhitespace(text.charAt(i)) && !Character.isWhitespace(text.charAt(i - 1))) {
+                tokens.add(text.substring(start, i));
+                start = i;
+            }
+        }
+        tokens.add(text.substring(start));
+        return tokens;
+    }
+
+    private static void sleepQuietly(long millis) {
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
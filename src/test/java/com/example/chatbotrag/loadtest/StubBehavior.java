@@ -0,0 +1,25 @@
+package com.example.chatbotrag.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Comportement injecté par un stub HTTP : latence fixe + gigue aléatoire,
+ * et proportion de requêtes qui échouent en HTTP 500.
+ */
+public record StubBehavior(long latencyMs, long jitterMs, double failureRate) {
+
+    public static StubBehavior none() {
+        return new StubBehavior(0, 0, 0.0);
+    }
+
+    void applyLatency() throws InterruptedException {
+        long delay = latencyMs + (jitterMs > 0 ? ThreadLocalRandom.current().nextLong(jitterMs + 1) : 0);
+        if (delay > 0) {
+            Thread.sleep(delay);
+        }
+    }
+
+    boolean shouldFail() {
+        return failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate;
+    }
+}
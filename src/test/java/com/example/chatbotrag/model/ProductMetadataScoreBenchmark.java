@@ -0,0 +1,48 @@
+package com.example.chatbotrag.model;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.example.chatbotrag.service.ProductMetadataExtractionService;
+import com.example.chatbotrag.service.SHCodeDocumentParser;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Score de métadonnées d'une question contre tout le catalogue, comme dans la recherche hybride
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ProductMetadataScoreBenchmark {
+
+    private List<ProductMetadata> catalogue;
+    private List<Map<String, String>> queryMetadata;
+
+    @Setup
+    public void setup() {
+        ProductMetadataExtractionService extractionService = new ProductMetadataExtractionService();
+        catalogue = new ArrayList<>();
+        for (SHCodeDocumentParser.DocumentChunk chunk
+                : new SHCodeDocumentParser().parseDocument(BenchmarkData.tariffText(), "tarif-sample.txt")) {
+            catalogue.add(extractionService.extractMetadata(chunk));
+        }
+        queryMetadata = new ArrayList<>();
+        for (String query : BenchmarkData.userQueries()) {
+            queryMetadata.add(extractionService.extractQueryMetadata(query));
+        }
+    }
+
+    @Benchmark
+    public double calculateMetadataScore() {
+        double total = 0.0;
+        for (Map<String, String> query : queryMetadata) {
+            for (ProductMetadata metadata : catalogue) {
+                total += metadata.calculateMetadataScore(query);
+            }
+        }
+        return total;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mise en forme HTML d'une réponse Mistral complète (trois sections, onze accords)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ChatServiceFormatBenchmark {
+
+    private String mistralResponse;
+    private String[] tokens;
+
+    @Setup
+    public void setup() {
+        mistralResponse = BenchmarkData.mistralResponse();
+        // Découpage proche des tokens Ollama : un mot (et son espace) par morceau
+        tokens = mistralResponse.split("(?<= )");
+    }
+
+    @Benchmark
+    public String formatForWeb() {
+        return ChatService.formatForWeb(mistralResponse);
+    }
+
+    @Benchmark
+    public String legacyFormatForWeb() {
+        return LegacyAnswerFormatter.format(mistralResponse);
+    }
+
+    @Benchmark
+    public int streamingFormat() {
+        StreamingAnswerFormatter formatter = new StreamingAnswerFormatter();
+        int length = 0;
+        for (String token : tokens) {
+            length += formatter.accept(token).length();
+        }
+        return length + formatter.finish().length();
+    }
+}
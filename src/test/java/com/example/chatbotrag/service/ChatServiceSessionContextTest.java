@@ -0,0 +1,126 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.model.ProductMetadata;
+import com.example.chatbotrag.repository.ProductMetadataRepository;
+import com.example.chatbotrag.store.ConversationHistoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.http.HttpStatus;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChatServiceSessionContextTest {
+
+    private static final String CHUNK = "Code SH : 0101210000\nDésignation : Chevaux reproducteurs\n- Droit d'Importation* ( DI ) : 2,5 %";
+    private static final int[] FIRST_CONTEXT = {1, 2, 3};
+
+    private OllamaClientService ollama;
+    private ConversationHistoryStore historyStore;
+    private ChatService chatService;
+
+    @BeforeEach
+    void setUp() {
+        HybridSearchService hybridSearch = mock(HybridSearchService.class);
+        HybridSearchService.HybridSearchResult result =
+                new HybridSearchService.HybridSearchResult(CHUNK, "c1", 0.9, 0.0, new ProductMetadata("0101210000", null));
+        result.setTotalScore(0.9);
+        when(hybridSearch.searchHybrid(anyString(), anyInt())).thenReturn(List.of(result));
+
+        ollama = mock(OllamaClientService.class);
+        when(ollama.getChatModel()).thenReturn("mistral");
+        RagMetrics metrics = new RagMetrics(new SimpleMeterRegistry());
+        historyStore = new ConversationHistoryStore(metrics, Duration.ofMinutes(30));
+        chatService = new ChatService(mock(VectorSearchService.class), hybridSearch, ollama,
+                new IntentRouter(), mock(ProductMetadataRepository.class), new ContextPacker(1200), new TemplateAnswerRenderer(false, 0.7, 0.15), historyStore, metrics, 6, true, 6000);
+    }
+
+    @Test
+    void followUpSendsOnlyTheQuestionWithSessionContext() {
+        when(ollama.generateWithContext(anyString(), any()))
+                .thenReturn(new OllamaClientService.Generation("Code SH : 0101210000", FIRST_CONTEXT, 900))
+                .thenReturn(new OllamaClientService.Generation("Le DI est de 2,5 %", new int[]{1, 2, 3, 4}, 20));
+
+        chatService.ask("s1", "Quels droits pour les chevaux reproducteurs ?", null);
+        chatService.ask("s1", "Et la TVA ?", null);
+
+        ArgumentCaptor<String> prompts = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<int[]> contexts = ArgumentCaptor.forClass(int[].class);
+        verify(ollama, times(2)).generateWithContext(prompts.capture(), contexts.capture());
+        assertTrue(prompts.getAllValues().get(0).contains("RÈGLES STRICTES"));
+        assertNull(contexts.getAllValues().get(0));
+
+        String followUp = prompts.getAllValues().get(1);
+        assertFalse(followUp.contains("RÈGLES STRICTES"), "les consignes sont déjà dans le contexte");
+        assertFalse(followUp.contains("Chevaux reproducteurs"), "le document a déjà été fourni");
+        assertTrue(followUp.contains("Et la TVA ?"));
+        assertArrayEquals(FIRST_CONTEXT, contexts.getAllValues().get(1));
+        assertArrayEquals(new int[]{1, 2, 3, 4}, historyStore.getLlmContext("s1").tokens());
+
+        // L'historique supprimé emporte le contexte
+        historyStore.clear("s1");
+        assertNull(historyStore.getLlmContext("s1"));
+    }
+
+    @Test
+    void rejectedContextFallsBackToFullPrompt() {
+        when(ollama.generateWithContext(anyString(), any()))
+                .thenReturn(new OllamaClientService.Generation("Code SH : 0101210000", FIRST_CONTEXT, 900));
+        chatService.ask("s2", "Quels droits pour les chevaux reproducteurs ?", null);
+
+        reset(ollama);
+        when(ollama.getChatModel()).thenReturn("mistral");
+        when(ollama.generateWithContext(anyString(), eq(FIRST_CONTEXT)))
+                .thenThrow(HttpClientErrorException.create(HttpStatus.BAD_REQUEST, "bad context", null, null, null));
+        when(ollama.generateWithContext(anyString(), isNull()))
+                .thenReturn(new OllamaClientService.Generation("Le DI est de 2,5 %", new int[]{9}, 900));
+
+        List<String> answer = chatService.ask("s2", "Et la TVA ?", null);
+
+        assertTrue(answer.get(0).contains("2,5"));
+        ArgumentCaptor<String> prompts = ArgumentCaptor.forClass(String.class);
+        verify(ollama).generateWithContext(prompts.capture(), isNull());
+        assertTrue(prompts.getValue().contains("RÈGLES STRICTES"));
+        assertArrayEquals(new int[]{9}, historyStore.getLlmContext("s2").tokens());
+    }
+
+    @Test
+    void sharedDefaultSessionNeverKeepsContext() {
+        when(ollama.generateWithContext(anyString(), any()))
+                .thenReturn(new OllamaClientService.Generation("Code SH : 0101210000", FIRST_CONTEXT, 900));
+
+        chatService.ask("default", "Quels droits pour les chevaux reproducteurs ?", null);
+        chatService.ask("default", "Et la TVA ?", null);
+
+        verify(ollama, times(2)).generateWithContext(anyString(), isNull());
+        assertNull(historyStore.getLlmContext("default"));
+    }
+
+    @Test
+    void streamingSendsFormattedFragmentsAsTokensArrive() {
+        String[] tokens = {"Position Tar", "ifaire\nCode SH", " : 0101210000\n\nDroits et", " Taxes\n"};
+        when(ollama.streamWithContext(anyString(), any(), any())).thenAnswer(invocation -> {
+            java.util.function.Consumer<String> onToken = invocation.getArgument(2);
+            for (String token : tokens) {
+                onToken.accept(token);
+            }
+            return new OllamaClientService.Generation(String.join("", tokens), FIRST_CONTEXT, 900);
+        });
+
+        List<String> fragments = new java.util.ArrayList<>();
+        chatService.askStreaming("s4", "Quels droits pour les chevaux reproducteurs ?", null, fragments::add);
+
+        assertTrue(fragments.size() > 1, "réponse transmise au fil des tokens");
+        assertEquals(ChatService.formatForWeb(String.join("", tokens)), String.join("", fragments));
+        assertArrayEquals(FIRST_CONTEXT, historyStore.getLlmContext("s4").tokens());
+        verify(ollama, never()).generateWithContext(anyString(), any());
+    }
+}
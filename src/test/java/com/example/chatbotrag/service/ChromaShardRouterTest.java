@@ -0,0 +1,76 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ChromaShardRouterTest {
+
+    private final ChromaHttpClientService chroma = mock(ChromaHttpClientService.class);
+    private final ShCodeCatalogueService catalogue = mock(ShCodeCatalogueService.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ChromaShardRouter router = new ChromaShardRouter(chroma, catalogue, new RagMetrics(registry), true, 3, 4);
+
+    @AfterEach
+    void tearDown() {
+        router.shutdown();
+    }
+
+    @Test
+    void routesChunksAndQuestionsToChapters() {
+        assertEquals("emsi-ai-collection-ch01", router.collectionFor("0101210000"));
+        assertEquals("emsi-ai-collection", router.collectionFor(null));
+        assertEquals(Set.of("01", "03", "87"),
+                router.chapters("Droits du 0101.21.00.00 et du chapitre 3 ?", List.of("8703231000")));
+        ChromaShardRouter disabled = new ChromaShardRouter(chroma, catalogue, new RagMetrics(registry), false, 3, 1);
+        assertEquals("emsi-ai-collection", disabled.collectionFor("0101210000"));
+        disabled.shutdown();
+    }
+
+    @Test
+    void searchesOnlyImpliedChaptersOtherwiseFansOutAndMerges() {
+        when(catalogue.getSnapshot()).thenReturn(snapshot("01", "02", "03", "87"));
+        // ch03 n'a pas de collection, ch05 n'est plus au catalogue : aucun des deux n'est interrogé
+        when(chroma.getAllCollectionNames()).thenReturn(List.of("emsi-ai-collection", "emsi-ai-collection-ch01",
+                "emsi-ai-collection-ch02", "emsi-ai-collection-ch05", "emsi-ai-collection-ch87"));
+        when(chroma.searchSimilar(eq("emsi-ai-collection"), any(), anyInt(), anyDouble()))
+                .thenReturn(List.of(result("notes", 0.5, 2.0)));
+        when(chroma.searchSimilar(eq("emsi-ai-collection-ch01"), any(), anyInt(), anyDouble()))
+                .thenReturn(List.of(result("chevaux", 0.75, 1.2), result("ânes", 0.4, 3.0)));
+        when(chroma.searchSimilar(eq("emsi-ai-collection-ch02"), any(), anyInt(), anyDouble()))
+                .thenReturn(List.of(result("viande", 0.75, 0.9)));
+        when(chroma.searchSimilar(eq("emsi-ai-collection-ch87"), any(), anyInt(), anyDouble()))
+                .thenReturn(List.of());
+        float[] query = {0.1f, 0.2f};
+
+        List<ChromaHttpClientService.SearchResult> routed = router.searchSimilar(query, 10, 0.1, Set.of("01"));
+        assertEquals(List.of("chevaux", "notes", "ânes"), routed.stream().map(ChromaHttpClientService.SearchResult::getId).toList());
+        verify(chroma, never()).searchSimilar(eq("emsi-ai-collection-ch02"), any(), anyInt(), anyDouble());
+
+        // Aucun chapitre : toutes les collections, fusion par score puis distance, limitée à maxResults
+        List<ChromaHttpClientService.SearchResult> merged = router.searchSimilar(query, 3, 0.1, Set.of());
+        assertEquals(List.of("viande", "chevaux", "notes"), merged.stream().map(ChromaHttpClientService.SearchResult::getId).toList());
+        verify(chroma).searchSimilar(eq("emsi-ai-collection-ch87"), any(), anyInt(), anyDouble());
+        verify(chroma, never()).searchSimilar(eq("emsi-ai-collection-ch03"), any(), anyInt(), anyDouble());
+        verify(chroma, never()).searchSimilar(eq("emsi-ai-collection-ch05"), any(), anyInt(), anyDouble());
+        assertEquals(1, registry.get("rag.vector.shard.route").tag("mode", "fanout").counter().count());
+    }
+
+    private static ShCodeCatalogueService.Snapshot snapshot(String... chapters) {
+        return new ShCodeCatalogueService.Snapshot(1, "\"etag\"", Instant.now(), chapters.length, List.of(),
+                java.util.Arrays.stream(chapters).map(chapter -> new ShCodeCatalogueService.ChapterEntry(chapter, 1, List.of())).toList());
+    }
+
+    private static ChromaHttpClientService.SearchResult result(String id, double score, double distance) {
+        return new ChromaHttpClientService.SearchResult(id, score, id, distance);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.example.chatbotrag.metrics.RagMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion distance -> similarité et boosts métier appliqués à une réponse Chroma
+ * (sans l'appel HTTP). Les distances couvrent toutes les tranches de la fonction.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ChromaSimilarityScoringBenchmark {
+
+    @Param({"10", "100"})
+    public int resultCount;
+
+    private ChromaHttpClientService chromaService;
+    private List<String> documents;
+    private List<Double> distances;
+    private List<String> ids;
+
+    @Setup
+    public void setup() {
+        chromaService = new ChromaHttpClientService(new RestTemplateBuilder(), new RagMetrics(new SimpleMeterRegistry()),
+                "http://localhost:8000");
+        List<SHCodeDocumentParser.DocumentChunk> chunks =
+                new SHCodeDocumentParser().parseDocument(BenchmarkData.tariffText(), "tarif-sample.txt");
+        Random random = new Random(42);
+        documents = new ArrayList<>(resultCount);
+        distances = new ArrayList<>(resultCount);
+        ids = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            documents.add(chunks.get(i % chunks.size()).getText());
+            distances.add(random.nextDouble() * 8.0);
+            ids.add("chunk-" + i);
+        }
+    }
+
+    @Benchmark
+    public List<ChromaHttpClientService.SearchResult> scoreResults() {
+        return chromaService.scoreResults(documents, distances, ids, 0.1);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.example.chatbotrag.model.Chunk;
+import com.example.chatbotrag.model.ProductMetadata;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistance des chunks + métadonnées d'un document : une requête par ligne (ce que
+ * produisaient documentRepository.save en cascade puis productMetadataRepository.save
+ * en boucle) contre ChunkBatchWriter. Score en lignes/s.
+ *
+ * Nécessite un MySQL avec le schéma de l'application :
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.include=ChunkBatchWriter \
+ *       -Djmh.params="-f 1 -wi 3 -i 5 -jvmArgs -Dbenchmark.jdbc.url=jdbc:mysql://localhost:3306/emsi_ai?rewriteBatchedStatements=true"
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ChunkBatchWriterBenchmark {
+
+    // 2 lignes (chunk + métadonnée) par chunk du document
+    private static final int CHUNKS_PER_DOCUMENT = 200;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ChunkBatchWriter writer;
+    private List<SHCodeDocumentParser.DocumentChunk> parsedChunks;
+    private ProductMetadataExtractionService extractionService;
+    private long documentId;
+    private long sequence;
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource(
+                System.getProperty("benchmark.jdbc.url", "jdbc:mysql://localhost:3306/emsi_ai?rewriteBatchedStatements=true"),
+                System.getProperty("benchmark.jdbc.user", "root"),
+                System.getProperty("benchmark.jdbc.password", "root1234"),
+                true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        writer = new ChunkBatchWriter(jdbcTemplate);
+        extractionService = new ProductMetadataExtractionService();
+        parsedChunks = new SHCodeDocumentParser().parseDocument(BenchmarkData.tariffText(), "tarif-sample.txt");
+
+        GeneratedKeyHolder key = new GeneratedKeyHolder();
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement("INSERT INTO document (name, language) VALUES (?, 'fr')",
+                    Statement.RETURN_GENERATED_KEYS);
+            ps.setString(1, "benchmark-" + System.nanoTime());
+            return ps;
+        }, key);
+        documentId = key.getKey().longValue();
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.update("DELETE pm FROM product_metadata pm JOIN chunk c ON pm.chunk_id = c.id WHERE c.document_id = ?", documentId);
+        jdbcTemplate.update("DELETE FROM chunk WHERE document_id = ?", documentId);
+        jdbcTemplate.update("DELETE FROM document WHERE id = ?", documentId);
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * CHUNKS_PER_DOCUMENT)
+    public void rowByRow() {
+        List<Chunk> chunks = new ArrayList<>();
+        List<ProductMetadata> metadataList = new ArrayList<>();
+        nextDocument(chunks, metadataList);
+
+        // Chunks en cascade : une transaction, un INSERT par chunk
+        transactionTemplate.executeWithoutResult(status -> chunks.forEach(chunk -> writer.insertChunks(List.of(chunk), documentId)));
+        // Métadonnées : une transaction par save()
+        metadataList.forEach(metadata -> transactionTemplate.executeWithoutResult(status -> writer.insertMetadata(List.of(metadata))));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(2 * CHUNKS_PER_DOCUMENT)
+    public void batched() {
+        List<Chunk> chunks = new ArrayList<>();
+        List<ProductMetadata> metadataList = new ArrayList<>();
+        nextDocument(chunks, metadataList);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            writer.insertChunks(chunks, documentId);
+            writer.insertMetadata(metadataList);
+        });
+    }
+
+    /**
+     * IDs et codes SH uniques à chaque invocation (code_sh est unique en base)
+     */
+    private void nextDocument(List<Chunk> chunks, List<ProductMetadata> metadataList) {
+        for (int i = 0; i < CHUNKS_PER_DOCUMENT; i++) {
+            long n = sequence++;
+            SHCodeDocumentParser.DocumentChunk parsed = parsedChunks.get(i % parsedChunks.size());
+            Chunk chunk = new Chunk();
+            chunk.setId("bench-" + documentId + "_chunk_" + n);
+            chunk.setText(parsed.getText());
+            chunk.setShCode(parsed.getShCode());
+            chunk.setContentHash(ContentHash.of(parsed.getText()));
+            chunks.add(chunk);
+
+            ProductMetadata metadata = extractionService.extractMetadata(parsed);
+            metadata.setCodeSh(String.format("9%09d", (documentId * 1_000_000 + n) % 1_000_000_000));
+            metadata.setChunk(chunk);
+            metadataList.add(metadata);
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.Chunk;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ChunkDiffTest {
+
+    @Test
+    void classifiesUnchangedUpdatedInsertedAndDeletedChunks() {
+        Chunk kept = stored("doc_chunk_0", "0101210000", "Le code SH 0101210000 correspond à des chevaux. DI 2,5 %");
+        Chunk rewritten = stored("doc_chunk_1", "0101290000", "Le code SH 0101290000 correspond à des ânes. DI 10 %");
+        Chunk removed = stored("doc_chunk_2", "0102210000", "Le code SH 0102210000 correspond à des bovins.");
+        // Chunk ingéré avant les colonnes sh_code / content_hash
+        Chunk legacy = new Chunk();
+        legacy.setId("doc_chunk_3");
+        legacy.setText("Le code SH 0103100000 correspond à des porcins.");
+
+        List<SHCodeDocumentParser.DocumentChunk> newVersion = List.of(
+                parsed("0101210000", kept.getText()),
+                parsed("0101290000", "Le code SH 0101290000 correspond à des ânes. DI 17,5 %"),
+                parsed("0103100000", "Le code SH 0103100000 correspond à des porcins reproducteurs."),
+                parsed("0104100000", "Le code SH 0104100000 correspond à des ovins."));
+
+        ChunkDiff diff = ChunkDiff.compute(List.of(kept, rewritten, removed, legacy), newVersion);
+
+        assertEquals(List.of(kept), diff.getUnchanged());
+        assertEquals(2, diff.getUpdates().size());
+        assertEquals(rewritten, diff.getUpdates().get(0).existing());
+        assertEquals(legacy, diff.getUpdates().get(1).existing());
+        assertEquals(List.of("0104100000"), diff.getInserts().stream().map(SHCodeDocumentParser.DocumentChunk::getShCode).toList());
+        assertEquals(List.of(removed), diff.getDeletes());
+    }
+
+    @Test
+    void identicalVersionProducesNoChange() {
+        Chunk a = stored("doc_chunk_0", "0101210000", "Le code SH 0101210000 correspond à des chevaux.");
+        ChunkDiff diff = ChunkDiff.compute(List.of(a), List.of(parsed("0101210000", a.getText())));
+        assertTrue(diff.isEmpty());
+        assertEquals(List.of(a), diff.getUnchanged());
+    }
+
+    private static Chunk stored(String id, String shCode, String text) {
+        Chunk chunk = new Chunk();
+        chunk.setId(id);
+        chunk.setShCode(shCode);
+        chunk.setText(text);
+        chunk.setContentHash(ContentHash.of(text));
+        return chunk;
+    }
+
+    private static SHCodeDocumentParser.DocumentChunk parsed(String shCode, String text) {
+        SHCodeDocumentParser.DocumentChunk chunk = new SHCodeDocumentParser.DocumentChunk();
+        chunk.setShCode(shCode);
+        chunk.setText(text);
+        return chunk;
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.ProductMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ContextPackerTest {
+
+    private static final String HORSES = """
+            Code SH : 0101210000
+            Désignation : Chevaux reproducteurs de race pure
+            L'importation au Maroc des produits relatifs à cette position est soumise aux mesures de la réglementation en vigueur.
+            Les mesures tarifaires applicables à cette position sont les droits de douanes suivants :
+            - Droit d'Importation* ( DI ) : 2,5 %
+            - Taxe sur la Valeur Ajoutée à l'Import ( TVA ) : 20 %
+            importation Union Européenne un droit préferentiel de 0%.
+            """;
+
+    private static final String DONKEYS = """
+            Code SH : 0101300000
+            Désignation : Ânes
+            - Droit d'Importation* ( DI ) : 40 %
+            - Taxe sur la Valeur Ajoutée à l'Import ( TVA ) : 20 %
+            importation Union Européenne un droit préferentiel de 0%.
+            """;
+
+    @Test
+    void stripsBoilerplateButKeepsTariffLines() {
+        String stripped = ContextPacker.stripBoilerplate(HORSES);
+
+        assertFalse(stripped.contains("L'importation au Maroc"));
+        assertFalse(stripped.contains("Les mesures tarifaires"));
+        assertTrue(stripped.contains("( DI ) : 2,5 %"));
+        assertTrue(stripped.contains("Chevaux reproducteurs"));
+        assertTrue(ContextPacker.estimateTokens(stripped) < ContextPacker.estimateTokens(HORSES));
+
+        // Même fiche extraite avec mojibake (UTF-8 relu en Windows-1252)
+        String garbled = ContextPacker.stripBoilerplate(
+                "Lâ€™importation au Maroc des produits relatifs \u00c3\u00a0 cette position est soumise aux mesures en vigueur.\n"
+                        + "Les mesures tarifaires applicables \u00c3  cette position sont les droits de douanes suivants :\n"
+                        + "- Droit d'Importation* ( DI ) : 2,5 %");
+        assertFalse(garbled.contains("importation au Maroc"));
+        assertFalse(garbled.contains("Les mesures tarifaires"));
+        assertTrue(garbled.contains("( DI ) : 2,5 %"));
+    }
+
+    @Test
+    void pinsRequestedShCodeAndDropsOverlappingChunks() {
+        HybridSearchService.HybridSearchResult horses = result(HORSES, "c1", 0.5, "0101210000");
+        // Chunk voisin de la même fiche : mêmes lignes, déjà couvert
+        HybridSearchService.HybridSearchResult overlap = result(HORSES.replace("2,5 %", "2,5 %\n"), "c2", 0.9, "0101210000");
+        HybridSearchService.HybridSearchResult donkeys = result(DONKEYS, "c3", 0.8, "0101300000");
+        HybridSearchService.HybridSearchResult duplicateId = result(DONKEYS, "c3", 0.8, "0101300000");
+
+        ContextPacker.PackedContext context = new ContextPacker(1200)
+                .pack("Quels droits pour le code 0101210000 ?", List.of(overlap, donkeys, horses, duplicateId));
+
+        assertEquals(2, context.chunks().size());
+        assertTrue(context.chunks().get(0).contains("Chevaux"), "le code demandé passe en premier");
+        // Positions différentes gardées malgré leurs lignes d'accords communes
+        assertTrue(context.chunks().get(1).contains("Ânes"));
+        assertEquals(1, context.droppedChunks());
+    }
+
+    @Test
+    void respectsTokenBudgetExceptForPinnedChunk() {
+        HybridSearchService.HybridSearchResult horses = result(HORSES, "c1", 0.9, "0101210000");
+        HybridSearchService.HybridSearchResult donkeys = result(DONKEYS, "c2", 0.8, "0101300000");
+        int budget = ContextPacker.estimateTokens(ContextPacker.stripBoilerplate(HORSES)) + 10;
+
+        ContextPacker.PackedContext context = new ContextPacker(budget).pack("chevaux", List.of(horses, donkeys));
+
+        assertEquals(1, context.chunks().size());
+        assertTrue(context.estimatedTokens() <= budget);
+        assertEquals(1, new ContextPacker(1).pack("chevaux", List.of(horses, donkeys)).chunks().size());
+    }
+
+    private static HybridSearchService.HybridSearchResult result(String text, String id, double score, String codeSh) {
+        HybridSearchService.HybridSearchResult result =
+                new HybridSearchService.HybridSearchResult(text, id, score, 0.0, new ProductMetadata(codeSh, null));
+        result.setTotalScore(score);
+        return result;
+    }
+}
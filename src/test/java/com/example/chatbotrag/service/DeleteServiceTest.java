@@ -0,0 +1,105 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.repository.ChunkRepository;
+import com.example.chatbotrag.repository.ProductMetadataRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class DeleteServiceTest {
+
+    private static final long DOCUMENT_ID = 7L;
+
+    // Table chunk du document (ID → code SH), triée comme le ORDER BY id de la purge
+    private final TreeMap<String, String> chunkTable = new TreeMap<>();
+    private final AtomicBoolean documentDeleted = new AtomicBoolean();
+    private final Set<String> deletedFromChroma = new HashSet<>();
+
+    private final ChromaHttpClientService chroma = mock(ChromaHttpClientService.class);
+    private final NamedParameterJdbcTemplate jdbc = mock(NamedParameterJdbcTemplate.class);
+    private final ChromaShardRouter router = new ChromaShardRouter(chroma, mock(ShCodeCatalogueService.class),
+            new RagMetrics(new SimpleMeterRegistry()), false, 3, 1);
+    private final DeleteService deleteService = new DeleteService(mock(ChunkRepository.class), chroma, router,
+            mock(ProductMetadataRepository.class), mock(ShCodeCatalogueService.class), jdbc, mock(PlatformTransactionManager.class));
+
+    @AfterEach
+    void tearDown() {
+        router.shutdown();
+        deleteService.shutdown();
+    }
+
+    @Test
+    void chromaFailureMidPurgeIsResumedWithoutOrphans() {
+        for (int i = 0; i < 2 * DeleteService.DELETE_BATCH_SIZE + 500; i++) {
+            chunkTable.put(String.format("doc_chunk_%05d", i), "0101210000");
+        }
+        stubChunkTable();
+        // Deuxième lot : Chroma indisponible une fois
+        AtomicInteger chromaCalls = new AtomicInteger();
+        doAnswer(inv -> {
+            if (chromaCalls.incrementAndGet() == 2) {
+                throw new IllegalStateException("Chroma indisponible");
+            }
+            deletedFromChroma.addAll(inv.<List<String>>getArgument(1));
+            return null;
+        }).when(chroma).deleteEmbeddingsByIds(anyString(), anyList());
+
+        assertThrows(IllegalStateException.class, () -> deleteService.purgeDocument(DOCUMENT_ID));
+        // Le premier lot est parti des deux côtés, le second n'a rien supprimé de MySQL, le document reste marqué
+        assertEquals(DeleteService.DELETE_BATCH_SIZE, deletedFromChroma.size());
+        assertEquals(DeleteService.DELETE_BATCH_SIZE + 500, chunkTable.size());
+        assertFalse(documentDeleted.get());
+
+        // Reprise (redémarrage ou nouvelle demande) : repart des chunks restants
+        chunkTable.put("doc_chunk_late", "0201100000"); // ajouté entre-temps
+        deleteService.purgeDocument(DOCUMENT_ID);
+
+        assertTrue(chunkTable.isEmpty());
+        assertTrue(documentDeleted.get());
+        assertEquals(2 * DeleteService.DELETE_BATCH_SIZE + 501, deletedFromChroma.size());
+        assertTrue(deletedFromChroma.contains("doc_chunk_late"));
+        // Seule la suppression du document reste globale : aucun chunk n'est retiré de MySQL sans Chroma
+        verify(jdbc, never()).update(contains("WHERE document_id"), anyMap());
+    }
+
+    @SuppressWarnings("unchecked")
+    private void stubChunkTable() {
+        when(jdbc.query(startsWith("SELECT id, sh_code FROM chunk"), anyMap(), any(RowMapper.class))).thenAnswer(inv -> {
+            List<String[]> rows = new ArrayList<>();
+            for (Map.Entry<String, String> chunk : chunkTable.entrySet()) {
+                if (rows.size() == DeleteService.DELETE_BATCH_SIZE) {
+                    break;
+                }
+                rows.add(new String[]{chunk.getKey(), chunk.getValue()});
+            }
+            return rows;
+        });
+        when(jdbc.update(eq("DELETE FROM chunk WHERE id IN (:ids)"), anyMap())).thenAnswer(inv -> {
+            List<String> ids = (List<String>) inv.<Map<String, Object>>getArgument(1).get("ids");
+            ids.forEach(chunkTable::remove);
+            return ids.size();
+        });
+        when(jdbc.update(eq("DELETE FROM document WHERE id = :documentId"), anyMap())).thenAnswer(inv -> {
+            assertTrue(chunkTable.isEmpty(), "document supprimé avant ses chunks");
+            documentDeleted.set(true);
+            return 1;
+        });
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.model.EmbeddingCacheEntry;
+import com.example.chatbotrag.repository.EmbeddingCacheRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class EmbeddingCacheServiceTest {
+
+    @Test
+    void unchangedChunkIsServedFromCache() {
+        Map<String, EmbeddingCacheEntry> table = new HashMap<>();
+        EmbeddingCacheRepository repository = mock(EmbeddingCacheRepository.class);
+        when(repository.findById(anyString())).thenAnswer(inv -> Optional.ofNullable(table.get(inv.<String>getArgument(0))));
+        when(repository.save(any())).thenAnswer(inv -> {
+            EmbeddingCacheEntry entry = inv.getArgument(0);
+            table.put(entry.getContentHash(), entry);
+            return entry;
+        });
+        OllamaClientService ollama = mock(OllamaClientService.class);
+        when(ollama.getEmbeddingModel()).thenReturn("bge-m3");
+        when(ollama.embed("chunk A")).thenReturn(List.of(0.25, -1.5, 3.0));
+
+        EmbeddingCacheService cache = new EmbeddingCacheService(repository, ollama, new RagMetrics(new SimpleMeterRegistry()), true);
+
+        float[] first = cache.embed("chunk A");
+        float[] second = cache.embed("chunk A");
+
+        assertArrayEquals(new float[]{0.25f, -1.5f, 3.0f}, first);
+        assertArrayEquals(first, second);
+        verify(ollama, times(1)).embed("chunk A");
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    void keyDependsOnModelAndText() {
+        String key = EmbeddingCacheService.contentHash("bge-m3", "texte");
+        assertEquals(64, key.length());
+        assertEquals(key, EmbeddingCacheService.contentHash("bge-m3", "texte"));
+        assertNotEquals(key, EmbeddingCacheService.contentHash("nomic-embed-text", "texte"));
+        assertNotEquals(EmbeddingCacheService.contentHash("ab", "c"), EmbeddingCacheService.contentHash("a", "bc"));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.example.chatbotrag.metrics.RagMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.tika.Tika;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ByteArrayResource;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class IncrementalSHCodeChunkerTest {
+
+    private final SHCodeDocumentParser parser = new SHCodeDocumentParser();
+
+    @Test
+    void matchesBatchParserWhateverTheSplit() {
+        String sample = BenchmarkData.tariffText();
+        List<String> expected = describe(parser.parseDocument(sample, "tarif"));
+        assertFalse(expected.isEmpty());
+
+        Random random = new Random(3);
+        for (int maxPiece : new int[]{1, 7, 64, 4096, sample.length()}) {
+            List<SHCodeDocumentParser.DocumentChunk> chunks = new ArrayList<>();
+            IncrementalSHCodeChunker chunker = new IncrementalSHCodeChunker(parser, chunks::add);
+            TariffTextNormalizer.Streaming normalizer = new TariffTextNormalizer.Streaming();
+            StringBuilder normalized = new StringBuilder();
+            char[] text = sample.toCharArray();
+            int position = 0;
+            while (position < text.length) {
+                int length = Math.min(text.length - position, 1 + random.nextInt(maxPiece));
+                normalizer.append(text, position, length, normalized);
+                chunker.append(normalized);
+                normalized.setLength(0);
+                position += length;
+            }
+            normalizer.finish(normalized);
+            chunker.append(normalized);
+            chunker.finish();
+
+            assertEquals(expected, describe(chunks), "découpe max " + maxPiece);
+        }
+    }
+
+    @Test
+    void streamingExtractorMatchesParseToString() throws Exception {
+        byte[] bytes = BenchmarkData.tariffText().getBytes(StandardCharsets.UTF_8);
+        Tika tika = new Tika();
+        tika.setMaxStringLength(-1);
+        List<String> expected = describe(parser.parseDocument(tika.parseToString(new ByteArrayInputStream(bytes)), "tarif"));
+
+        StreamingDocumentExtractor extractor = new StreamingDocumentExtractor(parser, new RagMetrics(new SimpleMeterRegistry()), 2);
+        List<SHCodeDocumentParser.DocumentChunk> chunks = new ArrayList<>();
+        try (StreamingDocumentExtractor.ChunkStream stream = extractor.extract(new ByteArrayResource(bytes), "tarif.txt")) {
+            stream.forEachRemaining(chunks::add);
+            assertFalse(stream.getLanguageSample().isEmpty());
+        }
+        assertEquals(expected, describe(chunks));
+    }
+
+    private static List<String> describe(List<SHCodeDocumentParser.DocumentChunk> chunks) {
+        List<String> described = new ArrayList<>();
+        for (SHCodeDocumentParser.DocumentChunk chunk : chunks) {
+            described.add(chunk.getShCode() + "|" + chunk.getStartPosition() + "-" + chunk.getEndPosition()
+                    + "|" + chunk.getWordCount() + "|" + chunk.getDi() + "|" + chunk.getTpi() + "|" + chunk.getTva()
+                    + "|" + chunk.getAgreements() + "|" + chunk.getQuota() + "|" + chunk.getProductDescription()
+                    + "|" + chunk.getText());
+        }
+        return described;
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.chatbotrag.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class IngestionJobTest {
+
+    @Test
+    void queuedJobIsCancelledAndNeverStarts() {
+        IngestionJob job = new IngestionJob("job-1", "tarif.pdf", 1024);
+
+        assertTrue(job.requestCancel());
+        assertEquals(IngestionProgress.Phase.CANCELLED, job.getPhase());
+        assertNotNull(job.getFinishedAt());
+        assertFalse(job.start());
+        assertNull(job.getStartedAt());
+    }
+
+    @Test
+    void runningJobIsInterruptedAndStoppedBeforePersisting() {
+        IngestionJob job = new IngestionJob("job-2", "tarif.pdf", 1024);
+        Future<?> future = mock(Future.class);
+        job.setFuture(future);
+        assertTrue(job.start());
+        assertEquals(IngestionProgress.Phase.EXTRACTING, job.getPhase());
+        job.onChunkEmbedded();
+        assertEquals(IngestionProgress.Phase.EMBEDDING, job.getPhase());
+
+        assertTrue(job.requestCancel());
+        assertTrue(job.isCancelled());
+        verify(future).cancel(true);
+        // Le thread du job s'arrête à l'entrée de la persistance, avant la transaction
+        assertThrows(CancellationException.class, () -> job.onPhase(IngestionProgress.Phase.PERSISTING));
+        assertEquals(IngestionProgress.Phase.EMBEDDING, job.getPhase());
+    }
+
+    @Test
+    void cancelIsRefusedDuringPersistenceAndOnceFinished() {
+        IngestionJob job = new IngestionJob("job-3", "tarif.pdf", 1024);
+        Future<?> future = mock(Future.class);
+        job.setFuture(future);
+        assertTrue(job.start());
+        job.onPhase(IngestionProgress.Phase.PERSISTING);
+
+        assertFalse(job.requestCancel());
+        assertFalse(job.isCancelled());
+        verifyNoInteractions(future);
+
+        job.complete("42");
+        assertEquals(IngestionProgress.Phase.COMPLETED, job.getPhase());
+        assertFalse(job.requestCancel());
+        assertEquals("42", job.getDocumentId());
+    }
+}
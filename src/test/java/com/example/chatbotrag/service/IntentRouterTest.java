@@ -0,0 +1,58 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.metrics.RagMetrics;
+import com.example.chatbotrag.model.ProductMetadata;
+import com.example.chatbotrag.repository.ProductMetadataRepository;
+import com.example.chatbotrag.store.ConversationHistoryStore;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static com.example.chatbotrag.service.IntentRouter.Intent.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+class IntentRouterTest {
+
+    private final IntentRouter router = new IntentRouter();
+
+    @Test
+    void classifiesBeforeAnyLookup() {
+        assertEquals(SMALLTALK, router.classify("Bonjour, ça va ?").intent());
+        assertEquals(HELP, router.classify("Que peux-tu faire ?").intent());
+        // Une salutation ne masque pas une vraie question
+        assertEquals(TARIFF_FIELD, router.classify("Bonjour, quelle TVA pour les chevaux reproducteurs ?").intent());
+        assertEquals(TARIFF_FIELD, router.classify("viande bovine congelée désossée").intent());
+        assertEquals(new IntentRouter.Route(SH_CODE_LOOKUP, "0101210000"), router.classify("Droits du code 0101.21.00.00 ?"));
+        assertEquals(OPEN_QUESTION, router.classify("Quelle différence entre 0101210000 et 0101290000 ?").intent());
+        assertEquals(OPEN_QUESTION, router.classify("Comment obtenir un certificat d'origine ?").intent());
+    }
+
+    @Test
+    void citedCodeIsAnsweredFromMetadataWithoutSearchOrLlm() {
+        ProductMetadata horses = new ProductMetadata("0101210000", "Chevaux reproducteurs de race pure");
+        horses.setDroitImportation(2.5);
+        horses.setTva(20.0);
+        ProductMetadataRepository repository = mock(ProductMetadataRepository.class);
+        when(repository.findByCodeSh("0101210000")).thenReturn(Optional.of(horses));
+        HybridSearchService hybridSearch = mock(HybridSearchService.class);
+        OllamaClientService ollama = mock(OllamaClientService.class);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        RagMetrics metrics = new RagMetrics(registry);
+        ChatService chatService = new ChatService(mock(VectorSearchService.class), hybridSearch, ollama, router, repository,
+                new ContextPacker(1200), new TemplateAnswerRenderer(true, 0.7, 0.15),
+                new ConversationHistoryStore(metrics, Duration.ofMinutes(30)), metrics, 6, true, 6000);
+
+        List<String> answer = chatService.ask("s1", "Quels droits pour 0101210000 ?", null);
+        chatService.ask("s1", "salut", null);
+
+        assertTrue(answer.get(0).contains("2,5 %"));
+        verifyNoInteractions(hybridSearch, ollama);
+        assertEquals(1, registry.get("rag.intent").tag("intent", "sh_code_lookup").timer().count());
+        assertEquals(1, registry.get("rag.intent").tag("intent", "smalltalk").timer().count());
+    }
+}
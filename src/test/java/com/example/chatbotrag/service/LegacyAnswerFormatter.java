@@ -0,0 +1,52 @@
+package com.example.chatbotrag.service;
+
+/**
+ * Ancien formatForWeb de ChatService (chaîne de String.replace), conservé comme référence
+ * pour les tests d'équivalence et les benchmarks de StreamingAnswerFormatter.
+ */
+final class LegacyAnswerFormatter {
+
+    private LegacyAnswerFormatter() {
+    }
+
+    static String format(String mistralResponse) {
+        // Conversion des sauts de ligne en balises HTML
+        String formatted = mistralResponse.replace("\n", "<br>");
+        
+        // Formatage spécial pour les titres (sans emojis)
+        formatted = formatted.replace("Position Tarifaire", "<br><strong style='color:#2563eb; font-size:1.2em;'>Position Tarifaire</strong>")
+                            .replace("Droits et Taxes", "<br><br><strong style='color:#059669; font-size:1.2em;'>Droits et Taxes</strong>")
+                            .replace("Accords et Conventions", "<br><br><strong style='color:#7c3aed; font-size:1.2em;'>Accords et Conventions</strong>");
+        
+        // Formatage pour les codes SH et descriptions importantes
+        formatted = formatted.replace("Code SH :", "<br><strong style='color:#1f2937;'>Code SH :</strong>")
+                            .replace("Description :", "<br><strong style='color:#1f2937;'>Description :</strong>");
+        
+        // Formatage pour les taxes et droits
+        formatted = formatted.replace("Droit d'Importation (DI) :", "<br><strong>Droit d'Importation (DI) :</strong>")
+                            .replace("Taxe Parafiscale à l'Importation (TPI) :", "<br><strong>Taxe Parafiscale à l'Importation (TPI) :</strong>")
+                            .replace("Taxe sur la Valeur Ajoutée à l'Importation (TVA) :", "<br><strong>Taxe sur la Valeur Ajoutée à l'Importation (TVA) :</strong>");
+        
+        // Formatage pour les accords commerciaux
+        formatted = formatted.replace("Union Européenne :", "<br>Union Européenne :")
+                            .replace("Ligue Arabe :", "<br>Ligue Arabe :")
+                            .replace("Accord d'Agadir :", "<br>Accord d'Agadir :")
+                            .replace("États-Unis :", "<br>États-Unis :")
+                            .replace("Zone de libre-échange continentale africaine", "<br>Zone de libre-échange continentale africaine")
+                            .replace("Émirats Arabes Unis :", "<br>Émirats Arabes Unis :")
+                            .replace("Irak :", "<br>Irak :")
+                            .replace("Libye :", "<br>Libye :")
+                            .replace("Royaume-Uni :", "<br>Royaume-Uni :")
+                            .replace("Algérie :", "<br>Algérie :");
+        
+        // Nettoyage des balises en trop au début
+        if (formatted.startsWith("<br>")) {
+            formatted = formatted.substring(4);
+        }
+        
+        // Suppression des doubles <br> consécutifs excessifs
+        formatted = formatted.replaceAll("(<br>){3,}", "<br><br>");
+        
+        return formatted;
+    }
+}
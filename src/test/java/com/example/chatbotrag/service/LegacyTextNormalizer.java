@@ -0,0 +1,31 @@
+package com.example.chatbotrag.service;
+
+/**
+ * Ancienne normalisation de SHCodeDocumentParser (chaîne de replaceAll), conservée comme
+ * référence pour les tests d'équivalence et les benchmarks de TariffTextNormalizer.
+ */
+final class LegacyTextNormalizer {
+
+    private LegacyTextNormalizer() {
+    }
+
+    static String normalize(String text) {
+        return text
+            .replaceAll("\\s+", " ") // Normalize whitespace
+            .replaceAll("Ã©", "é")
+            .replaceAll("Ã ", "à")
+            .replaceAll("Ã¨", "è")
+            .replaceAll("Ã´", "ô")
+            .replaceAll("Ã¢", "â")
+            .replaceAll("Ã§", "ç")
+            .replaceAll("Ãª", "ê")
+            .replaceAll("Ã®", "î")
+            .replaceAll("Ã¯", "ï")
+            .replaceAll("Ã¹", "ù")
+            .replaceAll("Ã»", "û")
+            .replaceAll("â", "'")
+            .replaceAll("â", "–")
+            .replaceAll("â", "—")
+            .trim();
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import com.example.chatbotrag.model.ProductMetadata;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Extraction des métadonnées produit : à l'ingestion (par chunk) et à la requête (par question)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ProductMetadataExtractionBenchmark {
+
+    private ProductMetadataExtractionService extractionService;
+    private List<SHCodeDocumentParser.DocumentChunk> chunks;
+    private List<String> queries;
+
+    @Setup
+    public void setup() {
+        extractionService = new ProductMetadataExtractionService();
+        chunks = new SHCodeDocumentParser().parseDocument(BenchmarkData.tariffText(), "tarif-sample.txt");
+        queries = BenchmarkData.userQueries();
+    }
+
+    /**
+     * Toutes les fiches du document, comme lors d'une ingestion
+     */
+    @Benchmark
+    public void extractMetadata(Blackhole bh) {
+        for (SHCodeDocumentParser.DocumentChunk chunk : chunks) {
+            ProductMetadata metadata = extractionService.extractMetadata(chunk);
+            bh.consume(metadata);
+        }
+    }
+
+    @Benchmark
+    public void extractQueryMetadata(Blackhole bh) {
+        for (String query : queries) {
+            bh.consume(extractionService.extractQueryMetadata(query));
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Découpage par code SH et normalisation sur un document tarifaire réaliste (~110 Ko, 80 fiches)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SHCodeDocumentParserBenchmark {
+
+    private SHCodeDocumentParser parser;
+    private String documentText;
+
+    @Setup
+    public void setup() {
+        parser = new SHCodeDocumentParser();
+        documentText = BenchmarkData.tariffText();
+    }
+
+    @Benchmark
+    public List<SHCodeDocumentParser.DocumentChunk> parseDocument() {
+        return parser.parseDocument(documentText, "tarif-sample.txt");
+    }
+
+    @Benchmark
+    public String normalizeText() {
+        return parser.normalizeText(documentText);
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.chatbotrag.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class ShCodeCatalogueServiceTest {
+
+    @Test
+    void snapshotIsCachedUntilInvalidated() {
+        List<ShCodeCatalogueService.CodeEntry> rows = new ArrayList<>(List.of(
+                new ShCodeCatalogueService.CodeEntry("0101210000", 2),
+                new ShCodeCatalogueService.CodeEntry("0101290000", 1),
+                new ShCodeCatalogueService.CodeEntry("0102210000", 3),
+                new ShCodeCatalogueService.CodeEntry("0201100000", 1)));
+        JdbcTemplate jdbc = mock(JdbcTemplate.class);
+        when(jdbc.query(startsWith("SELECT id, text"), any(RowMapper.class), anyInt())).thenReturn(List.of());
+        when(jdbc.query(startsWith("SELECT sh_code"), any(RowMapper.class))).thenAnswer(inv -> List.copyOf(rows));
+
+        ShCodeCatalogueService catalogue = new ShCodeCatalogueService(jdbc, Duration.ofMinutes(5));
+        ShCodeCatalogueService.Snapshot first = catalogue.getSnapshot();
+
+        assertEquals(List.of("0101210000", "0101290000", "0102210000", "0201100000"), first.codes());
+        assertEquals(7, first.chunkCount());
+        assertEquals(2, first.chapters().size());
+        ShCodeCatalogueService.ChapterEntry chapter01 = first.chapters().get(0);
+        assertEquals("01", chapter01.chapter());
+        assertEquals(6, chapter01.chunkCount());
+        assertEquals(List.of("0101", "0102"), chapter01.headings().stream().map(ShCodeCatalogueService.HeadingEntry::heading).toList());
+        assertEquals(3, chapter01.headings().get(0).chunkCount());
+
+        assertSame(first, catalogue.getSnapshot());
+        verify(jdbc, times(1)).query(startsWith("SELECT sh_code"), any(RowMapper.class));
+
+        // Même contenu après invalidation : même ETag
+        catalogue.invalidate();
+        assertEquals(first.etag(), catalogue.getSnapshot().etag());
+
+        rows.add(new ShCodeCatalogueService.CodeEntry("0301110000", 1));
+        catalogue.invalidate();
+        ShCodeCatalogueService.Snapshot changed = catalogue.getSnapshot();
+        assertNotEquals(first.etag(), changed.etag());
+        assertEquals(3, changed.chapters().size());
+    }
+}
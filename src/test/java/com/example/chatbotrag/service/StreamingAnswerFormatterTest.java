@@ -0,0 +1,78 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamingAnswerFormatterTest {
+
+    private static final String[] FRAGMENTS = {
+            "\n", "\n\n", "<br>", "<b", " ", "x", ":", "Position Tarifaire", "Position ", "Droits et Taxes", "Droits ",
+            "Accords et Conventions", "Accord d'Agadir :", "Accord", "Code SH :", "Code SH", "Description :",
+            "Droit d'Importation (DI) :", "Taxe Parafiscale à l'Importation (TPI) :",
+            "Taxe sur la Valeur Ajoutée à l'Importation (TVA) :", "Union Européenne :", "Ligue Arabe :", "États-Unis :",
+            "Zone de libre-échange continentale africaine", "Émirats Arabes Unis :", "Irak :", "Libye :", "Royaume-Uni :",
+            "Algérie :", "Algérie", "2,5 %"
+    };
+
+    @Test
+    void matchesLegacyChainOnMistralResponse() {
+        String response = BenchmarkData.mistralResponse();
+        assertEquals(LegacyAnswerFormatter.format(response), StreamingAnswerFormatter.format(response));
+    }
+
+    @Test
+    void matchesLegacyChainOnEdgeCases() {
+        String[] cases = {
+                "", "\n", "\n\n\n\nPosition Tarifaire", "<br>texte", "<br><br><br><br>fin", "fin\n\n\n",
+                "Droits et Taxes", "a\nDroits et Taxes\n\nAccords et Conventions", "Code SH", "Position Tarifair"
+        };
+        for (String text : cases) {
+            assertEquals(LegacyAnswerFormatter.format(text), StreamingAnswerFormatter.format(text), text);
+        }
+    }
+
+    @Test
+    void matchesLegacyChainOnRandomInput() {
+        Random random = new Random(11);
+        for (int n = 0; n < 20_000; n++) {
+            StringBuilder text = new StringBuilder();
+            for (int k = random.nextInt(12); k > 0; k--) {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            String input = text.toString();
+            assertEquals(LegacyAnswerFormatter.format(input), StreamingAnswerFormatter.format(input), input);
+        }
+    }
+
+    @Test
+    void tokenSplitsDoNotChangeTheResult() {
+        String response = BenchmarkData.mistralResponse();
+        String expected = StreamingAnswerFormatter.format(response);
+        Random random = new Random(3);
+        for (int n = 0; n < 200; n++) {
+            StreamingAnswerFormatter formatter = new StreamingAnswerFormatter();
+            StringBuilder html = new StringBuilder();
+            int i = 0;
+            while (i < response.length()) {
+                int end = Math.min(response.length(), i + 1 + random.nextInt(8));
+                html.append(formatter.accept(response.substring(i, end)));
+                i = end;
+            }
+            html.append(formatter.finish());
+            assertEquals(expected, html.toString());
+        }
+    }
+
+    @Test
+    void holdsBackLabelSplitAcrossTokens() {
+        StreamingAnswerFormatter formatter = new StreamingAnswerFormatter();
+        assertEquals("TVA 20 %", formatter.accept("TVA 20 %\n\nDroits et"));
+        assertEquals("<br><br><strong style='color:#059669; font-size:1.2em;'>Droits et Taxes</strong>",
+                formatter.accept(" Taxes"));
+        assertEquals("", formatter.finish());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit de normalisation en Mo/s (compteur "megabytes") : passe unique vs ancienne chaîne de replaceAll,
+ * sur l'extrait tarifaire répété jusqu'à la taille demandée
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TariffTextNormalizerBenchmark {
+
+    @Param({"1", "8"})
+    public int sizeMb;
+
+    private String text;
+    private double textMegabytes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Throughput {
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        String sample = BenchmarkData.tariffText();
+        StringBuilder sb = new StringBuilder(sizeMb * 1024 * 1024 + sample.length());
+        while (sb.length() < sizeMb * 1024 * 1024) {
+            sb.append(sample).append("\n\n");
+        }
+        text = sb.toString();
+        textMegabytes = text.length() / (1024.0 * 1024.0);
+    }
+
+    @Benchmark
+    public String singlePass(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return TariffTextNormalizer.normalize(text);
+    }
+
+    @Benchmark
+    public String legacyReplaceAllChain(Throughput throughput) {
+        throughput.megabytes += textMegabytes;
+        return LegacyTextNormalizer.normalize(text);
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TariffTextNormalizerTest {
+
+    @Test
+    void matchesLegacyChainOnTariffSample() {
+        String sample = BenchmarkData.tariffText();
+        assertEquals(LegacyTextNormalizer.normalize(sample), TariffTextNormalizer.normalize(sample));
+    }
+
+    @Test
+    void matchesLegacyChainOnEdgeCases() {
+        String[] cases = {
+                "", "   ", "\t\n\r\f\u000B", "Ã", "Ã ", "Ã\n\t x", "ÃÃ©", "Ã¢gés", "âgés", "Ã ",
+                "\u0001 code SH 0101292000 \u0002", "  Ã©lÃ¨ve  ", "fin Ã", "Ã Ã Ã", "a  b", "Ã¢Ã¢â"
+        };
+        for (String text : cases) {
+            assertEquals(LegacyTextNormalizer.normalize(text), TariffTextNormalizer.normalize(text), text);
+        }
+    }
+
+    @Test
+    void matchesLegacyChainOnRandomInput() {
+        char[] alphabet = {'a', 'Z', '0', ' ', '\t', '\n', '\r', '\f', '\u000B', '\u0001', ' ',
+                'Ã', '©', '¨', '´', '¢', '§', 'ª', '®', '¯', '¹', '»', 'â', 'é', '–', '\''};
+        Random random = new Random(7);
+        for (int n = 0; n < 20_000; n++) {
+            char[] text = new char[random.nextInt(40)];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            String input = new String(text);
+            assertEquals(LegacyTextNormalizer.normalize(input), TariffTextNormalizer.normalize(input), input);
+        }
+    }
+
+    @Test
+    void streamingModeMatchesSinglePassWhateverTheSplit() {
+        char[] alphabet = {'a', '0', ' ', '\t', '\n', '\u0001', 'Ã', '©', '¢', 'â', '»'};
+        Random random = new Random(11);
+        for (int n = 0; n < 20_000; n++) {
+            char[] text = new char[random.nextInt(40)];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            TariffTextNormalizer.Streaming streaming = new TariffTextNormalizer.Streaming();
+            StringBuilder out = new StringBuilder();
+            int position = 0;
+            while (position < text.length) {
+                int length = Math.min(text.length - position, 1 + random.nextInt(5));
+                streaming.append(text, position, length, out);
+                position += length;
+            }
+            streaming.finish(out);
+            String input = new String(text);
+            assertEquals(TariffTextNormalizer.normalize(input), out.toString(), input);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.chatbotrag.service;
+
+import com.example.chatbotrag.model.ProductMetadata;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateAnswerRendererTest {
+
+    private final TemplateAnswerRenderer renderer = new TemplateAnswerRenderer(true, 0.7, 0.15);
+
+    @Test
+    void rendersFixedFormatFromMetadata() {
+        Optional<String> answer = renderer.render("Quels sont les droits pour les chevaux reproducteurs ?",
+                List.of(result(horses(), 0.9), result(donkeys(), 0.5)));
+
+        assertEquals("""
+                Pour l'importation de chevaux reproducteurs de race pure au Maroc, voici les informations clés à prendre en compte :
+
+                Position Tarifaire
+                Code SH : 0101210000
+                Description : Chevaux reproducteurs de race pure.
+
+                Droits et Taxes
+                Droit d'Importation (DI) : 2,5 %
+                Taxe Parafiscale à l'Importation (TPI) : 0,25 %
+                Taxe sur la Valeur Ajoutée à l'Importation (TVA) : 20 %
+
+                Accords et Conventions
+                Les chevaux reproducteurs de race pure peuvent bénéficier de droits préférentiels dans le cadre des accords suivants :
+
+                Union Européenne : 0 %
+                Accord d'Agadir : 10,5 %""", answer.orElseThrow());
+    }
+
+    @Test
+    void citedCodeWinsEvenWithoutScoreMargin() {
+        Optional<String> answer = renderer.render("Droits du code 0101300000 ?",
+                List.of(result(horses(), 0.6), result(donkeys(), 0.55)));
+
+        assertTrue(answer.orElseThrow().contains("Code SH : 0101300000"));
+        assertTrue(answer.get().contains("Taxe Parafiscale à l'Importation (TPI) : Non spécifié dans les documents"));
+    }
+
+    @Test
+    void leavesAmbiguousOrOffTemplateQuestionsToTheLlm() {
+        // Deux positions au coude à coude
+        assertTrue(renderer.render("droits chevaux", List.of(result(horses(), 0.9), result(donkeys(), 0.8))).isEmpty());
+        // Score trop faible
+        assertTrue(renderer.render("droits chevaux", List.of(result(horses(), 0.5))).isEmpty());
+        // Question hors gabarit
+        assertTrue(renderer.render("Quelle est la différence entre chevaux et ânes ?", List.of(result(horses(), 0.9))).isEmpty());
+        // Description brute (texte du chunk) : pas de gabarit
+        ProductMetadata raw = horses();
+        raw.setDescription("Code SH : 0101210000\n" + "x".repeat(400));
+        assertTrue(renderer.render("droits chevaux", List.of(result(raw, 0.9))).isEmpty());
+    }
+
+    private static ProductMetadata horses() {
+        ProductMetadata metadata = new ProductMetadata("0101210000", "Chevaux reproducteurs de race pure.");
+        metadata.setDroitImportation(2.5);
+        metadata.setTpi(0.25);
+        metadata.setTva(20.0);
+        metadata.setPreferentiels("[\"Union Européenne: 0%\",\"Accord d'Agadir: 10.5%\"]");
+        return metadata;
+    }
+
+    private static ProductMetadata donkeys() {
+        ProductMetadata metadata = new ProductMetadata("0101300000", "Ânes");
+        metadata.setDroitImportation(40.0);
+        metadata.setTva(20.0);
+        return metadata;
+    }
+
+    private static HybridSearchService.HybridSearchResult result(ProductMetadata metadata, double score) {
+        HybridSearchService.HybridSearchResult result =
+                new HybridSearchService.HybridSearchResult("texte", metadata.getCodeSh(), score, 0.0, metadata);
+        result.setTotalScore(score);
+        return result;
+    }
+}
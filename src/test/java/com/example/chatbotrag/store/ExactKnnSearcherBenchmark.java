@@ -0,0 +1,97 @@
+package com.example.chatbotrag.store;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recherche top-10 exacte sur des embeddings de la dimension de bge-m3 : boucle scalaire
+ * sur un thread (ancien parcours FLOAT) contre ExactKnnSearcher sur un seul thread puis
+ * sur le pool commun. La variante SIMD suppose le module jdk.incubator.vector (profil benchmark).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(jvmArgsAppend = "-Xmx2G")
+public class ExactKnnSearcherBenchmark {
+
+    private static final int DIMENSION = 1024;
+    private static final int K = 10;
+    private static final int QUERY_COUNT = 64;
+
+    @Param({"20000", "100000"})
+    public int vectorCount;
+
+    private float[][] vectors;
+    private ExactKnnSearcher sequential;
+    private ExactKnnSearcher parallel;
+    private ForkJoinPool singleThread;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        vectors = BenchmarkData.embeddings(vectorCount, DIMENSION, 42);
+        singleThread = new ForkJoinPool(1);
+        ExactKnnSearcher.Builder sequentialBuilder = ExactKnnSearcher.builder(DIMENSION, ExactKnnSearcher.Metric.L2).pool(singleThread);
+        ExactKnnSearcher.Builder parallelBuilder = ExactKnnSearcher.builder(DIMENSION, ExactKnnSearcher.Metric.L2);
+        for (int i = 0; i < vectorCount; i++) {
+            sequentialBuilder.add("chunk-" + i, vectors[i]);
+            parallelBuilder.add("chunk-" + i, vectors[i]);
+        }
+        sequential = sequentialBuilder.build();
+        parallel = parallelBuilder.build();
+
+        Random random = new Random(7);
+        queries = new float[QUERY_COUNT][];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            queries[q] = BenchmarkData.perturb(vectors[random.nextInt(vectorCount)], 0.5f, random);
+        }
+        System.out.printf("%nSIMD : %s, %d cœurs%n", ExactKnnSearcher.SIMD, Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown
+    public void tearDown() {
+        singleThread.shutdown();
+    }
+
+    @Benchmark
+    public int scalarScan() {
+        float[] query = nextQuery();
+        int best = -1;
+        float bestDistance = Float.POSITIVE_INFINITY;
+        for (int i = 0; i < vectors.length; i++) {
+            float[] vector = vectors[i];
+            float distance = 0f;
+            for (int d = 0; d < DIMENSION; d++) {
+                float diff = query[d] - vector[d];
+                distance += diff * diff;
+            }
+            if (distance < bestDistance) {
+                bestDistance = distance;
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    @Benchmark
+    public List<QuantizedVectorIndex.Hit> searchSingleThread() {
+        return sequential.search(nextQuery(), K);
+    }
+
+    @Benchmark
+    public List<QuantizedVectorIndex.Hit> searchParallel() {
+        return parallel.search(nextQuery(), K);
+    }
+
+    private float[] nextQuery() {
+        float[] query = queries[next];
+        next = (next + 1) % QUERY_COUNT;
+        return query;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.chatbotrag.store;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExactKnnSearcherTest {
+
+    // Dimension hors multiple des voies SIMD (reste scalaire) et assez de lignes pour plusieurs partitions
+    private static final int DIMENSION = 37;
+    private static final int ROWS = 5 * ExactKnnSearcher.PARTITION_ROWS + 123;
+    private static final int K = 15;
+
+    @Test
+    void parallelScanMatchesBruteForceForBothMetrics() {
+        assertTrue(ExactKnnSearcher.SIMD, "jdk.incubator.vector doit être chargé par surefire");
+        Random random = new Random(5);
+        float[][] vectors = new float[ROWS][DIMENSION];
+        for (float[] vector : vectors) {
+            for (int d = 0; d < DIMENSION; d++) {
+                vector[d] = (float) random.nextGaussian();
+            }
+        }
+
+        for (ExactKnnSearcher.Metric metric : ExactKnnSearcher.Metric.values()) {
+            ExactKnnSearcher.Builder builder = ExactKnnSearcher.builder(DIMENSION, metric);
+            for (int i = 0; i < ROWS; i++) {
+                builder.add(String.valueOf(i), vectors[i]);
+            }
+            ExactKnnSearcher searcher = builder.build();
+
+            for (int q = 0; q < 5; q++) {
+                float[] query = vectors[random.nextInt(ROWS)].clone();
+                query[0] += 0.5f;
+                List<Integer> expected = IntStream.range(0, ROWS).boxed()
+                        .sorted(Comparator.comparingDouble(i -> distance(metric, query, vectors[i])))
+                        .limit(K).toList();
+
+                List<QuantizedVectorIndex.Hit> hits = searcher.search(query, K);
+                assertEquals(expected, hits.stream().map(hit -> Integer.valueOf(hit.id())).toList(), metric.name());
+                assertEquals(distance(metric, query, vectors[expected.get(0)]), hits.get(0).distance(), 1e-3);
+            }
+        }
+    }
+
+    private static double distance(ExactKnnSearcher.Metric metric, float[] a, float[] b) {
+        double dot = 0;
+        double l2 = 0;
+        for (int d = 0; d < a.length; d++) {
+            dot += (double) a[d] * b[d];
+            l2 += ((double) a[d] - b[d]) * ((double) a[d] - b[d]);
+        }
+        return metric == ExactKnnSearcher.Metric.L2 ? l2 : 1 - dot;
+    }
+}
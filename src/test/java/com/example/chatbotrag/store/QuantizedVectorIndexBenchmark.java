@@ -0,0 +1,84 @@
+package com.example.chatbotrag.store;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence d'une recherche top-10 selon le mode de l'index local, sur des embeddings synthétiques
+ * de la dimension de bge-m3. Le setup affiche pour chaque mode le rappel@10 par rapport à l'index
+ * FLOAT (parcours exact) et la mémoire occupée (tas / fichier mappé) :
+ *   mvn -Pbenchmark test-compile exec:exec -Djmh.include=QuantizedVectorIndex -Djmh.params="-f 1 -wi 3 -i 5"
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Fork(jvmArgsAppend = "-Xmx2G")
+public class QuantizedVectorIndexBenchmark {
+
+    private static final int DIMENSION = 1024;
+    private static final int K = 10;
+    private static final int QUERY_COUNT = 100;
+
+    @Param({"10000", "50000"})
+    public int vectorCount;
+
+    @Param({"FLOAT", "INT8", "INT8_BINARY"})
+    public QuantizedVectorIndex.Mode mode;
+
+    private QuantizedVectorIndex index;
+    private float[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        float[][] vectors = BenchmarkData.embeddings(vectorCount, DIMENSION, 42);
+        Random random = new Random(7);
+        queries = new float[QUERY_COUNT][];
+        for (int q = 0; q < QUERY_COUNT; q++) {
+            queries[q] = BenchmarkData.perturb(vectors[random.nextInt(vectorCount)], 0.5f, random);
+        }
+
+        index = build(vectors, mode);
+        QuantizedVectorIndex exact = mode == QuantizedVectorIndex.Mode.FLOAT ? index : build(vectors, QuantizedVectorIndex.Mode.FLOAT);
+        int found = 0;
+        for (float[] query : queries) {
+            Set<String> truth = new HashSet<>();
+            exact.search(query, K).forEach(hit -> truth.add(hit.id()));
+            found += (int) index.search(query, K).stream().filter(hit -> truth.contains(hit.id())).count();
+        }
+        System.out.printf("%n[%s, %d vecteurs] rappel@10 = %.3f, tas = %d Mo, mappé = %d Mo%n",
+                mode, vectorCount, found / (double) (QUERY_COUNT * K), index.heapBytes() >> 20, index.mappedBytes() >> 20);
+    }
+
+    @TearDown
+    public void tearDown() {
+        index.close();
+    }
+
+    @Benchmark
+    public List<QuantizedVectorIndex.Hit> search() {
+        float[] query = queries[next];
+        next = (next + 1) % QUERY_COUNT;
+        return index.search(query, K);
+    }
+
+    private static QuantizedVectorIndex build(float[][] vectors, QuantizedVectorIndex.Mode mode) throws IOException {
+        QuantizedVectorIndex.Builder builder = QuantizedVectorIndex.builder(DIMENSION, mode);
+        if (mode != QuantizedVectorIndex.Mode.FLOAT) {
+            builder.file(Files.createTempFile("vectors-benchmark-", ".f32"));
+        }
+        for (int i = 0; i < vectors.length; i++) {
+            builder.add("chunk-" + i, vectors[i]);
+        }
+        return builder.build();
+    }
+}
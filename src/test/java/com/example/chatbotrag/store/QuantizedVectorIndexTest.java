@@ -0,0 +1,125 @@
+package com.example.chatbotrag.store;
+
+import com.example.chatbotrag.benchmark.BenchmarkData;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class QuantizedVectorIndexTest {
+
+    private static final int DIMENSION = 256;
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void quantizedSearchKeepsRecallAndReturnsExactDistances() {
+        float[][] vectors = BenchmarkData.embeddings(3000, DIMENSION, 7);
+        QuantizedVectorIndex exact = build(vectors, QuantizedVectorIndex.Mode.FLOAT);
+        QuantizedVectorIndex int8 = build(vectors, QuantizedVectorIndex.Mode.INT8);
+        QuantizedVectorIndex binary = build(vectors, QuantizedVectorIndex.Mode.INT8_BINARY);
+
+        Random random = new Random(11);
+        int found8 = 0;
+        int foundBinary = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = BenchmarkData.perturb(vectors[random.nextInt(vectors.length)], 0.5f, random);
+            List<QuantizedVectorIndex.Hit> truth = exact.search(query, K);
+            Set<String> truthIds = new HashSet<>();
+            truth.forEach(hit -> truthIds.add(hit.id()));
+
+            List<QuantizedVectorIndex.Hit> hits8 = int8.search(query, K);
+            found8 += (int) hits8.stream().filter(hit -> truthIds.contains(hit.id())).count();
+            foundBinary += (int) binary.search(query, K).stream().filter(hit -> truthIds.contains(hit.id())).count();
+
+            // Re-scoring sur les float32 : même distance que l'index exact pour un même voisin
+            if (hits8.get(0).id().equals(truth.get(0).id())) {
+                assertEquals(truth.get(0).distance(), hits8.get(0).distance(), 1e-4);
+            }
+        }
+        assertTrue(found8 >= 0.95 * queries * K, "recall@10 int8 = " + found8 / (double) (queries * K));
+        assertTrue(foundBinary >= 0.85 * queries * K, "recall@10 int8 + binaire = " + foundBinary / (double) (queries * K));
+    }
+
+    @Test
+    void quantizedIndexKeepsFloatsOutOfHeapAndDeletesItsFile() {
+        float[][] vectors = BenchmarkData.embeddings(500, DIMENSION, 3);
+        QuantizedVectorIndex exact = build(vectors, QuantizedVectorIndex.Mode.FLOAT);
+        QuantizedVectorIndex int8 = build(vectors, QuantizedVectorIndex.Mode.INT8);
+        Path file = directory.resolve("INT8.f32");
+
+        assertEquals(0, exact.mappedBytes());
+        assertEquals(500L * DIMENSION * Float.BYTES, int8.mappedBytes());
+        assertEquals(int8.mappedBytes(), Files.exists(file) ? file.toFile().length() : -1);
+        assertTrue(int8.heapBytes() * 3 < exact.heapBytes());
+
+        int8.close();
+        assertFalse(Files.exists(file));
+        // Recherche toujours possible : le mapping survit à la fermeture du fichier
+        assertEquals(K, int8.search(vectors[0], K).size());
+    }
+
+    @Test
+    void abortedBuildReleasesItsFileButBuiltIndexKeepsIt() throws IOException {
+        assumeTrue(Files.isDirectory(Paths.get("/proc/self/fd")), "descripteurs ouverts lisibles sous Linux uniquement");
+        float[][] vectors = BenchmarkData.embeddings(100, DIMENSION, 5);
+        Path aborted = directory.resolve("aborted.f32");
+        QuantizedVectorIndex.Builder builder = QuantizedVectorIndex.builder(DIMENSION, QuantizedVectorIndex.Mode.INT8).file(aborted);
+        for (int i = 0; i < 50; i++) {
+            builder.add("chunk-" + i, vectors[i]);
+        }
+        assertTrue(isOpen(aborted));
+        builder.abort();
+        assertFalse(isOpen(aborted));
+
+        Path kept = directory.resolve("kept.f32");
+        QuantizedVectorIndex.Builder completed = QuantizedVectorIndex.builder(DIMENSION, QuantizedVectorIndex.Mode.INT8).file(kept);
+        for (int i = 0; i < vectors.length; i++) {
+            completed.add("chunk-" + i, vectors[i]);
+        }
+        QuantizedVectorIndex index = completed.build();
+        // Après build, le fichier appartient à l'index : abort est sans effet
+        completed.abort();
+        assertTrue(isOpen(kept));
+        assertEquals(K, index.search(vectors[0], K).size());
+        index.close();
+        assertFalse(isOpen(kept));
+    }
+
+    private static boolean isOpen(Path file) throws IOException {
+        try (Stream<Path> descriptors = Files.list(Paths.get("/proc/self/fd"))) {
+            return descriptors.anyMatch(fd -> {
+                try {
+                    return Files.readSymbolicLink(fd).equals(file.toAbsolutePath());
+                } catch (IOException e) {
+                    return false;
+                }
+            });
+        }
+    }
+
+    private QuantizedVectorIndex build(float[][] vectors, QuantizedVectorIndex.Mode mode) {
+        QuantizedVectorIndex.Builder builder = QuantizedVectorIndex.builder(DIMENSION, mode)
+                .file(directory.resolve(mode + ".f32"));
+        for (int i = 0; i < vectors.length; i++) {
+            builder.add("chunk-" + i, vectors[i]);
+        }
+        return builder.build();
+    }
+}